@@ -14,13 +14,18 @@ package org.cloudifysource.shell.rest.inspect;
 
 import org.cloudifysource.dsl.rest.response.DeploymentEvent;
 import org.cloudifysource.dsl.rest.response.DeploymentEvents;
+import org.cloudifysource.dsl.rest.response.PollDeploymentEventsResponse;
+import org.cloudifysource.dsl.rest.response.ServiceDescription;
 import org.cloudifysource.restclient.RestClient;
 import org.cloudifysource.restclient.exceptions.RestClientException;
+import org.cloudifysource.restclient.exceptions.RestClientHttpException;
+import org.cloudifysource.restclient.exceptions.RestClientResponseException;
 import org.cloudifysource.shell.ConditionLatch;
 import org.cloudifysource.shell.exceptions.CLIException;
 import org.cloudifysource.shell.installer.CLIEventsDisplayer;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -39,6 +44,7 @@ public abstract class InstallationProcessInspector {
     protected Logger logger = Logger.getLogger(InstallationProcessInspector.class.getName());
 
     private static final int POLLING_INTERVAL_MILLI_SECONDS = 500;
+    private static final int POLL_TIMEOUT_SECONDS = 10;
 	protected static final int RESOURCE_NOT_FOUND_EXCEPTION_CODE = 404;
 
 	protected RestClient restClient;
@@ -49,6 +55,7 @@ public abstract class InstallationProcessInspector {
 	protected final Map<String, Integer> currentRunningInstancesPerService;
 
 	private int lastEventIndex = 0;
+	private boolean pollingSupported = true;
 	private final CLIEventsDisplayer displayer = new CLIEventsDisplayer();
 
 	public InstallationProcessInspector(final RestClient restClient,
@@ -68,6 +75,11 @@ public abstract class InstallationProcessInspector {
 	/**
 	 * Waits until the application/service lifecycle ends. As long as the installation continues, it will print out the
 	 * most recent events not yet printed.
+	 * <br></br>
+	 * Events and instance counts are retrieved with a single long-poll request per iteration, which the server holds
+	 * until something changes. Once all planned instances are running, the server is no longer asked to hold requests
+	 * so that the end of the lifecycle is detected promptly. Servers that do not support long-polling are queried
+	 * for the events and for the service descriptions instead.
 	 *
 	 * @param timeout
 	 *            the timeout.
@@ -87,10 +99,17 @@ public abstract class InstallationProcessInspector {
 			@Override
 			public boolean isDone() throws CLIException, InterruptedException {
 				try {
-					printInstalledInstances();
+					final int pollTimeout = allPlannedInstancesRunning() ? 0 : POLL_TIMEOUT_SECONDS;
+					PollDeploymentEventsResponse update = pollLatestUpdate(pollTimeout);
+					List<String> latestEvents = consumeEvents(update.getEvents());
+					printInstalledInstances(update.getRunningInstances());
+
 					boolean ended = lifeCycleEnded();
+					if (ended) {
+						// pick up whatever was logged up until the lifecycle ended.
+						latestEvents.addAll(consumeEvents(pollLatestUpdate(0).getEvents()));
+					}
 
-					List<String> latestEvents = getLatestEvents();
 					if (!latestEvents.isEmpty()) {
 						displayer.printEvents(latestEvents);
 					} else {
@@ -98,19 +117,28 @@ public abstract class InstallationProcessInspector {
 							displayer.printNoChange();
 						}
 					}
-
-					if (ended) {
-						printInstalledInstances();
-					}
 					return ended;
 				} catch (final RestClientException e) {
 					throw new CLIException(e.getMessage(), e, e.getVerbose());
 				}
 			}
 
-			private void printInstalledInstances() throws RestClientException {
+			private boolean allPlannedInstancesRunning() {
+				for (Map.Entry<String, Integer> entry : plannedNumberOfInstancesPerService.entrySet()) {
+					if (currentRunningInstancesPerService.get(entry.getKey()) < entry.getValue()) {
+						return false;
+					}
+				}
+				return true;
+			}
+
+			private void printInstalledInstances(final Map<String, Integer> runningInstancesPerService) {
 				for (Map.Entry<String, Integer> entry : plannedNumberOfInstancesPerService.entrySet()) {
-					int runningInstances = getNumberOfRunningInstances(entry.getKey());
+					Integer runningInstances = runningInstancesPerService.get(entry.getKey());
+					if (runningInstances == null) {
+						// the service is not deployed yet
+						continue;
+					}
 					if (runningInstances > currentRunningInstancesPerService.get(entry.getKey())) {
 						// a new instance is now running
 						displayer.printEvent("succesfully_installed_instances", runningInstances,
@@ -133,17 +161,6 @@ public abstract class InstallationProcessInspector {
 	 */
 	public abstract boolean lifeCycleEnded() throws RestClientException, CLIException;
 
-	/**
-	 * Query the number of running instances for a particular service.
-	 *
-	 * @param serviceName
-	 *            The service name.
-	 * @return how many instances are in running state.
-	 * @throws RestClientException
-	 *             Thrown in case an error happened during a rest call.
-	 */
-	public abstract int getNumberOfRunningInstances(final String serviceName) throws RestClientException;
-
 	/**
 	 *
 	 * @return the error message presented upon timeout.
@@ -160,9 +177,62 @@ public abstract class InstallationProcessInspector {
 	 */
 	public List<String> getLatestEvents() throws RestClientException {
 
-		List<String> eventsStrings = new ArrayList<String>();
-
 		DeploymentEvents events = restClient.getDeploymentEvents(deploymentId, lastEventIndex + 1, -1);
+		return consumeEvents(events);
+	}
+
+	/**
+	 * Waits for new events or instance count changes of this deployment id.
+	 *
+	 * @param timeoutSeconds
+	 *            The maximum number of seconds the server may hold the request.
+	 * @return The events that were not reported earlier, along with the running instances per service.
+	 * @throws RestClientException
+	 *             Indicates a failure to get events from the server.
+	 */
+	protected PollDeploymentEventsResponse pollLatestUpdate(final int timeoutSeconds) throws RestClientException {
+		if (pollingSupported) {
+			try {
+				PollDeploymentEventsResponse update =
+						restClient.pollDeploymentEvents(deploymentId, lastEventIndex + 1, timeoutSeconds);
+				if (update == null) {
+					return new PollDeploymentEventsResponse();
+				}
+				return update;
+			} catch (final RestClientHttpException e) {
+				// an unknown deployment is reported by the controller, an unknown URL means an older server.
+				if (e.getStatusCode() != RESOURCE_NOT_FOUND_EXCEPTION_CODE) {
+					throw e;
+				}
+				logger.fine("The REST server does not support polling for events, falling back to querying them");
+				pollingSupported = false;
+			}
+		}
+
+		final PollDeploymentEventsResponse update = new PollDeploymentEventsResponse();
+		update.setEvents(restClient.getDeploymentEvents(deploymentId, lastEventIndex + 1, -1));
+		update.setRunningInstances(getRunningInstancesPerService());
+		return update;
+	}
+
+	private Map<String, Integer> getRunningInstancesPerService() throws RestClientException {
+		final Map<String, Integer> runningInstances = new HashMap<String, Integer>();
+		try {
+			for (final ServiceDescription serviceDescription : restClient.getServiceDescriptions(deploymentId)) {
+				runningInstances.put(serviceDescription.getServiceName(), serviceDescription.getInstanceCount());
+			}
+		} catch (final RestClientResponseException e) {
+			if (e.getStatusCode() != RESOURCE_NOT_FOUND_EXCEPTION_CODE) {
+				throw e;
+			}
+			// no service of the deployment is installed yet
+		}
+		return runningInstances;
+	}
+
+	private List<String> consumeEvents(final DeploymentEvents events) {
+
+		List<String> eventsStrings = new ArrayList<String>();
 		if (events == null || events.getEvents().isEmpty()) {
 			return eventsStrings;
 		}
@@ -22,7 +22,6 @@ import java.util.Set;
 import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.CloudifyErrorMessages;
 import org.cloudifysource.dsl.rest.response.ApplicationDescription;
-import org.cloudifysource.dsl.rest.response.ServiceDescription;
 import org.cloudifysource.restclient.RestClient;
 import org.cloudifysource.restclient.exceptions.RestClientException;
 import org.cloudifysource.restclient.exceptions.RestClientResponseException;
@@ -94,26 +93,6 @@ public class ApplicationInstallationProcessInspector extends InstallationProcess
     	return applicationIsInstalled;
     }
 
-
-    @Override
-    public int getNumberOfRunningInstances(final String serviceName) throws RestClientException {
-    	int instanceCount;
-    	try {
-    		ServiceDescription serviceDescription = restClient.getServiceDescription(applicationName, serviceName);
-    		instanceCount = serviceDescription.getInstanceCount();
-    	} catch (RestClientResponseException e) {
-    		if (e.getStatusCode() == RESOURCE_NOT_FOUND_EXCEPTION_CODE) {
-    			//if we got here - the service is not installed yet
-    			instanceCount = 0;
-        	} else {
-        		throw e;
-        	}
-    	}
-    	
-    	return instanceCount;
-
-    }
-
     @Override
     public String getTimeoutErrorMessage() {
         return TIMEOUT_ERROR_MESSAGE;
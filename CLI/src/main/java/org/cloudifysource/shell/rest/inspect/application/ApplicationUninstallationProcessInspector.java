@@ -66,17 +66,6 @@ public class ApplicationUninstallationProcessInspector extends UninstallationPro
         return restClient.getServiceDescriptions(deploymentId).isEmpty();
     }
 
-    @Override
-    public int getNumberOfRunningInstances(final String serviceName) throws RestClientException {
-        List<ServiceDescription> servicesDescription = restClient.getServiceDescriptions(deploymentId);
-        for (ServiceDescription serviceDescription : servicesDescription) {
-            if (serviceDescription.getServiceName().contains(serviceName)) {
-                return serviceDescription.getInstanceCount();
-            }
-        }
-        return 0;
-    }
-
     @Override
     public String getTimeoutErrorMessage() {
         return TIMEOUT_ERROR_MESSAGE;
@@ -117,26 +117,6 @@ public class ServiceInstallationProcessInspector extends InstallationProcessInsp
     	return serviceIsInstalled;
     }
 
-
-    @Override
-    public int getNumberOfRunningInstances(final String serviceName) throws RestClientException {
-    	int instanceCount;
-    	try {
-    		ServiceDescription serviceDescription = restClient
-                .getServiceDescription(applicationName, serviceName);
-    		instanceCount = serviceDescription.getInstanceCount();
-    	} catch (final RestClientResponseException e) {
-    		if (e.getStatusCode() == RESOURCE_NOT_FOUND_EXCEPTION_CODE) {
-    			//if we got here - the service is not installed yet
-    			instanceCount = 0;
-        	} else {
-        		throw e;
-        	}
-    	}
-
-    	return instanceCount;
-    }
-
     @Override
     public String getTimeoutErrorMessage() {
         return TIMEOUT_ERROR_MESSAGE;
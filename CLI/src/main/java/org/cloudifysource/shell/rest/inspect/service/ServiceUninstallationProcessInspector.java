@@ -12,13 +12,11 @@
  ******************************************************************************/
 package org.cloudifysource.shell.rest.inspect.service;
 
-import org.cloudifysource.dsl.rest.response.ServiceDescription;
 import org.cloudifysource.restclient.RestClient;
 import org.cloudifysource.restclient.exceptions.RestClientException;
 import org.cloudifysource.shell.rest.inspect.UninstallationProcessInspector;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -62,20 +60,6 @@ public class ServiceUninstallationProcessInspector extends UninstallationProcess
         return restClient.getServiceDescriptions(deploymentId).isEmpty();
 	}
 
-	@Override
-	public int getNumberOfRunningInstances(final String serviceName) throws RestClientException {
-        List<ServiceDescription> servicesDescription = restClient
-                .getServiceDescriptions(deploymentId);
-        // there should only be one service
-        if (servicesDescription.isEmpty()) {
-            return 0;
-        }
-        if (servicesDescription.size() > 1)  {
-            throw new IllegalStateException("Got more than one services for deployment id " + deploymentId);
-        }
-        return servicesDescription.get(0).getInstanceCount();
-	}
-
 	@Override
 	public String getTimeoutErrorMessage() {
 		return TIMEOUT_ERROR_MESSAGE;
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.shell.rest.inspect;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.dsl.rest.response.DeploymentEvent;
+import org.cloudifysource.dsl.rest.response.DeploymentEvents;
+import org.cloudifysource.dsl.rest.response.PollDeploymentEventsResponse;
+import org.cloudifysource.dsl.rest.response.ServiceDescription;
+import org.cloudifysource.restclient.RestClient;
+import org.cloudifysource.restclient.exceptions.RestClientException;
+import org.cloudifysource.restclient.exceptions.RestClientHttpException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InstallationProcessInspectorTest {
+
+	private static final String DEPLOYMENT_ID = "deploymentId";
+
+	private FakeRestClient restClient;
+	private InstallationProcessInspector inspector;
+
+	@Before
+	public void before() throws Exception {
+		restClient = new FakeRestClient();
+		inspector = new InstallationProcessInspector(restClient, DEPLOYMENT_ID, "default", false,
+				new HashMap<String, Integer>(), new HashMap<String, Integer>()) {
+			@Override
+			public boolean lifeCycleEnded() {
+				return false;
+			}
+
+			@Override
+			public String getTimeoutErrorMessage() {
+				return "timeout";
+			}
+		};
+	}
+
+	@Test
+	public void testPollFromLastEvent() throws Exception {
+		restClient.events = events(1, 2, 3);
+		Assert.assertEquals(Arrays.asList("event1", "event2", "event3"), inspector.getLatestEvents());
+
+		final PollDeploymentEventsResponse update = inspector.pollLatestUpdate(10);
+
+		Assert.assertSame(restClient.pollResponse, update);
+		Assert.assertEquals(Collections.singletonList("4:10"), restClient.polls);
+	}
+
+	@Test
+	public void testFallbackForServersWithoutPolling() throws Exception {
+		restClient.pollError = createHttpException(404);
+		restClient.events = events(1);
+		final ServiceDescription tomcat = new ServiceDescription();
+		tomcat.setServiceName("tomcat");
+		tomcat.setInstanceCount(2);
+		restClient.serviceDescriptions = Collections.singletonList(tomcat);
+
+		final PollDeploymentEventsResponse update = inspector.pollLatestUpdate(10);
+		Assert.assertEquals(1, update.getEvents().getEvents().size());
+		Assert.assertEquals(Collections.singletonMap("tomcat", 2), update.getRunningInstances());
+
+		// the server is not asked to poll again.
+		inspector.pollLatestUpdate(10);
+		Assert.assertEquals(1, restClient.polls.size());
+		Assert.assertEquals(2, restClient.eventRequests);
+	}
+
+	@Test
+	public void testPollErrorsOtherThanNotFoundAreThrown() throws Exception {
+		restClient.pollError = createHttpException(500);
+
+		try {
+			inspector.pollLatestUpdate(10);
+			Assert.fail("Expected the poll error to be thrown");
+		} catch (final RestClientHttpException e) {
+			Assert.assertEquals(500, e.getStatusCode());
+		}
+		Assert.assertEquals(0, restClient.eventRequests);
+	}
+
+	private static RestClientHttpException createHttpException(final int statusCode) {
+		return new RestClientHttpException("http_failure", "failure", statusCode, "reason", "", new Exception());
+	}
+
+	private static DeploymentEvents events(final int... indices) {
+		final List<DeploymentEvent> list = new ArrayList<DeploymentEvent>();
+		for (final int index : indices) {
+			final DeploymentEvent event = new DeploymentEvent();
+			event.setIndex(index);
+			event.setDescription("event" + index);
+			list.add(event);
+		}
+		final DeploymentEvents events = new DeploymentEvents();
+		events.setEvents(list);
+		return events;
+	}
+
+	/**
+	 * Answers the requests of the inspector without a server.
+	 */
+	private static final class FakeRestClient extends RestClient {
+
+		private final List<String> polls = new ArrayList<String>();
+		private final PollDeploymentEventsResponse pollResponse = new PollDeploymentEventsResponse();
+		private RestClientException pollError;
+		private DeploymentEvents events = events();
+		private int eventRequests;
+		private List<ServiceDescription> serviceDescriptions = new ArrayList<ServiceDescription>();
+
+		private FakeRestClient() throws Exception {
+			super(new URL("http://localhost:8100"), null, null, "2.7.0");
+		}
+
+		@Override
+		public PollDeploymentEventsResponse pollDeploymentEvents(final String deploymentId, final int from,
+				final int timeoutSeconds) throws RestClientException {
+			polls.add(from + ":" + timeoutSeconds);
+			if (pollError != null) {
+				throw pollError;
+			}
+			return pollResponse;
+		}
+
+		@Override
+		public DeploymentEvents getDeploymentEvents(final String deploymentId, final int from, final int to) {
+			++eventRequests;
+			return events;
+		}
+
+		@Override
+		public List<ServiceDescription> getServiceDescriptions(final String deploymentId) {
+			return serviceDescriptions;
+		}
+	}
+}
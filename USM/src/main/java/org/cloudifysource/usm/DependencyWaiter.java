@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.cloudifysource.dsl.internal.CloudifyConstants;
+import org.cloudifysource.dsl.internal.CloudifyConstants.USMState;
+import org.openspaces.admin.Admin;
+import org.openspaces.admin.StatisticsMonitor;
+import org.openspaces.admin.pu.ProcessingUnit;
+import org.openspaces.admin.pu.ProcessingUnitInstance;
+import org.openspaces.admin.pu.ProcessingUnitInstanceStatistics;
+import org.openspaces.admin.pu.events.ProcessingUnitAddedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitInstanceStatisticsChangedEvent;
+import org.openspaces.admin.pu.events.ProcessingUnitInstanceStatisticsChangedEventListener;
+import org.openspaces.pu.service.ServiceMonitors;
+
+/**********
+ * Waits for the services a service depends on to have a running instance. Rather than sampling the dependencies in a
+ * loop, the waiter registers for Admin events: processing unit added events locate the dependencies, and instance
+ * statistics events, which carry the USM state of every instance, report when an instance is running. The Admin is
+ * shared with the rest of the USM, so the waiter only starts, at a short interval, the statistics monitors of
+ * dependencies that are not monitored already, and only stops the monitors it started. As a safety net, the state of
+ * the instances is also checked directly every few seconds.
+ *
+ * @since 2.7.0
+ *
+ */
+class DependencyWaiter {
+
+	private static final long STATISTICS_INTERVAL_MILLIS = 500;
+	private static final long RECHECK_INTERVAL_MILLIS = 5000;
+
+	private static java.util.logging.Logger logger = java.util.logging.Logger.getLogger(DependencyWaiter.class
+			.getName());
+
+	private final Admin admin;
+	private final Set<String> pending = Collections.synchronizedSet(new HashSet<String>());
+	// guarded by 'this', like the statistics monitors of the watched processing units.
+	private final Map<String, ProcessingUnit> watched = new HashMap<String, ProcessingUnit>();
+	private final List<ProcessingUnit> startedMonitors = new LinkedList<ProcessingUnit>();
+	private boolean done;
+	private final Object lock = new Object();
+
+	private final ProcessingUnitAddedEventListener processingUnitAddedListener =
+			new ProcessingUnitAddedEventListener() {
+				@Override
+				public void processingUnitAdded(final ProcessingUnit processingUnit) {
+					if (pending.contains(processingUnit.getName())) {
+						watch(processingUnit);
+					}
+				}
+			};
+
+	private final ProcessingUnitInstanceStatisticsChangedEventListener statisticsListener =
+			new ProcessingUnitInstanceStatisticsChangedEventListener() {
+				@Override
+				public void processingUnitInstanceStatisticsChanged(
+						final ProcessingUnitInstanceStatisticsChangedEvent event) {
+					final ProcessingUnitInstance instance = event.getProcessingUnitInstance();
+					if (isRunning(event.getStatistics())) {
+						markAvailable(instance.getProcessingUnit().getName());
+					}
+				}
+			};
+
+	DependencyWaiter(final Admin admin) {
+		this.admin = admin;
+	}
+
+	/**********
+	 * Waits for every dependency to have an instance in the RUNNING state.
+	 *
+	 * @param dependencies
+	 *            the names of the processing units of the dependencies.
+	 * @param endTime
+	 *            the time to give up waiting at.
+	 * @throws IllegalStateException
+	 *             if a dependency is not available by the end time, or if the waiting thread is interrupted.
+	 */
+	void waitFor(final Collection<String> dependencies, final long endTime) {
+		pending.addAll(dependencies);
+		admin.getProcessingUnits().getProcessingUnitAdded().add(processingUnitAddedListener);
+		try {
+			long nextCheckTime = 0;
+			while (true) {
+				final long now = System.currentTimeMillis();
+				if (now >= nextCheckTime) {
+					checkInstances();
+					nextCheckTime = now + RECHECK_INTERVAL_MILLIS;
+				}
+
+				synchronized (lock) {
+					if (pending.isEmpty()) {
+						return;
+					}
+					final long remaining = endTime - System.currentTimeMillis();
+					if (remaining <= 0) {
+						throw new IllegalStateException("Could not find dependency " + getPendingNames()
+								+ " required for this service");
+					}
+					logger.fine("Waiting for dependencies " + getPendingNames() + " for " + remaining
+							+ " Milliseconds");
+					lock.wait(Math.min(remaining, Math.max(1, nextCheckTime - System.currentTimeMillis())));
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for dependencies " + getPendingNames(), e);
+		} finally {
+			admin.getProcessingUnits().getProcessingUnitAdded().remove(processingUnitAddedListener);
+			unwatchAll();
+		}
+	}
+
+	private synchronized void watch(final ProcessingUnit processingUnit) {
+		if (done || watched.containsKey(processingUnit.getName())) {
+			return;
+		}
+		watched.put(processingUnit.getName(), processingUnit);
+		logger.info("Found processing unit of dependency " + processingUnit.getName()
+				+ ", waiting for a running instance");
+		processingUnit.getProcessingUnitInstanceStatisticsChanged().add(statisticsListener);
+		if (!processingUnit.isMonitoring()) {
+			processingUnit.setStatisticsInterval(STATISTICS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			processingUnit.startStatisticsMonitor();
+			startedMonitors.add(processingUnit);
+		}
+	}
+
+	private synchronized void unwatchAll() {
+		done = true;
+		for (final ProcessingUnit processingUnit : watched.values()) {
+			processingUnit.getProcessingUnitInstanceStatisticsChanged().remove(statisticsListener);
+		}
+		for (final ProcessingUnit processingUnit : startedMonitors) {
+			processingUnit.stopStatisticsMonitor();
+			// the next user of the monitor gets the default interval rather than the short one of the waiter.
+			processingUnit.setStatisticsInterval(StatisticsMonitor.DEFAULT_MONITOR_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+		watched.clear();
+		startedMonitors.clear();
+	}
+
+	private void checkInstances() {
+		for (final String name : getPendingNames()) {
+			final ProcessingUnit processingUnit = admin.getProcessingUnits().getProcessingUnit(name);
+			if (processingUnit == null) {
+				continue;
+			}
+			watch(processingUnit);
+			for (final ProcessingUnitInstance instance : processingUnit.getInstances()) {
+				try {
+					if (isRunning(instance.getStatistics())) {
+						markAvailable(name);
+						break;
+					}
+				} catch (final RuntimeException e) {
+					logger.log(Level.FINE, "Failed to read the statistics of an instance of " + name, e);
+				}
+			}
+		}
+	}
+
+	private void markAvailable(final String name) {
+		if (pending.remove(name)) {
+			logger.info("Dependency " + name + " is available");
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	private Set<String> getPendingNames() {
+		synchronized (pending) {
+			return new HashSet<String>(pending);
+		}
+	}
+
+	private static boolean isRunning(final ProcessingUnitInstanceStatistics statistics) {
+		if (statistics == null) {
+			return false;
+		}
+		final ServiceMonitors monitors = statistics.getMonitors().get(CloudifyConstants.USM_MONITORS_SERVICE_ID);
+		if (monitors == null) {
+			return false;
+		}
+		final Object stateObject = monitors.getMonitors().get(CloudifyConstants.USM_MONITORS_STATE_ID);
+		if (!(stateObject instanceof Integer)) {
+			return false;
+		}
+		final int stateIndex = (Integer) stateObject;
+		return stateIndex == USMState.RUNNING.ordinal();
+	}
+}
@@ -20,16 +20,26 @@ import groovy.lang.Closure;
 import groovy.lang.GString;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.CloudifyConstants.USMState;
 import org.cloudifysource.usm.details.Details;
+import org.cloudifysource.usm.monitors.MetricsHistory;
 import org.cloudifysource.usm.monitors.Monitor;
 import org.openspaces.pu.service.CustomServiceDetails;
 import org.openspaces.pu.service.CustomServiceMonitors;
@@ -37,9 +47,14 @@ import org.openspaces.pu.service.ServiceDetails;
 import org.openspaces.pu.service.ServiceMonitors;
 
 /*****************
- * A synchronized wrapper to the monitors functionality. The last monitors
- * results are cached for a set time. Note: this class also contains the code to
- * create the service details. The code for services and details is very
+ * A refresh-ahead wrapper to the monitors functionality. Monitors are executed
+ * in the background, each in its own thread, once every cache expiration
+ * timeout, and readers get the last values of every monitor immediately. A
+ * monitor that does not complete within the monitor timeout is interrupted and
+ * its last good values are kept, so a hanging monitor does not hold back the
+ * others. The age of the values of a monitor that could not be refreshed in
+ * time is published with the monitors. Note: this class also contains the code
+ * to create the service details. The code for services and details is very
  * similar, even though service details is called exactly once.
  * 
  * 
@@ -49,44 +64,121 @@ import org.openspaces.pu.service.ServiceMonitors;
  */
 public class MonitorsCache {
 
+	private static final long DEFAULT_MONITOR_TIMEOUT = 30000;
+
 	private final USMLifecycleBean lifecycleBean;
 
-	private ServiceMonitors[] lastResult;
 	private final UniversalServiceManagerBean usm;
 
 	private final long cacheExpirationTimeout;
-	private long cacheExpirationTime = 0;
+	private final long monitorTimeout;
+	private final MetricsHistory metricsHistory;
 
 	private final String serviceSubType = "USM";
 	private final String serviceDescription = "USM";
 	private final String serviceLongDescription = "USM";
 
+	private ScheduledExecutorService scheduler;
+	private ExecutorService monitorExecutor;
+	// replaced whenever the service stops running, so values of a previous run are not published.
+	private volatile MonitorState[] monitorStates;
+
+	private final Runnable refreshTask = new Runnable() {
+		@Override
+		public void run() {
+			refreshMonitors();
+		}
+	};
+
 	public MonitorsCache(final UniversalServiceManagerBean usm,
 			final USMLifecycleBean lifecycleBean,
 			final long cacheExpirationTimeout) {
+		this(usm, lifecycleBean, cacheExpirationTimeout, DEFAULT_MONITOR_TIMEOUT);
+	}
+
+	public MonitorsCache(final UniversalServiceManagerBean usm,
+			final USMLifecycleBean lifecycleBean,
+			final long cacheExpirationTimeout, final long monitorTimeout) {
+		this(usm, lifecycleBean, cacheExpirationTimeout, monitorTimeout, null);
+	}
+
+	public MonitorsCache(final UniversalServiceManagerBean usm,
+			final USMLifecycleBean lifecycleBean,
+			final long cacheExpirationTimeout, final long monitorTimeout,
+			final MetricsHistory metricsHistory) {
 		this.usm = usm;
 		this.cacheExpirationTimeout = cacheExpirationTimeout;
+		this.monitorTimeout = monitorTimeout;
 		this.lifecycleBean = lifecycleBean;
+		this.metricsHistory = metricsHistory;
 	}
 
 	/***********
-	 * Returns the monitors from the cache if the cache expiration time has not
-	 * been exceeded, or reads the new monitor values and caches them, returning
-	 * the result.
+	 * Returns the last values of the monitors. Monitors are refreshed in the
+	 * background, so this call never waits for a monitor.
 	 * 
 	 * @return the monitors.
 	 */
-	public synchronized ServiceMonitors[] getMonitors() {
-		final long now = System.currentTimeMillis();
+	public ServiceMonitors[] getMonitors() {
+		startIfRequired();
+		return createMonitors();
+	}
 
-		if (now >= cacheExpirationTime) {
-			logger.fine("Reloading monitors at: " + now);
-			this.lastResult = createMonitors();
-			this.cacheExpirationTime = now + cacheExpirationTimeout;
+	private synchronized void startIfRequired() {
+		if (scheduler != null) {
+			return;
 		}
+		this.monitorStates = createMonitorStates();
+		final AtomicInteger threadCounter = new AtomicInteger();
+		this.monitorExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "USMMonitor-" + threadCounter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "USMMonitorsScheduler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.scheduler.scheduleWithFixedDelay(refreshTask, 0, cacheExpirationTimeout, TimeUnit.MILLISECONDS);
+	}
 
-		return this.lastResult;
+	/***********
+	 * Stops refreshing the monitors.
+	 */
+	public synchronized void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			monitorExecutor.shutdownNow();
+		}
+	}
 
+	private MonitorState[] createMonitorStates() {
+		final Monitor[] monitors = lifecycleBean.getMonitors();
+		final MonitorState[] states = new MonitorState[monitors.length];
+		for (int i = 0; i < monitors.length; i++) {
+			states[i] = new MonitorState(monitors[i], monitors[i].getClass().getSimpleName() + "#" + i);
+		}
+		return states;
+	}
+
+	// executed by the scheduler thread only.
+	private void refreshMonitors() {
+		if (usm.getState() != USMState.RUNNING) {
+			if (monitorStates.length > 0 && monitorStates[0].attemptStartTime != 0) {
+				monitorStates = createMonitorStates();
+			}
+			return;
+		}
+		for (final MonitorState state : monitorStates) {
+			state.refresh();
+		}
 	}
 
 	private static final java.util.logging.Logger logger = java.util.logging.Logger
@@ -137,18 +229,23 @@ public class MonitorsCache {
 		// default monitors
 		putDefaultMonitorsInMap(map);
 
-		for (final Monitor monitor : lifecycleBean.getMonitors()) {
-			try {
-				logger.fine("Executing monitor: " + monitor);
-				final Map<String, Number> monitorValues = monitor
-						.getMonitorValues(usm, lifecycleBean.getConfiguration());
-				removeNonSerializableObjectsFromMap(monitorValues, "monitors");
+		final long now = System.currentTimeMillis();
+		boolean refreshRequired = false;
+		for (final MonitorState state : monitorStates) {
+			final Map<String, Number> monitorValues = state.lastValues;
+			if (monitorValues != null) {
 				// add monitor values to Monitors map
 				map.putAll(monitorValues);
-			} catch (final Exception e) {
-				logger.log(Level.SEVERE,
-						"Failed to execute a USM service monitor", e);
 			}
+			if (state.attemptStartTime == 0) {
+				// the service just started running, no need to wait for the next scheduled refresh.
+				refreshRequired = true;
+			} else if (state.isStale(now)) {
+				map.put(CloudifyConstants.USM_MONITORS_STALENESS_PREFIX + state.name, now - state.getLastUpdateTime());
+			}
+		}
+		if (refreshRequired) {
+			requestRefresh();
 		}
 
 		if (logger.isLoggable(Level.FINE)) {
@@ -159,6 +256,14 @@ public class MonitorsCache {
 
 	}
 
+	private synchronized void requestRefresh() {
+		try {
+			scheduler.execute(refreshTask);
+		} catch (final RejectedExecutionException e) {
+			// shut down.
+		}
+	}
+
 	private void putDefaultMonitorsInMap(final Map<String, Object> map) {
 		map.put(CloudifyConstants.USM_MONITORS_CHILD_PROCESS_ID,
 				usm.getChildProcessID());
@@ -174,6 +279,10 @@ public class MonitorsCache {
 		}
 		map.put(CloudifyConstants.USM_MONITORS_STATE_ID, usm.getState()
 				.ordinal());
+		final long startDetectionDuration = lifecycleBean.getStartDetectionDurationMillis();
+		if (startDetectionDuration >= 0) {
+			map.put(CloudifyConstants.USM_MONITORS_START_DETECTION_DURATION, startDetectionDuration);
+		}
 	}
 
 	/**************
@@ -232,4 +341,96 @@ public class MonitorsCache {
 		}
 	}
 
+	/**************
+	 * The last values of a monitor, and its current execution.
+	 */
+	private final class MonitorState {
+
+		private final Monitor monitor;
+		private final String name;
+		private volatile Map<String, Number> lastValues;
+		private volatile long lastSuccessTime;
+		// the following are accessed by the scheduler thread only, except for reads of attemptStartTime.
+		private volatile long attemptStartTime;
+		private volatile long firstAttemptTime;
+		private volatile boolean running;
+		private volatile boolean started;
+		private volatile boolean interrupted;
+		private Future<?> execution;
+
+		private MonitorState(final Monitor monitor, final String name) {
+			this.monitor = monitor;
+			this.name = name;
+		}
+
+		// the time of the last successful execution, or of the first attempt if there was none.
+		private long getLastUpdateTime() {
+			return lastSuccessTime == 0 ? firstAttemptTime : lastSuccessTime;
+		}
+
+		private boolean isStale(final long now) {
+			return now - getLastUpdateTime() > cacheExpirationTimeout + monitorTimeout;
+		}
+
+		private void refresh() {
+			final long now = System.currentTimeMillis();
+			if (running) {
+				if (!interrupted && now - attemptStartTime > monitorTimeout) {
+					logger.warning("Monitor " + name + " did not complete within " + monitorTimeout
+							+ " milliseconds and will be interrupted. Its last values will be used until it completes");
+					interrupted = true;
+					execution.cancel(true);
+					if (!started) {
+						// cancelled before it was executed.
+						running = false;
+					}
+				}
+				// a monitor that ignores interrupts keeps its thread, but is not executed again until it returns.
+				return;
+			}
+
+			if (firstAttemptTime == 0) {
+				firstAttemptTime = now;
+			}
+			attemptStartTime = now;
+			interrupted = false;
+			started = false;
+			running = true;
+			try {
+				execution = monitorExecutor.submit(new Runnable() {
+					@Override
+					public void run() {
+						execute();
+					}
+				});
+			} catch (final RejectedExecutionException e) {
+				running = false;
+			}
+		}
+
+		private void execute() {
+			started = true;
+			try {
+				logger.fine("Executing monitor: " + monitor);
+				final Map<String, Number> monitorValues = monitor
+						.getMonitorValues(usm, lifecycleBean.getConfiguration());
+				removeNonSerializableObjectsFromMap(monitorValues, "monitors");
+				this.lastValues = monitorValues == null ? null : new HashMap<String, Number>(monitorValues);
+				this.lastSuccessTime = System.currentTimeMillis();
+				if (metricsHistory != null && monitorValues != null) {
+					metricsHistory.record(lastSuccessTime, monitorValues);
+				}
+			} catch (final Exception e) {
+				if (interrupted) {
+					logger.log(Level.FINE, "Monitor " + name + " was interrupted", e);
+				} else {
+					logger.log(Level.SEVERE,
+							"Failed to execute a USM service monitor", e);
+				}
+			} finally {
+				running = false;
+			}
+		}
+	}
+
 }
@@ -51,6 +51,7 @@ import org.cloudifysource.usm.events.StopReason;
 import org.cloudifysource.usm.events.USMEvent;
 import org.cloudifysource.usm.launcher.ProcessLauncher;
 import org.cloudifysource.usm.liveness.LivenessDetector;
+import org.cloudifysource.usm.liveness.StartDetectionEngine;
 import org.cloudifysource.usm.locator.ProcessLocator;
 import org.cloudifysource.usm.monitors.Monitor;
 import org.cloudifysource.usm.shutdown.ProcessKiller;
@@ -71,6 +72,8 @@ import org.springframework.stereotype.Component;
 public class USMLifecycleBean implements ClusterInfoAware {
 
 	private static final int DEFAULT_PIDS_SIZE_LIMIT = 10;
+	// how often the process launched by 'start' is checked while waiting for start detection.
+	private static final long START_DETECTION_PROCESS_CHECK_INTERVAL_MILLIS = 1000;
 	@Autowired(required = true)
 	private ServiceConfiguration configuration;
 	@Autowired(required = true)
@@ -96,6 +99,7 @@ public class USMLifecycleBean implements ClusterInfoAware {
 
 	private String puName;
 	private Integer instanceId;
+	private volatile long startDetectionDurationMillis = -1;
 
 	// ////////////////////////
 	// Lifecycle Events //////
@@ -709,67 +713,47 @@ public class USMLifecycleBean implements ClusterInfoAware {
 				startTime
 						+ TimeUnit.SECONDS.toMillis(configuration.getService().getLifecycle()
 								.getStartDetectionTimeoutSecs());
-		int currentTestIndex = 0;
-
-		// indicates if the process launched by START (if it exitst) is still running
-		boolean processIsRunning = (launchedProcess != null);
-		while (System.currentTimeMillis() < endTime && currentTestIndex < this.livenessDetectors.length) {
-
-			// first check if process ended
-			if (processIsRunning) {
-				processIsRunning = checkProcessIsRunning(launchedProcess);
-			}
+		final long maxIntervalMillis = TimeUnit.SECONDS.toMillis(configuration.getService().getLifecycle()
+				.getStartDetectionIntervalSecs());
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine("Liveness detectors: " + Arrays.toString(this.livenessDetectors));
+		}
 
-			int index = currentTestIndex;
-			if (logger.isLoggable(Level.FINE)) {
-				logger.fine("Executing iteration of liveness detection test");
-				logger.fine("Executing liveness detectors from index: " + index);
-				logger.fine("Liveness detectors: " + Arrays.toString(this.livenessDetectors));
-				logger.fine("detectors length: " + this.livenessDetectors.length);
-			}
-			while (index < this.livenessDetectors.length) {
-				logger.fine("getting detector at index: " + index);
-				final LivenessDetector detector = this.livenessDetectors[index];
-
-				boolean testResult = false;
-				try {
-					testResult = detector.isProcessAlive();
-					logger.fine("Detection Test results are: " + testResult);
-				} catch (final USMException e) {
-					// may indicate that the underlying process has terminated
-					if (e.getCause() instanceof InterruptedException) {
-						// ignore
-						logger.info("A start detector failed due to an InterruptedException");
-					} else {
-						throw e;
-					}
+		final StartDetectionEngine engine = new StartDetectionEngine(this.livenessDetectors,
+				StartDetectionEngine.DEFAULT_INITIAL_INTERVAL_MILLIS, maxIntervalMillis);
+		engine.start();
+		try {
+			// indicates if the process launched by START (if it exitst) is still running
+			boolean processIsRunning = (launchedProcess != null);
+			while (true) {
+				// first check if process ended
+				if (processIsRunning) {
+					processIsRunning = checkProcessIsRunning(launchedProcess);
 				}
 
-				if (testResult) {
-					// this liveness detector has succeeded.
-					++index;
-				} else {
-					break;
+				final long remainingMillis = endTime - System.currentTimeMillis();
+				if (remainingMillis <= 0) {
+					return false;
+				}
+				if (engine.await(Math.min(remainingMillis, START_DETECTION_PROCESS_CHECK_INTERVAL_MILLIS))) {
+					this.startDetectionDurationMillis = System.currentTimeMillis() - startTime;
+					logger.info("Start detection passed after " + this.startDetectionDurationMillis
+							+ " milliseconds");
+					return true;
 				}
-
-			}
-
-			if (index == this.livenessDetectors.length) {
-				// all tests passed
-				return true;
-			} else {
-				currentTestIndex = index;
-			}
-
-			try {
-				Thread.sleep(TimeUnit.SECONDS.toMillis(configuration.getService().getLifecycle()
-						.getStartDetectionIntervalSecs()));
-			} catch (final InterruptedException e) {
-				throw new USMException("Interruped while waiting for start detection", e);
 			}
+		} finally {
+			engine.stop();
 		}
-		return false;
+	}
 
+	/**********
+	 * Returns the duration of the last start detection that passed.
+	 *
+	 * @return the duration in milliseconds, or -1 if start detection did not pass yet.
+	 */
+	public long getStartDetectionDurationMillis() {
+		return startDetectionDurationMillis;
 	}
 
 	private boolean checkProcessIsRunning(final Process launchedProcess)
@@ -55,6 +55,8 @@ import org.cloudifysource.usm.dsl.DSLEntryExecutor;
 import org.cloudifysource.usm.events.EventResult;
 import org.cloudifysource.usm.events.StartReason;
 import org.cloudifysource.usm.events.StopReason;
+import org.cloudifysource.usm.monitors.MetricsHistory;
+import org.cloudifysource.usm.tail.FileTailService;
 import org.cloudifysource.usm.tail.RollingFileAppenderTailer;
 import org.cloudifysource.usm.tail.RollingFileAppenderTailer.LineHandler;
 import org.cloudifysource.utilitydomain.context.blockstorage.ServiceVolume;
@@ -106,6 +108,7 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 
 	private static final int MANAGEMENT_SPACE_LOOKUP_TIMEOUT = 10;
 	private static final int DEFAULT_MONITORS_CACHE_EXPIRATION_TIMEOUT = 5000;
+	private static final int DEFAULT_MONITOR_TIMEOUT = 30000;
 	private static final int THREAD_POOL_SIZE = 5;
 	private static final int STOP_DETECTION_INTERVAL_SECS = 5;
 	private static final int STOP_DETECTION_INITIAL_INTERVAL_SECS = 2;
@@ -113,7 +116,6 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 	private static final int PRE_SHUTDOWN_TIMEOUT_MILLIS = 10000;
 	private static final String ERROR_FILE_NAME_SUFFFIX = ".err";
 	private static final String OUTPUT_FILE_NAME_SUFFIX = ".out";
-	private static final int WAIT_FOR_DEPENDENCIES_INTERVAL_MILLIS = 5000;
 	private static final int WAIT_FOR_DEPENDENCIES_TIMEOUT_MILLIS = 1000 * 60 * 30;
 	private static final String ASYNC_INSTALL_DEFAULT_VALUE = "true";
 	private static final int FILE_TAILER_INTERVAL_SECS_DEFAULT = 5;
@@ -140,6 +142,9 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 	@Autowired(required = true)
 	private USMBuiltInCommand[] builtInCommands = null;
 
+	@Autowired(required = false)
+	private MetricsHistory metricsHistory;
+
 	private Process process;
 
 	private String streamLoggerLevel = Level.INFO.getName();
@@ -164,6 +169,7 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 	private String uniqueFileNamePrefix;
 	private ProcessDeathNotifier processDeathNotifier;
 	private RollingFileAppenderTailer tailer;
+	private final FileTailService fileTailService = new FileTailService();
 
 	private int fileTailerIntervalSecs = FILE_TAILER_INTERVAL_SECS_DEFAULT;
 
@@ -305,6 +311,10 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 			if (executors != null) {
 				executors.shutdown();
 			}
+			fileTailService.shutdown();
+			if (monitorsCache != null) {
+				monitorsCache.shutdown();
+			}
 
 			try {
 				getUsmLifecycleBean().fireShutdown();
@@ -623,17 +633,24 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 	}
 
 	private void initMonitorsCache() {
-		final String tmp = this.usmLifecycleBean
+		final Map<String, String> customProperties = this.usmLifecycleBean
 				.getConfiguration()
 				.getService()
-				.getCustomProperties()
+				.getCustomProperties();
+		final String tmp = customProperties
 				.get(CloudifyConstants.CUSTOM_PROPERTY_MONITORS_CACHE_EXPIRATION_TIMEOUT);
 		long cacheExpirationTimeout = DEFAULT_MONITORS_CACHE_EXPIRATION_TIMEOUT;
 		if (tmp != null) {
 			cacheExpirationTimeout = Long.parseLong(tmp);
 		}
+		final String monitorTimeoutProperty = customProperties
+				.get(CloudifyConstants.CUSTOM_PROPERTY_MONITORS_TIMEOUT);
+		long monitorTimeout = DEFAULT_MONITOR_TIMEOUT;
+		if (monitorTimeoutProperty != null) {
+			monitorTimeout = Long.parseLong(monitorTimeoutProperty);
+		}
 		this.monitorsCache = new MonitorsCache(this, this.usmLifecycleBean,
-				cacheExpirationTimeout);
+				cacheExpirationTimeout, monitorTimeout, metricsHistory);
 	}
 
 	private void initCustomProperties() {
@@ -882,105 +899,12 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 	}
 
 	private void waitForDependencies() {
-		logger.info("Waiting for dependencies");
-		final long startTime = System.currentTimeMillis();
-		final long endTime = startTime + WAIT_FOR_DEPENDENCIES_TIMEOUT_MILLIS;
-		final Admin admin = USMUtils.getAdmin();
-		for (final String dependantService : this.dependencies) {
-
-			logger.info("Waiting for dependency: " + dependantService);
-			final ProcessingUnit pu = waitForPU(endTime, admin,
-					dependantService);
-
-			waitForPUI(endTime, dependantService, pu);
-			logger.info("Dependency " + dependantService + " is available");
-
-		}
-
+		logger.info("Waiting for dependencies: " + Arrays.toString(this.dependencies));
+		final long endTime = System.currentTimeMillis() + WAIT_FOR_DEPENDENCIES_TIMEOUT_MILLIS;
+		new DependencyWaiter(USMUtils.getAdmin()).waitFor(Arrays.asList(this.dependencies), endTime);
 		logger.info("All dependencies are available");
 	}
 
-	private void waitForPUI(final long endTime, final String dependantService,
-			final ProcessingUnit pu) {
-		while (true) {
-			final long waitForPUIPeriod = endTime - System.currentTimeMillis();
-			if (waitForPUIPeriod <= 0) {
-				throw new IllegalStateException("Could not find dependency "
-						+ dependantService + " required for this service");
-			}
-
-			logger.info("Waiting for PUI of service: " + dependantService
-					+ " for " + waitForPUIPeriod + " Milliseconds");
-			// TODO: Switch to waitFor using waitForPUPeriod. this admin
-			// sampling routine is a workaround for a
-			// possible bug in the admin api where the admin does not recognize
-			// the PUI.
-			final boolean found = pu.waitFor(1, 2, TimeUnit.MILLISECONDS);
-
-			logger.info("Timeout ended. processing unit " + dependantService
-					+ " found result is " + found);
-			if (found) {
-				final ProcessingUnitInstance[] puis = pu.getInstances();
-				logger.info("Found " + puis.length + " instances");
-				for (final ProcessingUnitInstance pui : puis) {
-					final ServiceMonitors sm = pui.getStatistics()
-							.getMonitors()
-							.get(CloudifyConstants.USM_MONITORS_SERVICE_ID);
-					if (sm != null) {
-						final Object stateObject = sm.getMonitors().get(
-								CloudifyConstants.USM_MONITORS_STATE_ID);
-						logger.info("USM state is: " + stateObject);
-						if (stateObject == null) {
-							logger.warning("Could not find the instance state in the PUI monitors");
-						} else {
-							final int stateIndex = (Integer) stateObject;
-							final USMState usmState = USMState.values()[stateIndex];
-							logger.info("PUI is in state: " + usmState);
-							if (usmState == USMState.RUNNING) {
-								logger.info("Found a running instance of dependant service: "
-										+ dependantService);
-								return;
-							}
-						}
-
-					}
-				}
-			} else {
-				logger.info("Could not find a running instance of service: "
-						+ dependantService + ". Sleeping before trying again");
-			}
-			try {
-				Thread.sleep(WAIT_FOR_DEPENDENCIES_INTERVAL_MILLIS);
-			} catch (final InterruptedException e) {
-				// ignore.
-			}
-
-		}
-	}
-
-	private ProcessingUnit waitForPU(final long endTime, final Admin admin,
-			final String dependantService) {
-		ProcessingUnit pu = null;
-		while (true) {
-			final long waitForPUPeriod = endTime - System.currentTimeMillis();
-			if (waitForPUPeriod <= 0) {
-				throw new IllegalStateException("Could not find dependency "
-						+ dependantService + " required for this service");
-			}
-
-			logger.info("Waiting for PU: " + dependantService);
-			// TODO: Switch to waitFor using waitForPUPeriod. this admin
-			// sampling routine is a workaround for a
-			// possible bug in the admin api where the admin does not recognize
-			// the PU.
-			pu = admin.getProcessingUnits().waitFor(dependantService, 2,
-					TimeUnit.MILLISECONDS);
-			if (pu != null) {
-				return pu;
-			}
-		}
-	}
-
 	/**********
 	 * Checks if a PID file exists from a previous execution of this service and instance on this host.
 	 * 
@@ -1722,6 +1646,10 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 		return splitResult;
 	}
 
+	public FileTailService getFileTailService() {
+		return fileTailService;
+	}
+
 	public USMLifecycleBean getUsmLifecycleBean() {
 		return usmLifecycleBean;
 	}
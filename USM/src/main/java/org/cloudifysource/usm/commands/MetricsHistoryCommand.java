@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.commands;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.cloudifysource.dsl.internal.CloudifyConstants;
+import org.cloudifysource.dsl.rest.response.MetricHistoryData;
+import org.cloudifysource.usm.monitors.MetricsHistory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * a built-in command that returns the metrics history of the calling PU instance.
+ * 
+ * Parameters, all optional: the metric name ('*' or empty for all metrics), the start and end of the time range, in
+ * milliseconds since the epoch (defaults to the last hour), and the requested step in milliseconds (defaults to one
+ * minute).
+ * 
+ * @since 2.7.0
+ *
+ */
+@Component
+public class MetricsHistoryCommand implements USMBuiltInCommand {
+
+	private static final long DEFAULT_RANGE_MILLIS = 60 * 60 * 1000;
+	private static final long DEFAULT_STEP_MILLIS = 60 * 1000;
+	private static final String ALL_METRICS = "*";
+
+	@Autowired(required = true)
+	private MetricsHistory metricsHistory;
+
+	@Override
+	public Object invoke(final Object... params) {
+		if (params.length > 4) {
+			throw new IllegalArgumentException("command " + getName() + " accepts up to 4 params, got "
+					+ Arrays.toString(params));
+		}
+		final String metric = getParam(params, 0);
+		final long now = System.currentTimeMillis();
+		final long to = parseLong(getParam(params, 2), now);
+		final long from = parseLong(getParam(params, 1), to - DEFAULT_RANGE_MILLIS);
+		final long step = parseLong(getParam(params, 3), DEFAULT_STEP_MILLIS);
+		if (step <= 0) {
+			throw new IllegalArgumentException("step must be positive, got " + step);
+		}
+
+		final boolean allMetrics = metric == null || ALL_METRICS.equals(metric);
+		return new HashMap<String, MetricHistoryData>(metricsHistory.query(allMetrics ? null : metric, from, to,
+				step));
+	}
+
+	private String getParam(final Object[] params, final int index) {
+		if (params.length <= index || params[index] == null) {
+			return null;
+		}
+		final String param = params[index].toString().trim();
+		return param.isEmpty() ? null : param;
+	}
+
+	private long parseLong(final String param, final long defaultValue) {
+		if (param == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(param);
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("parameter type mismatch. can't convert " + param + " to 'long'", e);
+		}
+	}
+
+	@Override
+	public String getName() {
+		return CloudifyConstants.BUILT_IN_COMMAND_METRICS_HISTORY;
+	}
+
+	public MetricsHistory getMetricsHistory() {
+		return metricsHistory;
+	}
+
+	public void setMetricsHistory(final MetricsHistory metricsHistory) {
+		this.metricsHistory = metricsHistory;
+	}
+}
@@ -117,6 +117,8 @@ public abstract class AbstractJmxPlugin implements Plugin {
 			client = new JmxGenericClient();
 			client.setHost(this.host);
 			client.setPort(this.port);
+			client.setUsername(this.username);
+			client.setPassword(this.password);
 			client.setTargets(this.targets);
 		}
 
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.jmx;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.remote.JMXConnectionNotification;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * Keeps JMX connections open between collections, so that the JMX plugins of a JVM that read from the same JMX server
+ * with the same credentials share a connection, rather than connecting on every monitor tick.
+ *
+ * A connection is dropped when the JMX connector reports it failed or closed, or when the caller reports a failure
+ * with {@link #invalidate(String, MBeanServerConnection)}. After a failed connection attempt, further attempts are
+ * rejected until a backoff period, doubled with every consecutive failure, passes. Connections that are not used for
+ * {@link #IDLE_TIMEOUT_MILLIS} are closed.
+ *
+ * @since 2.7.0
+ *
+ */
+final class JmxConnectionPool {
+
+	/**
+	 * Connections that were not used for this period are closed.
+	 */
+	static final long IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+	/**
+	 * The time to wait after a first failed connection attempt, doubled with every consecutive failure.
+	 */
+	static final long INITIAL_BACKOFF_MILLIS = 1000;
+	private static final long MAX_BACKOFF_MILLIS = 60 * 1000;
+
+	private static final java.util.logging.Logger logger =
+			java.util.logging.Logger.getLogger(JmxConnectionPool.class.getName());
+
+	/**
+	 * Opens the JMX connectors of the pool.
+	 */
+	interface ConnectorFactory {
+		/**
+		 * @param url
+		 *            the JMX URL.
+		 * @param environment
+		 *            the connection environment.
+		 * @return a connected JMX connector.
+		 * @throws IOException
+		 *             if the connection failed.
+		 */
+		JMXConnector connect(JMXServiceURL url, Map<String, ?> environment)
+				throws IOException;
+	}
+
+	private static final JmxConnectionPool INSTANCE = new JmxConnectionPool(new ConnectorFactory() {
+		@Override
+		public JMXConnector connect(final JMXServiceURL url, final Map<String, ?> environment)
+				throws IOException {
+			return JMXConnectorFactory.connect(url, environment);
+		}
+	});
+
+	private final ConnectorFactory connectorFactory;
+	private final Map<String, PooledConnection> connections = new ConcurrentHashMap<String, PooledConnection>();
+
+	/**
+	 * Constructor, used directly by tests only, see {@link #getInstance()}.
+	 *
+	 * @param connectorFactory
+	 *            opens the JMX connectors.
+	 */
+	JmxConnectionPool(final ConnectorFactory connectorFactory) {
+		this.connectorFactory = connectorFactory;
+	}
+
+	static JmxConnectionPool getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Creates the key of a JMX server and credentials.
+	 *
+	 * @param url
+	 *            the JMX URL.
+	 * @param username
+	 *            the user name, may be null.
+	 * @param password
+	 *            the password, may be null.
+	 * @return the key.
+	 */
+	static String createKey(final JMXServiceURL url, final String username, final String password) {
+		return url + "|" + username + "|" + password;
+	}
+
+	/**
+	 * Returns the open connection of a key, connecting if required.
+	 *
+	 * @param key
+	 *            the connection key, see {@link #createKey(JMXServiceURL, String, String)}.
+	 * @param url
+	 *            the JMX URL.
+	 * @param environment
+	 *            the connection environment.
+	 * @return the connection.
+	 * @throws IOException
+	 *             if the connection failed, or if a previous connection attempt failed and the backoff period has not
+	 *             passed yet.
+	 */
+	MBeanServerConnection getConnection(final String key, final JMXServiceURL url,
+			final Map<String, ?> environment)
+			throws IOException {
+		closeIdleConnections(key);
+
+		PooledConnection pooled = connections.get(key);
+		if (pooled == null) {
+			synchronized (connections) {
+				pooled = connections.get(key);
+				if (pooled == null) {
+					pooled = new PooledConnection(key, connectorFactory);
+					connections.put(key, pooled);
+				}
+			}
+		}
+		return pooled.get(url, environment);
+	}
+
+	/**
+	 * Reports a failure of a connection returned by this pool. The connection is closed, and the next call to
+	 * {@link #getConnection(String, JMXServiceURL, Map)} reconnects.
+	 *
+	 * @param key
+	 *            the connection key.
+	 * @param connection
+	 *            the failed connection.
+	 */
+	void invalidate(final String key, final MBeanServerConnection connection) {
+		final PooledConnection pooled = connections.get(key);
+		if (pooled != null) {
+			pooled.close(connection);
+		}
+	}
+
+	private void closeIdleConnections(final String currentKey) {
+		final long now = System.currentTimeMillis();
+		final Iterator<PooledConnection> iterator = connections.values().iterator();
+		while (iterator.hasNext()) {
+			final PooledConnection pooled = iterator.next();
+			if (!pooled.key.equals(currentKey) && now - pooled.lastUsed > IDLE_TIMEOUT_MILLIS) {
+				iterator.remove();
+				pooled.close(null);
+			}
+		}
+	}
+
+	/**
+	 * The connection to a JMX server with a set of credentials.
+	 */
+	private static final class PooledConnection implements NotificationListener {
+
+		private final String key;
+		private final ConnectorFactory connectorFactory;
+		private JMXConnector connector;
+		private MBeanServerConnection connection;
+		private volatile long lastUsed = System.currentTimeMillis();
+		private int consecutiveFailures;
+		private long nextAttemptTime;
+
+		private PooledConnection(final String key, final ConnectorFactory connectorFactory) {
+			this.key = key;
+			this.connectorFactory = connectorFactory;
+		}
+
+		private synchronized MBeanServerConnection get(final JMXServiceURL url, final Map<String, ?> environment)
+				throws IOException {
+			lastUsed = System.currentTimeMillis();
+			if (connection != null) {
+				return connection;
+			}
+
+			if (lastUsed < nextAttemptTime) {
+				throw new IOException("Connection to " + url + " failed " + consecutiveFailures
+						+ " times in a row, next attempt in " + (nextAttemptTime - lastUsed) + " milliseconds");
+			}
+
+			try {
+				final JMXConnector newConnector = connectorFactory.connect(url, environment);
+				newConnector.addConnectionNotificationListener(this, null, null);
+				this.connection = newConnector.getMBeanServerConnection();
+				this.connector = newConnector;
+				this.consecutiveFailures = 0;
+				this.nextAttemptTime = 0;
+				return this.connection;
+			} catch (final IOException e) {
+				onConnectFailure();
+				throw e;
+			} catch (final RuntimeException e) {
+				onConnectFailure();
+				throw e;
+			}
+		}
+
+		private void onConnectFailure() {
+			final long backoff =
+					Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(consecutiveFailures, 16));
+			++consecutiveFailures;
+			nextAttemptTime = System.currentTimeMillis() + backoff;
+		}
+
+		// closes the connection, if it is the given one or if null is given.
+		private synchronized void close(final MBeanServerConnection failedConnection) {
+			if (connector == null || failedConnection != null && failedConnection != connection) {
+				return;
+			}
+			final JMXConnector closedConnector = connector;
+			connector = null;
+			connection = null;
+			try {
+				closedConnector.removeConnectionNotificationListener(this);
+			} catch (final Exception e) {
+				// ignore
+			}
+			try {
+				closedConnector.close();
+			} catch (final IOException e) {
+				logger.log(Level.FINE, "Failed to close JMX connector", e);
+			}
+		}
+
+		@Override
+		public void handleNotification(final Notification notification, final Object handback) {
+			final String type = notification.getType();
+			if (JMXConnectionNotification.FAILED.equals(type) || JMXConnectionNotification.CLOSED.equals(type)) {
+				logger.fine("JMX connection " + type + ", it will be reopened on next use");
+				close(null);
+			}
+		}
+	}
+}
@@ -30,14 +30,13 @@ import javax.management.AttributeList;
 import javax.management.MBeanServerConnection;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
-import javax.management.remote.JMXConnector;
-import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
 
 import org.cloudifysource.dsl.utils.IPUtils;
 
 /**
- * Generic fetcher for external-process JMX data.
+ * Generic fetcher for external-process JMX data. Connections are taken from the shared {@link JmxConnectionPool}, and
+ * the attributes of each bean are read with a single getAttributes call.
  *
  * @author giladh
  * @since 8.0.1
@@ -63,13 +62,18 @@ public class JmxGenericClient {
 
 	private int numOfTargets;
 
+	private JMXServiceURL jmxUrl;
+
+	private JmxConnectionPool connectionPool = JmxConnectionPool.getInstance();
+
 	public void setHost(final String host) {
 		this.host = host.trim();
+		this.jmxUrl = null;
 	}
 
 	public void setPort(final int port) {
 		this.port = port;
-
+		this.jmxUrl = null;
 	}
 
 	/********
@@ -82,6 +86,8 @@ public class JmxGenericClient {
 		private String objectName = "";
 		private final List<JmxAttribute> attributes = new LinkedList<JmxAttribute>();
 		private final Map<String, JmxAttribute> attributesByName = new HashMap<String, JmxAttribute>();
+		private ObjectName beanName;
+		private String[] attributeNames;
 
 		public JmxBeanAttributes(final String objectName) {
 			this.objectName = objectName;
@@ -94,16 +100,28 @@ public class JmxGenericClient {
 		public void add(final JmxAttribute att) {
 			this.attributes.add(att);
 			this.attributesByName.put(att.getAttributeName(), att);
+			this.attributeNames = null;
+		}
 
+		public ObjectName getBeanName()
+				throws MalformedObjectNameException {
+			if (this.beanName == null) {
+				this.beanName = new ObjectName(this.objectName);
+			}
+			return this.beanName;
 		}
 
 		public String[] getAttributeNames() {
+			if (this.attributeNames != null) {
+				return this.attributeNames;
+			}
 			final String[] arr = new String[this.attributes.size()];
 			int i = 0;
 			for (final JmxAttribute att : this.attributes) {
 				arr[i] = att.getAttributeName();
 				++i;
 			}
+			this.attributeNames = arr;
 			return arr;
 
 		}
@@ -145,52 +163,76 @@ public class JmxGenericClient {
 			current.add(jmxAttribute);
 		}
 
+		// resolve the bean names and attribute lists once, rather than on every collection.
+		for (final JmxBeanAttributes bean : this.targetList) {
+			try {
+				bean.getBeanName();
+			} catch (final MalformedObjectNameException e) {
+				logger.severe("Invalid JMX bean name: " + bean.getObjectName() + ". Error: " + e);
+			}
+			bean.getAttributeNames();
+		}
+
 		this.numOfTargets = list.size();
 	}
 	
 
 	public ArrayList<JmxAttribute> getData() {
 
-		final JMXServiceURL jmxUrl = createJMXServiceURL();
-
-		JMXConnector jmxc = null;
-
-		final Map<String, Object> env = createEnvironment();
-
-		final ArrayList<JmxAttribute> resultList = new ArrayList<JmxAttribute>(this.numOfTargets);
+		if (this.jmxUrl == null) {
+			this.jmxUrl = createJMXServiceURL();
+		}
+		final JmxConnectionPool pool = this.connectionPool;
+		final String connectionKey = JmxConnectionPool.createKey(jmxUrl, username, password);
 
-		try {
-			jmxc = JMXConnectorFactory.connect(jmxUrl, env);
-			final MBeanServerConnection mbsc = jmxc.getMBeanServerConnection();
+		// a pooled connection may have been broken since it was last used (e.g. the JMX server restarted), in which
+		// case the collection is retried once on a new connection.
+		for (int attempt = 0;; ++attempt) {
+			MBeanServerConnection mbsc = null;
+			try {
+				mbsc = pool.getConnection(connectionKey, jmxUrl, createEnvironment());
 
-			for (final JmxBeanAttributes t : targetList) {
+				final ArrayList<JmxAttribute> resultList = new ArrayList<JmxAttribute>(this.numOfTargets);
+				for (final JmxBeanAttributes t : targetList) {
 
-				handleJMXBean(resultList, mbsc, t);
+					try {
+						handleJMXBean(resultList, mbsc, t);
+					} catch (final MalformedObjectNameException e) {
+						// reported when the targets were set.
+					}
 
-			}
+				}
 
-			return resultList;
-		} catch (final Exception e) {
-			final String msg = "Failed to fetch JMX values for " + IPUtils.getSafeIpAddress(host) + ":" + port 
-					+ ". Error: " + e;
-			logger.severe(msg);
-		} finally {
-			if (jmxc != null) {
-				try {
-					jmxc.close();
-				} catch (final IOException e) {
+				return resultList;
+			} catch (final IOException e) {
+				if (mbsc != null) {
+					pool.invalidate(connectionKey, mbsc);
+					if (attempt == 0) {
+						logger.fine("JMX connection to " + IPUtils.getSafeIpAddress(host) + ":" + port
+								+ " failed, reconnecting. Error: " + e);
+						continue;
+					}
 				}
+				logFetchFailure(e);
+			} catch (final Exception e) {
+				logFetchFailure(e);
 			}
+			return null;
 		}
-		return null;
+	}
+
+	private void logFetchFailure(final Exception e) {
+		final String msg = "Failed to fetch JMX values for " + IPUtils.getSafeIpAddress(host) + ":" + port
+				+ ". Error: " + e;
+		logger.severe(msg);
 	}
 
 	
 	protected void handleJMXBean(final ArrayList<JmxAttribute> resultList, final MBeanServerConnection mbsc,
 			final JmxBeanAttributes t)
-			throws MalformedObjectNameException {
+			throws MalformedObjectNameException, IOException {
 
-		final ObjectName beanName = new ObjectName(t.getObjectName());
+		final ObjectName beanName = t.getBeanName();
 		final String[] attributeNames = t.getAttributeNames();
 
 		try {
@@ -208,6 +250,9 @@ public class JmxGenericClient {
                 }
             }
 
+		} catch (final IOException e) {
+			// the connection failed, not the bean.
+			throw e;
 		} catch (final Exception e) {
 			if (logger.isLoggable(Level.WARNING)) {
 				logger.warning("Failed to read Attributes for JMX Bean: " + t + ": " + e.getMessage());
@@ -271,6 +316,11 @@ public class JmxGenericClient {
 		return results;
 	}
 
+	// used by tests, to collect without a JMX server.
+	void setConnectionPool(final JmxConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+	}
+
 	public String getUsername() {
 		return username;
 	}
@@ -63,6 +63,8 @@ import org.openspaces.core.cluster.ClusterInfo;
 import org.openspaces.core.cluster.ClusterInfoAware;
 import org.openspaces.core.properties.BeanLevelProperties;
 import org.openspaces.core.properties.BeanLevelPropertiesAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.gigaspaces.internal.sigar.SigarHolder;
@@ -73,10 +75,15 @@ import com.j_spaces.kernel.PlatformVersion;
  * The default process launcher implementation, used by the USM to launch external processes. Includes OS specific code
  * to modify a command line according to standard command line conventions.
  * 
+ * Groovy scripts that are executed synchronously run in a new groovy process by default. The
+ * {@link CloudifyConstants#CUSTOM_PROPERTY_GROOVY_RUNNER} service custom property can select a long lived groovy
+ * worker process, or the USM process itself, instead. See {@link GroovyRunnerModes}.
+ * 
  * @author barakme
  * 
  */
-public class DefaultProcessLauncher implements ProcessLauncher, ClusterInfoAware, BeanLevelPropertiesAware {
+public class DefaultProcessLauncher implements ProcessLauncher, ClusterInfoAware, BeanLevelPropertiesAware,
+		InitializingBean, DisposableBean {
 
 	private static final int POST_SYNC_PROCESS_SLEEP_INTERVAL = 200;
 	private static final String LINUX_EXECUTE_PREFIX = "./";
@@ -87,6 +94,11 @@ public class DefaultProcessLauncher implements ProcessLauncher, ClusterInfoAware
 	private final Sigar sigar = SigarHolder.getSigar();
 	private ClusterInfo clusterInfo;
 	private String groovyEnvironmentClassPath;
+	private List<String> groovySystemProperties;
+
+	private GroovyRunnerModes groovyRunnerMode;
+	private WarmGroovyRunner warmGroovyRunner;
+	private InProcessGroovyRunner inProcessGroovyRunner;
 
 	@Autowired
 	private ServiceConfiguration configutaion;
@@ -315,7 +327,8 @@ public class DefaultProcessLauncher implements ProcessLauncher, ClusterInfoAware
 		// See more details at CLOUDIFY-1694
 		// envVarsList.add("GS_LOGGING_CONFIG_FILE_PROP");
 
-		groovyCommandParams.addAll(convertEnvVarsToSysPropsList(envVarsList));
+		this.groovySystemProperties = convertEnvVarsToSysPropsList(envVarsList);
+		groovyCommandParams.addAll(this.groovySystemProperties);
 
 		if (ServiceUtils.isWindows()) {
 			modifyWindowsCommandLine(groovyCommandParams, workingDir);
@@ -695,11 +708,15 @@ public class DefaultProcessLauncher implements ProcessLauncher, ClusterInfoAware
 			}
 		}
 
-		final Process proc = launchProcessAsync(arg,
-				workingDir,
-				retries,
-				redirectErrorStream,
-				paramsList, event);
+		Process proc = launchGroovyScriptInRunner(arg, workingDir, redirectErrorStream, paramsList, event);
+		final boolean externalProcess = proc == null;
+		if (externalProcess) {
+			proc = launchProcessAsync(arg,
+					workingDir,
+					retries,
+					redirectErrorStream,
+					paramsList, event);
+		}
 		final BufferedReader reader = new BufferedReader(new InputStreamReader(proc.getInputStream()));
 
 		String line = null;
@@ -752,16 +769,160 @@ public class DefaultProcessLauncher implements ProcessLauncher, ClusterInfoAware
 
 		// sleeping for a short interval, to make sure process table is cleaned
 		// of the dead process
-		try {
-			Thread.sleep(POST_SYNC_PROCESS_SLEEP_INTERVAL);
-		} catch (final InterruptedException e) {
-			// ignore
+		if (externalProcess) {
+			try {
+				Thread.sleep(POST_SYNC_PROCESS_SLEEP_INTERVAL);
+			} catch (final InterruptedException e) {
+				// ignore
+			}
 		}
 
 		return sb.toString();
 
 	}
 
+	/*******
+	 * Runs a groovy script with the configured groovy runner, if one is configured and the script can use it.
+	 * 
+	 * @return the running script, or null if the script should run in a new process.
+	 */
+	private Process launchGroovyScriptInRunner(final ExecutableDSLEntry arg, final File workingDir,
+			final boolean redirectErrorStream, final List<String> params, final LifecycleEvents event) {
+		final GroovyRunnerModes mode = getGroovyRunnerMode();
+		// runner scripts have a single output stream, and debug events need the modified command line.
+		if (mode == GroovyRunnerModes.PROCESS || !redirectErrorStream || isDebugEvent(event)) {
+			return null;
+		}
+
+		final List<String> scriptCommandLine = getCommandLineFromArgument(arg,
+				workingDir,
+				params);
+		if (scriptCommandLine.isEmpty() || !scriptCommandLine.get(0).endsWith(".groovy")) {
+			return null;
+		}
+		final File scriptFile = getFileFromRelativeOrAbsolutePath(workingDir,
+				scriptCommandLine.get(0));
+		if (scriptFile == null) {
+			return null;
+		}
+		final List<String> scriptArgs = new ArrayList<String>(scriptCommandLine.subList(1,
+				scriptCommandLine.size()));
+
+		try {
+			Process proc = null;
+			if (mode == GroovyRunnerModes.IN_PROCESS) {
+				proc = getInProcessGroovyRunner().execute(scriptFile, scriptArgs);
+			} else {
+				final WarmGroovyRunner runner = getWarmGroovyRunner(workingDir);
+				if (!runner.getWorkingDir().equals(workingDir)) {
+					return null;
+				}
+				proc = runner.execute(scriptFile, scriptArgs);
+			}
+			this.commandLine = scriptCommandLine;
+			logger.info("Running " + scriptFile + " in the " + mode.getName() + " groovy runner with arguments: "
+					+ scriptArgs);
+			return proc;
+		} catch (final IOException e) {
+			logger.log(Level.WARNING, "Failed to run " + scriptFile + " in the " + mode.getName()
+					+ " groovy runner, it will run in a new groovy process", e);
+		} catch (final USMException e) {
+			logger.log(Level.WARNING, "Failed to run " + scriptFile + " in the " + mode.getName()
+					+ " groovy runner, it will run in a new groovy process", e);
+		}
+		return null;
+	}
+
+	private synchronized GroovyRunnerModes getGroovyRunnerMode() {
+		if (this.groovyRunnerMode == null) {
+			GroovyRunnerModes mode = GroovyRunnerModes.PROCESS;
+			if (this.configutaion != null) {
+				final String modeName =
+						this.configutaion.getService().getCustomProperties()
+								.get(CloudifyConstants.CUSTOM_PROPERTY_GROOVY_RUNNER);
+				if (StringUtils.isNotBlank(modeName)) {
+					mode = GroovyRunnerModes.nameOf(modeName.trim());
+					if (mode == null) {
+						logger.warning("Unknown groovy runner mode: " + modeName + " (service custom property "
+								+ CloudifyConstants.CUSTOM_PROPERTY_GROOVY_RUNNER + "). Groovy scripts will run in "
+								+ "new processes");
+						mode = GroovyRunnerModes.PROCESS;
+					}
+				}
+			}
+			logger.info("Groovy runner mode: " + mode.getName());
+			this.groovyRunnerMode = mode;
+		}
+		return this.groovyRunnerMode;
+	}
+
+	private synchronized WarmGroovyRunner getWarmGroovyRunner(final File workingDir)
+			throws USMException {
+		if (this.warmGroovyRunner == null) {
+			try {
+				initGroovyCommandLine(workingDir);
+			} catch (final FileNotFoundException e) {
+				throw new USMException("Failed to set up groovy command line", e);
+			}
+
+			final List<String> workerCommandLine = new ArrayList<String>();
+			workerCommandLine.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+			workerCommandLine.addAll(this.groovySystemProperties);
+			workerCommandLine.add(GroovyScriptWorker.class.getName());
+
+			// the worker gets the same environment as a groovy process, and the groovy jars on its class path.
+			final Map<String, String> env = createEnvironment();
+			final StringBuilder classPath = new StringBuilder(this.groovyEnvironmentClassPath);
+			addJarsToClassPath(classPath, new File(Environment.getHomeDirectory(), "tools/groovy/lib"));
+			env.put("CLASSPATH", classPath.toString());
+
+			this.warmGroovyRunner = new WarmGroovyRunner(workerCommandLine, workingDir, env);
+		}
+		return this.warmGroovyRunner;
+	}
+
+	private void addJarsToClassPath(final StringBuilder classPath, final File dir) {
+		final File[] jars = getJarFilesFromDir(dir);
+		if (jars != null) {
+			for (final File jar : jars) {
+				classPath.append(File.pathSeparator).append(jar.getAbsolutePath());
+			}
+		}
+	}
+
+	private synchronized InProcessGroovyRunner getInProcessGroovyRunner() {
+		if (this.inProcessGroovyRunner == null) {
+			final Map<String, Object> variables = new HashMap<String, Object>();
+			variables.put("context", this.configutaion.getServiceContext());
+			this.inProcessGroovyRunner = new InProcessGroovyRunner(this.configutaion.getDslClassLoader(), variables);
+		}
+		return this.inProcessGroovyRunner;
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		if (getGroovyRunnerMode() != GroovyRunnerModes.WARM) {
+			return;
+		}
+		// the worker is started before any lifecycle event, so it is not among the processes started by the service.
+		// A worker restarted later is recognized by its command line when the service processes are located.
+		try {
+			getWarmGroovyRunner(this.configutaion.getPuExtDir()).start();
+		} catch (final IOException e) {
+			logger.log(Level.WARNING, "Failed to start the groovy script worker, "
+					+ "it will be started again when a script runs", e);
+		} catch (final USMException e) {
+			logger.log(Level.WARNING, "Failed to set up the groovy script worker", e);
+		}
+	}
+
+	@Override
+	public synchronized void destroy() {
+		if (this.warmGroovyRunner != null) {
+			this.warmGroovyRunner.shutdown();
+		}
+	}
+
 	private List<String> getParamsListFromMap(final Map<String, Object> params) {
 		final List<String> paramsList = new ArrayList<String>();
 		int index = 0;
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.launcher;
+
+/************
+ * The ways the process launcher can run groovy lifecycle scripts that are executed synchronously.
+ *
+ * @since 2.7.0
+ *
+ */
+public enum GroovyRunnerModes {
+	/**
+	 * run every script in a new groovy process (the default).
+	 */
+	PROCESS("process"),
+	/***
+	 * run scripts in a long lived groovy worker process, started once per USM.
+	 */
+	WARM("warm"),
+	/****
+	 * run scripts inside the USM process. Only suitable for trusted recipes: scripts share the USM JVM, can not call
+	 * System.exit() and must get the service context from the 'context' variable.
+	 */
+	IN_PROCESS("in-process");
+
+	private final String name;
+
+	GroovyRunnerModes(final String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/*******
+	 * Returns a groovy runner mode by its name.
+	 *
+	 * @param name
+	 *            the mode name.
+	 * @return the mode, or null if there is no mode with this name.
+	 */
+	public static GroovyRunnerModes nameOf(final String name) {
+
+		for (final GroovyRunnerModes mode : GroovyRunnerModes.values()) {
+			if (mode.getName().equalsIgnoreCase(name)) {
+				return mode;
+			}
+		}
+
+		return null;
+	}
+}
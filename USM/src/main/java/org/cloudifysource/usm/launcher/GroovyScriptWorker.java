@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.launcher;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.Permission;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/************
+ * Runs groovy scripts on behalf of a USM, in a long lived JVM, so that each lifecycle script does not pay for a JVM
+ * and groovy start up.
+ *
+ * The worker is started by {@link WarmGroovyRunner} with the environment and working directory of the service
+ * scripts. It reads an access token from its standard input, listens on an ephemeral port of the loopback interface
+ * and prints that port to its standard output. Each script is requested over a separate connection and runs in its
+ * own thread and class loader. The output of the script (standard output and error combined) is streamed back over the
+ * connection, followed by the script exit code: 0 if the script completed, the System.exit() status if it called it,
+ * or 1 if it failed, in which case the failure is printed the same way the groovy command line prints it. The worker
+ * exits when its standard input is closed, which happens when the USM stops it or exits.
+ *
+ * This class must only depend on the JDK and groovy, as it is the main class of the worker JVM.
+ *
+ * @since 2.7.0
+ *
+ */
+public final class GroovyScriptWorker {
+
+	/**
+	 * Prefix of the line the worker prints its port with.
+	 */
+	static final String PORT_LINE_PREFIX = "GROOVY_SCRIPT_WORKER_PORT ";
+
+	/**
+	 * Frame type of a chunk of script output.
+	 */
+	static final int OUTPUT_FRAME = 'O';
+
+	/**
+	 * Frame type of the script exit code, the last frame of a connection.
+	 */
+	static final int EXIT_FRAME = 'X';
+
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	// the output of the script run by the current thread, inherited by threads the script starts.
+	private static final InheritableThreadLocal<PrintStream> SCRIPT_OUTPUT = new InheritableThreadLocal<PrintStream>();
+
+	private GroovyScriptWorker() {
+		// main class only.
+	}
+
+	/**********
+	 * Worker entry point.
+	 *
+	 * @param args
+	 *            not used.
+	 * @throws IOException
+	 *             if the worker could not listen for requests.
+	 */
+	public static void main(final String[] args)
+			throws IOException {
+		final BufferedReader stdin = new BufferedReader(new InputStreamReader(System.in));
+		final String token = stdin.readLine();
+		if (token == null) {
+			return;
+		}
+
+		// the worker JVM only runs scripts, so its standard streams are routed to the script of the writing thread.
+		installOutputRouting();
+		System.setSecurityManager(new ExitTrappingSecurityManager());
+
+		final ServerSocket serverSocket = new ServerSocket(0, 0, InetAddress.getByName(null));
+		System.out.println(PORT_LINE_PREFIX + serverSocket.getLocalPort());
+		System.out.flush();
+
+		final Thread parentWatcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (stdin.read() != -1) {
+						// nothing is expected after the token.
+					}
+				} catch (final IOException e) {
+					// parent is gone.
+				}
+				System.exit(0);
+			}
+		}, "GroovyScriptWorker-ParentWatcher");
+		parentWatcher.setDaemon(true);
+		parentWatcher.start();
+
+		final AtomicInteger requestCounter = new AtomicInteger();
+		while (true) {
+			final Socket socket = serverSocket.accept();
+			final Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					handleRequest(socket, token);
+				}
+			}, "GroovyScriptWorker-" + requestCounter.incrementAndGet());
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	private static void handleRequest(final Socket socket, final String token) {
+		try {
+			socket.setTcpNoDelay(true);
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			if (!token.equals(in.readUTF())) {
+				return;
+			}
+			final File scriptFile = new File(in.readUTF());
+			final String[] scriptArgs = new String[in.readInt()];
+			for (int i = 0; i < scriptArgs.length; i++) {
+				scriptArgs[i] = in.readUTF();
+			}
+
+			final DataOutputStream out =
+					new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+			final FrameOutputStream output = new FrameOutputStream(out);
+			final int exitCode = runScript(scriptFile, scriptArgs, GroovyScriptWorker.class.getClassLoader(), null,
+					output);
+			output.close();
+			synchronized (out) {
+				out.writeByte(EXIT_FRAME);
+				out.writeInt(exitCode);
+				out.flush();
+			}
+		} catch (final IOException e) {
+			// the USM closed the connection, nothing to report to.
+		} finally {
+			try {
+				socket.close();
+			} catch (final IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**********
+	 * Returns true if the given command line arguments are those of a worker JVM, allowing process locators to tell
+	 * the worker apart from processes started by the service.
+	 *
+	 * @param args
+	 *            the command line arguments of a process, may be null.
+	 * @return true if the process is a groovy script worker.
+	 */
+	public static boolean isWorkerCommandLine(final String[] args) {
+		if (args == null) {
+			return false;
+		}
+		for (final String arg : args) {
+			if (GroovyScriptWorker.class.getName().equals(arg)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**********
+	 * Runs a groovy script in the current thread, the same way the groovy command line runs it. The print methods of
+	 * the script write to the given output through the 'out' binding variable; System.out and System.err only reach it
+	 * in the worker JVM, where they are routed to the script of the writing thread.
+	 *
+	 * @param scriptFile
+	 *            the script.
+	 * @param args
+	 *            the script arguments.
+	 * @param parentClassLoader
+	 *            the parent of the class loader the script is compiled with.
+	 * @param variables
+	 *            additional binding variables, may be null.
+	 * @param output
+	 *            the stream the standard output and error of the script are written to.
+	 * @return the script exit code.
+	 */
+	static int runScript(final File scriptFile, final String[] args, final ClassLoader parentClassLoader,
+			final Map<String, Object> variables, final OutputStream output) {
+		final PrintStream printStream = new PrintStream(output, true);
+		SCRIPT_OUTPUT.set(printStream);
+		try {
+			final Binding binding = new Binding();
+			if (variables != null) {
+				for (final Entry<String, Object> entry : variables.entrySet()) {
+					binding.setVariable(entry.getKey(), entry.getValue());
+				}
+			}
+			binding.setVariable("out", printStream);
+			final GroovyShell shell = new GroovyShell(parentClassLoader, binding);
+			shell.run(scriptFile, args);
+			return 0;
+		} catch (final Throwable t) {
+			final ScriptExitException exit = findExit(t);
+			if (exit != null) {
+				return exit.getStatus();
+			}
+			printStream.println("Caught: " + t);
+			t.printStackTrace(printStream);
+			return 1;
+		} finally {
+			printStream.flush();
+			SCRIPT_OUTPUT.remove();
+		}
+	}
+
+	// replaces System.out and System.err for the lifetime of the worker JVM, must not be called in any other JVM.
+	private static void installOutputRouting() {
+		System.setOut(new PrintStream(new ScriptRoutingOutputStream(System.out), true));
+		System.setErr(new PrintStream(new ScriptRoutingOutputStream(System.err), true));
+	}
+
+	private static ScriptExitException findExit(final Throwable t) {
+		Throwable current = t;
+		while (current != null) {
+			if (current instanceof ScriptExitException) {
+				return (ScriptExitException) current;
+			}
+			current = current.getCause();
+		}
+		return null;
+	}
+
+	/**********
+	 * Writes to the output of the script run by the current thread.
+	 */
+	private static final class ScriptRoutingOutputStream extends OutputStream {
+
+		private final PrintStream defaultStream;
+
+		private ScriptRoutingOutputStream(final PrintStream defaultStream) {
+			this.defaultStream = defaultStream;
+		}
+
+		private PrintStream target() {
+			final PrintStream scriptOutput = SCRIPT_OUTPUT.get();
+			return scriptOutput == null ? defaultStream : scriptOutput;
+		}
+
+		@Override
+		public void write(final int b) {
+			target().write(b);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			target().write(b, off, len);
+		}
+
+		@Override
+		public void flush() {
+			target().flush();
+		}
+	}
+
+	/**********
+	 * Writes output frames to a request connection. Output written after the script exited, by threads the script
+	 * left running, is dropped.
+	 */
+	private static final class FrameOutputStream extends OutputStream {
+
+		private final DataOutputStream out;
+		private boolean closed;
+
+		private FrameOutputStream(final DataOutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(final int b)
+				throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len)
+				throws IOException {
+			synchronized (out) {
+				if (closed || len == 0) {
+					return;
+				}
+				out.writeByte(OUTPUT_FRAME);
+				out.writeInt(len);
+				out.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush()
+				throws IOException {
+			synchronized (out) {
+				if (!closed) {
+					out.flush();
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			synchronized (out) {
+				closed = true;
+			}
+		}
+	}
+
+	/**********
+	 * Turns System.exit() calls of scripts into exceptions, allowing everything else.
+	 */
+	private static final class ExitTrappingSecurityManager extends SecurityManager {
+
+		@Override
+		public void checkPermission(final Permission perm) {
+			// allowed
+		}
+
+		@Override
+		public void checkPermission(final Permission perm, final Object context) {
+			// allowed
+		}
+
+		@Override
+		public void checkExit(final int status) {
+			if (SCRIPT_OUTPUT.get() != null) {
+				throw new ScriptExitException(status);
+			}
+		}
+	}
+
+	/**********
+	 * Thrown in place of exiting the JVM when a script calls System.exit().
+	 */
+	private static final class ScriptExitException extends SecurityException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int status;
+
+		private ScriptExitException(final int status) {
+			super("System.exit(" + status + ") called by script");
+			this.status = status;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+	}
+}
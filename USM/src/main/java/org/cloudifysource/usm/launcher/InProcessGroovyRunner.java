@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.launcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/************
+ * Runs groovy scripts inside the USM process, in a dedicated thread and class loader. Intended for trusted recipes
+ * only: a script that calls System.exit() stops the container, and scripts run in the working directory of the
+ * container, so they should use absolute paths and the 'context' binding variable rather than the
+ * ServiceContextFactory.
+ *
+ * The standard streams of the USM are left untouched: the output of a script is what it prints with the script print
+ * methods, while System.out and System.err writes go to the container output.
+ *
+ * Scripts are returned as {@link Process} instances, like {@link WarmGroovyRunner} scripts.
+ *
+ * @since 2.7.0
+ *
+ */
+public class InProcessGroovyRunner {
+
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+	private final ClassLoader parentClassLoader;
+	private final Map<String, Object> variables;
+
+	/*************
+	 * Constructor.
+	 *
+	 * @param parentClassLoader
+	 *            the parent of the class loaders scripts are compiled with.
+	 * @param variables
+	 *            variables added to the binding of every script.
+	 */
+	public InProcessGroovyRunner(final ClassLoader parentClassLoader, final Map<String, Object> variables) {
+		this.parentClassLoader = parentClassLoader;
+		this.variables = variables;
+	}
+
+	/*************
+	 * Runs a script in a new thread.
+	 *
+	 * @param scriptFile
+	 *            the script.
+	 * @param args
+	 *            the script arguments.
+	 * @return the running script.
+	 */
+	public Process execute(final File scriptFile, final List<String> args) {
+		final ScriptOutput output = new ScriptOutput();
+		final String[] argsArray = args.toArray(new String[args.size()]);
+		final FutureTask<Integer> task = new FutureTask<Integer>(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				try {
+					return GroovyScriptWorker.runScript(scriptFile, argsArray, parentClassLoader, variables,
+							output.getOutputStream());
+				} finally {
+					output.close();
+				}
+			}
+		});
+		final Thread thread = new Thread(task, "InProcessGroovyScript-" + THREAD_COUNTER.incrementAndGet());
+		thread.setDaemon(true);
+		thread.start();
+		return new InProcessScriptProcess(output, task);
+	}
+
+	/************
+	 * A script running in the USM process.
+	 */
+	private static final class InProcessScriptProcess extends Process {
+
+		private final ScriptOutput output;
+		private final FutureTask<Integer> task;
+
+		private InProcessScriptProcess(final ScriptOutput output, final FutureTask<Integer> task) {
+			this.output = output;
+			this.task = task;
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return output.getInputStream();
+		}
+
+		@Override
+		public InputStream getErrorStream() {
+			// the error stream is redirected to the output.
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			// scripts do not read their input.
+			return new OutputStream() {
+				@Override
+				public void write(final int b) {
+					// discarded
+				}
+			};
+		}
+
+		@Override
+		public int waitFor()
+				throws InterruptedException {
+			try {
+				return task.get();
+			} catch (final ExecutionException e) {
+				// runScript reports script failures as exit codes.
+				throw new IllegalStateException("Unexpected failure of in process script", e.getCause());
+			}
+		}
+
+		@Override
+		public int exitValue() {
+			if (!task.isDone()) {
+				throw new IllegalThreadStateException("Script has not exited");
+			}
+			try {
+				return waitFor();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalThreadStateException("Interrupted");
+			}
+		}
+
+		@Override
+		public void destroy() {
+			// a script thread can not be stopped safely, it is left to complete with no one reading its output.
+			output.close();
+		}
+	}
+
+	/************
+	 * An unbounded pipe between the script thread (and any thread it starts) and the reader of the script output.
+	 */
+	private static final class ScriptOutput {
+
+		private static final byte[] END = new byte[0];
+
+		private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<byte[]>();
+		private volatile boolean closed;
+
+		private final OutputStream outputStream = new OutputStream() {
+			@Override
+			public void write(final int b) {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(final byte[] b, final int off, final int len) {
+				if (!closed && len > 0) {
+					chunks.add(Arrays.copyOfRange(b, off, off + len));
+				}
+			}
+		};
+
+		private final InputStream inputStream = new InputStream() {
+			private byte[] current;
+			private int position;
+
+			@Override
+			public int read() {
+				final byte[] single = new byte[1];
+				return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+			}
+
+			@Override
+			public synchronized int read(final byte[] b, final int off, final int len) {
+				if (len == 0) {
+					return 0;
+				}
+				if (current == END) {
+					return -1;
+				}
+				if (current == null || position == current.length) {
+					try {
+						current = chunks.take();
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return -1;
+					}
+					position = 0;
+					if (current == END) {
+						return -1;
+					}
+				}
+				final int count = Math.min(len, current.length - position);
+				System.arraycopy(current, position, b, off, count);
+				position += count;
+				return count;
+			}
+		};
+
+		OutputStream getOutputStream() {
+			return outputStream;
+		}
+
+		InputStream getInputStream() {
+			return inputStream;
+		}
+
+		void close() {
+			if (!closed) {
+				closed = true;
+				chunks.add(END);
+			}
+		}
+	}
+}
@@ -0,0 +1,378 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/************
+ * Runs groovy scripts in a long lived {@link GroovyScriptWorker} process, instead of starting a new groovy process for
+ * every script.
+ *
+ * The worker is started on first use (or explicitly with {@link #start()}) and is restarted if it exits. Scripts are
+ * returned as {@link Process} instances whose input stream is the combined output of the script and whose exit value
+ * is the script exit code, so callers handle them exactly like a groovy process with a redirected error stream. As all
+ * scripts share the worker working directory, only scripts of that working directory may be executed.
+ *
+ * @since 2.7.0
+ *
+ */
+public class WarmGroovyRunner {
+
+	private static final long START_TIMEOUT_SECONDS = 60;
+
+	private static java.util.logging.Logger logger = java.util.logging.Logger.getLogger(WarmGroovyRunner.class
+			.getName());
+
+	private final List<String> commandLine;
+	private final File workingDir;
+	private final Map<String, String> environment;
+
+	private Process worker;
+	private int port;
+	private String token;
+
+	/*************
+	 * Constructor.
+	 *
+	 * @param commandLine
+	 *            the command line that starts a JVM running {@link GroovyScriptWorker}.
+	 * @param workingDir
+	 *            the working directory of the worker, and of the scripts it runs.
+	 * @param environment
+	 *            environment variables added to the worker environment.
+	 */
+	public WarmGroovyRunner(final List<String> commandLine, final File workingDir,
+			final Map<String, String> environment) {
+		this.commandLine = commandLine;
+		this.workingDir = workingDir;
+		this.environment = environment;
+	}
+
+	public File getWorkingDir() {
+		return workingDir;
+	}
+
+	/*************
+	 * Starts the worker process, if it is not running.
+	 *
+	 * @throws IOException
+	 *             if the worker failed to start.
+	 */
+	public synchronized void start()
+			throws IOException {
+		if (isWorkerRunning()) {
+			return;
+		}
+
+		final ProcessBuilder pb = new ProcessBuilder(commandLine);
+		pb.directory(workingDir);
+		pb.redirectErrorStream(true);
+		pb.environment().putAll(environment);
+
+		logger.info("Starting groovy script worker with command line: " + commandLine);
+		final Process process = pb.start();
+		final String processToken = new BigInteger(130, new SecureRandom()).toString(32);
+		final Writer stdin = new OutputStreamWriter(process.getOutputStream());
+		stdin.write(processToken + "\n");
+		// the worker standard input stays open, the worker exits when it is closed.
+		stdin.flush();
+
+		final int[] workerPort = new int[1];
+		final CountDownLatch portLatch = new CountDownLatch(1);
+		final Thread outputReader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readWorkerOutput(process.getInputStream(), workerPort, portLatch);
+			}
+		}, "GroovyScriptWorkerOutputReader");
+		outputReader.setDaemon(true);
+		outputReader.start();
+
+		try {
+			if (!portLatch.await(START_TIMEOUT_SECONDS, TimeUnit.SECONDS) || workerPort[0] == 0) {
+				process.destroy();
+				throw new IOException("Groovy script worker did not start within " + START_TIMEOUT_SECONDS
+						+ " seconds");
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			process.destroy();
+			throw new IOException("Interrupted while starting the groovy script worker");
+		}
+
+		this.worker = process;
+		this.port = workerPort[0];
+		this.token = processToken;
+		logger.info("Groovy script worker started, listening on port " + this.port);
+	}
+
+	private void readWorkerOutput(final InputStream workerOutput, final int[] workerPort,
+			final CountDownLatch portLatch) {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(workerOutput));
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				if (portLatch.getCount() > 0 && line.startsWith(GroovyScriptWorker.PORT_LINE_PREFIX)) {
+					workerPort[0] =
+							Integer.parseInt(line.substring(GroovyScriptWorker.PORT_LINE_PREFIX.length()).trim());
+					portLatch.countDown();
+				} else {
+					logger.info("Groovy script worker: " + line);
+				}
+				line = reader.readLine();
+			}
+		} catch (final IOException e) {
+			logger.log(Level.FINE, "Failed to read groovy script worker output", e);
+		} catch (final NumberFormatException e) {
+			logger.log(Level.WARNING, "Groovy script worker reported an invalid port", e);
+		} finally {
+			// the worker exited, possibly before reporting its port.
+			portLatch.countDown();
+		}
+	}
+
+	private boolean isWorkerRunning() {
+		if (worker == null) {
+			return false;
+		}
+		try {
+			final int exitValue = worker.exitValue();
+			logger.warning("Groovy script worker exited with value " + exitValue + ", it will be restarted");
+			worker = null;
+			return false;
+		} catch (final IllegalThreadStateException e) {
+			return true;
+		}
+	}
+
+	/*************
+	 * Runs a script in the worker, starting it if required.
+	 *
+	 * @param scriptFile
+	 *            the script.
+	 * @param args
+	 *            the script arguments.
+	 * @return the running script.
+	 * @throws IOException
+	 *             if the script could not be sent to the worker.
+	 */
+	public Process execute(final File scriptFile, final List<String> args)
+			throws IOException {
+		final int workerPort;
+		final String workerToken;
+		synchronized (this) {
+			start();
+			workerPort = this.port;
+			workerToken = this.token;
+		}
+
+		final Socket socket = new Socket(InetAddress.getByName(null), workerPort);
+		try {
+			socket.setTcpNoDelay(true);
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeUTF(workerToken);
+			out.writeUTF(scriptFile.getAbsolutePath());
+			out.writeInt(args.size());
+			for (final String arg : args) {
+				out.writeUTF(arg);
+			}
+			out.flush();
+			return new WorkerScriptProcess(socket);
+		} catch (final IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
+	/*************
+	 * Stops the worker process.
+	 */
+	public synchronized void shutdown() {
+		if (worker != null) {
+			logger.info("Stopping groovy script worker");
+			worker.destroy();
+			worker = null;
+		}
+	}
+
+	/************
+	 * A script running in the worker.
+	 */
+	private static final class WorkerScriptProcess extends Process {
+
+		private final Socket socket;
+		private final DataInputStream in;
+		private final InputStream output = new ScriptOutputStream();
+		private int remainingInFrame;
+		private boolean exited;
+		private int exitCode;
+
+		private WorkerScriptProcess(final Socket socket)
+				throws IOException {
+			this.socket = socket;
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		}
+
+		// returns false once the exit frame was read.
+		private boolean nextOutputFrame()
+				throws IOException {
+			while (remainingInFrame == 0) {
+				if (exited) {
+					return false;
+				}
+				final int frameType;
+				try {
+					frameType = in.readByte();
+				} catch (final EOFException e) {
+					throw new IOException("Groovy script worker closed the connection before the script completed");
+				}
+				if (frameType == GroovyScriptWorker.OUTPUT_FRAME) {
+					remainingInFrame = in.readInt();
+				} else if (frameType == GroovyScriptWorker.EXIT_FRAME) {
+					exitCode = in.readInt();
+					exited = true;
+					closeSocket();
+				} else {
+					throw new IOException("Unexpected frame type from groovy script worker: " + frameType);
+				}
+			}
+			return true;
+		}
+
+		private void closeSocket() {
+			try {
+				socket.close();
+			} catch (final IOException e) {
+				// ignore
+			}
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return output;
+		}
+
+		@Override
+		public InputStream getErrorStream() {
+			// the error stream is redirected to the output.
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			// scripts do not read their input.
+			return new OutputStream() {
+				@Override
+				public void write(final int b) {
+					// discarded
+				}
+			};
+		}
+
+		@Override
+		public synchronized int waitFor()
+				throws InterruptedException {
+			try {
+				final byte[] discard = new byte[1024];
+				while (output.read(discard) != -1) {
+					// the output was not read by the caller.
+				}
+			} catch (final IOException e) {
+				logger.log(Level.WARNING, "Lost connection to the groovy script worker", e);
+				exited = true;
+				exitCode = 1;
+				closeSocket();
+			}
+			return exitCode;
+		}
+
+		@Override
+		public synchronized int exitValue() {
+			if (!exited) {
+				throw new IllegalThreadStateException("Script has not exited");
+			}
+			return exitCode;
+		}
+
+		@Override
+		public void destroy() {
+			// the script keeps running in the worker, but its output and exit code are no longer collected.
+			closeSocket();
+		}
+
+		/************
+		 * Reads the script output frames.
+		 */
+		private final class ScriptOutputStream extends InputStream {
+
+			@Override
+			public int read()
+					throws IOException {
+				synchronized (WorkerScriptProcess.this) {
+					if (!nextOutputFrame()) {
+						return -1;
+					}
+					final int b = in.read();
+					if (b == -1) {
+						throw new IOException("Groovy script worker closed the connection before the script "
+								+ "completed");
+					}
+					remainingInFrame--;
+					return b;
+				}
+			}
+
+			@Override
+			public int read(final byte[] b, final int off, final int len)
+					throws IOException {
+				if (len == 0) {
+					return 0;
+				}
+				synchronized (WorkerScriptProcess.this) {
+					if (!nextOutputFrame()) {
+						return -1;
+					}
+					final int read = in.read(b, off, Math.min(len, remainingInFrame));
+					if (read == -1) {
+						throw new IOException("Groovy script worker closed the connection before the script "
+								+ "completed");
+					}
+					remainingInFrame -= read;
+					return read;
+				}
+			}
+		}
+	}
+}
@@ -19,12 +19,13 @@ import java.io.File;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
-import org.apache.commons.io.input.Tailer;
 import org.cloudifysource.domain.context.ServiceContext;
 import org.cloudifysource.usm.Plugin;
 import org.cloudifysource.usm.USMException;
 import org.cloudifysource.usm.events.AbstractUSMEventListener;
+import org.cloudifysource.usm.tail.FileTailService;
 
 /**
  * FileLivenessDetector class is responsible for verifying that the process has finished loading by checking whether the
@@ -51,8 +52,8 @@ public class FileLivenessDetector extends AbstractUSMEventListener implements Li
 	private String regex = "";
 	private int timeoutInSeconds = 60;
 
-	private static final int TIMEOUT_BETWEEN_FILE_QUERYING = 1000;
 	private String serviceDirectory;
+	private Pattern pattern;
 
 	@Override
 	public void setConfig(final Map<String, Object> config) {
@@ -72,9 +73,10 @@ public class FileLivenessDetector extends AbstractUSMEventListener implements Li
 	}
 
 	/**
-	 * isProcessAlive will sample the file defined in the groovy configuration file every second for the specified
-	 * timeout period looking for a regex in the log that confirms the process has loaded successfully and return true
-	 * if the regex was found.
+	 * isProcessAlive will wait for the specified timeout period for a line matching the regex to be written to the file
+	 * defined in the groovy configuration file, confirming the process has loaded successfully, and return true as soon
+	 * as such a line is found. The file is tailed by the USM file tail service for the duration of the call, from its
+	 * beginning.
 	 * 
 	 * @throws USMException .
 	 * 
@@ -86,33 +88,32 @@ public class FileLivenessDetector extends AbstractUSMEventListener implements Li
 			throw new USMException(
 					"When using the FileLivnessDetector, both the file path and regex should be defined.");
 		}
+
+		if (pattern == null) {
+			pattern = Pattern.compile(this.regex);
+		}
 		File file = new File(this.filePath);
 		if (!file.isAbsolute()) {
 			file = new File(serviceDirectory, this.filePath);
 		}
-		final FileTailerListener listener = new FileTailerListener(this.regex);
-		Tailer tailer = null;
+
+		// not running in a USM - the file is tailed by a tail service of this call.
+		final FileTailService localTailService = usm == null ? new FileTailService() : null;
+		final FileTailService tailService = localTailService == null ? usm.getFileTailService() : localTailService;
+		final FileTailService.Subscription subscription = tailService.subscribe(file, pattern, null);
 		try {
-			final long startTime = System.currentTimeMillis();
-			while (System.currentTimeMillis() < startTime + TimeUnit.SECONDS.toMillis(timeoutInSeconds)) {
-				if (file.exists()) {
-					if (tailer == null) {
-						tailer = Tailer.create(file, listener, TIMEOUT_BETWEEN_FILE_QUERYING, false);
-					}
-					if (listener.isProcessUp()) {
-						logger.info("The regular expression " + this.regex + " was found in the process log");
-						return true;
-					}
-				}
-				try {
-					Thread.sleep(TIMEOUT_BETWEEN_FILE_QUERYING);
-				} catch (final InterruptedException e) {
-					e.printStackTrace();
-				}
+			if (subscription.await(timeoutInSeconds, TimeUnit.SECONDS)) {
+				logger.info("The regular expression " + this.regex + " was found in the process log");
+				return true;
 			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new USMException("Interrupted while waiting for the regular expression " + this.regex
+					+ " in the process log", e);
 		} finally {
-			if (tailer != null) {
-				tailer.stop();
+			subscription.cancel();
+			if (localTailService != null) {
+				localTailService.shutdown();
 			}
 		}
 		logger.info("The regular expression " + this.regex + " was NOT found in the process log");
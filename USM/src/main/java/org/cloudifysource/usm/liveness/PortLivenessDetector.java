@@ -15,10 +15,12 @@
  *******************************************************************************/
 package org.cloudifysource.usm.liveness;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 import org.cloudifysource.domain.context.ServiceContext;
+import org.cloudifysource.dsl.utils.PortProber;
 import org.cloudifysource.dsl.utils.ServiceUtils;
 import org.cloudifysource.usm.Plugin;
 import org.cloudifysource.usm.UniversalServiceManagerBean;
@@ -98,12 +100,18 @@ public class PortLivenessDetector extends AbstractUSMEventListener implements Li
 	 */
 	@Override
 	public EventResult onPreStart(final StartReason reason) {
-		for (final Integer port : this.portList) {
-
-			if (ServiceUtils.isPortOccupied(port)) {
-				throw new IllegalStateException("The Port Liveness Detector found that port " + port
+		final boolean[] occupied;
+		try {
+			occupied = PortProber.probe("127.0.0.1", this.portList, PortProber.DEFAULT_TIMEOUT_MILLIS);
+		} catch (final IOException e) {
+			logger.warning("Failed to check if ports " + this.portList + " are free before the process is launched: "
+					+ e.getMessage());
+			return EventResult.SUCCESS;
+		}
+		for (int i = 0; i < occupied.length; i++) {
+			if (occupied[i]) {
+				throw new IllegalStateException("The Port Liveness Detector found that port " + this.portList.get(i)
 						+ " is IN USE before the process was launched!");
-
 			}
 		}
 
@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.liveness;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.cloudifysource.usm.USMException;
+
+/**
+ * Runs the start detectors of a service concurrently. Every detector runs in its own thread until it passes once, so a
+ * slow or blocking detector, such as a file detector waiting for a log line, does not hold back the others.
+ *
+ * A detector that did not pass is retried after a delay that starts short and doubles up to the configured start
+ * detection interval, so a fast starting service is detected quickly and a slow one is not polled needlessly often.
+ * When a detector passes, the detectors that are waiting to be retried are retried immediately, as one condition being
+ * met, like a port being opened, often means another one is met as well.
+ *
+ * @since 2.7.0
+ *
+ */
+public class StartDetectionEngine {
+
+	/**
+	 * The default delay before the first retry of a detector.
+	 */
+	public static final long DEFAULT_INITIAL_INTERVAL_MILLIS = 250;
+
+	private static final Logger logger = Logger.getLogger(StartDetectionEngine.class.getName());
+
+	private final LivenessDetector[] detectors;
+	private final long initialIntervalMillis;
+	private final long maxIntervalMillis;
+	private final CountDownLatch remaining;
+	private final Object lock = new Object();
+	private int passedCount;
+	private Exception failure;
+	private volatile boolean stopped;
+	private ExecutorService executor;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param detectors
+	 *            the start detectors.
+	 * @param initialIntervalMillis
+	 *            the delay before the first retry of a detector.
+	 * @param maxIntervalMillis
+	 *            the maximal delay between retries of a detector.
+	 */
+	public StartDetectionEngine(final LivenessDetector[] detectors, final long initialIntervalMillis,
+			final long maxIntervalMillis) {
+		this.detectors = detectors;
+		this.maxIntervalMillis = Math.max(1, maxIntervalMillis);
+		this.initialIntervalMillis = Math.max(1, Math.min(initialIntervalMillis, this.maxIntervalMillis));
+		this.remaining = new CountDownLatch(detectors.length);
+	}
+
+	/**
+	 * Starts running the detectors.
+	 */
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		final AtomicInteger counter = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(Math.max(1, detectors.length), new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "USMStartDetector-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		for (final LivenessDetector detector : detectors) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					runDetector(detector);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Waits for all detectors to pass.
+	 *
+	 * @param timeoutMillis
+	 *            the maximal time to wait.
+	 * @return true if all detectors passed, false if the timeout elapsed first.
+	 * @throws USMException
+	 *             if a detector failed, or if interrupted while waiting.
+	 * @throws TimeoutException
+	 *             if a detector timed out.
+	 */
+	public boolean await(final long timeoutMillis)
+			throws USMException, TimeoutException {
+		boolean completed;
+		try {
+			completed = remaining.await(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (final InterruptedException e) {
+			throw new USMException("Interruped while waiting for start detection", e);
+		}
+
+		final Exception detectorFailure;
+		synchronized (lock) {
+			detectorFailure = failure;
+			completed = completed && passedCount == detectors.length;
+		}
+		if (detectorFailure instanceof USMException) {
+			throw (USMException) detectorFailure;
+		} else if (detectorFailure instanceof TimeoutException) {
+			throw (TimeoutException) detectorFailure;
+		} else if (detectorFailure != null) {
+			throw (RuntimeException) detectorFailure;
+		}
+		return completed;
+	}
+
+	/**
+	 * Stops the detectors that did not pass yet.
+	 */
+	public synchronized void stop() {
+		stopped = true;
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	private void runDetector(final LivenessDetector detector) {
+		long interval = initialIntervalMillis;
+		while (!stopped) {
+			final int passedBefore;
+			synchronized (lock) {
+				passedBefore = passedCount;
+			}
+
+			boolean passed = false;
+			try {
+				passed = detector.isProcessAlive();
+				logger.fine("Start detector " + detector + " returned: " + passed);
+			} catch (final USMException e) {
+				if (stopped) {
+					return;
+				}
+				// may indicate that the underlying process has terminated
+				if (e.getCause() instanceof InterruptedException) {
+					logger.info("A start detector failed due to an InterruptedException");
+				} else {
+					fail(e);
+					return;
+				}
+			} catch (final TimeoutException e) {
+				fail(e);
+				return;
+			} catch (final RuntimeException e) {
+				fail(e);
+				return;
+			}
+
+			if (passed) {
+				synchronized (lock) {
+					++passedCount;
+					lock.notifyAll();
+				}
+				remaining.countDown();
+				return;
+			}
+
+			synchronized (lock) {
+				if (passedCount != passedBefore) {
+					// another detector passed in the meantime, retry now.
+					interval = initialIntervalMillis;
+					continue;
+				}
+				try {
+					lock.wait(interval);
+				} catch (final InterruptedException e) {
+					return;
+				}
+				if (passedCount != passedBefore) {
+					interval = initialIntervalMillis;
+					continue;
+				}
+			}
+			interval = Math.min(interval * 2, maxIntervalMillis);
+		}
+	}
+
+	private void fail(final Exception e) {
+		logger.log(Level.FINE, "Start detector failed: " + e.getMessage(), e);
+		synchronized (lock) {
+			if (failure == null) {
+				failure = e;
+			}
+		}
+		// release the waiting thread.
+		while (remaining.getCount() > 0) {
+			remaining.countDown();
+		}
+	}
+}
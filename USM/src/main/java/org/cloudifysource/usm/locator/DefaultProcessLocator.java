@@ -15,20 +15,19 @@ package org.cloudifysource.usm.locator;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.logging.Level;
 
+import org.cloudifysource.dsl.utils.ProcessTableSnapshot;
 import org.cloudifysource.usm.USMException;
 import org.cloudifysource.usm.UniversalServiceManagerBean;
 import org.cloudifysource.usm.events.AbstractUSMEventListener;
 import org.cloudifysource.usm.events.EventResult;
 import org.cloudifysource.usm.events.PreStartListener;
 import org.cloudifysource.usm.events.StartReason;
+import org.cloudifysource.usm.launcher.GroovyScriptWorker;
 import org.hyperic.sigar.Sigar;
 import org.hyperic.sigar.SigarException;
 
@@ -87,46 +86,20 @@ public class DefaultProcessLocator extends AbstractUSMEventListener implements P
 
 	}
 
-	/**********
-	 * Creates a process tree of the given Process IDs. Each entry in the map maps a PID to the set of its child PIDs.
-	 *
-	 * @param pids
-	 * @return
-	 */
-	private Map<Long, Set<Long>> createProcessTree(final long[] pids) {
-
-		final HashMap<Long, Set<Long>> map = new HashMap<Long, Set<Long>>();
-		for (final long pid : pids) {
-			final Set<Long> childSet = map.get(pid);
-			if (childSet == null) {
-				map.put(pid, new HashSet<Long>());
-			}
-
-			try {
-				final long ppid = this.sigar.getProcState(pid).getPpid();
-
-				Set<Long> set = map.get(ppid);
-				if (set == null) {
-					set = new HashSet<Long>();
-					map.put(ppid, set);
-				}
-				set.add(pid);
-			} catch (final SigarException e) {
-				logger.log(Level.WARNING, "Failed to get Parent Process for process: " + pid, e);
-			}
-		}
-
-		return map;
-
-	}
-
-	private long findNewChildProcessID(final Set<Long> childrenBefore, final Map<Long, Set<Long>> procTree)
+	private long findNewChildProcessID(final Set<Long> childrenBefore, final ProcessTableSnapshot procTree)
 			throws USMException {
-		final Set<Long> childrenAfter = procTree.get(this.myPid);
-		if (childrenAfter == null) {
+		if (!procTree.getPids().contains(this.myPid)) {
 			throw new USMException("Could not find container process (" + this.myPid + ") in generated process tree");
 		}
+		final Set<Long> childrenAfter = procTree.getChildren(this.myPid);
 		childrenAfter.removeAll(childrenBefore);
+		// a groovy script worker restarted after the service started is not a service process.
+		final Iterator<Long> iterator = childrenAfter.iterator();
+		while (iterator.hasNext()) {
+			if (GroovyScriptWorker.isWorkerCommandLine(procTree.getArgs(iterator.next()))) {
+				iterator.remove();
+			}
+		}
 
 		if (childrenAfter.isEmpty()) {
 			logger.warning("Default process locator could not find a new process! "
@@ -154,12 +127,12 @@ public class DefaultProcessLocator extends AbstractUSMEventListener implements P
 	 * @param leafPids
 	 *            the result leaf pids list.
 	 */
-	private void findLeafProcessIDs(final long parentProcessID, final Map<Long, Set<Long>> procTree,
+	private void findLeafProcessIDs(final long parentProcessID, final ProcessTableSnapshot procTree,
 			final List<Long> leafPids) {
 
-		final Set<Long> pids = procTree.get(parentProcessID);
+		final Set<Long> pids = procTree.getChildren(parentProcessID);
 
-		if (pids == null || pids.isEmpty()) {
+		if (pids.isEmpty()) {
 			leafPids.add(parentProcessID);
 			return;
 		}
@@ -175,8 +148,7 @@ public class DefaultProcessLocator extends AbstractUSMEventListener implements P
 	private void findProcessIDs()
 			throws USMException {
 
-		final long[] allPids = getAllPids();
-		final Map<Long, Set<Long>> procTree = createProcessTree(allPids);
+		final ProcessTableSnapshot procTree = getProcessTable();
 		this.childProcessID = findNewChildProcessID(childrenBeforeStart, procTree);
 		if (this.childProcessID == 0) {
 			logger.warning("Default foreground process locator was unable to locate a new child process. "
@@ -199,38 +171,30 @@ public class DefaultProcessLocator extends AbstractUSMEventListener implements P
 
 			this.serviceProcesses = resultList;
 			// also logs process details to logger.
-			checkForConsoleProcess();
+			checkForConsoleProcess(procTree);
 		}
 
 	}
 
-	private void checkForConsoleProcess() {
+	private void checkForConsoleProcess(final ProcessTableSnapshot procTree) {
 		final List<Long> pids = this.serviceProcesses;
 		for (final Long pid : pids) {
-			try {
-				String procName = this.sigar.getProcExe(pid).getName();
-				String[] procArgs = this.sigar.getProcArgs(pid);
+			String procName = procTree.getExe(pid);
+			final String[] procArgs = procTree.getArgs(pid);
 
-				// sigar could return anything...
-				if (procName == null) {
-					procName = "Unknown";
-				}
-				if (procArgs == null) {
-					procArgs = new String[0];
-				}
-				logger.info("Located process (" + pid + "): " + procName + " " + Arrays.toString(procArgs));
-				for (final String shellName : SHELL_PROCESS_NAMES) {
-					if (procName.contains(shellName)) {
-						logger.warning("A monitored process(" + pid + " - " + procName + ") may be a console process. "
-								+ "This is usually a configuration problem. "
-								+ "USM Statistics will be collected for this process, "
-								+ "and not for the child process it probably has. Are you missing a Start Detector?");
-					}
+			if (procName == null) {
+				logger.severe("While checking if process is a console, failed to read the process name for process: "
+						+ pid);
+				procName = "Unknown";
+			}
+			logger.info("Located process (" + pid + "): " + procName + " " + Arrays.toString(procArgs));
+			for (final String shellName : SHELL_PROCESS_NAMES) {
+				if (procName.contains(shellName)) {
+					logger.warning("A monitored process(" + pid + " - " + procName + ") may be a console process. "
+							+ "This is usually a configuration problem. "
+							+ "USM Statistics will be collected for this process, "
+							+ "and not for the child process it probably has. Are you missing a Start Detector?");
 				}
-			} catch (final SigarException e) {
-				logger.log(Level.SEVERE,
-						"While checking if process is a console, failed to read the process name for process: " + pid,
-						e);
 			}
 
 		}
@@ -239,38 +203,17 @@ public class DefaultProcessLocator extends AbstractUSMEventListener implements P
 
 	private Set<Long> getChildProcesses(final long ppid)
 			throws USMException {
-		final long[] pids = getAllPids();
-		return getChildProcesses(ppid, pids);
+		return getProcessTable().getChildren(ppid);
 	}
 
-	private long[] getAllPids()
+	// the process table is read again, as the processes of interest may have been started just now.
+	private ProcessTableSnapshot getProcessTable()
 			throws USMException {
-		long[] pids;
 		try {
-			pids = this.sigar.getProcList();
+			return ProcessTableSnapshot.getSnapshot(0);
 		} catch (final SigarException se) {
 			throw new USMException("Failed to look up process IDs. Error was: " + se.getMessage(), se);
 		}
-		return pids;
-	}
-
-	private Set<Long> getChildProcesses(final long ppid, final long[] pids) {
-
-		final Set<Long> children = new HashSet<Long>();
-		for (final long pid : pids) {
-			try {
-				if (ppid == this.sigar.getProcState(pid).getPpid()) {
-					children.add(pid);
-				}
-			} catch (final SigarException e) {
-				logger.log(Level.WARNING, "While scanning for child processes of process " + ppid
-						+ ", could not read process state of Process: " + pid + ". Ignoring.", e);
-
-			}
-
-		}
-		return children;
-
 	}
 
 	@Override
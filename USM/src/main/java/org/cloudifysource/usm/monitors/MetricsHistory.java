@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.monitors;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import org.cloudifysource.dsl.internal.CloudifyConstants;
+import org.cloudifysource.dsl.rest.response.MetricHistoryData;
+import org.cloudifysource.usm.USMLifecycleBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**************
+ * Keeps the history of the numeric monitor values of a service instance, so that it can be queried without an external
+ * time series database.
+ *
+ * Each metric is kept in a set of ring buffers of primitive arrays, one per resolution (1 second, 1 minute and 1
+ * hour). Every bucket of a ring holds the sum, count, minimum and maximum of the samples taken in its time span, so
+ * samples are rolled up into all resolutions as they are recorded, and a query is answered from the finest resolution
+ * that still covers its time range. The memory of the history is bounded: metrics are added until the memory budget,
+ * set with the {@link CloudifyConstants#CUSTOM_PROPERTY_METRICS_HISTORY_MEMORY_BUDGET} custom property, is used up, and
+ * later metrics are not recorded.
+ *
+ * @since 2.7.0
+ *
+ */
+@Component
+public class MetricsHistory implements InitializingBean {
+
+	private static final java.util.logging.Logger logger = java.util.logging.Logger.getLogger(MetricsHistory.class
+			.getName());
+
+	private static final long DEFAULT_MEMORY_BUDGET_BYTES = 8 * 1024 * 1024;
+
+	// the step and number of buckets of every resolution, from the finest to the coarsest.
+	private static final long[] RESOLUTION_STEPS = { 1000, 60 * 1000, 60 * 60 * 1000 };
+	private static final int[] RESOLUTION_CAPACITIES = { 10 * 60, 12 * 60, 14 * 24 };
+
+	// bucket id (long), sum, minimum and maximum (doubles) and count (int).
+	private static final int BYTES_PER_BUCKET = 8 + 8 + 8 + 8 + 4;
+
+	// the maximal number of points returned for a metric by a query.
+	private static final int MAX_POINTS_PER_QUERY = 10000;
+
+	@Autowired(required = false)
+	private USMLifecycleBean usmLifecycleBean;
+
+	private final Map<String, MetricSeries> series = new ConcurrentHashMap<String, MetricSeries>();
+	private long memoryBudgetBytes = DEFAULT_MEMORY_BUDGET_BYTES;
+	private int maxMetrics;
+	private volatile boolean limitReported;
+
+	/**************
+	 * Constructor.
+	 */
+	public MetricsHistory() {
+		setMemoryBudgetBytes(DEFAULT_MEMORY_BUDGET_BYTES);
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		if (usmLifecycleBean == null) {
+			return;
+		}
+		final String budget = usmLifecycleBean.getConfiguration().getService().getCustomProperties()
+				.get(CloudifyConstants.CUSTOM_PROPERTY_METRICS_HISTORY_MEMORY_BUDGET);
+		if (budget != null) {
+			setMemoryBudgetBytes(Long.parseLong(budget));
+		}
+	}
+
+	/**************
+	 * Sets the memory budget of the history. Metrics that are already recorded are kept.
+	 *
+	 * @param memoryBudgetBytes
+	 *            the budget, 0 to disable the history.
+	 */
+	public synchronized void setMemoryBudgetBytes(final long memoryBudgetBytes) {
+		this.memoryBudgetBytes = memoryBudgetBytes;
+		this.maxMetrics = (int) Math.min(Integer.MAX_VALUE, memoryBudgetBytes / getBytesPerMetric());
+	}
+
+	public long getMemoryBudgetBytes() {
+		return memoryBudgetBytes;
+	}
+
+	/**************
+	 * @return the memory used by the history of a single metric.
+	 */
+	public static long getBytesPerMetric() {
+		long buckets = 0;
+		for (final int capacity : RESOLUTION_CAPACITIES) {
+			buckets += capacity;
+		}
+		return buckets * BYTES_PER_BUCKET;
+	}
+
+	/**************
+	 * Records the numeric values of a monitor. Other values are ignored.
+	 *
+	 * @param timestamp
+	 *            the time the values were sampled at.
+	 * @param values
+	 *            the monitor values.
+	 */
+	public void record(final long timestamp, final Map<String, ?> values) {
+		if (values == null) {
+			return;
+		}
+		for (final Entry<String, ?> entry : values.entrySet()) {
+			if (entry.getValue() instanceof Number) {
+				record(timestamp, entry.getKey(), ((Number) entry.getValue()).doubleValue());
+			}
+		}
+	}
+
+	/**************
+	 * Records a value of a metric.
+	 *
+	 * @param timestamp
+	 *            the time the value was sampled at.
+	 * @param metric
+	 *            the metric name.
+	 * @param value
+	 *            the value.
+	 */
+	public void record(final long timestamp, final String metric, final double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return;
+		}
+		MetricSeries metricSeries = series.get(metric);
+		if (metricSeries == null) {
+			metricSeries = addSeries(metric);
+			if (metricSeries == null) {
+				return;
+			}
+		}
+		metricSeries.add(timestamp, value);
+	}
+
+	private synchronized MetricSeries addSeries(final String metric) {
+		MetricSeries metricSeries = series.get(metric);
+		if (metricSeries != null) {
+			return metricSeries;
+		}
+		if (series.size() >= maxMetrics) {
+			if (!limitReported) {
+				limitReported = true;
+				logger.warning("The metrics history memory budget of " + memoryBudgetBytes + " bytes allows up to "
+						+ maxMetrics + " metrics. The history of metric " + metric + " and of any further metrics "
+						+ "will not be kept");
+			}
+			return null;
+		}
+		metricSeries = new MetricSeries();
+		series.put(metric, metricSeries);
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine("Keeping the history of metric: " + metric);
+		}
+		return metricSeries;
+	}
+
+	/**************
+	 * @return the names of the metrics with a history.
+	 */
+	public Set<String> getMetricNames() {
+		return new TreeSet<String>(series.keySet());
+	}
+
+	/**************
+	 * Returns the history of metrics in a time range.
+	 *
+	 * @param metric
+	 *            the metric name, or null for all metrics.
+	 * @param from
+	 *            the start of the time range.
+	 * @param to
+	 *            the end of the time range.
+	 * @param step
+	 *            the requested time between points. The actual step may be larger, if the history is not kept in the
+	 *            requested resolution for the time range, or if the range holds too many points.
+	 * @return the history of each metric, by metric name.
+	 */
+	public Map<String, MetricHistoryData> query(final String metric, final long from, final long to,
+			final long step) {
+		final Map<String, MetricHistoryData> result = new HashMap<String, MetricHistoryData>();
+		if (metric != null) {
+			final MetricSeries metricSeries = series.get(metric);
+			if (metricSeries != null) {
+				result.put(metric, metricSeries.query(from, to, step));
+			}
+			return result;
+		}
+		for (final Entry<String, MetricSeries> entry : series.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().query(from, to, step));
+		}
+		return result;
+	}
+
+	/**************
+	 * The rings of all resolutions of a metric.
+	 */
+	private static final class MetricSeries {
+
+		private final Ring[] rings = new Ring[RESOLUTION_STEPS.length];
+
+		private MetricSeries() {
+			for (int i = 0; i < rings.length; i++) {
+				rings[i] = new Ring(RESOLUTION_STEPS[i], RESOLUTION_CAPACITIES[i]);
+			}
+		}
+
+		private synchronized void add(final long timestamp, final double value) {
+			for (final Ring ring : rings) {
+				ring.add(timestamp, value);
+			}
+		}
+
+		private synchronized MetricHistoryData query(final long from, final long to, final long step) {
+			// the finest resolution that still covers the range, or the coarsest one.
+			Ring ring = rings[rings.length - 1];
+			for (final Ring candidate : rings) {
+				if (candidate.getOldestTime() <= from) {
+					ring = candidate;
+					break;
+				}
+			}
+
+			long actualStep = Math.max(step, ring.step);
+			// steps are whole multiples of the ring step, so a ring bucket falls in a single step.
+			actualStep = (actualStep + ring.step - 1) / ring.step * ring.step;
+			final long range = Math.max(0, to - from);
+			if (range / actualStep > MAX_POINTS_PER_QUERY) {
+				actualStep = (range / MAX_POINTS_PER_QUERY + ring.step) / ring.step * ring.step;
+			}
+			return ring.query(from, to, actualStep);
+		}
+	}
+
+	/**************
+	 * A ring of buckets of one resolution.
+	 */
+	private static final class Ring {
+
+		private static final long NO_BUCKET = Long.MIN_VALUE;
+
+		private final long step;
+		private final long[] bucketIds;
+		private final double[] sums;
+		private final double[] minimums;
+		private final double[] maximums;
+		private final int[] counts;
+		private long latestBucketId = NO_BUCKET;
+
+		private Ring(final long step, final int capacity) {
+			this.step = step;
+			this.bucketIds = new long[capacity];
+			this.sums = new double[capacity];
+			this.minimums = new double[capacity];
+			this.maximums = new double[capacity];
+			this.counts = new int[capacity];
+			Arrays.fill(bucketIds, NO_BUCKET);
+		}
+
+		private int indexOf(final long bucketId) {
+			return (int) (bucketId % bucketIds.length);
+		}
+
+		private void add(final long timestamp, final double value) {
+			final long bucketId = timestamp / step;
+			if (latestBucketId != NO_BUCKET && bucketId <= latestBucketId - bucketIds.length) {
+				// older than the ring.
+				return;
+			}
+			final int index = indexOf(bucketId);
+			if (bucketIds[index] != bucketId) {
+				bucketIds[index] = bucketId;
+				sums[index] = 0;
+				counts[index] = 0;
+				minimums[index] = Double.POSITIVE_INFINITY;
+				maximums[index] = Double.NEGATIVE_INFINITY;
+			}
+			sums[index] += value;
+			counts[index]++;
+			minimums[index] = Math.min(minimums[index], value);
+			maximums[index] = Math.max(maximums[index], value);
+			latestBucketId = Math.max(latestBucketId, bucketId);
+		}
+
+		// the start time of the oldest bucket the ring can hold.
+		private long getOldestTime() {
+			if (latestBucketId == NO_BUCKET) {
+				return Long.MAX_VALUE;
+			}
+			return (latestBucketId - bucketIds.length + 1) * step;
+		}
+
+		private MetricHistoryData query(final long from, final long to, final long queryStep) {
+			final long firstStepStart = from / queryStep * queryStep;
+			final int maxPoints = (int) Math.max(0, (to - firstStepStart) / queryStep + 1);
+			final long[] timestamps = new long[maxPoints];
+			final double[] averages = new double[maxPoints];
+			final double[] mins = new double[maxPoints];
+			final double[] maxs = new double[maxPoints];
+
+			int points = 0;
+			if (latestBucketId != NO_BUCKET) {
+				final long oldestBucketId = latestBucketId - bucketIds.length + 1;
+				for (int i = 0; i < maxPoints; i++) {
+					final long stepStart = firstStepStart + i * queryStep;
+					final long firstBucketId = Math.max(Math.max(stepStart, from) / step, oldestBucketId);
+					final long lastBucketId = Math.min(Math.min(stepStart + queryStep - 1, to) / step, latestBucketId);
+
+					double sum = 0;
+					int count = 0;
+					double min = Double.POSITIVE_INFINITY;
+					double max = Double.NEGATIVE_INFINITY;
+					for (long bucketId = firstBucketId; bucketId <= lastBucketId; bucketId++) {
+						final int index = indexOf(bucketId);
+						if (bucketIds[index] == bucketId) {
+							sum += sums[index];
+							count += counts[index];
+							min = Math.min(min, minimums[index]);
+							max = Math.max(max, maximums[index]);
+						}
+					}
+					if (count > 0) {
+						timestamps[points] = stepStart;
+						averages[points] = sum / count;
+						mins[points] = min;
+						maxs[points] = max;
+						points++;
+					}
+				}
+			}
+
+			return new MetricHistoryData(queryStep, Arrays.copyOf(timestamps, points),
+					Arrays.copyOf(averages, points), Arrays.copyOf(mins, points),
+					Arrays.copyOf(maxs, points));
+		}
+	}
+}
@@ -41,6 +41,29 @@ public class MonitorData {
 	private static java.util.logging.Logger logger =
 			java.util.logging.Logger.getLogger(MonitorData.class.getName());
 
+	/**
+	 * The metric names, in the order of {@link #putData(Map, String[])}.
+	 */
+	static final String[] METRIC_NAMES = {
+			CloudifyConstants.USM_METRIC_PROCESS_CPU_USAGE,
+			CloudifyConstants.USM_METRIC_PROCESS_CPU_KERNEL_TIME,
+			CloudifyConstants.USM_METRIC_PROCESS_TOTAL_CPU_TIME,
+			CloudifyConstants.USM_METRIC_PROCESS_GROUP_ID,
+			CloudifyConstants.USM_METRIC_PROCESS_USER_ID,
+			CloudifyConstants.USM_METRIC_PROCESS_TOTAL_PAGE_FAULTS,
+			CloudifyConstants.USM_METRIC_PROCESS_TOTAL_RESIDENTAL_MEMORY,
+			CloudifyConstants.USM_METRIC_PROCESS_TOTAL_SHARED_MEMORY,
+			CloudifyConstants.USM_METRIC_PROCESS_CPU_TOTAL_VIRTUAL_MEMORY,
+			CloudifyConstants.USM_METRIC_PROCESS_KERNEL_SCHEDULING_PRIORITY,
+			CloudifyConstants.USM_METRIC_PROCESS_ACTIVE_THREADS,
+			CloudifyConstants.USM_METRIC_AVAILABLE_PROCESSORS,
+			CloudifyConstants.USM_METRIC_COMMITTED_VIRTUAL_MEM_SIZE,
+			CloudifyConstants.USM_METRIC_PROCESS_CPU_TIME,
+			CloudifyConstants.USM_METRIC_THREAD_COUNT,
+			CloudifyConstants.USM_METRIC_PEAK_THREAD_COUNT };
+
+	private boolean empty = true;
+
 	public MonitorData(final Sigar sigar, final long pid) throws MonitorException {
 		try {
 			gatherData(sigar, pid);
@@ -51,8 +74,16 @@ public class MonitorData {
 		}
 	}
 
-	private void gatherData(final Sigar sigar, final long pid)
+	/**
+	 * Creates an empty record, to be filled and reused by the process monitor.
+	 */
+	MonitorData() {
+		// empty
+	}
+
+	void gatherData(final Sigar sigar, final long pid)
 			throws SigarException {
+		empty = false;
 
 		try {
 			final ProcCpu pcpu = sigar.getProcCpu(pid);
@@ -94,45 +125,123 @@ public class MonitorData {
 
 	}
 
+	void setCpu(final double cpuUsage, final long cpuKernelTime, final long totalCpuTime) {
+		empty = false;
+		this.processCpuUsage = cpuUsage;
+		this.processCpuKernelTime = cpuKernelTime;
+		this.totalProcessCpuTime = totalCpuTime;
+	}
+
+	void setCredentials(final long groupId, final long userId) {
+		empty = false;
+		this.processGroupId = groupId;
+		this.processUserId = userId;
+	}
+
+	void setMemory(final long pageFaults, final long residentMemory, final long sharedMemory,
+			final long virtualMemory) {
+		empty = false;
+		this.totalNumOfPageFaults = pageFaults;
+		this.totalProcessResidentalMemory = residentMemory;
+		this.totalProcessSharedMemory = sharedMemory;
+		this.totalProcessVirtualMemory = virtualMemory;
+	}
+
+	void setState(final int schedulingPriority, final long activeThreads) {
+		empty = false;
+		this.kernelSchedulingPriority = schedulingPriority;
+		this.numOfActiveThreads = activeThreads;
+	}
+
+	/*******
+	 * Resets all values, except for the user and group IDs, to zero.
+	 */
+	void clear() {
+		empty = true;
+		processCpuUsage = 0;
+		processCpuKernelTime = 0;
+		totalProcessCpuTime = 0;
+		totalNumOfPageFaults = 0;
+		totalProcessResidentalMemory = 0;
+		totalProcessSharedMemory = 0;
+		totalProcessVirtualMemory = 0;
+		kernelSchedulingPriority = 0;
+		numOfActiveThreads = 0;
+		availableProcessors = 0;
+		committedVirtualMemorySize = 0;
+		processCpuTime = 0;
+		threadCount = 0;
+		peakThreadCount = 0;
+	}
+
+	/*******
+	 * Adds the values of a process to the totals of a group of processes. The IDs and scheduling priority of a group
+	 * are those of its first process.
+	 * 
+	 * @param other the values of the process.
+	 */
+	void add(final MonitorData other) {
+		if (other.empty) {
+			return;
+		}
+		if (empty) {
+			processGroupId = other.processGroupId;
+			processUserId = other.processUserId;
+			kernelSchedulingPriority = other.kernelSchedulingPriority;
+			empty = false;
+		}
+		processCpuUsage += other.processCpuUsage;
+		processCpuKernelTime += other.processCpuKernelTime;
+		totalProcessCpuTime += other.totalProcessCpuTime;
+		totalNumOfPageFaults += other.totalNumOfPageFaults;
+		totalProcessResidentalMemory += other.totalProcessResidentalMemory;
+		totalProcessSharedMemory += other.totalProcessSharedMemory;
+		totalProcessVirtualMemory += other.totalProcessVirtualMemory;
+		numOfActiveThreads += other.numOfActiveThreads;
+		availableProcessors = Math.max(availableProcessors, other.availableProcessors);
+		committedVirtualMemorySize += other.committedVirtualMemorySize;
+		processCpuTime += other.processCpuTime;
+		threadCount += other.threadCount;
+		peakThreadCount += other.peakThreadCount;
+	}
+
 	/*******
 	 * Returns the collected information.
 	 * @return the collection information.
 	 */
 	public Map<String, Number> getDataMap() {
 		final Map<String, Number> map = new HashMap<String, Number>();
-		addDataToMonitor(map);
+		putData(map, METRIC_NAMES);
 		return map;
 	}
 
-	private void addDataToMonitor(final Map<String, Number> monitorMap) {
-		monitorMap.put(CloudifyConstants.USM_METRIC_PROCESS_CPU_USAGE, processCpuUsage);
-		monitorMap.put(CloudifyConstants.USM_METRIC_PROCESS_CPU_KERNEL_TIME, processCpuKernelTime);
-		monitorMap.put(CloudifyConstants.USM_METRIC_PROCESS_TOTAL_CPU_TIME, totalProcessCpuTime);
-
-		// monitorMap.put("Process Arguments", MonitorData.flattenStrArr(processArguments));
-
-		monitorMap.put(CloudifyConstants.USM_METRIC_PROCESS_GROUP_ID, processGroupId);
-		monitorMap.put(CloudifyConstants.USM_METRIC_PROCESS_USER_ID, processUserId);
-
-		// monitorMap.put("Process Owner Group Name", MonitorData.safeS(processOwnerGroupName));
-		// monitorMap.put("Process Owner User Name", MonitorData.safeS(processOwnerUserName));
-
-		monitorMap.put(CloudifyConstants.USM_METRIC_PROCESS_TOTAL_PAGE_FAULTS, totalNumOfPageFaults);
-		monitorMap.put(CloudifyConstants.USM_METRIC_PROCESS_TOTAL_RESIDENTAL_MEMORY, totalProcessResidentalMemory);
-		monitorMap.put(CloudifyConstants.USM_METRIC_PROCESS_TOTAL_SHARED_MEMORY, totalProcessSharedMemory);
-		monitorMap.put(CloudifyConstants.USM_METRIC_PROCESS_CPU_TOTAL_VIRTUAL_MEMORY, totalProcessVirtualMemory);
-
-		monitorMap.put(CloudifyConstants.USM_METRIC_PROCESS_KERNEL_SCHEDULING_PRIORITY, kernelSchedulingPriority);
-		monitorMap.put(CloudifyConstants.USM_METRIC_PROCESS_ACTIVE_THREADS, numOfActiveThreads);
-
-		// monitorMap.put(KEY_ARCH, MonitorData.safeS(arch));
-		monitorMap.put(CloudifyConstants.USM_METRIC_AVAILABLE_PROCESSORS, availableProcessors);
-		monitorMap.put(CloudifyConstants.USM_METRIC_COMMITTED_VIRTUAL_MEM_SIZE, committedVirtualMemorySize);
-		// monitorMap.put(KEY_OS_NAME, MonitorData.safeS(osName));
-		monitorMap.put(CloudifyConstants.USM_METRIC_PROCESS_CPU_TIME, processCpuTime);
-		// map.put("Classpath", safeS(classPath));
-		monitorMap.put(CloudifyConstants.USM_METRIC_THREAD_COUNT, threadCount);
-		monitorMap.put(CloudifyConstants.USM_METRIC_PEAK_THREAD_COUNT, peakThreadCount);
+	/*******
+	 * Puts the collected information in a map.
+	 * 
+	 * @param monitorMap the map.
+	 * @param keys the keys of the metrics, in the order of {@link #METRIC_NAMES}.
+	 */
+	void putData(final Map<String, Number> monitorMap, final String[] keys) {
+		monitorMap.put(keys[0], processCpuUsage);
+		monitorMap.put(keys[1], processCpuKernelTime);
+		monitorMap.put(keys[2], totalProcessCpuTime);
+
+		monitorMap.put(keys[3], processGroupId);
+		monitorMap.put(keys[4], processUserId);
+
+		monitorMap.put(keys[5], totalNumOfPageFaults);
+		monitorMap.put(keys[6], totalProcessResidentalMemory);
+		monitorMap.put(keys[7], totalProcessSharedMemory);
+		monitorMap.put(keys[8], totalProcessVirtualMemory);
+
+		monitorMap.put(keys[9], kernelSchedulingPriority);
+		monitorMap.put(keys[10], numOfActiveThreads);
+
+		monitorMap.put(keys[11], availableProcessors);
+		monitorMap.put(keys[12], committedVirtualMemorySize);
+		monitorMap.put(keys[13], processCpuTime);
+		monitorMap.put(keys[14], threadCount);
+		monitorMap.put(keys[15], peakThreadCount);
 	}
 
 
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.monitors.process;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Reads process statistics from the Linux /proc file system into a reusable {@link MonitorData}, without the
+ * intermediate objects of the SIGAR calls. The files are read into a buffer owned by the reader and parsed in place,
+ * so a reader must not be used by more than one thread at a time.
+ *
+ * The values have the same units as the SIGAR values they replace: CPU times in milliseconds, memory in bytes and CPU
+ * usage as a fraction of a single CPU.
+ *
+ * @since 2.7.0
+ *
+ */
+class ProcFsReader {
+
+	private static final File PROC_SELF_STAT = new File("/proc/self/stat");
+
+	// clock ticks per second of the times in /proc/[pid]/stat. USER_HZ is 100 on all Linux architectures we run on.
+	private static final long CLOCK_TICKS_PER_SECOND = 100;
+	private static final long MILLIS_PER_CLOCK_TICK = 1000 / CLOCK_TICKS_PER_SECOND;
+	private static final int DEFAULT_PAGE_SIZE = 4096;
+
+	// field numbers of /proc/[pid]/stat, see proc(5).
+	private static final int STAT_MINFLT = 10;
+	private static final int STAT_MAJFLT = 12;
+	private static final int STAT_UTIME = 14;
+	private static final int STAT_STIME = 15;
+	private static final int STAT_PRIORITY = 18;
+	private static final int STAT_NUM_THREADS = 20;
+	private static final int STAT_VSIZE = 23;
+
+	// field numbers of /proc/[pid]/statm.
+	private static final int STATM_SIZE = 1;
+	private static final int STATM_RESIDENT = 2;
+	private static final int STATM_SHARED = 3;
+
+	private static final byte[] UID_PREFIX = { 'U', 'i', 'd', ':' };
+	private static final byte[] GID_PREFIX = { 'G', 'i', 'd', ':' };
+
+	private final byte[] buffer = new byte[8192];
+	private int length;
+	private final int pageSize;
+
+	ProcFsReader() {
+		this.pageSize = detectPageSize();
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pageSize
+	 *            the memory page size, the unit of the sizes in /proc/[pid]/statm.
+	 */
+	ProcFsReader(final int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * @return true if the /proc file system is available.
+	 */
+	static boolean isSupported() {
+		return PROC_SELF_STAT.isFile();
+	}
+
+	/**
+	 * The files of a process and its last CPU sample, used to calculate the CPU usage between successive reads.
+	 */
+	static final class ProcessFiles {
+		private final String statFile;
+		private final String statmFile;
+		private final String statusFile;
+		private long cpuTimeMillis = -1;
+		private long sampleTimeNanos;
+
+		ProcessFiles(final long pid) {
+			this(new File("/proc/" + pid));
+		}
+
+		ProcessFiles(final File procDir) {
+			this.statFile = new File(procDir, "stat").getPath();
+			this.statmFile = new File(procDir, "statm").getPath();
+			this.statusFile = new File(procDir, "status").getPath();
+		}
+	}
+
+	/**
+	 * Reads the statistics of a process.
+	 *
+	 * @param process
+	 *            the process files, the CPU sample of the process is updated by this call.
+	 * @param readCredentials
+	 *            true to read the user and group IDs, which do not usually change during the life of a process.
+	 * @param target
+	 *            the record to read into.
+	 * @throws IOException
+	 *             if the process statistics could not be read, for example because it is no longer running.
+	 */
+	void read(final ProcessFiles process, final boolean readCredentials, final MonitorData target)
+			throws IOException {
+		readFile(process.statFile);
+		final long sampleTimeNanos = System.nanoTime();
+		final int start = findStatFieldsStart();
+		final long pageFaults = parseField(start, 3, STAT_MINFLT) + parseField(start, 3, STAT_MAJFLT);
+		final long userMillis = parseField(start, 3, STAT_UTIME) * MILLIS_PER_CLOCK_TICK;
+		final long systemMillis = parseField(start, 3, STAT_STIME) * MILLIS_PER_CLOCK_TICK;
+		final int priority = (int) parseField(start, 3, STAT_PRIORITY);
+		final long threads = parseField(start, 3, STAT_NUM_THREADS);
+
+		readFile(process.statmFile);
+		final long virtualMemory = parseField(0, 1, STATM_SIZE) * pageSize;
+		final long residentMemory = parseField(0, 1, STATM_RESIDENT) * pageSize;
+		final long sharedMemory = parseField(0, 1, STATM_SHARED) * pageSize;
+
+		final long totalMillis = userMillis + systemMillis;
+		double cpuUsage = 0;
+		if (process.cpuTimeMillis >= 0) {
+			final long elapsedMillis = (sampleTimeNanos - process.sampleTimeNanos) / 1000000;
+			if (elapsedMillis > 0) {
+				cpuUsage = (double) Math.max(0, totalMillis - process.cpuTimeMillis) / elapsedMillis;
+			}
+		}
+		process.cpuTimeMillis = totalMillis;
+		process.sampleTimeNanos = sampleTimeNanos;
+
+		target.setCpu(cpuUsage, systemMillis, totalMillis);
+		target.setMemory(pageFaults, residentMemory, sharedMemory, virtualMemory);
+		target.setState(priority, threads);
+
+		if (readCredentials) {
+			readFile(process.statusFile);
+			target.setCredentials(parseStatusLine(GID_PREFIX), parseStatusLine(UID_PREFIX));
+		}
+	}
+
+	// the offset of the third field of a stat file. The command name in the second field may contain spaces and
+	// parentheses, so fields are counted from the last ')'.
+	private int findStatFieldsStart()
+			throws IOException {
+		for (int i = length - 1; i >= 0; i--) {
+			if (buffer[i] == ')') {
+				return i + 2;
+			}
+		}
+		throw new IOException("Unexpected format of process statistics");
+	}
+
+	private void readFile(final String fileName)
+			throws IOException {
+		final FileInputStream in = new FileInputStream(fileName);
+		try {
+			length = 0;
+			int read = in.read(buffer, 0, buffer.length);
+			while (read > 0 && length + read < buffer.length) {
+				length += read;
+				read = in.read(buffer, length, buffer.length - length);
+			}
+			if (read > 0) {
+				length += read;
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	// parses a whitespace separated numeric field, where 'start' is the offset of field number 'firstField'.
+	private long parseField(final int start, final int firstField, final int field)
+			throws IOException {
+		int index = start;
+		for (int current = firstField; current < field; current++) {
+			while (index < length && buffer[index] != ' ') {
+				index++;
+			}
+			index++;
+		}
+		return parseLong(index);
+	}
+
+	private long parseLong(final int start)
+			throws IOException {
+		int index = start;
+		boolean negative = false;
+		if (index < length && buffer[index] == '-') {
+			negative = true;
+			index++;
+		}
+		if (index >= length || buffer[index] < '0' || buffer[index] > '9') {
+			throw new IOException("Unexpected format of process statistics");
+		}
+		long value = 0;
+		while (index < length && buffer[index] >= '0' && buffer[index] <= '9') {
+			value = value * 10 + buffer[index] - '0';
+			index++;
+		}
+		return negative ? -value : value;
+	}
+
+	// parses the first value of a /proc/[pid]/status line, such as the real ID in "Uid:	1000	1000	1000	1000".
+	private long parseStatusLine(final byte[] prefix)
+			throws IOException {
+		int lineStart = 0;
+		while (lineStart < length) {
+			if (startsWith(lineStart, prefix)) {
+				int index = lineStart + prefix.length;
+				while (index < length && (buffer[index] == '\t' || buffer[index] == ' ')) {
+					index++;
+				}
+				return parseLong(index);
+			}
+			while (lineStart < length && buffer[lineStart] != '\n') {
+				lineStart++;
+			}
+			lineStart++;
+		}
+		return 0;
+	}
+
+	private boolean startsWith(final int offset, final byte[] prefix) {
+		if (offset + prefix.length > length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (buffer[offset + i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// the virtual size is reported in bytes in stat and in pages in statm.
+	private int detectPageSize() {
+		try {
+			readFile("/proc/self/statm");
+			final long pages = parseField(0, 1, STATM_SIZE);
+			if (pages <= 0) {
+				return DEFAULT_PAGE_SIZE;
+			}
+			readFile(PROC_SELF_STAT.getPath());
+			final long bytes = parseField(findStatFieldsStart(), 3, STAT_VSIZE);
+			// the two files are not read atomically, so round to the nearest power of two.
+			final long pageSize = Long.highestOneBit(bytes / pages + bytes / pages / 2);
+			return pageSize < DEFAULT_PAGE_SIZE ? DEFAULT_PAGE_SIZE : (int) pageSize;
+		} catch (final IOException e) {
+			return DEFAULT_PAGE_SIZE;
+		}
+	}
+}
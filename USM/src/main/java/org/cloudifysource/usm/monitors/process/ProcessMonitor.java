@@ -15,22 +15,30 @@
  *******************************************************************************/
 package org.cloudifysource.usm.monitors.process;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.logging.Level;
 
 import org.cloudifysource.usm.UniversalServiceManagerBean;
 import org.cloudifysource.usm.dsl.ServiceConfiguration;
 import org.cloudifysource.usm.monitors.Monitor;
 import org.cloudifysource.usm.monitors.MonitorException;
 import org.hyperic.sigar.Sigar;
+import org.hyperic.sigar.SigarException;
 
 import com.gigaspaces.internal.sigar.SigarHolder;
 
 /*************
- * Monitor implementation that collects operating system metrics using SIGAR.
+ * Monitor implementation that collects operating system metrics of the service processes. On Linux, the metrics are
+ * read from the /proc file system, otherwise using SIGAR.
+ * 
+ * The per-process records, the metric keys and the returned map are kept between calls, so the map returned by a call
+ * is only valid until the next call. With more than one service process, the metrics of each process are published
+ * with the process ID appended to the metric name, and the metric names without a suffix hold the totals of all
+ * processes.
  * 
  * @author barakme
  * @since 2.1.0
@@ -38,39 +46,100 @@ import com.gigaspaces.internal.sigar.SigarHolder;
  */
 public class ProcessMonitor implements Monitor {
 
+	private static java.util.logging.Logger logger =
+			java.util.logging.Logger.getLogger(ProcessMonitor.class.getName());
+
 	private final Sigar sigar = SigarHolder.getSigar();
+	private final ProcFsReader procFsReader = ProcFsReader.isSupported() ? new ProcFsReader() : null;
+
+	private final Map<Long, ProcessRecord> records = new HashMap<Long, ProcessRecord>();
+	private final MonitorData totals = new MonitorData();
+	private final Map<String, Number> values = new HashMap<String, Number>();
 
 	@Override
-	public Map<String, Number> getMonitorValues(final UniversalServiceManagerBean usm,
+	public synchronized Map<String, Number> getMonitorValues(final UniversalServiceManagerBean usm,
 			final ServiceConfiguration config)
 			throws MonitorException {
 
 		final List<Long> pids = usm.getServiceProcessesList();
-
+		values.clear();
 		if (pids.isEmpty()) {
-			return new HashMap<String, Number>();
-		} else if (pids.size() == 1) {
-			final MonitorData data = new MonitorData(sigar, pids.get(0));
-			final Map<String, Number> map = data.getDataMap();
-			return map;
-		} else {
-			// Collect data for all processes, add PID to key name, and return all in one map.
-			final Map<String, Number> allProcessesMap = new HashMap<String, Number>();
-			for (final Long pid : pids) {
-				final MonitorData data = new MonitorData(sigar, pid);
-				final Map<String, Number> map = data.getDataMap();
-				final Set<Entry<String, Number>> entries = map.entrySet();
-				final String postfix = "-" + pid;
-				for (final Entry<String, Number> entry : entries) {
-					allProcessesMap.put(entry.getKey() + postfix, entry.getValue());
-				}
+			records.clear();
+			return values;
+		}
 
+		totals.clear();
+		final boolean multipleProcesses = pids.size() > 1;
+		for (final Long pid : pids) {
+			ProcessRecord record = records.get(pid);
+			if (record == null) {
+				record = new ProcessRecord(pid);
+				records.put(pid, record);
 			}
+			record.collect();
+			totals.add(record.data);
+			if (multipleProcesses) {
+				record.data.putData(values, record.getKeys());
+			}
+		}
+		totals.putData(values, MonitorData.METRIC_NAMES);
 
-			return allProcessesMap;
+		if (records.size() > pids.size()) {
+			final Iterator<Long> iterator = records.keySet().iterator();
+			while (iterator.hasNext()) {
+				if (!pids.contains(iterator.next())) {
+					iterator.remove();
+				}
+			}
+		}
+		return values;
+	}
 
+	/*************
+	 * The reusable record of a service process.
+	 */
+	private final class ProcessRecord {
+
+		private final long pid;
+		private final MonitorData data = new MonitorData();
+		private final ProcFsReader.ProcessFiles files;
+		private boolean credentialsRead;
+		private String[] keys;
+
+		private ProcessRecord(final long pid) {
+			this.pid = pid;
+			this.files = procFsReader == null ? null : new ProcFsReader.ProcessFiles(pid);
+		}
+
+		private void collect() {
+			data.clear();
+			if (procFsReader == null) {
+				try {
+					data.gatherData(sigar, pid);
+				} catch (final SigarException e) {
+					logger.log(Level.FINE, "Failed to gather process info from Sigar: " + e.getMessage(), e);
+				}
+				return;
+			}
+
+			try {
+				procFsReader.read(files, !credentialsRead, data);
+				credentialsRead = true;
+			} catch (final IOException e) {
+				logger.log(Level.FINE, "Failed to read process info of process " + pid + ": " + e.getMessage(), e);
+			}
 		}
 
+		private String[] getKeys() {
+			if (keys == null) {
+				final String postfix = "-" + pid;
+				keys = new String[MonitorData.METRIC_NAMES.length];
+				for (int i = 0; i < keys.length; i++) {
+					keys[i] = MonitorData.METRIC_NAMES[i] + postfix;
+				}
+			}
+			return keys;
+		}
 	}
 
 }
@@ -16,6 +16,7 @@ import java.util.List;
 import java.util.logging.Level;
 
 import org.cloudifysource.dsl.internal.CloudifyConstants;
+import org.cloudifysource.dsl.utils.ProcessTableSnapshot;
 import org.cloudifysource.usm.USMException;
 import org.cloudifysource.usm.UniversalServiceManagerBean;
 import org.cloudifysource.usm.events.AbstractUSMEventListener;
@@ -110,7 +111,7 @@ public class ProcessStopDetector extends AbstractUSMEventListener implements Sto
 	// The sigar based process detection is problematic. When a process dies, sigar sometimes does not detect the death.
 	// We solve this by creating a new sigar instance every predetermined time interval.
 	/*********
-	 * Checks, using Sigar, is a given process is alive.
+	 * Checks, using /proc where available and Sigar otherwise, is a given process is alive.
 	 *
 	 * @param pid
 	 *            the process pid.
@@ -121,6 +122,11 @@ public class ProcessStopDetector extends AbstractUSMEventListener implements Sto
 	public boolean isProcessAlive(final long pid)
 			throws USMException {
 
+		// read the state of the single process, a shared snapshot may miss a process that was just started.
+		if (ProcessTableSnapshot.isProcAvailable()) {
+			return ProcessTableSnapshot.isProcessAlive(pid);
+		}
+
 		final ProcState procState = getProcState(pid);
 		return (procState != null && procState.getState() != ProcState.STOP
 				&& procState.getState() != ProcState.ZOMBIE);
@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.tail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+import org.cloudifysource.usm.tail.RollingFileAppenderTailer.LineHandler;
+
+/**
+ * Tails files on behalf of components that wait for a line matching a pattern to be written, such as start detectors
+ * that look for a message in a process log. All subscriptions of a USM are served by a single thread that samples the
+ * subscribed files at a short interval, using the same {@link RollingFileReader} engine as the output and error file
+ * tailer, so a matching line is found shortly after it is flushed.
+ *
+ * Each subscription reads its file from the beginning, and completes on the first line that matches its pattern. A last
+ * line that is not terminated is matched once a sample finds no new content in the file. The sampling thread runs only
+ * while there are pending subscriptions.
+ *
+ * @since 2.7.0
+ *
+ */
+public class FileTailService {
+
+	/**
+	 * The default interval between samples of the subscribed files.
+	 */
+	public static final long DEFAULT_SAMPLING_INTERVAL_MILLIS = 100;
+
+	// the maximal number of bytes read from one file before moving on to the next one.
+	private static final long MAX_BYTES_PER_FILE_READ = 1024 * 1024;
+
+	private static java.util.logging.Logger logger = java.util.logging.Logger.getLogger(FileTailService.class
+			.getName());
+
+	/*********
+	 * Callback of a subscription.
+	 */
+	public interface MatchListener {
+
+		/****************
+		 * Called, in the tail service thread, when the first line matching the subscription pattern is read.
+		 *
+		 * @param file
+		 *            the tailed file.
+		 * @param line
+		 *            the matching line.
+		 */
+		void lineMatched(File file, String line);
+	}
+
+	private final long samplingIntervalMillis;
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Constructor.
+	 */
+	public FileTailService() {
+		this(DEFAULT_SAMPLING_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param samplingIntervalMillis
+	 *            the interval between samples of the subscribed files.
+	 */
+	public FileTailService(final long samplingIntervalMillis) {
+		this.samplingIntervalMillis = samplingIntervalMillis;
+	}
+
+	/**
+	 * Subscribes for the first line of a file that matches a pattern. The file does not have to exist yet.
+	 *
+	 * @param file
+	 *            the file.
+	 * @param pattern
+	 *            the pattern, a line matches it if the pattern is found in the line.
+	 * @param listener
+	 *            called when a matching line is found, may be null.
+	 * @return the subscription.
+	 */
+	public Subscription subscribe(final File file, final Pattern pattern, final MatchListener listener) {
+		final Subscription subscription = new Subscription(file, pattern, listener);
+		subscriptions.add(subscription);
+		startIfRequired();
+		return subscription;
+	}
+
+	private synchronized void startIfRequired() {
+		if (executor != null) {
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "FileTailService");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				sample();
+			}
+		}, 0, samplingIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return true if the sampling thread is running, for tests.
+	 */
+	synchronized boolean isSampling() {
+		return executor != null;
+	}
+
+	private synchronized void stopIfIdle() {
+		if (executor != null && subscriptions.isEmpty()) {
+			// may run in the sampling thread, so it is not interrupted.
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Stops the tail service. Pending subscriptions are cancelled.
+	 */
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		for (final Subscription subscription : subscriptions) {
+			subscription.cancel();
+		}
+	}
+
+	private void sample() {
+		for (final Subscription subscription : subscriptions) {
+			try {
+				subscription.read();
+			} catch (final Exception e) {
+				logger.log(Level.WARNING, "Failed to read file " + subscription.file + ": " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * A subscription for a line matching a pattern.
+	 */
+	public final class Subscription implements LineHandler {
+
+		private final File file;
+		private final Pattern pattern;
+		private final MatchListener listener;
+		private final RollingFileReader reader;
+		private final CountDownLatch completed = new CountDownLatch(1);
+		private volatile String matchingLine;
+		private boolean partialLineChecked;
+
+		private Subscription(final File file, final Pattern pattern, final MatchListener listener) {
+			this.file = file;
+			this.pattern = pattern;
+			this.listener = listener;
+			this.reader = new RollingFileReader(file);
+		}
+
+		private void read()
+				throws IOException {
+			if (!file.exists()) {
+				return;
+			}
+			if (!reader.wasModified()) {
+				// no new content, so the last line may never be terminated, e.g. when written with print.
+				matchPartialLine();
+				return;
+			}
+			partialLineChecked = false;
+			while (completed.getCount() > 0 && reader.wasModified()) {
+				reader.readLines(this, MAX_BYTES_PER_FILE_READ);
+				if (!reader.hasPendingData()) {
+					break;
+				}
+			}
+		}
+
+		private void matchPartialLine() {
+			if (partialLineChecked) {
+				return;
+			}
+			partialLineChecked = true;
+			final String line = reader.getPartialLine();
+			if (line != null) {
+				handleLine(file.getName(), line);
+			}
+		}
+
+		@Override
+		public void handleLine(final String fileName, final String line) {
+			if (completed.getCount() == 0 || !pattern.matcher(line).find()) {
+				return;
+			}
+			matchingLine = line;
+			// waiters are released once the listener was called.
+			try {
+				if (listener != null) {
+					listener.lineMatched(file, line);
+				}
+			} finally {
+				cancel();
+			}
+		}
+
+		/**
+		 * Waits for a matching line.
+		 *
+		 * @param timeout
+		 *            the maximal time to wait.
+		 * @param unit
+		 *            the time unit of the timeout.
+		 * @return true if a matching line was found, false if the timeout elapsed or the subscription was cancelled.
+		 * @throws InterruptedException
+		 *             if interrupted while waiting.
+		 */
+		public boolean await(final long timeout, final TimeUnit unit)
+				throws InterruptedException {
+			completed.await(timeout, unit);
+			return isMatched();
+		}
+
+		/**
+		 * @return true if a matching line was found.
+		 */
+		public boolean isMatched() {
+			return matchingLine != null;
+		}
+
+		/**
+		 * @return the matching line, or null if it was not found.
+		 */
+		public String getMatchingLine() {
+			return matchingLine;
+		}
+
+		/**
+		 * Stops tailing the file.
+		 */
+		public void cancel() {
+			subscriptions.remove(this);
+			stopIfIdle();
+			completed.countDown();
+		}
+	}
+}
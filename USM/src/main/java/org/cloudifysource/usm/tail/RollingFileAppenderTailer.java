@@ -17,6 +17,7 @@ import java.io.FilenameFilter;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -28,6 +29,10 @@ import java.util.regex.Pattern;
  * opening the files and when finding that a file has been modified, only then open the file, "grab" the newly added
  * lines and close the file when done.
  *
+ * Files are read in bounded steps, one file after the other, until all of them are read to their end, so a burst of
+ * output in one file does not hold back the lines of the others. Java 6 has no file system notifications, so the
+ * directory is still sampled periodically.
+ *
  * @author adaml
  *
  */
@@ -68,11 +73,11 @@ public class RollingFileAppenderTailer implements Runnable {
 
 	}
 
-	private static final String BREAK_BY_LINES_NO_EMPTY_LINES_REGEX = "\\r?\\n+";
 	private static final int DEFAULT_SAMPLING_DELAY = 2000;
+	// the maximal number of bytes read from one file before moving on to the next one.
+	private static final long MAX_BYTES_PER_FILE_READ = 1024 * 1024;
 	private final String logsDirectory;
-	private final String regex;
-	private final Pattern lineSplitPattern = Pattern.compile(BREAK_BY_LINES_NO_EMPTY_LINES_REGEX);
+	private final Pattern fileNamePattern;
 
 	private final Map<String, RollingFileReader> logFileMap = new HashMap<String, RollingFileReader>();
 
@@ -92,7 +97,7 @@ public class RollingFileAppenderTailer implements Runnable {
 	 */
 	public RollingFileAppenderTailer(final String dir, final String regex) {
 		this.logsDirectory = dir;
-		this.regex = regex;
+		this.fileNamePattern = Pattern.compile(regex);
 	}
 
 	/****************
@@ -107,7 +112,7 @@ public class RollingFileAppenderTailer implements Runnable {
 	 */
 	public RollingFileAppenderTailer(final String dir, final String regex, final LineHandler handler) {
 		this.logsDirectory = dir;
-		this.regex = regex;
+		this.fileNamePattern = Pattern.compile(regex);
 		this.handler = handler;
 	}
 
@@ -124,7 +129,7 @@ public class RollingFileAppenderTailer implements Runnable {
 	 */
 	public RollingFileAppenderTailer(final String dir, final String regex, final long samplingDelay) {
 		this.logsDirectory = dir;
-		this.regex = regex;
+		this.fileNamePattern = Pattern.compile(regex);
 	}
 
 	/**
@@ -170,16 +175,22 @@ public class RollingFileAppenderTailer implements Runnable {
 
 		try {
 			getLogFilesMap(logFileMap);
-			for (final String key : logFileMap.keySet()) {
-				if (logFileMap.get(key).wasModified()) {
-					final String lines = logFileMap.get(key).readLines();
-					final String[] seporatedLines = lineSplitPattern.split(lines);
-					for (final String line : seporatedLines) {
-						handler.handleLine(key, line);
-						// logger.info(line);
+			boolean firstPass = true;
+			boolean pendingData;
+			do {
+				pendingData = false;
+				for (final Entry<String, RollingFileReader> entry : logFileMap.entrySet()) {
+					final RollingFileReader reader = entry.getValue();
+					if (reader.wasModified()) {
+						reader.readLines(handler, MAX_BYTES_PER_FILE_READ);
+						pendingData |= reader.hasPendingData();
+					} else if (firstPass) {
+						// nothing was written since the last sample, the last line is not going to be completed soon.
+						reader.flushPartialLine(handler);
 					}
 				}
-			}
+				firstPass = false;
+			} while (pendingData);
 
 		} catch (final Exception e) {
 			logger.warning("Exception thrown: " + e.getMessage());
@@ -201,9 +212,12 @@ public class RollingFileAppenderTailer implements Runnable {
 
 			@Override
 			public boolean accept(final File dir, final String name) {
-				return java.util.regex.Pattern.matches(regex, name);
+				return fileNamePattern.matcher(name).matches();
 			}
 		});
+		if (files == null) {
+			return;
+		}
 
 		// add newly created files if exist.
 		for (final File file : files) {
@@ -217,6 +231,7 @@ public class RollingFileAppenderTailer implements Runnable {
 		while (iterator.hasNext()) {
 			final RollingFileReader next = iterator.next();
 			if (!next.exists()) {
+				next.flushPartialLine(handler);
 				iterator.remove();
 			}
 		}
@@ -19,6 +19,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.logging.Level;
+
+import org.cloudifysource.usm.tail.RollingFileAppenderTailer.LineHandler;
+import org.hyperic.sigar.FileInfo;
+import org.hyperic.sigar.SigarException;
+
+import com.gigaspaces.internal.sigar.SigarHolder;
 
 /**
  * RollingFileReader was created in-order for an application to be able to access a file and tail it without locking it.
@@ -26,12 +33,20 @@ import java.io.RandomAccessFile;
  * close the file. the RFR remembers it's file-pointer and when reopening the file, the RFR will read the lines from the
  * point where it left-off.
  * 
+ * New content is read in fixed size chunks into a reused buffer and split into lines as it is read, so memory use does
+ * not depend on how much was written since the last read. A line that is not terminated yet is kept until the rest of
+ * it is written, or until a read finds no new content. The file is considered rolled when its identity (device and
+ * inode) changes, or, where the identity is not available, when it is shorter than the read position.
+ * 
  * @author adaml
  */
 public class RollingFileReader {
 
 	private static final int TIMEOUT_BETWEEN_RETRIES = 1000;
 	private static final int DEFAULT_NUMBER_OF_RETRIES = 5;
+	private static final int CHUNK_SIZE = 64 * 1024;
+	// longer lines are handled in parts.
+	private static final int MAX_LINE_LENGTH = 64 * 1024;
 	private static java.util.logging.Logger logger = java.util.logging.Logger.getLogger(RollingFileReader.class
 			.getName());
 
@@ -42,6 +57,13 @@ public class RollingFileReader {
 
 	private int retryCounter;
 	private long fileLength;
+	private boolean pendingData;
+	private String fileIdentity;
+	private boolean fileIdentityAvailable = true;
+
+	private final byte[] buffer = new byte[CHUNK_SIZE];
+	private final byte[] lineBuffer = new byte[MAX_LINE_LENGTH];
+	private int lineLength;
 
 	/**
 	 * Constructor.
@@ -58,13 +80,21 @@ public class RollingFileReader {
 	/**
 	 * checks if the modification time of the file matches the last modification time since the file was last tailed.
 	 * 
-	 * @return true if the file has been modified since last polled.
+	 * @return true if the file has been modified since last polled, or if the last read did not reach its end.
 	 */
 	public boolean wasModified() {
-		return this.lastModified != file.lastModified() || this.fileLength != file.length();
+		return this.pendingData || this.lastModified != file.lastModified() || this.fileLength != file.length();
 
 	}
 
+	/**
+	 * 
+	 * @return true if the last read stopped before the end of the file.
+	 */
+	public boolean hasPendingData() {
+		return pendingData;
+	}
+
 	/**
 	 * reads the new lines added to the log file. The method supports RollingFileAppender tailing by not keeping the
 	 * file open and opening the file only when a changes have been made to it. After reading the changes, the file will
@@ -79,61 +109,182 @@ public class RollingFileReader {
 	 */
 	public String readLines()
 			throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		final LineHandler collector = new LineHandler() {
+			@Override
+			public void handleLine(final String fileName, final String line) {
+				sb.append(line).append('\n');
+			}
+		};
+		readLines(collector, Long.MAX_VALUE);
+		flushPartialLine(collector);
+		return sb.toString();
+	}
+
+	/**
+	 * reads new lines added to the log file, passing each complete line to the handler as soon as it is read. Empty
+	 * lines are skipped. Lines are handled in the reading thread, so a slow handler slows down the reading rather than
+	 * causing unread content to pile up in memory.
+	 * 
+	 * @param handler the handler of the read lines.
+	 * @param maxBytes the maximal number of bytes to read. If the file has more new content, {@link #hasPendingData()}
+	 *        returns true and the rest is read by the following calls.
+	 * @throws IOException Indicates the lines were not read because of an IO exception
+	 */
+	public void readLines(final LineHandler handler, final long maxBytes)
+			throws IOException {
 
 		RandomAccessFile randomAccessFile = null;
+		while (randomAccessFile == null) {
+			try {
+				randomAccessFile = new RandomAccessFile(this.file, "r");
+			} catch (final FileNotFoundException e) {
+				// in-case we try to access the file at the exact time it is being rolled.
+				retryCounter++;
+				if (retryCounter > DEFAULT_NUMBER_OF_RETRIES) {
+					logger.warning("In RollingFileReader: file not found." + DEFAULT_NUMBER_OF_RETRIES
+							+ " Retries failed.");
+					this.exists = false;
+					this.pendingData = false;
+					flushPartialLine(handler);
+					return;
+				}
+				try {
+					logger.warning("file not found: " + file.getName() + ". Retring attempt #" + retryCounter);
+					Thread.sleep(TIMEOUT_BETWEEN_RETRIES);
+				} catch (final InterruptedException e1) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
 
 		try {
-
-			randomAccessFile = new RandomAccessFile(this.file, "r");
-
-			if (this.filePointer > randomAccessFile.length()) {
+			final long length = randomAccessFile.length();
+			final String identity = getFileIdentity();
+			if (identity != null && this.fileIdentity != null && !identity.equals(this.fileIdentity)
+					|| this.filePointer > length) {
 				// the file must have been rolled. Start form the beginning of the new file.
+				flushPartialLine(handler);
 				this.filePointer = 0;
 			}
+			if (identity != null) {
+				this.fileIdentity = identity;
+			}
 
 			// set the file pointer in the new RandomFileAccess.
 			randomAccessFile.seek(filePointer);
 
-			// allocate buffer size.
-			final byte[] buffer = new byte[(int) randomAccessFile.length() - (int) this.filePointer];
-
-			// read all new data into the buffer.
-			randomAccessFile.read(buffer);
-
-			// save the last filePointer location before closing the file.
-			this.filePointer = randomAccessFile.length();
+			long remaining = Math.min(length - this.filePointer, maxBytes);
+			while (remaining > 0) {
+				final int read = randomAccessFile.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (read <= 0) {
+					break;
+				}
+				handleChunk(read, handler);
+				this.filePointer += read;
+				remaining -= read;
+			}
 
+			this.pendingData = this.filePointer < length;
+			this.lastModified = this.file.lastModified();
+			this.fileLength = length;
+			retryCounter = 0;
+		} finally {
 			randomAccessFile.close();
+		}
 
-			this.lastModified = this.file.lastModified();
+	}
 
-			retryCounter = 0;
+	/**
+	 * passes the line that was read but not terminated yet, if there is one, to the handler.
+	 * 
+	 * @param handler the line handler.
+	 */
+	public void flushPartialLine(final LineHandler handler) {
+		if (lineLength > 0) {
+			handleLine(handler);
+		}
+	}
 
-			this.fileLength = file.length();
-
-			return new String(buffer);
-		} catch (final FileNotFoundException e) {
-			// in-case we try to access the file at the exact time it is being rolled.
-			retryCounter++;
-			if (retryCounter > DEFAULT_NUMBER_OF_RETRIES) {
-				logger.warning("In RollingFileReader: file not found." + DEFAULT_NUMBER_OF_RETRIES
-						+ " Retries failed.");
-				this.exists = false;
-				return "";
-			}
-			try {
-				logger.warning("file not found: " + file.getName() + ". Retring attempt #" + retryCounter);
-				Thread.sleep(TIMEOUT_BETWEEN_RETRIES);
-			} catch (final InterruptedException e1) {
-				e1.printStackTrace();
+	/**
+	 * returns the line that was read but not terminated yet, without consuming it. It is passed to the handler once
+	 * it is terminated, or by {@link #flushPartialLine(LineHandler)}.
+	 * 
+	 * @return the partial line, or null if there is none.
+	 */
+	public String getPartialLine() {
+		final int length = getLineLength();
+		return length > 0 ? new String(lineBuffer, 0, length) : null;
+	}
+
+	private void handleChunk(final int length, final LineHandler handler) {
+		int lineStart = 0;
+		for (int i = 0; i < length; i++) {
+			if (buffer[i] == '\n') {
+				appendToLine(lineStart, i, handler);
+				handleLine(handler);
+				lineStart = i + 1;
 			}
-			return readLines();
-		} finally {
-			if (randomAccessFile != null) {
-				randomAccessFile.close();
+		}
+		appendToLine(lineStart, length, handler);
+	}
+
+	private void appendToLine(final int start, final int end, final LineHandler handler) {
+		int position = start;
+		while (position < end) {
+			if (lineLength == lineBuffer.length) {
+				handleLine(handler);
 			}
+			final int count = Math.min(end - position, lineBuffer.length - lineLength);
+			System.arraycopy(buffer, position, lineBuffer, lineLength, count);
+			lineLength += count;
+			position += count;
 		}
+	}
+
+	private void handleLine(final LineHandler handler) {
+		final int length = getLineLength();
+		lineLength = 0;
+		if (length > 0) {
+			handler.handleLine(file.getName(), new String(lineBuffer, 0, length));
+		}
+	}
 
+	// the length of the current line, without the carriage return of a Windows line terminator.
+	private int getLineLength() {
+		if (lineLength > 0 && lineBuffer[lineLength - 1] == '\r') {
+			return lineLength - 1;
+		}
+		return lineLength;
+	}
+
+	// device and inode of the file, or null if they are not available.
+	private String getFileIdentity() {
+		if (!fileIdentityAvailable) {
+			return null;
+		}
+		try {
+			final FileInfo info = SigarHolder.getSigar().getFileInfo(file.getAbsolutePath());
+			if (info.getInode() == 0) {
+				// not supported on this platform
+				fileIdentityAvailable = false;
+				return null;
+			}
+			return info.getDevice() + ":" + info.getInode();
+		} catch (final SigarException e) {
+			// the file may have been rolled just now, the next read will check again.
+			logger.log(Level.FINE, "Failed to read the identity of file " + file, e);
+			return null;
+		} catch (final LinkageError e) {
+			logger.log(Level.FINE, "File identity is not available, rolled files are detected by their size", e);
+			fileIdentityAvailable = false;
+			return null;
+		} catch (final RuntimeException e) {
+			logger.log(Level.FINE, "File identity is not available, rolled files are detected by their size", e);
+			fileIdentityAvailable = false;
+			return null;
+		}
 	}
 
 	/**
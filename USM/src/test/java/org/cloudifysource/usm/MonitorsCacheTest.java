@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.dsl.internal.CloudifyConstants;
+import org.cloudifysource.dsl.internal.CloudifyConstants.USMState;
+import org.cloudifysource.usm.dsl.ServiceConfiguration;
+import org.cloudifysource.usm.monitors.Monitor;
+import org.cloudifysource.usm.monitors.MonitorException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openspaces.pu.service.CustomServiceMonitors;
+
+public class MonitorsCacheTest {
+
+	private static final long CACHE_EXPIRATION_MILLIS = 50;
+	private static final long MONITOR_TIMEOUT_MILLIS = 200;
+	private static final long WAIT_MILLIS = 10000;
+
+	private UniversalServiceManagerBean usm;
+	private USMLifecycleBean lifecycleBean;
+	private MonitorsCache cache;
+
+	@Before
+	public void before() {
+		usm = mock(UniversalServiceManagerBean.class);
+		when(usm.getState()).thenReturn(USMState.RUNNING);
+		when(usm.getServiceProcessesList()).thenReturn(new ArrayList<Long>());
+		lifecycleBean = mock(USMLifecycleBean.class);
+		when(lifecycleBean.getStartDetectionDurationMillis()).thenReturn(-1L);
+	}
+
+	@After
+	public void after() {
+		if (cache != null) {
+			cache.shutdown();
+		}
+	}
+
+	private void setMonitors(final Monitor... monitors) {
+		when(lifecycleBean.getMonitors()).thenReturn(monitors);
+		cache = new MonitorsCache(usm, lifecycleBean, CACHE_EXPIRATION_MILLIS, MONITOR_TIMEOUT_MILLIS);
+	}
+
+	private Map<String, Object> getMonitorValues() {
+		return ((CustomServiceMonitors) cache.getMonitors()[0]).getMonitors();
+	}
+
+	// waits for the monitors to include the given key, returning them.
+	private Map<String, Object> waitForKey(final String key)
+			throws InterruptedException {
+		final long end = System.currentTimeMillis() + WAIT_MILLIS;
+		Map<String, Object> values = getMonitorValues();
+		while (!values.containsKey(key) && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+			values = getMonitorValues();
+		}
+		return values;
+	}
+
+	private static Monitor valueMonitor(final String key, final Number value) {
+		return new Monitor() {
+			@Override
+			public Map<String, Number> getMonitorValues(final UniversalServiceManagerBean usm,
+					final ServiceConfiguration config) {
+				return Collections.singletonMap(key, value);
+			}
+		};
+	}
+
+	@Test
+	public void testMonitorsNotExecutedWhileNotRunning() throws Exception {
+		when(usm.getState()).thenReturn(USMState.LAUNCHING);
+		final AtomicInteger executions = new AtomicInteger();
+		setMonitors(new Monitor() {
+			@Override
+			public Map<String, Number> getMonitorValues(final UniversalServiceManagerBean usm,
+					final ServiceConfiguration config) {
+				executions.incrementAndGet();
+				return Collections.<String, Number>singletonMap("value", 1);
+			}
+		});
+
+		final Map<String, Object> values = getMonitorValues();
+		Assert.assertEquals(USMState.LAUNCHING.ordinal(), values.get(CloudifyConstants.USM_MONITORS_STATE_ID));
+		Assert.assertFalse(values.containsKey("value"));
+
+		Thread.sleep(CACHE_EXPIRATION_MILLIS * 4);
+		Assert.assertEquals(0, executions.get());
+	}
+
+	@Test
+	public void testValuesRefreshedInBackground() throws Exception {
+		final AtomicInteger counter = new AtomicInteger();
+		setMonitors(new Monitor() {
+			@Override
+			public Map<String, Number> getMonitorValues(final UniversalServiceManagerBean usm,
+					final ServiceConfiguration config) {
+				return Collections.<String, Number>singletonMap("counter", counter.incrementAndGet());
+			}
+		});
+
+		final Map<String, Object> values = waitForKey("counter");
+		Assert.assertTrue(values.containsKey("counter"));
+		Assert.assertEquals(USMState.RUNNING.ordinal(), values.get(CloudifyConstants.USM_MONITORS_STATE_ID));
+
+		// the monitor keeps being executed without readers waiting for it.
+		final int first = (Integer) values.get("counter");
+		final long end = System.currentTimeMillis() + WAIT_MILLIS;
+		while ((Integer) getMonitorValues().get("counter") == first && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		Assert.assertTrue((Integer) getMonitorValues().get("counter") > first);
+	}
+
+	@Test
+	public void testHangingMonitorIsInterruptedAndReportedStale() throws Exception {
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		final Monitor hangingMonitor = new Monitor() {
+			@Override
+			public Map<String, Number> getMonitorValues(final UniversalServiceManagerBean usm,
+					final ServiceConfiguration config)
+					throws MonitorException {
+				try {
+					Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+				} catch (final InterruptedException e) {
+					interrupted.countDown();
+					throw new MonitorException("interrupted", e);
+				}
+				return Collections.<String, Number>singletonMap("hanging", 1);
+			}
+		};
+		setMonitors(hangingMonitor, valueMonitor("good", 2));
+
+		// the hanging monitor does not hold back the others.
+		Map<String, Object> values = waitForKey("good");
+		Assert.assertEquals(2, values.get("good"));
+		Assert.assertFalse(values.containsKey("hanging"));
+
+		final String stalenessKey = CloudifyConstants.USM_MONITORS_STALENESS_PREFIX
+				+ hangingMonitor.getClass().getSimpleName() + "#0";
+		values = waitForKey(stalenessKey);
+		Assert.assertTrue(values.containsKey(stalenessKey));
+		Assert.assertTrue(((Number) values.get(stalenessKey)).longValue() > CACHE_EXPIRATION_MILLIS
+				+ MONITOR_TIMEOUT_MILLIS);
+		Assert.assertTrue(interrupted.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testLastGoodValuesKeptOnFailure() throws Exception {
+		final AtomicInteger executions = new AtomicInteger();
+		setMonitors(new Monitor() {
+			@Override
+			public Map<String, Number> getMonitorValues(final UniversalServiceManagerBean usm,
+					final ServiceConfiguration config)
+					throws MonitorException {
+				if (executions.incrementAndGet() > 1) {
+					throw new MonitorException("failed monitor");
+				}
+				return Collections.<String, Number>singletonMap("value", 1);
+			}
+		});
+
+		Assert.assertEquals(1, waitForKey("value").get("value"));
+
+		final long end = System.currentTimeMillis() + WAIT_MILLIS;
+		while (executions.get() < 3 && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		Assert.assertTrue(executions.get() >= 3);
+		Assert.assertEquals(1, getMonitorValues().get("value"));
+	}
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.jmx;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanServerConnection;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.remote.JMXConnectionNotification;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXServiceURL;
+import javax.security.auth.Subject;
+
+/**
+ * Opens fake JMX connectors, whose connections answer getAttributes with the attribute names as values, or fail with
+ * an IOException a given number of times.
+ */
+class FakeConnectorFactory implements JmxConnectionPool.ConnectorFactory {
+
+	private final List<FakeConnector> connectors = new ArrayList<FakeConnector>();
+	private final List<JMXServiceURL> urls = new ArrayList<JMXServiceURL>();
+	private IOException connectFailure;
+	private int getAttributesFailures;
+	private int getAttributesCalls;
+
+	@Override
+	public synchronized JMXConnector connect(final JMXServiceURL url, final Map<String, ?> environment)
+			throws IOException {
+		urls.add(url);
+		if (connectFailure != null) {
+			throw connectFailure;
+		}
+		final FakeConnector connector = new FakeConnector(connectors.size());
+		connectors.add(connector);
+		return connector;
+	}
+
+	synchronized void setConnectFailure(final IOException connectFailure) {
+		this.connectFailure = connectFailure;
+	}
+
+	synchronized void setGetAttributesFailures(final int getAttributesFailures) {
+		this.getAttributesFailures = getAttributesFailures;
+	}
+
+	synchronized int getConnectAttempts() {
+		return urls.size();
+	}
+
+	synchronized List<JMXServiceURL> getUrls() {
+		return new ArrayList<JMXServiceURL>(urls);
+	}
+
+	synchronized FakeConnector getConnector(final int index) {
+		return connectors.get(index);
+	}
+
+	synchronized int getGetAttributesCalls() {
+		return getAttributesCalls;
+	}
+
+	private synchronized AttributeList getAttributes(final String[] names)
+			throws IOException {
+		++getAttributesCalls;
+		if (getAttributesFailures > 0) {
+			--getAttributesFailures;
+			throw new IOException("connection reset");
+		}
+		final AttributeList attributes = new AttributeList();
+		for (final String name : names) {
+			attributes.add(new Attribute(name, name));
+		}
+		return attributes;
+	}
+
+	/**
+	 * A connector that is connected once created.
+	 */
+	final class FakeConnector implements JMXConnector {
+
+		private final String connectionId;
+		private final MBeanServerConnection connection;
+		private NotificationListener listener;
+		private boolean closed;
+
+		private FakeConnector(final int index) {
+			this.connectionId = "connection" + index;
+			this.connection = (MBeanServerConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] { MBeanServerConnection.class }, new InvocationHandler() {
+						@Override
+						public Object invoke(final Object proxy, final Method method, final Object[] args)
+								throws Throwable {
+							if (method.getName().equals("getAttributes")) {
+								return getAttributes((String[]) args[1]);
+							}
+							throw new UnsupportedOperationException(method.getName());
+						}
+					});
+		}
+
+		@Override
+		public void connect() {
+			// connected once created.
+		}
+
+		@Override
+		public void connect(final Map<String, ?> env) {
+			// connected once created.
+		}
+
+		@Override
+		public MBeanServerConnection getMBeanServerConnection() {
+			return connection;
+		}
+
+		@Override
+		public MBeanServerConnection getMBeanServerConnection(final Subject delegationSubject) {
+			return connection;
+		}
+
+		@Override
+		public synchronized void close() {
+			closed = true;
+		}
+
+		@Override
+		public synchronized void addConnectionNotificationListener(final NotificationListener listener,
+				final NotificationFilter filter, final Object handback) {
+			this.listener = listener;
+		}
+
+		@Override
+		public synchronized void removeConnectionNotificationListener(final NotificationListener listener)
+				throws ListenerNotFoundException {
+			if (this.listener != listener) {
+				throw new ListenerNotFoundException();
+			}
+			this.listener = null;
+		}
+
+		@Override
+		public void removeConnectionNotificationListener(final NotificationListener listener,
+				final NotificationFilter filter, final Object handback)
+				throws ListenerNotFoundException {
+			removeConnectionNotificationListener(listener);
+		}
+
+		@Override
+		public String getConnectionId() {
+			return connectionId;
+		}
+
+		synchronized boolean isClosed() {
+			return closed;
+		}
+
+		synchronized boolean hasListener() {
+			return listener != null;
+		}
+
+		// reports a connection notification, as the JMX client does.
+		void notify(final String type) {
+			final NotificationListener currentListener;
+			synchronized (this) {
+				currentListener = listener;
+			}
+			if (currentListener != null) {
+				currentListener.handleNotification(
+						new JMXConnectionNotification(type, this, connectionId, 0, null, null), null);
+			}
+		}
+	}
+}
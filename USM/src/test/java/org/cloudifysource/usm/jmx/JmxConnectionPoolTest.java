@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.jmx;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnectionNotification;
+import javax.management.remote.JMXServiceURL;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class JmxConnectionPoolTest {
+
+	private static final Map<String, Object> ENVIRONMENT = new HashMap<String, Object>();
+
+	private FakeConnectorFactory connectorFactory;
+	private JmxConnectionPool pool;
+	private JMXServiceURL url;
+	private String key;
+
+	@Before
+	public void before() throws Exception {
+		connectorFactory = new FakeConnectorFactory();
+		pool = new JmxConnectionPool(connectorFactory);
+		url = createUrl(8080);
+		key = JmxConnectionPool.createKey(url, "user", "password");
+	}
+
+	@Test
+	public void testConnectionReusedPerUrlAndCredentials() throws Exception {
+		final MBeanServerConnection connection = pool.getConnection(key, url, ENVIRONMENT);
+		Assert.assertSame(connection, pool.getConnection(key, url, ENVIRONMENT));
+		Assert.assertEquals(1, connectorFactory.getConnectAttempts());
+
+		// other credentials and other servers get their own connections.
+		final String otherUserKey = JmxConnectionPool.createKey(url, "other", "password");
+		final MBeanServerConnection otherUserConnection = pool.getConnection(otherUserKey, url, ENVIRONMENT);
+		Assert.assertNotSame(connection, otherUserConnection);
+		final JMXServiceURL otherUrl = createUrl(8081);
+		final String otherUrlKey = JmxConnectionPool.createKey(otherUrl, "user", "password");
+		final MBeanServerConnection otherUrlConnection = pool.getConnection(otherUrlKey, otherUrl, ENVIRONMENT);
+		Assert.assertNotSame(connection, otherUrlConnection);
+		Assert.assertNotSame(otherUserConnection, otherUrlConnection);
+		Assert.assertEquals(Arrays.asList(url, url, otherUrl), connectorFactory.getUrls());
+
+		Assert.assertSame(otherUserConnection, pool.getConnection(otherUserKey, url, ENVIRONMENT));
+		Assert.assertSame(otherUrlConnection, pool.getConnection(otherUrlKey, otherUrl, ENVIRONMENT));
+		Assert.assertEquals(3, connectorFactory.getConnectAttempts());
+	}
+
+	@Test
+	public void testInvalidatedConnectionIsClosed() throws Exception {
+		final MBeanServerConnection connection = pool.getConnection(key, url, ENVIRONMENT);
+		final FakeConnectorFactory.FakeConnector connector = connectorFactory.getConnector(0);
+
+		pool.invalidate(key, connection);
+		Assert.assertTrue(connector.isClosed());
+		Assert.assertFalse(connector.hasListener());
+
+		final MBeanServerConnection reconnected = pool.getConnection(key, url, ENVIRONMENT);
+		Assert.assertNotSame(connection, reconnected);
+		Assert.assertEquals(2, connectorFactory.getConnectAttempts());
+
+		// a late report of the old connection does not close the new one.
+		pool.invalidate(key, connection);
+		Assert.assertFalse(connectorFactory.getConnector(1).isClosed());
+		Assert.assertSame(reconnected, pool.getConnection(key, url, ENVIRONMENT));
+	}
+
+	@Test
+	public void testFailedConnectorIsEvicted() throws Exception {
+		final MBeanServerConnection connection = pool.getConnection(key, url, ENVIRONMENT);
+		final FakeConnectorFactory.FakeConnector connector = connectorFactory.getConnector(0);
+
+		connector.notify(JMXConnectionNotification.FAILED);
+		Assert.assertTrue(connector.isClosed());
+
+		Assert.assertNotSame(connection, pool.getConnection(key, url, ENVIRONMENT));
+		Assert.assertEquals(2, connectorFactory.getConnectAttempts());
+
+		// the other notifications keep the connection.
+		connectorFactory.getConnector(1).notify(JMXConnectionNotification.NOTIFS_LOST);
+		Assert.assertFalse(connectorFactory.getConnector(1).isClosed());
+
+		connectorFactory.getConnector(1).notify(JMXConnectionNotification.CLOSED);
+		Assert.assertTrue(connectorFactory.getConnector(1).isClosed());
+		pool.getConnection(key, url, ENVIRONMENT);
+		Assert.assertEquals(3, connectorFactory.getConnectAttempts());
+	}
+
+	@Test
+	public void testBackoffAfterFailedAttempts() throws Exception {
+		connectorFactory.setConnectFailure(new IOException("connection refused"));
+
+		assertConnectFails();
+		Assert.assertEquals(1, connectorFactory.getConnectAttempts());
+		// rejected without connecting until the backoff passes.
+		assertConnectFails();
+		Assert.assertEquals(1, connectorFactory.getConnectAttempts());
+
+		Thread.sleep(JmxConnectionPool.INITIAL_BACKOFF_MILLIS + 200);
+		assertConnectFails();
+		Assert.assertEquals(2, connectorFactory.getConnectAttempts());
+
+		// the backoff doubled.
+		Thread.sleep(JmxConnectionPool.INITIAL_BACKOFF_MILLIS + 200);
+		assertConnectFails();
+		Assert.assertEquals(2, connectorFactory.getConnectAttempts());
+
+		Thread.sleep(JmxConnectionPool.INITIAL_BACKOFF_MILLIS);
+		connectorFactory.setConnectFailure(null);
+		final MBeanServerConnection connection = pool.getConnection(key, url, ENVIRONMENT);
+		Assert.assertEquals(3, connectorFactory.getConnectAttempts());
+
+		// a successful connection resets the backoff.
+		pool.invalidate(key, connection);
+		connectorFactory.setConnectFailure(new IOException("connection refused"));
+		assertConnectFails();
+		Thread.sleep(JmxConnectionPool.INITIAL_BACKOFF_MILLIS + 200);
+		assertConnectFails();
+		Assert.assertEquals(5, connectorFactory.getConnectAttempts());
+	}
+
+	private void assertConnectFails() {
+		try {
+			pool.getConnection(key, url, ENVIRONMENT);
+			Assert.fail("Expected the connection to fail");
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+
+	private static JMXServiceURL createUrl(final int port) throws Exception {
+		return new JMXServiceURL("service:jmx:rmi:///jndi/rmi://127.0.0.1:" + port + "/jmxrmi");
+	}
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.jmx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class JmxGenericClientTest {
+
+	private FakeConnectorFactory connectorFactory;
+	private JmxGenericClient client;
+
+	@Before
+	public void before() {
+		connectorFactory = new FakeConnectorFactory();
+		client = new JmxGenericClient();
+		client.setConnectionPool(new JmxConnectionPool(connectorFactory));
+		final List<JmxAttribute> targets = new ArrayList<JmxAttribute>();
+		targets.add(new JmxAttribute("java.lang:type=Memory", "HeapMemoryUsage", "heap"));
+		client.setTargets(targets);
+	}
+
+	@Test
+	public void testAttributesRead() {
+		final Map<String, Object> attributes = client.getAttributes();
+		Assert.assertEquals("HeapMemoryUsage", attributes.get("heap"));
+
+		client.getAttributes();
+		Assert.assertEquals(1, connectorFactory.getConnectAttempts());
+		Assert.assertEquals(2, connectorFactory.getGetAttributesCalls());
+	}
+
+	@Test
+	public void testBrokenConnectionRetriedOnNewConnection() {
+		connectorFactory.setGetAttributesFailures(1);
+
+		final Map<String, Object> attributes = client.getAttributes();
+
+		Assert.assertEquals("HeapMemoryUsage", attributes.get("heap"));
+		Assert.assertEquals(2, connectorFactory.getConnectAttempts());
+		Assert.assertTrue(connectorFactory.getConnector(0).isClosed());
+		Assert.assertFalse(connectorFactory.getConnector(1).isClosed());
+	}
+
+	@Test
+	public void testRetriedOnlyOnce() {
+		connectorFactory.setGetAttributesFailures(3);
+
+		Assert.assertTrue(client.getAttributes().isEmpty());
+
+		Assert.assertEquals(2, connectorFactory.getConnectAttempts());
+		Assert.assertEquals(2, connectorFactory.getGetAttributesCalls());
+		Assert.assertTrue(connectorFactory.getConnector(1).isClosed());
+	}
+}
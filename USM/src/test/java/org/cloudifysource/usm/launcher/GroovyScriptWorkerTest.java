@@ -0,0 +1,80 @@
+package org.cloudifysource.usm.launcher;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GroovyScriptWorkerTest {
+
+	private File scriptFile;
+
+	@Before
+	public void before() throws Exception {
+		scriptFile = File.createTempFile("GroovyScriptWorkerTest", ".groovy");
+		FileUtils.writeStringToFile(scriptFile, "println \"args: \" + args.join(\",\")\n"
+				+ "println \"context: \" + (binding.variables.containsKey('context') ? context : 'none')\n"
+				+ "if (args.length > 0 && args[0] == 'fail') throw new IllegalStateException('failed script')\n");
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteQuietly(scriptFile);
+	}
+
+	@Test
+	public void testScriptOutputAndExitCode() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		int exitCode = GroovyScriptWorker.runScript(scriptFile, new String[] { "a", "b" },
+				getClass().getClassLoader(), null, output);
+		Assert.assertEquals(0, exitCode);
+		Assert.assertTrue(output.toString().contains("args: a,b"));
+		Assert.assertTrue(output.toString().contains("context: none"));
+
+		output = new ByteArrayOutputStream();
+		exitCode = GroovyScriptWorker.runScript(scriptFile, new String[] { "fail" },
+				getClass().getClassLoader(), null, output);
+		Assert.assertEquals(1, exitCode);
+		Assert.assertTrue(output.toString().contains("Caught: java.lang.IllegalStateException: failed script"));
+	}
+
+	@Test
+	public void testInProcessRunner() throws Exception {
+		final PrintStream systemOut = System.out;
+		final PrintStream systemErr = System.err;
+		final InProcessGroovyRunner runner = new InProcessGroovyRunner(getClass().getClassLoader(),
+				Collections.<String, Object>singletonMap("context", "serviceContext"));
+		final Process process = runner.execute(scriptFile, Arrays.asList("x"));
+
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		final StringBuilder sb = new StringBuilder();
+		String line = reader.readLine();
+		while (line != null) {
+			sb.append(line).append("\n");
+			line = reader.readLine();
+		}
+		Assert.assertEquals(0, process.waitFor());
+		Assert.assertEquals("args: x\ncontext: serviceContext\n", sb.toString());
+		// the standard streams of the container are not replaced.
+		Assert.assertSame(systemOut, System.out);
+		Assert.assertSame(systemErr, System.err);
+	}
+
+	@Test
+	public void testWorkerCommandLine() {
+		Assert.assertTrue(GroovyScriptWorker.isWorkerCommandLine(new String[] { "java", "-Dprop=value",
+				GroovyScriptWorker.class.getName() }));
+		Assert.assertFalse(GroovyScriptWorker.isWorkerCommandLine(new String[] { "java", "-jar", "service.jar" }));
+		Assert.assertFalse(GroovyScriptWorker.isWorkerCommandLine(null));
+	}
+}
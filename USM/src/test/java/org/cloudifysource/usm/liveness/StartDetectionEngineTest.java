@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.liveness;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.usm.USMException;
+import org.cloudifysource.usm.UniversalServiceManagerBean;
+import org.junit.After;
+import org.junit.Test;
+
+public class StartDetectionEngineTest {
+
+	private static final long WAIT_MILLIS = 10000;
+
+	private StartDetectionEngine engine;
+
+	@After
+	public void after() {
+		if (engine != null) {
+			engine.stop();
+		}
+	}
+
+	/**
+	 * A start detector that passes after a given number of calls.
+	 */
+	private static class CountingDetector implements LivenessDetector {
+
+		private final int passOnCall;
+		private final AtomicInteger calls = new AtomicInteger();
+
+		CountingDetector(final int passOnCall) {
+			this.passOnCall = passOnCall;
+		}
+
+		@Override
+		public boolean isProcessAlive()
+				throws USMException, TimeoutException {
+			return calls.incrementAndGet() >= passOnCall;
+		}
+
+		@Override
+		public void init(final UniversalServiceManagerBean usm) {
+		}
+
+		@Override
+		public int getOrder() {
+			return 0;
+		}
+	}
+
+	private StartDetectionEngine start(final long initialIntervalMillis, final long maxIntervalMillis,
+			final LivenessDetector... detectors) {
+		engine = new StartDetectionEngine(detectors, initialIntervalMillis, maxIntervalMillis);
+		engine.start();
+		return engine;
+	}
+
+	@Test
+	public void testNoDetectors() throws Exception {
+		Assert.assertTrue(start(10, 100).await(WAIT_MILLIS));
+	}
+
+	@Test
+	public void testDetectorsRetriedUntilPassed() throws Exception {
+		final CountingDetector first = new CountingDetector(1);
+		final CountingDetector third = new CountingDetector(3);
+
+		Assert.assertTrue(start(10, 20, first, third).await(WAIT_MILLIS));
+		Assert.assertEquals(1, first.calls.get());
+		Assert.assertEquals(3, third.calls.get());
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		final CountingDetector never = new CountingDetector(Integer.MAX_VALUE);
+
+		Assert.assertFalse(start(10, 20, never).await(200));
+		Assert.assertTrue(never.calls.get() > 1);
+	}
+
+	@Test
+	public void testRetryIntervalGrowsUpToMax() throws Exception {
+		final CountingDetector never = new CountingDetector(Integer.MAX_VALUE);
+
+		// 10, 20, 40, 80, 100, 100... milliseconds between calls: far fewer calls than with a fixed 10 ms interval.
+		Assert.assertFalse(start(10, 100, never).await(1000));
+		Assert.assertTrue("calls: " + never.calls.get(), never.calls.get() >= 5);
+		Assert.assertTrue("calls: " + never.calls.get(), never.calls.get() <= 20);
+	}
+
+	@Test
+	public void testBlockingDetectorDoesNotHoldBackOthers() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountingDetector blocking = new CountingDetector(1) {
+			@Override
+			public boolean isProcessAlive()
+					throws USMException, TimeoutException {
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					throw new USMException("interrupted", e);
+				}
+				return super.isProcessAlive();
+			}
+		};
+		final CountingDetector other = new CountingDetector(2);
+
+		start(10, 20, blocking, other);
+		Assert.assertFalse(engine.await(200));
+		Assert.assertEquals(2, other.calls.get());
+
+		release.countDown();
+		Assert.assertTrue(engine.await(WAIT_MILLIS));
+	}
+
+	@Test
+	public void testPassingDetectorWakesOthers() throws Exception {
+		// without the wake up, the second call of this detector would come after the maximal interval.
+		final CountingDetector waiting = new CountingDetector(2);
+		final CountingDetector slow = new CountingDetector(1) {
+			@Override
+			public boolean isProcessAlive()
+					throws USMException, TimeoutException {
+				try {
+					Thread.sleep(200);
+				} catch (final InterruptedException e) {
+					throw new USMException("interrupted", e);
+				}
+				return super.isProcessAlive();
+			}
+		};
+
+		Assert.assertTrue(start(TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(1), waiting, slow)
+				.await(WAIT_MILLIS));
+		Assert.assertEquals(2, waiting.calls.get());
+	}
+
+	@Test
+	public void testDetectorFailure() throws Exception {
+		final CountingDetector failing = new CountingDetector(1) {
+			@Override
+			public boolean isProcessAlive()
+					throws USMException {
+				throw new USMException("detector failed");
+			}
+		};
+
+		try {
+			start(10, 20, failing, new CountingDetector(Integer.MAX_VALUE)).await(WAIT_MILLIS);
+			Assert.fail("Expected the detector failure to be reported");
+		} catch (final USMException e) {
+			Assert.assertEquals("detector failed", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDetectorTimeout() throws Exception {
+		final CountingDetector timingOut = new CountingDetector(1) {
+			@Override
+			public boolean isProcessAlive()
+					throws TimeoutException {
+				throw new TimeoutException("detector timed out");
+			}
+		};
+
+		try {
+			start(10, 20, timingOut).await(WAIT_MILLIS);
+			Assert.fail("Expected the detector timeout to be reported");
+		} catch (final TimeoutException e) {
+			Assert.assertEquals("detector timed out", e.getMessage());
+		}
+	}
+}
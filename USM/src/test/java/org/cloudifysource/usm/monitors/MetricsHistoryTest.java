@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.monitors;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.dsl.rest.response.MetricHistoryData;
+import org.junit.Test;
+
+public class MetricsHistoryTest {
+
+	private static final long START = 1000L * 1000 * 1000;
+
+	@Test
+	public void testDownsampling() {
+		final MetricsHistory history = new MetricsHistory();
+		for (int i = 0; i < 120; i++) {
+			history.record(START + i * 1000, "cpu", i);
+		}
+
+		MetricHistoryData data = history.query("cpu", START, START + 119 * 1000, 1000).get("cpu");
+		Assert.assertEquals(1000, data.getStep());
+		Assert.assertEquals(120, data.getTimestamps().length);
+		Assert.assertEquals(5.0, data.getAverages()[5], 0);
+
+		data = history.query("cpu", START, START + 119 * 1000, 10 * 1000).get("cpu");
+		Assert.assertEquals(10 * 1000, data.getStep());
+		Assert.assertEquals(12, data.getTimestamps().length);
+		Assert.assertEquals(4.5, data.getAverages()[0], 0);
+		Assert.assertEquals(0.0, data.getMinimums()[0], 0);
+		Assert.assertEquals(9.0, data.getMaximums()[0], 0);
+
+		// older than the one second resolution, served by the one minute resolution.
+		history.record(START + 20 * 60 * 1000, "cpu", 0);
+		data = history.query("cpu", START, START + 119 * 1000, 1000).get("cpu");
+		Assert.assertEquals(60 * 1000, data.getStep());
+	}
+
+	@Test
+	public void testMemoryBudget() {
+		final MetricsHistory history = new MetricsHistory();
+		history.setMemoryBudgetBytes(MetricsHistory.getBytesPerMetric() * 2);
+
+		final Map<String, Object> values = new HashMap<String, Object>();
+		values.put("a", 1);
+		values.put("b", 2L);
+		values.put("c", 3.0);
+		values.put("text", "not a number");
+		history.record(START, values);
+
+		Assert.assertEquals(2, history.getMetricNames().size());
+		Assert.assertEquals(2, history.query(null, START, START, 1000).size());
+	}
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.monitors.process;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProcFsReaderTest {
+
+	private static final int PAGE_SIZE = 4096;
+
+	private static final String STATM = "262144 2000 500 10 0 3000 0\n";
+	private static final String STATUS = "Name:\tjava\nUmask:\t0022\nState:\tS (sleeping)\nTgid:\t4242\n"
+			+ "Uid:\t1000\t1000\t1000\t1000\nGid:\t100\t100\t100\t100\nThreads:\t12\n";
+
+	private File procDir;
+
+	@Before
+	public void before() throws Exception {
+		procDir = File.createTempFile("ProcFsReaderTest", "");
+		procDir.delete();
+		procDir.mkdirs();
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteQuietly(procDir);
+	}
+
+	// a /proc/[pid]/stat line of a process named with spaces and parentheses.
+	private static String stat(final long utime, final long stime) {
+		return "4242 (my (odd) proc) S 1 4242 4242 0 -1 4194560 150 0 50 0 " + utime + " " + stime
+				+ " 0 0 20 0 12 0 900 1073741824 2000 18446744073709551615\n";
+	}
+
+	private void writeProcFiles(final String stat)
+			throws IOException {
+		FileUtils.writeStringToFile(new File(procDir, "stat"), stat);
+		FileUtils.writeStringToFile(new File(procDir, "statm"), STATM);
+		FileUtils.writeStringToFile(new File(procDir, "status"), STATUS);
+	}
+
+	private static long getValue(final MonitorData data, final int metric) {
+		final Map<String, Number> map = data.getDataMap();
+		return map.get(MonitorData.METRIC_NAMES[metric]).longValue();
+	}
+
+	@Test
+	public void testRead() throws Exception {
+		writeProcFiles(stat(250, 120));
+		final ProcFsReader reader = new ProcFsReader(PAGE_SIZE);
+		final MonitorData data = new MonitorData();
+
+		reader.read(new ProcFsReader.ProcessFiles(procDir), true, data);
+
+		final Map<String, Number> map = data.getDataMap();
+		// no CPU usage before a second sample.
+		Assert.assertEquals(0.0, map.get(MonitorData.METRIC_NAMES[0]).doubleValue());
+		Assert.assertEquals(1200, getValue(data, 1));
+		Assert.assertEquals(3700, getValue(data, 2));
+		Assert.assertEquals(100, getValue(data, 3));
+		Assert.assertEquals(1000, getValue(data, 4));
+		Assert.assertEquals(200, getValue(data, 5));
+		Assert.assertEquals(2000L * PAGE_SIZE, getValue(data, 6));
+		Assert.assertEquals(500L * PAGE_SIZE, getValue(data, 7));
+		Assert.assertEquals(262144L * PAGE_SIZE, getValue(data, 8));
+		Assert.assertEquals(20, getValue(data, 9));
+		Assert.assertEquals(12, getValue(data, 10));
+	}
+
+	@Test
+	public void testCpuUsageBetweenReads() throws Exception {
+		writeProcFiles(stat(250, 120));
+		final ProcFsReader reader = new ProcFsReader(PAGE_SIZE);
+		final ProcFsReader.ProcessFiles process = new ProcFsReader.ProcessFiles(procDir);
+		final MonitorData data = new MonitorData();
+		reader.read(process, false, data);
+
+		Thread.sleep(20);
+		// one more second of user time.
+		writeProcFiles(stat(350, 120));
+		reader.read(process, false, data);
+
+		final double cpuUsage = data.getDataMap().get(MonitorData.METRIC_NAMES[0]).doubleValue();
+		Assert.assertTrue("CPU usage " + cpuUsage, cpuUsage > 0);
+		// at least 20 milliseconds passed between the samples.
+		Assert.assertTrue("CPU usage " + cpuUsage, cpuUsage <= 1000.0 / 20);
+		Assert.assertEquals(4700, getValue(data, 2));
+	}
+
+	@Test
+	public void testCredentialsReadOnRequest() throws Exception {
+		writeProcFiles(stat(250, 120));
+		new File(procDir, "status").delete();
+		final MonitorData data = new MonitorData();
+
+		// the status file is not read.
+		new ProcFsReader(PAGE_SIZE).read(new ProcFsReader.ProcessFiles(procDir), false, data);
+		Assert.assertEquals(0, getValue(data, 3));
+		Assert.assertEquals(0, getValue(data, 4));
+	}
+
+	@Test
+	public void testInvalidStat() throws Exception {
+		writeProcFiles("4242 truncated");
+		try {
+			new ProcFsReader(PAGE_SIZE).read(new ProcFsReader.ProcessFiles(procDir), false, new MonitorData());
+			Assert.fail("Expected an invalid stat file to be rejected");
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testExitedProcess() throws Exception {
+		try {
+			new ProcFsReader(PAGE_SIZE).read(new ProcFsReader.ProcessFiles(new File(procDir, "missing")), false,
+					new MonitorData());
+			Assert.fail("Expected a missing process to be rejected");
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testReadOwnProcess() throws Exception {
+		Assume.assumeTrue(ProcFsReader.isSupported());
+		final MonitorData data = new MonitorData();
+
+		new ProcFsReader().read(new ProcFsReader.ProcessFiles(new File("/proc/self")), true, data);
+
+		Assert.assertTrue(getValue(data, 6) > 0);
+		Assert.assertTrue(getValue(data, 8) > 0);
+		Assert.assertTrue(getValue(data, 10) > 0);
+	}
+}
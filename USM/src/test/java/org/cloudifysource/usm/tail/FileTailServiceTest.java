@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.tail;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileTailServiceTest {
+
+	private static final long SAMPLING_INTERVAL_MILLIS = 10;
+
+	private File dir;
+	private FileTailService service;
+
+	@Before
+	public void before() throws Exception {
+		dir = File.createTempFile("FileTailServiceTest", "");
+		dir.delete();
+		dir.mkdirs();
+		service = new FileTailService(SAMPLING_INTERVAL_MILLIS);
+	}
+
+	@After
+	public void after() {
+		service.shutdown();
+		FileUtils.deleteQuietly(dir);
+	}
+
+	@Test
+	public void testMatchInExistingFile() throws Exception {
+		final File file = new File(dir, "existing.log");
+		FileUtils.writeStringToFile(file, "starting\nserver started on port 8080\nready\n");
+
+		final AtomicReference<String> listenerLine = new AtomicReference<String>();
+		final FileTailService.Subscription subscription =
+				service.subscribe(file, Pattern.compile("started on port \\d+"), new FileTailService.MatchListener() {
+					@Override
+					public void lineMatched(final File matchedFile, final String line) {
+						listenerLine.set(line);
+					}
+				});
+
+		Assert.assertTrue(subscription.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals("server started on port 8080", subscription.getMatchingLine());
+		Assert.assertEquals("server started on port 8080", listenerLine.get());
+	}
+
+	@Test
+	public void testMatchInFileWrittenLater() throws Exception {
+		final File file = new File(dir, "later.log");
+		final FileTailService.Subscription subscription = service.subscribe(file, Pattern.compile("ready"), null);
+
+		Assert.assertFalse(subscription.await(SAMPLING_INTERVAL_MILLIS * 5, TimeUnit.MILLISECONDS));
+
+		FileUtils.writeStringToFile(file, "starting\n");
+		Assert.assertFalse(subscription.await(SAMPLING_INTERVAL_MILLIS * 5, TimeUnit.MILLISECONDS));
+
+		FileUtils.writeStringToFile(file, "starting\nready\n");
+		Assert.assertTrue(subscription.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals("ready", subscription.getMatchingLine());
+	}
+
+	@Test
+	public void testCancelReleasesWaiters() throws Exception {
+		final File file = new File(dir, "cancelled.log");
+		final FileTailService.Subscription subscription = service.subscribe(file, Pattern.compile("ready"), null);
+
+		subscription.cancel();
+		Assert.assertFalse(subscription.await(10, TimeUnit.SECONDS));
+		Assert.assertFalse(subscription.isMatched());
+
+		// a cancelled subscription no longer reads the file.
+		FileUtils.writeStringToFile(file, "ready\n");
+		Thread.sleep(SAMPLING_INTERVAL_MILLIS * 5);
+		Assert.assertNull(subscription.getMatchingLine());
+	}
+
+	@Test
+	public void testShutdownCancelsSubscriptions() throws Exception {
+		final File file = new File(dir, "shutdown.log");
+		final FileTailService.Subscription subscription = service.subscribe(file, Pattern.compile("ready"), null);
+
+		service.shutdown();
+		Assert.assertFalse(subscription.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testMatchUnterminatedLastLine() throws Exception {
+		final File file = new File(dir, "unterminated.log");
+		FileUtils.writeStringToFile(file, "starting\nserver ready");
+
+		final FileTailService.Subscription subscription = service.subscribe(file, Pattern.compile("ready"), null);
+
+		Assert.assertTrue(subscription.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals("server ready", subscription.getMatchingLine());
+	}
+
+	@Test
+	public void testSamplingStopsWithoutSubscriptions() throws Exception {
+		final File file = new File(dir, "idle.log");
+		Assert.assertFalse(service.isSampling());
+
+		final FileTailService.Subscription first = service.subscribe(file, Pattern.compile("first"), null);
+		final FileTailService.Subscription second = service.subscribe(file, Pattern.compile("second"), null);
+		Assert.assertTrue(service.isSampling());
+
+		first.cancel();
+		Assert.assertTrue(service.isSampling());
+		FileUtils.writeStringToFile(file, "second\n");
+		Assert.assertTrue(second.await(10, TimeUnit.SECONDS));
+		Assert.assertFalse(service.isSampling());
+
+		// sampling starts again for a new subscription.
+		final FileTailService.Subscription third = service.subscribe(file, Pattern.compile("second"), null);
+		Assert.assertTrue(service.isSampling());
+		Assert.assertTrue(third.await(10, TimeUnit.SECONDS));
+	}
+}
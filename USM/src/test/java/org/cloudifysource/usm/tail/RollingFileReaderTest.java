@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.tail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.cloudifysource.usm.tail.RollingFileAppenderTailer.LineHandler;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gigaspaces.internal.sigar.SigarHolder;
+
+public class RollingFileReaderTest {
+
+	// the size of the chunks the reader reads, and the length lines are split at.
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private File dir;
+	private File file;
+	private RollingFileReader reader;
+	private final List<String> lines = new ArrayList<String>();
+	private final LineHandler collector = new LineHandler() {
+		@Override
+		public void handleLine(final String fileName, final String line) {
+			lines.add(line);
+		}
+	};
+
+	@Before
+	public void before() throws Exception {
+		dir = File.createTempFile("RollingFileReaderTest", "");
+		dir.delete();
+		dir.mkdirs();
+		file = new File(dir, "service.log");
+		FileUtils.writeStringToFile(file, "");
+		reader = new RollingFileReader(file);
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteQuietly(dir);
+	}
+
+	@Test
+	public void testLineSplitAcrossChunks() throws Exception {
+		// the second line starts a few bytes before the end of the first chunk.
+		final String first = StringUtils.repeat("a", CHUNK_SIZE - 4);
+		final String second = StringUtils.repeat("b", 10);
+		// the third line ends exactly at the end of the second chunk.
+		final String third = StringUtils.repeat("c", 2 * CHUNK_SIZE - first.length() - second.length() - 3);
+		final String content = first + "\n" + second + "\n" + third + "\n";
+		Assert.assertEquals(2 * CHUNK_SIZE, content.length());
+		FileUtils.writeStringToFile(file, content + "last\n");
+
+		reader.readLines(collector, Long.MAX_VALUE);
+
+		Assert.assertEquals(Arrays.asList(first, second, third, "last"), lines);
+		Assert.assertFalse(reader.hasPendingData());
+	}
+
+	@Test
+	public void testLongLineHandledInParts() throws Exception {
+		final String longLine = StringUtils.repeat("a", CHUNK_SIZE) + StringUtils.repeat("b", 100);
+		FileUtils.writeStringToFile(file, longLine + "\nshort\n");
+
+		reader.readLines(collector, Long.MAX_VALUE);
+
+		Assert.assertEquals(
+				Arrays.asList(StringUtils.repeat("a", CHUNK_SIZE), StringUtils.repeat("b", 100), "short"), lines);
+	}
+
+	@Test
+	public void testMaxBytes() throws Exception {
+		FileUtils.writeStringToFile(file, "line1\nline2\nline3\n");
+		Assert.assertTrue(reader.wasModified());
+
+		// only the first 8 bytes are read, the rest of the second line is read with the rest of the file.
+		reader.readLines(collector, 8);
+		Assert.assertEquals(Collections.singletonList("line1"), lines);
+		Assert.assertTrue(reader.hasPendingData());
+		Assert.assertTrue(reader.wasModified());
+		Assert.assertEquals("li", reader.getPartialLine());
+
+		reader.readLines(collector, 8);
+		Assert.assertEquals(Arrays.asList("line1", "line2"), lines);
+		Assert.assertTrue(reader.hasPendingData());
+
+		reader.readLines(collector, 8);
+		Assert.assertEquals(Arrays.asList("line1", "line2", "line3"), lines);
+		Assert.assertFalse(reader.hasPendingData());
+		Assert.assertFalse(reader.wasModified());
+	}
+
+	@Test
+	public void testPartialLine() throws Exception {
+		FileUtils.writeStringToFile(file, "first\nunterminated");
+
+		reader.readLines(collector, Long.MAX_VALUE);
+		Assert.assertEquals(Collections.singletonList("first"), lines);
+		// the partial line is not consumed until it is terminated.
+		Assert.assertEquals("unterminated", reader.getPartialLine());
+		Assert.assertEquals("unterminated", reader.getPartialLine());
+
+		FileUtils.writeStringToFile(file, " line\r\nflushed\r", true);
+		reader.readLines(collector, Long.MAX_VALUE);
+		Assert.assertEquals(Arrays.asList("first", "unterminated line"), lines);
+		Assert.assertEquals("flushed", reader.getPartialLine());
+
+		reader.flushPartialLine(collector);
+		Assert.assertEquals(Arrays.asList("first", "unterminated line", "flushed"), lines);
+		Assert.assertNull(reader.getPartialLine());
+		reader.flushPartialLine(collector);
+		Assert.assertEquals(3, lines.size());
+
+		// reading into a string flushes the partial line.
+		FileUtils.writeStringToFile(file, "\nmore\nand more", true);
+		Assert.assertEquals("more\nand more\n", reader.readLines());
+	}
+
+	@Test
+	public void testTruncatedFileReadFromStart() throws Exception {
+		FileUtils.writeStringToFile(file, "a long first line\nsecond\n");
+		reader.readLines(collector, Long.MAX_VALUE);
+
+		// truncated in place, so only the length shows the file was rolled.
+		FileUtils.writeStringToFile(file, "new\n");
+		reader.readLines(collector, Long.MAX_VALUE);
+
+		Assert.assertEquals(Arrays.asList("a long first line", "second", "new"), lines);
+	}
+
+	@Test
+	public void testRolledFileDetectedByIdentity() throws Exception {
+		Assume.assumeTrue(isFileIdentityAvailable());
+		FileUtils.writeStringToFile(file, "first\nunterminated");
+		reader.readLines(collector, Long.MAX_VALUE);
+
+		// rolled between two reads, to a new file that is longer than what was read.
+		FileUtils.writeStringToFile(file, " and lost\n", true);
+		Assert.assertTrue(file.renameTo(new File(dir, "service.log.1")));
+		FileUtils.writeStringToFile(file, "the first line of the new file\nsecond\n");
+		Assert.assertTrue(reader.wasModified());
+		reader.readLines(collector, Long.MAX_VALUE);
+
+		// the partial line of the rolled file is flushed, and the new file is read from its start.
+		Assert.assertEquals(Arrays.asList("first", "unterminated", "the first line of the new file", "second"),
+				lines);
+	}
+
+	private boolean isFileIdentityAvailable() {
+		try {
+			return SigarHolder.getSigar().getFileInfo(file.getAbsolutePath()).getInode() != 0;
+		} catch (final Throwable t) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.internal;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.CodeVisitorSupport;
+import org.codehaus.groovy.ast.builder.AstBuilder;
+import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.BinaryExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.ast.stmt.ExpressionStatement;
+import org.codehaus.groovy.ast.stmt.Statement;
+import org.codehaus.groovy.control.CompilePhase;
+
+/*******
+ * Reads the services of an application.
+ *
+ * The application DSL reads each of its services when the service block sets the service name, one service after the
+ * other. Service recipes are independent of each other, so the loader reads the services the application is expected
+ * to use in parallel, ahead of time, and the application DSL picks up the already read service when it reaches its
+ * block.
+ *
+ * Diagnostics do not depend on the order in which the services were read: the result (or failure) of a service read is
+ * only reported when the application DSL asks for that service, so errors are reported in service declaration order,
+ * exactly as with sequential reads. A failed read of a service the application does not use is never reported. A
+ * service the application asks for before a pool thread started reading it is read by the calling thread.
+ *
+ * @since 2.7.0
+ */
+public class ApplicationServiceLoader {
+
+	private static final Logger logger = Logger.getLogger(ApplicationServiceLoader.class.getName());
+
+	private static final ExecutorService SHARED_EXECUTOR = createExecutor();
+
+	private final File applicationDir;
+	private final Map<String, Object> applicationProperties;
+	private final Executor executor;
+	private final Map<String, FutureTask<DSLServiceCompilationResult>> tasks =
+			new HashMap<String, FutureTask<DSLServiceCompilationResult>>();
+
+	/*******
+	 * Constructor.
+	 *
+	 * @param applicationDir
+	 *            the application directory.
+	 * @param applicationProperties
+	 *            the application properties passed to the services, may be null.
+	 */
+	public ApplicationServiceLoader(final File applicationDir, final Map<String, Object> applicationProperties) {
+		this(applicationDir, applicationProperties, SHARED_EXECUTOR);
+	}
+
+	/*******
+	 * Constructor.
+	 *
+	 * @param applicationDir
+	 *            the application directory.
+	 * @param applicationProperties
+	 *            the application properties passed to the services, may be null.
+	 * @param executor
+	 *            the executor services are read with.
+	 */
+	public ApplicationServiceLoader(final File applicationDir, final Map<String, Object> applicationProperties,
+			final Executor executor) {
+		this.applicationDir = applicationDir;
+		this.applicationProperties = applicationProperties;
+		this.executor = executor;
+	}
+
+	/*******
+	 * Starts reading the given services in the background. Services that were already requested are ignored.
+	 *
+	 * @param serviceNames
+	 *            the names of the services, which are also the names of their directories.
+	 */
+	public synchronized void preload(final Collection<String> serviceNames) {
+		for (final String serviceName : serviceNames) {
+			if (tasks.containsKey(serviceName)) {
+				continue;
+			}
+			final FutureTask<DSLServiceCompilationResult> task = createTask(serviceName);
+			tasks.put(serviceName, task);
+			executor.execute(task);
+		}
+	}
+
+	/*******
+	 * Returns the read service, waiting for a background read of the service if one is in progress.
+	 *
+	 * @param serviceName
+	 *            the service name.
+	 * @return the read service.
+	 * @throws DSLException
+	 *             if the service could not be read.
+	 */
+	public DSLServiceCompilationResult getService(final String serviceName)
+			throws DSLException {
+		FutureTask<DSLServiceCompilationResult> task;
+		synchronized (this) {
+			task = tasks.remove(serviceName);
+		}
+		if (task == null) {
+			return readService(serviceName);
+		}
+
+		// runs the read in this thread if no pool thread picked it up yet, otherwise this is a no-op.
+		task.run();
+		try {
+			return task.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DSLException("Interrupted while reading service " + serviceName, e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof DSLException) {
+				throw (DSLException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new DSLException("Failed to read service " + serviceName + ": " + cause.getMessage(), cause);
+		}
+	}
+
+	/*******
+	 * Cancels background reads of services that were not requested, interrupting reads that are already running.
+	 */
+	public synchronized void cancel() {
+		for (final FutureTask<DSLServiceCompilationResult> task : tasks.values()) {
+			task.cancel(true);
+		}
+		tasks.clear();
+	}
+
+	/*******
+	 * Returns the names of the services declared by the application DSL, in declaration order. A service is declared
+	 * by a service block that sets its name to a string literal; services whose name is computed when the DSL is
+	 * evaluated are not listed, and are read when the application reaches them. Only names of service directories
+	 * that hold a single service DSL file are returned.
+	 *
+	 * @param applicationDir
+	 *            the application directory.
+	 * @param applicationDslText
+	 *            the text of the application DSL.
+	 * @return the declared service names.
+	 */
+	public static List<String> findDeclaredServices(final File applicationDir, final String applicationDslText) {
+		final List<String> result = new LinkedList<String>();
+
+		final List<ASTNode> nodes;
+		try {
+			nodes = new AstBuilder().buildFromString(CompilePhase.CONVERSION, true, applicationDslText);
+		} catch (final Exception e) {
+			// the DSL evaluation reports the syntax error.
+			logger.log(Level.FINE, "Failed to parse the application DSL in " + applicationDir
+					+ ", services will not be read in parallel", e);
+			return result;
+		}
+
+		final Set<String> serviceNames = new LinkedHashSet<String>();
+		final CodeVisitorSupport visitor = new CodeVisitorSupport() {
+			@Override
+			public void visitMethodCallExpression(final MethodCallExpression call) {
+				if ("service".equals(call.getMethodAsString())) {
+					final String serviceName = getServiceName(call.getArguments());
+					if (serviceName != null) {
+						serviceNames.add(serviceName);
+					}
+				}
+				super.visitMethodCallExpression(call);
+			}
+		};
+		for (final ASTNode node : nodes) {
+			node.visit(visitor);
+		}
+
+		for (final String serviceName : serviceNames) {
+			final File dir = new File(applicationDir, serviceName);
+			if (!dir.isDirectory()) {
+				continue;
+			}
+			final File[] dslFiles = DSLReader.findDefaultDSLFiles(DSLUtils.SERVICE_DSL_FILE_NAME_SUFFIX, dir);
+			if (dslFiles != null && dslFiles.length == 1) {
+				result.add(serviceName);
+			}
+		}
+		return result;
+	}
+
+	private static String getServiceName(final Expression arguments) {
+		if (!(arguments instanceof ArgumentListExpression)) {
+			return null;
+		}
+		final List<Expression> expressions = ((ArgumentListExpression) arguments).getExpressions();
+		if (expressions.size() != 1 || !(expressions.get(0) instanceof ClosureExpression)) {
+			return null;
+		}
+		final Statement code = ((ClosureExpression) expressions.get(0)).getCode();
+		if (!(code instanceof BlockStatement)) {
+			return null;
+		}
+		for (final Statement statement : ((BlockStatement) code).getStatements()) {
+			if (!(statement instanceof ExpressionStatement)
+					|| !(((ExpressionStatement) statement).getExpression() instanceof BinaryExpression)) {
+				continue;
+			}
+			final BinaryExpression assignment = (BinaryExpression) ((ExpressionStatement) statement).getExpression();
+			if (!"=".equals(assignment.getOperation().getText())
+					|| !(assignment.getLeftExpression() instanceof VariableExpression)
+					|| !"name".equals(((VariableExpression) assignment.getLeftExpression()).getName())) {
+				continue;
+			}
+			if (assignment.getRightExpression() instanceof ConstantExpression) {
+				final Object value = ((ConstantExpression) assignment.getRightExpression()).getValue();
+				if (value instanceof String) {
+					return (String) value;
+				}
+			}
+			return null;
+		}
+		return null;
+	}
+
+	private FutureTask<DSLServiceCompilationResult> createTask(final String serviceName) {
+		final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		return new FutureTask<DSLServiceCompilationResult>(new Callable<DSLServiceCompilationResult>() {
+			@Override
+			public DSLServiceCompilationResult call() throws Exception {
+				final Thread thread = Thread.currentThread();
+				final ClassLoader originalClassLoader = thread.getContextClassLoader();
+				thread.setContextClassLoader(contextClassLoader);
+				try {
+					return readService(serviceName);
+				} finally {
+					thread.setContextClassLoader(originalClassLoader);
+				}
+			}
+		});
+	}
+
+	private DSLServiceCompilationResult readService(final String serviceName)
+			throws DSLException {
+		final long start = System.currentTimeMillis();
+		final DSLServiceCompilationResult result = ServiceReader.getApplicationServiceFromDirectory(
+				new File(applicationDir, serviceName), applicationProperties);
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine("Read service " + serviceName + " of application directory " + applicationDir + " in "
+					+ (System.currentTimeMillis() - start) + " ms");
+		}
+		return result;
+	}
+
+	private static ExecutorService createExecutor() {
+		final AtomicInteger threadCounter = new AtomicInteger();
+		return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "ApplicationServiceLoader-" + threadCounter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+}
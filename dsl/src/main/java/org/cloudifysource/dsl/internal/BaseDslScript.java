@@ -17,20 +17,26 @@ import groovy.lang.Script;
 
 import java.beans.PropertyDescriptor;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import org.apache.commons.beanutils.BeanUtils;
 import org.apache.commons.beanutils.BeanUtilsBean;
 import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.cloudifysource.domain.AppSharedIsolationSLADescriptor;
 import org.cloudifysource.domain.Application;
@@ -134,6 +140,13 @@ public abstract class BaseDslScript extends Script {
 	// DSL Initializer meta data
 	private static Map<String, DSLObjectInitializerData> dslObjectInitializersByName = null;
 
+	// @DSLValidation methods of each validator class, accessible and sorted by name.
+	private static final Map<Class<?>, List<Method>> VALIDATION_METHODS_BY_CLASS =
+			new ConcurrentHashMap<Class<?>, List<Method>>();
+
+	// reads the services of an application, created when the first service block is reached.
+	private ApplicationServiceLoader applicationServiceLoader;
+
 	public BaseDslScript() {
 		BeanUtilsBean.getInstance().getConvertUtils().register(true, false, 0);
 	}
@@ -337,7 +350,14 @@ public abstract class BaseDslScript extends Script {
 					this.rootObject = retval;
 					
 				}
-				swapActiveObject(closure, retval);
+				try {
+					swapActiveObject(closure, retval);
+				} finally {
+					if (retval == this.rootObject && this.applicationServiceLoader != null) {
+						// services read ahead of time that the application did not use.
+						this.applicationServiceLoader.cancel();
+					}
+				}
 				if (isValidateObjects()) {
 					try {
 						validateObject(retval);
@@ -465,31 +485,54 @@ public abstract class BaseDslScript extends Script {
 		if (obj == null) {
 			return;
 		}
-		final Method[] methods = obj.getClass().getDeclaredMethods();
+		final List<Method> methods = getValidationMethods(obj.getClass());
+		if (methods.isEmpty()) {
+			return;
+		}
+		@SuppressWarnings("unchecked")
+		final Map<Object, Object> currentVars = this.getBinding().getVariables();
+		final String filePath = (String) currentVars.get(DSLUtils.DSL_FILE_PATH_PROPERTY_NAME);
 		for (final Method method : methods) {
-			if (method.getAnnotation(DSLValidation.class) != null) {
-				final boolean accessible = method.isAccessible();
-				try {
-					@SuppressWarnings("unchecked")
-					final Map<Object, Object> currentVars = this.getBinding().getVariables();
-					final DSLValidationContext validationContext = new DSLValidationContext();
-					validationContext.setFilePath((String) currentVars.get(DSLUtils.DSL_FILE_PATH_PROPERTY_NAME));
-					method.setAccessible(true);
-					method.invoke(obj, validationContext);
-
-				} catch (final InvocationTargetException e) {
-					throw new DSLValidationException(e.getTargetException().getMessage(), e.getTargetException());
-				} catch (final Exception e) {
-					throw new DSLValidationException("Failed to execute DSL validation: " + e.getMessage(), e);
+			try {
+				final DSLValidationContext validationContext = new DSLValidationContext();
+				validationContext.setFilePath(filePath);
+				method.invoke(obj, validationContext);
+
+			} catch (final InvocationTargetException e) {
+				throw new DSLValidationException(e.getTargetException().getMessage(), e.getTargetException());
+			} catch (final Exception e) {
+				throw new DSLValidationException("Failed to execute DSL validation: " + e.getMessage(), e);
 
-				} finally {
-					method.setAccessible(accessible);
-				}
 			}
 		}
 
 	}
 
+	private static List<Method> getValidationMethods(final Class<?> validatorClass) {
+		List<Method> methods = VALIDATION_METHODS_BY_CLASS.get(validatorClass);
+		if (methods != null) {
+			return methods;
+		}
+
+		methods = new ArrayList<Method>();
+		for (final Method method : validatorClass.getDeclaredMethods()) {
+			if (method.getAnnotation(DSLValidation.class) != null) {
+				method.setAccessible(true);
+				methods.add(method);
+			}
+		}
+		// getDeclaredMethods() does not guarantee an order, validations always run in the same one.
+		Collections.sort(methods, new Comparator<Method>() {
+			@Override
+			public int compare(final Method m1, final Method m2) {
+				return m1.getName().compareTo(m2.getName());
+			}
+		});
+		methods = Collections.unmodifiableList(methods);
+		VALIDATION_METHODS_BY_CLASS.put(validatorClass, methods);
+		return methods;
+	}
+
 	private void beforeHandleInvokeMethod(final String name, final Object arg) {
 
 		if (name.equals("service")) {
@@ -893,7 +936,6 @@ public abstract class BaseDslScript extends Script {
 
 	}
 
-	@SuppressWarnings("unchecked")
 	private Service loadApplicationService(final String serviceName) {
 		// First find the service dir
 
@@ -912,16 +954,10 @@ public abstract class BaseDslScript extends Script {
 		// Load the service
 		DSLServiceCompilationResult result;
 		try {
-			final Object applicationProperties = getBinding().getVariables().get(DSLUtils.DSL_PROPERTIES);
-			Map<String, Object> applicationPropertiesMap = null;
-			if (applicationProperties != null) {
-				if (applicationProperties instanceof Map) {
-					applicationPropertiesMap = (Map<String, Object>) applicationProperties;
-				} else {
-					throw new DSLException("applicationProperties must be a map.");
-				}
+			if (this.applicationServiceLoader == null) {
+				this.applicationServiceLoader = createApplicationServiceLoader(new File(workDirectory));
 			}
-			result = ServiceReader.getApplicationServiceFromDirectory(serviceDir, applicationPropertiesMap);
+			result = this.applicationServiceLoader.getService(serviceName);
 
 		} catch (final DSLException e) {
 			throw new IllegalArgumentException("Failed to load service: " + serviceName
@@ -933,4 +969,33 @@ public abstract class BaseDslScript extends Script {
 
 	}
 
-}
\ No newline at end of file
+	@SuppressWarnings("unchecked")
+	private ApplicationServiceLoader createApplicationServiceLoader(final File applicationDir)
+			throws DSLException {
+		final Object applicationProperties = getBinding().getVariables().get(DSLUtils.DSL_PROPERTIES);
+		Map<String, Object> applicationPropertiesMap = null;
+		if (applicationProperties != null) {
+			if (applicationProperties instanceof Map) {
+				applicationPropertiesMap = (Map<String, Object>) applicationProperties;
+			} else {
+				throw new DSLException("applicationProperties must be a map.");
+			}
+		}
+
+		final ApplicationServiceLoader loader = new ApplicationServiceLoader(applicationDir, applicationPropertiesMap);
+
+		// start reading the other services of the application while this one is read.
+		final String dslFilePath = (String) getBinding().getVariables().get(DSLUtils.DSL_FILE_PATH_PROPERTY_NAME);
+		if (dslFilePath != null) {
+			try {
+				final String applicationDslText = FileUtils.readFileToString(new File(dslFilePath));
+				loader.preload(ApplicationServiceLoader.findDeclaredServices(applicationDir, applicationDslText));
+			} catch (final IOException e) {
+				// services will be read when the application reaches them.
+				logger.log(Level.FINE, "Failed to read application file " + dslFilePath
+						+ ", services will not be read in parallel", e);
+			}
+		}
+		return loader;
+	}
+}
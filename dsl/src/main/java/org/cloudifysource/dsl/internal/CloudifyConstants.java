@@ -127,6 +127,9 @@ public final class CloudifyConstants {
     public static final String USM_MONITORS_STATE_ID = "USM_State";
     public static final String USM_MONITORS_CHILD_PROCESS_ID = "USM_Child Process ID";
     public static final String USM_MONITORS_ACTUAL_PROCESS_ID = "USM_Actual Process ID";
+    public static final String USM_MONITORS_START_DETECTION_DURATION = "USM_Start Detection Millis";
+    // prefix of the age of the last values of a monitor that could not be refreshed in time.
+    public static final String USM_MONITORS_STALENESS_PREFIX = "USM_Staleness Millis_";
 
     /****************
      * Key names for USM Details
@@ -235,11 +238,14 @@ public final class CloudifyConstants {
     public static final String CUSTOM_PROPERTY_ENABLE_START_PROCESS_MONITOR = "org.cloudifysource.enable-start-process-monitor";
     public static final String CUSTOM_PROPERTY_STOP_DETECTION_ON_ALL_PROCESSES = "org.cloudifysource.stop-detection-on-all-processes";
     public static final String CUSTOM_PROPERTY_MONITORS_CACHE_EXPIRATION_TIMEOUT = "org.cloudifysource.monitors-cache-timeout";
+    public static final String CUSTOM_PROPERTY_MONITORS_TIMEOUT = "org.cloudifysource.monitors-timeout";
+    public static final String CUSTOM_PROPERTY_METRICS_HISTORY_MEMORY_BUDGET = "org.cloudifysource.metrics-history-memory-budget";
     public static final String CUSTOM_PROPERTY_PIDS_SIZE_LIMIT = "org.cloudifysource.pids-size-limit";
     public static final String CUSTOM_CLOUD_PROPERTY_UNICAST_DISCOVERY_PORT = "org.cloudifysource.unicast-discovery-port";
     public static final String CUSTOM_PROPERTY_CLEAN_REMOTE_DIR_ON_START = "org.cloudifysource.clearRemoteDirectoryOnStart";
 	public static final String NEW_REST_CLIENT_ENABLE_PROPERTY = "org.cloudifysource.rest-client.enable-new-rest-client";
 	public static final String CUSTOM_PROPERTY_VERBOSE_VALIDATION = "org.cloudifysource.verboseValidation";
+	public static final String CUSTOM_PROPERTY_GROOVY_RUNNER = "org.cloudifysource.groovy-runner";
 
 
     /*******************
@@ -463,6 +469,10 @@ public final class CloudifyConstants {
 	 * built-in command prefix
 	 */
 	public static final String BUILT_IN_COMMAND_PREFIX = "cloudify:";
+	/**
+	 * name of the built-in command that returns the metrics history of a service instance
+	 */
+	public static final String BUILT_IN_COMMAND_METRICS_HISTORY = "metrics-history";
 	
 	/**
 	 * service name
@@ -14,7 +14,6 @@ package org.cloudifysource.dsl.internal;
 
 import groovy.lang.Binding;
 import groovy.lang.GroovyClassLoader;
-import groovy.lang.GroovyShell;
 import groovy.lang.GroovySystem;
 import groovy.lang.MissingMethodException;
 import groovy.lang.MissingPropertyException;
@@ -22,13 +21,10 @@ import groovy.lang.Script;
 import groovy.util.ConfigObject;
 import groovy.util.ConfigSlurper;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.SequenceInputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -39,6 +35,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Logger;
 
+import org.apache.commons.io.FileUtils;
 import org.cloudifysource.domain.Service;
 import org.cloudifysource.domain.cloud.FileTransferModes;
 import org.cloudifysource.domain.cloud.RemoteExecutionModes;
@@ -48,6 +45,7 @@ import org.cloudifysource.domain.context.ServiceContext;
 import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import org.codehaus.groovy.runtime.InvokerHelper;
 
 /*******
  * Generic Cloudify DSL Reader.
@@ -112,6 +110,11 @@ public class DSLReader {
 	private GroovyClassLoader dslClassLoader;
 	private static final Object dslSingleton = new Object();
 
+	// name of the class compiled from a DSL file.
+	private static final String DSL_SCRIPT_NAME = "dslEntity";
+
+	private static volatile DSLScriptCache scriptCache = new DSLScriptCache(DSLScriptCache.DEFAULT_MAX_ENTRIES);
+
 	private static final String[] STAR_IMPORTS = new String[] {
 			org.cloudifysource.domain.Service.class.getPackage().getName(),
 			FileTransferModes.class.getName(),
@@ -365,9 +368,9 @@ public class DSLReader {
 			}
 		}
 
-		// create the groovy shell, loaded with our settings
-		final GroovyShell gs = createGroovyShell(properties);
-		final Object result = evaluateGroovyScript(gs);
+		// compile (or reuse the compiled class of) the script and run it with a fresh binding
+		final Binding binding = createGroovyBinding(properties);
+		final Object result = evaluateGroovyScript(binding);
 
 		if (result == null) {
 			throw new DSLException("The DSL evaluated to a null - check your syntax and try again");
@@ -383,8 +386,6 @@ public class DSLReader {
 			((BaseServiceContext) this.context).init((Service) result);
 		}
 
-		this.dslClassLoader = gs.getClassLoader();
-
 		// The call below is required to clear cached class entries. Without it, a PermGen error will eventually occur.
 		// A synchronized block may be required as this call MAY not be thread safe. 
 		// More info available here: http://jira.codehaus.org/browse/GROOVY-5121
@@ -424,29 +425,21 @@ public class DSLReader {
 		}
 	}
 
-	@SuppressWarnings("deprecation")
-	private Object evaluateGroovyScript(final GroovyShell gs)
+	private Object evaluateGroovyScript(final Binding binding)
 			throws DSLValidationException {
-		// Evaluate class using a FileReader, as the *-service files create a
+		// Evaluate class from the file contents, as the *-service files create a
 		// class with an illegal name
 		Object result = null;
 
 		if (this.dslContents == null) {
-
-			// FileReader reader = null;
-			SequenceInputStream sis = null;
+			String scriptText = null;
 			try {
-
-				final FileInputStream fis = new FileInputStream(dslFile);
-				final ByteArrayInputStream bis =
-						new ByteArrayInputStream(GROOVY_SERVICE_PREFIX.getBytes());
-				sis = new SequenceInputStream(bis, fis);
-				// reader = new FileReader(dslFile);
-				// using a deprecated method here as we do not have a multireader in the dependencies
-				// and not really worth another jar just for this.
-				result = gs.evaluate(sis, "dslEntity");
+				scriptText = GROOVY_SERVICE_PREFIX + FileUtils.readFileToString(dslFile);
 			} catch (final IOException e) {
 				throw new IllegalStateException("The file " + dslFile + " could not be read", e);
+			}
+			try {
+				result = runScript(scriptText, binding);
 			} catch (final MissingMethodException e) {
 				throw new IllegalArgumentException("Could not resolve DSL entry with name: " + e.getMethod(), e);
 			} catch (final MissingPropertyException e) {
@@ -456,18 +449,9 @@ public class DSLReader {
 			} catch(final CompilationFailedException e) {
 				throw new IllegalArgumentException("Could not parse " + dslFile + ": " + e.getMessage(), e);
 			}
-			finally {
-				if (sis != null) {
-					try {
-						sis.close();
-					} catch (final IOException e) {
-						// ignore
-					}
-				}
-			}
 		} else {
 			try {
-				result = gs.evaluate(this.dslContents, "dslEntity");
+				result = runScript(this.dslContents, binding);
 			} catch (final CompilationFailedException e) {
 				throw new IllegalArgumentException("The file " + dslFile + " could not be compiled", e);
 			}
@@ -476,6 +460,16 @@ public class DSLReader {
 		return result;
 	}
 
+	private Object runScript(final String scriptText, final Binding binding) {
+		final CompilerConfiguration cc = createCompilerConfiguration(BaseDslScript.class.getName(),
+				createCompilationClasspath());
+		final DSLScriptCache.CompiledScript compiled = scriptCache.getScript(scriptText, DSL_SCRIPT_NAME,
+				ServiceReader.class.getClassLoader(), cc);
+		this.dslClassLoader = compiled.getClassLoader();
+		final Script script = InvokerHelper.createScript(compiled.getScriptClass(), binding);
+		return script.run();
+	}
+
 	private void initPropertiesFile()
 			throws IOException {
 		if (this.propertiesFileName != null) {
@@ -571,9 +565,7 @@ public class DSLReader {
 
 	}
 
-	private GroovyShell createGroovyShell(final LinkedHashMap<Object, Object> properties) {
-
-		final String baseClassName = BaseDslScript.class.getName();
+	private List<String> createCompilationClasspath() {
 
 		final List<String> serviceJarFiles = createJarFileListForService();
 		String classpathDir = null;
@@ -589,13 +581,7 @@ public class DSLReader {
 			serviceJarFiles.add(classpathDir);
 		}
 
-		final CompilerConfiguration cc = createCompilerConfiguration(baseClassName, serviceJarFiles);
-
-		final Binding binding = createGroovyBinding(properties);
-
-		final GroovyShell gs = new GroovyShell(ServiceReader.class.getClassLoader(), binding, cc);
-
-		return gs;
+		return serviceJarFiles;
 	}
 
 	private static CompilerConfiguration createCompilerConfiguration(final String baseClassName,
@@ -744,6 +730,25 @@ public class DSLReader {
 		return this.dslClassLoader;
 	}
 
+	/*******
+	 * Returns the cache of compiled DSL scripts shared by all DSL readers in this class loader.
+	 * 
+	 * @return the script cache.
+	 */
+	public static DSLScriptCache getScriptCache() {
+		return scriptCache;
+	}
+
+	/*******
+	 * Replaces the cache of compiled DSL scripts. A cache with a maximal size of 0 disables caching.
+	 * 
+	 * @param cache
+	 *            the new cache.
+	 */
+	public static void setScriptCache(final DSLScriptCache cache) {
+		scriptCache = cache;
+	}
+
 	public void setCreateServiceContext(final boolean createServiceContext) {
 		this.createServiceContext = createServiceContext;
 	}
@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.internal;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
+import groovy.lang.GroovyShell;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilerConfiguration;
+
+/*******
+ * Cache of compiled DSL script classes.
+ *
+ * DSL files are read many times during the life of a process (the cloud file by the REST gateway and the ESM, the
+ * service file by the USM), and compiling a Groovy script is by far the most expensive part of reading it. The cache
+ * keeps the generated script class, along with the class loader that defined it, so reading an unchanged DSL again
+ * only creates a new script instance with a fresh binding.
+ *
+ * The key of a compiled script is a digest of the script text, the script base class, the compilation class path,
+ * and the path, size and modification time of the class path jars and of the helper Groovy sources found in class
+ * path folders. The helper sources of a folder are listed once, and listed again only when the modification time of
+ * one of its sub folders changes, so reading a cached script does not walk or read the recipe folder. The class
+ * loader of a compiled script resolves helper classes from its own class path, so a script is never shared between
+ * recipe folders, even if their content is identical.
+ *
+ * Compiled scripts are softly referenced, so they (and their class loaders) are released under memory pressure. They
+ * are also evicted in least recently used order once the number of cached scripts exceeds the configured limit.
+ *
+ * @since 2.7.0
+ */
+public class DSLScriptCache {
+
+	/******
+	 * Default maximal number of cached script classes.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 16;
+
+	private static final String GROOVY_SOURCE_SUFFIX = ".groovy";
+
+	private static final Logger logger = Logger.getLogger(DSLScriptCache.class.getName());
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final LinkedHashMap<String, SoftReference<CompiledScript>> scripts;
+	private final LinkedHashMap<File, GroovySources> groovySourcesByFolder;
+	private long hits;
+	private long misses;
+	private long compileTimeNanos;
+
+	/*******
+	 * Constructor.
+	 *
+	 * @param maxEntries
+	 *            the maximal number of cached script classes.
+	 */
+	public DSLScriptCache(final int maxEntries) {
+		// access ordered, so the eldest entry is the least recently used one.
+		this.scripts = new LinkedHashMap<String, SoftReference<CompiledScript>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, SoftReference<CompiledScript>> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		this.groovySourcesByFolder = new LinkedHashMap<File, GroovySources>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<File, GroovySources> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/*******
+	 * Returns the compiled class of the given script, compiling it if it was not compiled before.
+	 *
+	 * @param scriptText
+	 *            the script text.
+	 * @param scriptName
+	 *            the name given to the script class when it is compiled.
+	 * @param parentClassLoader
+	 *            the parent of the class loader the script is compiled with.
+	 * @param compilerConfiguration
+	 *            the compiler configuration.
+	 * @return the compiled script.
+	 * @throws CompilationFailedException
+	 *             if the script could not be compiled.
+	 */
+	public CompiledScript getScript(final String scriptText, final String scriptName,
+			final ClassLoader parentClassLoader, final CompilerConfiguration compilerConfiguration)
+			throws CompilationFailedException {
+		final String key = createKey(scriptText, compilerConfiguration);
+		synchronized (this) {
+			final SoftReference<CompiledScript> reference = scripts.get(key);
+			final CompiledScript compiled = reference == null ? null : reference.get();
+			// a class compiled under a different parent class loader may resolve other classes.
+			if (compiled != null && compiled.getClassLoader().getParent() == parentClassLoader) {
+				hits++;
+				return compiled;
+			}
+			if (reference != null && compiled == null) {
+				// released under memory pressure.
+				scripts.remove(key);
+			}
+			misses++;
+		}
+
+		// compile outside the lock, a concurrent compilation of the same script is harmless.
+		final long start = System.nanoTime();
+		final GroovyClassLoader classLoader = new GroovyClassLoader(parentClassLoader, compilerConfiguration);
+		final Class<?> scriptClass = classLoader.parseClass(
+				new GroovyCodeSource(scriptText, scriptName, GroovyShell.DEFAULT_CODE_BASE), false);
+		final long duration = System.nanoTime() - start;
+
+		final CompiledScript compiled = new CompiledScript(scriptClass, classLoader);
+		synchronized (this) {
+			compileTimeNanos += duration;
+			scripts.put(key, new SoftReference<CompiledScript>(compiled));
+		}
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine("Compiled DSL script " + scriptName + " in " + TimeUnit.NANOSECONDS.toMillis(duration)
+					+ " ms. " + this);
+		}
+		return compiled;
+	}
+
+	/*******
+	 * Removes all compiled scripts from the cache.
+	 */
+	public synchronized void clear() {
+		scripts.clear();
+		groovySourcesByFolder.clear();
+	}
+
+	public synchronized int size() {
+		return scripts.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/*******
+	 *
+	 * @return the ratio of script reads that were served from the cache, or 0 if no scripts were read.
+	 */
+	public synchronized double getHitRate() {
+		final long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/*******
+	 *
+	 * @return the total time spent compiling scripts, in milliseconds.
+	 */
+	public synchronized long getCompileTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(compileTimeNanos);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "DSLScriptCache [size=" + scripts.size() + ", hits=" + hits + ", misses=" + misses
+				+ ", compileTimeMillis=" + getCompileTimeMillis() + "]";
+	}
+
+	private String createKey(final String scriptText, final CompilerConfiguration compilerConfiguration) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 digest is not available", e);
+		}
+		update(digest, compilerConfiguration.getScriptBaseClass());
+		@SuppressWarnings("unchecked")
+		final List<String> classpath = compilerConfiguration.getClasspath();
+		for (final String entry : classpath) {
+			update(digest, entry);
+			final File file = new File(entry);
+			if (file.isFile()) {
+				update(digest, file.length() + ":" + file.lastModified());
+			} else if (file.isDirectory()) {
+				getGroovySources(file).update(digest);
+			}
+		}
+		update(digest, scriptText);
+
+		final byte[] bytes = digest.digest();
+		final char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+			chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+
+	private GroovySources getGroovySources(final File folder) {
+		GroovySources sources;
+		synchronized (this) {
+			sources = groovySourcesByFolder.get(folder);
+		}
+		if (sources != null && sources.isCurrent()) {
+			return sources;
+		}
+		// list outside the lock, a concurrent listing of the same folder is harmless.
+		sources = new GroovySources(folder);
+		synchronized (this) {
+			groovySourcesByFolder.put(folder, sources);
+		}
+		return sources;
+	}
+
+	private static void update(final MessageDigest digest, final String value) {
+		try {
+			digest.update(String.valueOf(value).getBytes("UTF-8"));
+		} catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update((byte) 0);
+	}
+
+	/*******
+	 * The helper Groovy sources of a class path folder, along with the modification time of every folder that was
+	 * listed to find them. Adding, removing or renaming a source changes the modification time of its folder.
+	 */
+	private static final class GroovySources {
+
+		private final Map<File, Long> folders = new LinkedHashMap<File, Long>();
+		private final Map<String, File> sources = new LinkedHashMap<String, File>();
+
+		private GroovySources(final File root) {
+			list(root, "");
+		}
+
+		private void list(final File folder, final String relativePath) {
+			// the modification time is read first, so a change made while listing is seen on the next check.
+			folders.put(folder, folder.lastModified());
+			final File[] files = folder.listFiles();
+			if (files == null) {
+				return;
+			}
+			// listing order is platform dependent.
+			Arrays.sort(files);
+			for (final File file : files) {
+				final String path = relativePath + "/" + file.getName();
+				if (file.isDirectory()) {
+					list(file, path);
+				} else if (file.getName().endsWith(GROOVY_SOURCE_SUFFIX)) {
+					sources.put(path, file);
+				}
+			}
+		}
+
+		private boolean isCurrent() {
+			for (final Map.Entry<File, Long> entry : folders.entrySet()) {
+				if (entry.getKey().lastModified() != entry.getValue()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void update(final MessageDigest digest) {
+			for (final Map.Entry<String, File> entry : sources.entrySet()) {
+				final File file = entry.getValue();
+				DSLScriptCache.update(digest, entry.getKey() + ":" + file.length() + ":" + file.lastModified());
+			}
+		}
+	}
+
+	/*******
+	 * A compiled script class and the class loader it was compiled with.
+	 */
+	public static final class CompiledScript {
+
+		private final Class<?> scriptClass;
+		private final GroovyClassLoader classLoader;
+
+		private CompiledScript(final Class<?> scriptClass, final GroovyClassLoader classLoader) {
+			this.scriptClass = scriptClass;
+			this.classLoader = classLoader;
+		}
+
+		public Class<?> getScriptClass() {
+			return scriptClass;
+		}
+
+		public GroovyClassLoader getClassLoader() {
+			return classLoader;
+		}
+	}
+}
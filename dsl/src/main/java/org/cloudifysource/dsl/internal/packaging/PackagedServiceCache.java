@@ -0,0 +1,328 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.internal.packaging;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/************
+ * A size bounded cache of packed service (processing unit) zip files, keyed by the content of the packed files.
+ *
+ * The key of a packed service is a digest of every file in the recipe folder (which by the time of packing already
+ * includes the merged properties and overrides files), the additional service files, and the service properties that
+ * affect packing. Packing an unchanged recipe again is then answered with the previously created zip file, instead of
+ * copying the recipe folder and compressing it again.
+ *
+ * Callers own the files returned by {@link Packager}, and may rename or delete them. The cache therefore keeps its own
+ * copy of every archive and hands out a private copy of it on every hit. When the total size of the cached archives
+ * exceeds the configured limit, the least recently used archives are evicted.
+ *
+ * @since 2.7.0
+ *
+ */
+public class PackagedServiceCache {
+
+	private static final java.util.logging.Logger logger = java.util.logging.Logger
+			.getLogger(PackagedServiceCache.class.getName());
+
+	/**
+	 * Default maximal total size of the cached archives.
+	 */
+	public static final long DEFAULT_MAX_SIZE_BYTES = 512L * 1024 * 1024;
+
+	private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final long maxSizeBytes;
+	// access ordered, so iteration starts with the least recently used archive.
+	private final LinkedHashMap<String, CachedArchive> archives =
+			new LinkedHashMap<String, CachedArchive>(16, 0.75f, true);
+	private File cacheDir;
+	private long sizeBytes;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxSizeBytes
+	 *            the maximal total size of the cached archives.
+	 */
+	public PackagedServiceCache(final long maxSizeBytes) {
+		this.maxSizeBytes = maxSizeBytes;
+	}
+
+	/**************
+	 * Calculates the cache key of a service package.
+	 *
+	 * @param recipeFolder
+	 *            the recipe folder that is packed.
+	 * @param additionalServiceFiles
+	 *            files added to the service folder, may be null.
+	 * @param properties
+	 *            additional values that affect the package contents.
+	 * @return the key.
+	 * @throws IOException .
+	 */
+	public String createKey(final File recipeFolder, final List<File> additionalServiceFiles,
+			final Object... properties) throws IOException {
+		final MessageDigest digest = createDigest();
+		final byte[] buffer = new byte[DIGEST_BUFFER_SIZE];
+		digestFolder(digest, recipeFolder, "", buffer);
+		if (additionalServiceFiles != null) {
+			for (final File file : additionalServiceFiles) {
+				digestFile(digest, file, "+" + file.getName(), buffer);
+			}
+		}
+		for (final Object property : properties) {
+			digest.update(String.valueOf(property).getBytes("UTF-8"));
+			digest.update((byte) 0);
+		}
+		return toHex(digest.digest());
+	}
+
+	/**************
+	 * Copies a cached archive to the given file. The copy is made outside the cache lock, so the archive may be
+	 * evicted while it is copied. Such a failed copy is reported as a cache miss.
+	 *
+	 * @param key
+	 *            the package key.
+	 * @param destFile
+	 *            the file to copy the archive to.
+	 * @return true if the archive was found and copied, false otherwise.
+	 */
+	public boolean get(final String key, final File destFile) {
+		final CachedArchive archive;
+		synchronized (this) {
+			archive = archives.get(key);
+			if (archive == null || !archive.file.isFile()) {
+				if (archive != null) {
+					remove(key);
+				}
+				misses++;
+				return false;
+			}
+		}
+		try {
+			copy(archive.file, destFile);
+		} catch (final IOException e) {
+			logger.fine("Failed to copy cached packed service " + archive.file + ", it will be packed again: " + e);
+			FileUtils.deleteQuietly(destFile);
+			synchronized (this) {
+				misses++;
+			}
+			return false;
+		}
+		synchronized (this) {
+			hits++;
+		}
+		return true;
+	}
+
+	/**************
+	 * Adds a packed archive to the cache. The archive itself is not modified, a copy of it is cached.
+	 *
+	 * @param key
+	 *            the package key.
+	 * @param packedFile
+	 *            the packed archive.
+	 * @throws IOException .
+	 */
+	public void put(final String key, final File packedFile) throws IOException {
+		final long length = packedFile.length();
+		if (length > maxSizeBytes) {
+			logger.fine("Not caching " + packedFile + " since it is larger than the cache size limit");
+			return;
+		}
+		synchronized (this) {
+			if (archives.containsKey(key)) {
+				return;
+			}
+		}
+		final File archive = File.createTempFile(key, ".zip", getCacheDir());
+		archive.deleteOnExit();
+		copy(packedFile, archive);
+		synchronized (this) {
+			if (archives.containsKey(key)) {
+				// cached concurrently by another packing of the same content.
+				FileUtils.deleteQuietly(archive);
+				return;
+			}
+			archives.put(key, new CachedArchive(archive, length));
+			sizeBytes += length;
+			evict();
+		}
+	}
+
+	/**
+	 * Removes all archives from the cache.
+	 */
+	public synchronized void clear() {
+		for (final CachedArchive archive : archives.values()) {
+			FileUtils.deleteQuietly(archive.file);
+		}
+		archives.clear();
+		sizeBytes = 0;
+	}
+
+	public synchronized long getSizeBytes() {
+		return sizeBytes;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public long getMaxSizeBytes() {
+		return maxSizeBytes;
+	}
+
+	private void evict() {
+		final Iterator<Map.Entry<String, CachedArchive>> iterator = archives.entrySet().iterator();
+		while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+			final CachedArchive archive = iterator.next().getValue();
+			iterator.remove();
+			sizeBytes -= archive.length;
+			logger.finer("Evicting packed service " + archive.file);
+			FileUtils.deleteQuietly(archive.file);
+		}
+	}
+
+	private void remove(final String key) {
+		final CachedArchive archive = archives.remove(key);
+		if (archive != null) {
+			sizeBytes -= archive.length;
+			FileUtils.deleteQuietly(archive.file);
+		}
+	}
+
+	private synchronized File getCacheDir() throws IOException {
+		if (cacheDir == null || !cacheDir.isDirectory()) {
+			final File dir = File.createTempFile("gs_packages_", "");
+			FileUtils.forceDelete(dir);
+			FileUtils.forceMkdir(dir);
+			dir.deleteOnExit();
+			cacheDir = dir;
+		}
+		return cacheDir;
+	}
+
+	private static void digestFolder(final MessageDigest digest, final File folder, final String relativePath,
+			final byte[] buffer) throws IOException {
+		final File[] files = folder.listFiles();
+		if (files == null) {
+			throw new IOException("Failed to list the files of " + folder);
+		}
+		// listing order is platform dependent.
+		Arrays.sort(files);
+		for (final File file : files) {
+			final String path = relativePath + "/" + file.getName();
+			if (file.isDirectory()) {
+				digest.update(path.getBytes("UTF-8"));
+				digest.update((byte) 1);
+				digestFolder(digest, file, path, buffer);
+			} else {
+				digestFile(digest, file, path, buffer);
+			}
+		}
+	}
+
+	private static void digestFile(final MessageDigest digest, final File file, final String path,
+			final byte[] buffer) throws IOException {
+		digest.update(path.getBytes("UTF-8"));
+		digest.update((byte) 0);
+		final InputStream in = new FileInputStream(file);
+		try {
+			int read = in.read(buffer);
+			while (read != -1) {
+				digest.update(buffer, 0, read);
+				read = in.read(buffer);
+			}
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		digest.update((byte) 0);
+	}
+
+	private static void copy(final File source, final File dest) throws IOException {
+		final FileInputStream in = new FileInputStream(source);
+		try {
+			final FileOutputStream out = new FileOutputStream(dest);
+			try {
+				final FileChannel inChannel = in.getChannel();
+				final FileChannel outChannel = out.getChannel();
+				final long size = inChannel.size();
+				long position = 0;
+				while (position < size) {
+					position += inChannel.transferTo(position, size - position, outChannel);
+				}
+			} finally {
+				IOUtils.closeQuietly(out);
+			}
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 digest is not available", e);
+		}
+	}
+
+	private static String toHex(final byte[] bytes) {
+		final char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+			chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * A cached archive along with its size at the time it was cached.
+	 */
+	private static final class CachedArchive {
+
+		private final File file;
+		private final long length;
+
+		private CachedArchive(final File file, final long length) {
+			this.file = file;
+			this.length = length;
+		}
+	}
+}
@@ -26,8 +26,10 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.logging.Level;
@@ -54,10 +56,32 @@ public final class Packager {
 	private static final java.util.logging.Logger logger = java.util.logging.Logger
 			.getLogger(Packager.class.getName());
 
+	private static volatile PackagedServiceCache packagedServiceCache =
+			new PackagedServiceCache(PackagedServiceCache.DEFAULT_MAX_SIZE_BYTES);
+
 	private Packager() {
 
 	}
 
+	/*************
+	 * Returns the cache of packed services shared by all packing operations in this JVM.
+	 * 
+	 * @return the cache, or null if packed services are not cached.
+	 */
+	public static PackagedServiceCache getPackagedServiceCache() {
+		return packagedServiceCache;
+	}
+
+	/*************
+	 * Replaces the cache of packed services.
+	 * 
+	 * @param cache
+	 *            the new cache, or null to disable caching of packed services.
+	 */
+	public static void setPackagedServiceCache(final PackagedServiceCache cache) {
+		packagedServiceCache = cache;
+	}
+
 	/*************
 	 * Pack a service recipe folder into a zip file.
 	 * 
@@ -153,14 +177,35 @@ public final class Packager {
 		}
 
 		logger.info("packing folder " + recipeFile.getParent());
-		final File createdPuFolder = buildPuFolder(service, recipeFile,
-				additionalServiceFiles);
-		final File puZipFile = createZippedPu(service, createdPuFolder,
-				recipeFile);
-		logger.info("created " + puZipFile.getCanonicalFile());
-		if (FileUtils.deleteQuietly(createdPuFolder)) {
-			logger.finer("deleted temp pu folder "
-					+ createdPuFolder.getAbsolutePath());
+		final File puZipFile = createPuZipFile(service, recipeFile);
+
+		// extended services pull files from outside the recipe folder, so their content is not covered by the key.
+		final PackagedServiceCache cache = packagedServiceCache;
+		String cacheKey = null;
+		if (cache != null && service.getExtendedServicesPaths().isEmpty()) {
+			cacheKey = cache.createKey(recipeFile.getParentFile(), additionalServiceFiles, service.getMaxJarSize());
+			if (cache.get(cacheKey, puZipFile)) {
+				logger.info("created " + puZipFile.getCanonicalFile() + " from previously packed folder");
+				return puZipFile;
+			}
+		}
+
+		if (service.getExtendedServicesPaths().isEmpty()) {
+			writeZippedPu(service, recipeFile, additionalServiceFiles, puZipFile);
+			logger.info("created " + puZipFile.getCanonicalFile());
+		} else {
+			// extended service scripts are modified while building the pu folder.
+			final File createdPuFolder = buildPuFolder(service, recipeFile,
+					additionalServiceFiles);
+			createZippedPu(service, createdPuFolder, puZipFile);
+			logger.info("created " + puZipFile.getCanonicalFile());
+			if (FileUtils.deleteQuietly(createdPuFolder)) {
+				logger.finer("deleted temp pu folder "
+						+ createdPuFolder.getAbsolutePath());
+			}
+		}
+		if (cacheKey != null) {
+			cache.put(cacheKey, puZipFile);
 		}
 		return puZipFile;
 	}
@@ -204,10 +249,7 @@ public final class Packager {
 
 	}
 
-	private static File createZippedPu(final Service service,
-			final File puFolderToZip, final File recipeFile)
-					throws IOException, PackagingException {
-		logger.finer("trying to zip " + puFolderToZip.getAbsolutePath());
+	private static File createPuZipFile(final Service service, final File recipeFile) throws IOException {
 		String name = service.getName();
 		final String serviceName = name != null ? name : recipeFile.getParentFile().getName();
 
@@ -221,13 +263,70 @@ public final class Packager {
 		// files will be deleted in reverse order
 		tmpFile.deleteOnExit();
 		zipFile.deleteOnExit();
+		return zipFile;
+	}
 
+	private static void createZippedPu(final Service service,
+			final File puFolderToZip, final File zipFile)
+					throws IOException, PackagingException {
+		logger.finer("trying to zip " + puFolderToZip.getAbsolutePath());
 		ServiceReader
 		.validateFolderSize(puFolderToZip, service.getMaxJarSize());
 		ZipUtils.zip(puFolderToZip, zipFile);
 		logger.finer("zipped folder successfully to "
 				+ zipFile.getAbsolutePath());
-		return zipFile;
+	}
+
+	/**
+	 * Writes the processing unit zip file straight from the recipe folder, with the same structure as the one created
+	 * by {@link #buildPuFolder(Service, File, List)}, without copying the recipe to a temporary folder first.
+	 */
+	private static void writeZippedPu(final Service service, final File recipeFile,
+			final List<File> additionalServiceFiles, final File zipFile)
+					throws IOException, PackagingException {
+		final File srcFolder = recipeFile.getParentFile();
+		logger.finer("trying to zip " + srcFolder.getAbsolutePath());
+		final PuArchiveWriter writer = new PuArchiveWriter(zipFile, service.getMaxJarSize());
+		boolean written = false;
+		try {
+			// additional files replace recipe files of the same name
+			final Set<String> additionalFileNames = new HashSet<String>();
+			if (additionalServiceFiles != null) {
+				for (final File file : additionalServiceFiles) {
+					additionalFileNames.add(file.getName());
+				}
+			}
+			writer.addDirectoryContent(srcFolder, "ext/", null, additionalFileNames);
+			if (additionalServiceFiles != null) {
+				for (final File file : additionalServiceFiles) {
+					writer.addFile(file, "ext/" + file.getName());
+				}
+			}
+
+			// copy all files from usmlib to lib
+			writer.addDirectory("lib/");
+			final File srcUsmLibDir = new File(srcFolder, "usmlib");
+			if (srcUsmLibDir.exists()) {
+				writer.addDirectoryContent(srcUsmLibDir, "lib/", SVNFileFilter.getFilter(), null);
+			}
+
+			final InputStream puXmlStream = getDefaultPuXmlStream();
+			try {
+				writer.addEntry(puXmlStream, "META-INF/spring/pu.xml");
+			} finally {
+				closeDefaultPuXmlStream(puXmlStream);
+			}
+
+			writer.addManifest(createManifest());
+			writer.finish();
+			written = true;
+			logger.finer("zipped folder successfully to " + zipFile.getAbsolutePath());
+		} finally {
+			if (!written) {
+				writer.abort();
+				FileUtils.deleteQuietly(zipFile);
+			}
+		}
 	}
 
 	/**
@@ -297,20 +396,11 @@ public final class Packager {
 		// logger.finer("copied " + srcUsmJar.getName());
 
 		// no pu.xml in source folder, lets copy the default one
-		final InputStream puXmlStream = Packager.class.getClassLoader()
-				.getResourceAsStream("META-INF/spring/default_usm_pu.xml");
-		if (puXmlStream == null) {
-			throw new PackagingException("can not find locate default pu.xml");
-		}
+		final InputStream puXmlStream = getDefaultPuXmlStream();
 		final File destPuXml = new File(springFolder, "pu.xml");
 		FileUtils.copyInputStreamToFile(puXmlStream, destPuXml);
 		logger.finer("copied pu.xml");
-		try {
-			puXmlStream.close();
-		} catch (final IOException e) {
-			logger.log(Level.SEVERE,
-					"failed to close default_usm_pu.xml stream", e);
-		}
+		closeDefaultPuXmlStream(puXmlStream);
 
 		copyExtendedServiceFiles(service, recipeFile, extFolder);
 
@@ -320,11 +410,25 @@ public final class Packager {
 		return destPuFolder;
 	}
 
-	private static void createManifestFile(final File destPuFolder)
-			throws IOException {
-		final File manifestFolder = new File(destPuFolder, "META-INF");
-		final File manifestFile = new File(manifestFolder, "MANIFEST.MF");
+	private static InputStream getDefaultPuXmlStream() throws PackagingException {
+		final InputStream puXmlStream = Packager.class.getClassLoader()
+				.getResourceAsStream("META-INF/spring/default_usm_pu.xml");
+		if (puXmlStream == null) {
+			throw new PackagingException("can not find locate default pu.xml");
+		}
+		return puXmlStream;
+	}
 
+	private static void closeDefaultPuXmlStream(final InputStream puXmlStream) {
+		try {
+			puXmlStream.close();
+		} catch (final IOException e) {
+			logger.log(Level.SEVERE,
+					"failed to close default_usm_pu.xml stream", e);
+		}
+	}
+
+	private static Manifest createManifest() {
 		final Manifest manifest = new Manifest();
 
 		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION,
@@ -335,6 +439,15 @@ public final class Packager {
 				+ "lib/platform/usm/usm.jar "
 				// added support for @grab annotation in groovy file - requires ivy and groovy in same classloader
 				+ "tools/groovy/embeddable/groovy-all-1.8.6.jar tools/groovy/lib/ivy-2.2.0.jar ");
+		return manifest;
+	}
+
+	private static void createManifestFile(final File destPuFolder)
+			throws IOException {
+		final File manifestFolder = new File(destPuFolder, "META-INF");
+		final File manifestFile = new File(manifestFolder, "MANIFEST.MF");
+
+		final Manifest manifest = createManifest();
 
 		OutputStream out = null;
 
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.internal.packaging;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+/************
+ * Writes a processing unit zip file directly from its source files, without first laying out the processing unit
+ * folder on disk. Every source file is read once and written once.
+ *
+ * The uncompressed size of the written entries is validated while writing, the same way
+ * {@link org.cloudifysource.dsl.internal.ServiceReader#validateFolderSize(File, long)} validates a processing unit
+ * folder, so an oversized recipe fails as soon as the limit is crossed.
+ *
+ * @since 2.7.0
+ *
+ */
+final class PuArchiveWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File zipFile;
+	private final long maxSize;
+	private final ZipOutputStream zout;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private final Set<String> entryNames = new HashSet<String>();
+	private long size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param zipFile
+	 *            the zip file to create.
+	 * @param maxSize
+	 *            the maximal total size of the uncompressed entries.
+	 * @throws IOException .
+	 */
+	PuArchiveWriter(final File zipFile, final long maxSize) throws IOException {
+		this.zipFile = zipFile;
+		this.maxSize = maxSize;
+		zipFile.setWritable(true);
+		this.zout = new ZipOutputStream(new FileOutputStream(zipFile));
+	}
+
+	/**
+	 * Adds a directory entry, and the entries of its parent directories if they were not added yet.
+	 *
+	 * @param name
+	 *            the directory entry name, ending with '/'.
+	 * @throws IOException .
+	 */
+	void addDirectory(final String name) throws IOException {
+		final int parentEnd = name.lastIndexOf('/', name.length() - 2);
+		if (parentEnd > 0) {
+			addDirectory(name.substring(0, parentEnd + 1));
+		}
+		if (entryNames.add(name)) {
+			zout.putNextEntry(new ZipEntry(name));
+			zout.closeEntry();
+		}
+	}
+
+	/**
+	 * Adds the content of a directory, recursively, under the given entry prefix.
+	 *
+	 * @param directory
+	 *            the directory to add.
+	 * @param prefix
+	 *            the entry name prefix, ending with '/'.
+	 * @param filter
+	 *            a filter of the added files, may be null.
+	 * @param excludedNames
+	 *            names of top level files in the directory that should not be added.
+	 * @throws IOException .
+	 * @throws PackagingException
+	 *             if the size limit was exceeded.
+	 */
+	void addDirectoryContent(final File directory, final String prefix, final FileFilter filter,
+			final Set<String> excludedNames) throws IOException, PackagingException {
+		addDirectory(prefix);
+		final File[] files = filter == null ? directory.listFiles() : directory.listFiles(filter);
+		if (files == null) {
+			throw new IOException("Failed to list the files of " + directory);
+		}
+		Arrays.sort(files);
+		for (final File file : files) {
+			if (excludedNames != null && excludedNames.contains(file.getName())) {
+				continue;
+			}
+			if (file.isDirectory()) {
+				addDirectoryContent(file, prefix + file.getName() + "/", filter, null);
+			} else {
+				addFile(file, prefix + file.getName());
+			}
+		}
+	}
+
+	/**
+	 * Adds a file entry with the content of the given file.
+	 *
+	 * @param file
+	 *            the file.
+	 * @param name
+	 *            the entry name.
+	 * @throws IOException .
+	 * @throws PackagingException
+	 *             if the size limit was exceeded.
+	 */
+	void addFile(final File file, final String name) throws IOException, PackagingException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			addEntry(in, name);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Adds a file entry with the content of the given stream. The stream is not closed.
+	 *
+	 * @param in
+	 *            the entry content.
+	 * @param name
+	 *            the entry name.
+	 * @throws IOException .
+	 * @throws PackagingException
+	 *             if the size limit was exceeded.
+	 */
+	void addEntry(final InputStream in, final String name) throws IOException, PackagingException {
+		final int parentEnd = name.lastIndexOf('/');
+		if (parentEnd > 0) {
+			addDirectory(name.substring(0, parentEnd + 1));
+		}
+		entryNames.add(name);
+		zout.putNextEntry(new ZipEntry(name));
+		int read = in.read(buffer);
+		while (read != -1) {
+			size += read;
+			if (size > maxSize) {
+				throw new PackagingException("processing unit " + zipFile.getName() + " size is over "
+						+ FileUtils.byteCountToDisplaySize(size) + ", it must be smaller than: "
+						+ FileUtils.byteCountToDisplaySize(maxSize));
+			}
+			zout.write(buffer, 0, read);
+			read = in.read(buffer);
+		}
+		zout.closeEntry();
+	}
+
+	/**
+	 * Adds the manifest entry.
+	 *
+	 * @param manifest
+	 *            the manifest.
+	 * @throws IOException .
+	 */
+	void addManifest(final Manifest manifest) throws IOException {
+		addDirectory("META-INF/");
+		entryNames.add("META-INF/MANIFEST.MF");
+		zout.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+		manifest.write(zout);
+		zout.closeEntry();
+	}
+
+	/**
+	 * Completes the zip file.
+	 *
+	 * @throws IOException .
+	 * @throws PackagingException
+	 *             if no file content was written.
+	 */
+	void finish() throws IOException, PackagingException {
+		zout.close();
+		if (size == 0) {
+			throw new PackagingException("processing unit " + zipFile.getName() + " is empty");
+		}
+	}
+
+	/**
+	 * Closes the zip file after a failure, ignoring further errors.
+	 */
+	void abort() {
+		try {
+			zout.close();
+		} catch (final IOException e) {
+			// ignore, the original failure is reported.
+		}
+	}
+}
@@ -36,7 +36,7 @@ import java.util.zip.ZipOutputStream;
  */
 public final class ZipUtils {
 
-	private static final int BUFFER_SIZE = 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
 
 	private ZipUtils() {
 
@@ -71,7 +71,7 @@ public final class ZipUtils {
 		try {
 			final String name = sourceFile.getName();
 			zout.putNextEntry(new ZipEntry(name));
-			copy(sourceFile, zout);
+			copy(sourceFile, zout, new byte[BUFFER_SIZE]);
 			zout.closeEntry();
 
 		} finally {
@@ -98,6 +98,8 @@ public final class ZipUtils {
 		stack.push(directory);
 		final OutputStream out = new FileOutputStream(toZip);
 		Closeable res = out;
+		// a single buffer is reused for all the zipped files.
+		final byte[] buffer = new byte[BUFFER_SIZE];
 
 		try {
 			final ZipOutputStream zout = new ZipOutputStream(out);
@@ -112,7 +114,7 @@ public final class ZipUtils {
 						zout.putNextEntry(new ZipEntry(name));
 					} else {
 						zout.putNextEntry(new ZipEntry(name));
-						copy(kid, zout);
+						copy(kid, zout, buffer);
 						zout.closeEntry();
 					}
 				}
@@ -134,13 +136,16 @@ public final class ZipUtils {
 	public static void unzip(final File zipfile, final File directory)
 			throws IOException {
 		final ZipFile zfile = new ZipFile(zipfile);
+		// a single buffer is reused for all the extracted entries.
+		final byte[] buffer = new byte[BUFFER_SIZE];
 		try {
 			final Enumeration<? extends ZipEntry> entries = zfile.entries();
 			while (entries.hasMoreElements()) {
 				final ZipEntry entry = entries.nextElement();
 				final File file = new File(directory, entry.getName());
 				if (entry.isDirectory()) {
-					final boolean mkdirs = file.mkdirs();
+					// the directory may already exist if one of its files was extracted before it.
+					final boolean mkdirs = file.isDirectory() || file.mkdirs();
 					if (!mkdirs) {
 						zfile.close();
 						throw new IllegalStateException("cant create dir" + file.getAbsolutePath());
@@ -155,7 +160,7 @@ public final class ZipUtils {
 					}
 					final InputStream in = zfile.getInputStream(entry);
 					try {
-						copy(in, file);
+						copy(in, file, buffer);
 					} finally {
 						in.close();
 					}
@@ -198,7 +203,7 @@ public final class ZipUtils {
 		entryDirectory.deleteOnExit();
 
 		try {
-			copy(in, entryFile);
+			copy(in, entryFile, new byte[BUFFER_SIZE]);
 		} finally {
 			in.close();
 		}
@@ -206,9 +211,8 @@ public final class ZipUtils {
 
 	}
 
-	private static void copy(final InputStream in, final OutputStream out)
+	private static void copy(final InputStream in, final OutputStream out, final byte[] buffer)
 			throws IOException {
-		final byte[] buffer = new byte[BUFFER_SIZE];
 		while (true) {
 			final int readCount = in.read(buffer);
 			if (readCount < 0) {
@@ -218,21 +222,21 @@ public final class ZipUtils {
 		}
 	}
 
-	private static void copy(final File file, final OutputStream out)
+	private static void copy(final File file, final OutputStream out, final byte[] buffer)
 			throws IOException {
 		final InputStream in = new FileInputStream(file);
 		try {
-			copy(in, out);
+			copy(in, out, buffer);
 		} finally {
 			in.close();
 		}
 	}
 
-	private static void copy(final InputStream in, final File file)
+	private static void copy(final InputStream in, final File file, final byte[] buffer)
 			throws IOException {
 		final OutputStream out = new FileOutputStream(file);
 		try {
-			copy(in, out);
+			copy(in, out, buffer);
 		} finally {
 			out.close();
 		}
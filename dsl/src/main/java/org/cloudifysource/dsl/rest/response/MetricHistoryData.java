@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.rest.response;
+
+import java.io.Serializable;
+
+/**
+ * 
+ * A POJO represent the history of a single service instance metric. Each point holds the average, minimum and maximum
+ * of the samples taken in the step that starts at its timestamp. Steps with no samples are omitted.
+ * 
+ * @since 2.7.0
+ * 
+ */
+public class MetricHistoryData implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private long step;
+	private long[] timestamps;
+	private double[] averages;
+	private double[] minimums;
+	private double[] maximums;
+
+	public MetricHistoryData() {
+	}
+
+	public MetricHistoryData(final long step, final long[] timestamps, final double[] averages,
+			final double[] minimums, final double[] maximums) {
+		this.step = step;
+		this.timestamps = timestamps;
+		this.averages = averages;
+		this.minimums = minimums;
+		this.maximums = maximums;
+	}
+
+	public long getStep() {
+		return step;
+	}
+
+	public void setStep(final long step) {
+		this.step = step;
+	}
+
+	public long[] getTimestamps() {
+		return timestamps;
+	}
+
+	public void setTimestamps(final long[] timestamps) {
+		this.timestamps = timestamps;
+	}
+
+	public double[] getAverages() {
+		return averages;
+	}
+
+	public void setAverages(final double[] averages) {
+		this.averages = averages;
+	}
+
+	public double[] getMinimums() {
+		return minimums;
+	}
+
+	public void setMinimums(final double[] minimums) {
+		this.minimums = minimums;
+	}
+
+	public double[] getMaximums() {
+		return maximums;
+	}
+
+	public void setMaximums(final double[] maximums) {
+		this.maximums = maximums;
+	}
+
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.rest.response;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Response of a long-poll request for deployment events.
+ * <br></br>
+ *
+ * Holds the events that were appended after the requested index, along with the current
+ * number of running instances of every service of the deployment.
+ */
+public class PollDeploymentEventsResponse {
+
+    private DeploymentEvents events = new DeploymentEvents();
+    private Map<String, Integer> runningInstances = new HashMap<String, Integer>();
+
+    public DeploymentEvents getEvents() {
+        return events;
+    }
+
+    public void setEvents(final DeploymentEvents events) {
+        this.events = events;
+    }
+
+    /**
+     * @return The number of running instances, per service name.
+     */
+    public Map<String, Integer> getRunningInstances() {
+        return runningInstances;
+    }
+
+    public void setRunningInstances(final Map<String, Integer> runningInstances) {
+        this.runningInstances = runningInstances;
+    }
+
+    @Override
+    public String toString() {
+        return "PollDeploymentEventsResponse{" + "events=" + events
+                + ", runningInstances=" + runningInstances + '}';
+    }
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.rest.response;
+
+import java.util.Map;
+
+/**
+ * 
+ * A POJO represent service instance metrics history response.
+ * 
+ * @since 2.7.0
+ * 
+ */
+public class ServiceInstanceMetricsHistoryResponse {
+
+	private String serviceName;
+	private String appName;
+	private int instanceId;
+	private Map<String, MetricHistoryData> metrics;
+
+	public String getServiceName() {
+		return serviceName;
+	}
+
+	public void setServiceName(final String serviceName) {
+		this.serviceName = serviceName;
+	}
+
+	public String getAppName() {
+		return appName;
+	}
+
+	public void setAppName(final String appName) {
+		this.appName = appName;
+	}
+
+	public int getInstanceId() {
+		return instanceId;
+	}
+
+	public void setInstanceId(final int instanceId) {
+		this.instanceId = instanceId;
+	}
+
+	public Map<String, MetricHistoryData> getMetrics() {
+		return metrics;
+	}
+
+	public void setMetrics(final Map<String, MetricHistoryData> metrics) {
+		this.metrics = metrics;
+	}
+}
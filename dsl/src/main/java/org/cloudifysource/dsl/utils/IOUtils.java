@@ -17,11 +17,10 @@ package org.cloudifysource.dsl.utils;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.ProtocolException;
-import java.net.Socket;
 import java.net.URL;
+import java.util.Collections;
 import java.util.List;
 
 /**********
@@ -62,19 +61,13 @@ public final class IOUtils {
 	 * @return - true if all ports are free
 	 */
 	public static boolean arePortsFree(final List<Integer> portList) {
-		int portCounter = 0;
-		for (final int port : portList) {
-			if (!isPortOccupied(port)) {
-				logger.info("port: " + port + " is open.");
-				portCounter++;
+		final boolean[] occupied = probeLocalPorts(portList);
+		for (int i = 0; i < occupied.length; i++) {
+			if (occupied[i]) {
+				return false;
 			}
-			if (portCounter == portList.size()) {
-				// All ports are free.
-				return true;
-			}
-
 		}
-		return false;
+		return !portList.isEmpty();
 	}
 
 	/**
@@ -85,22 +78,15 @@ public final class IOUtils {
 	 * @return - true if port is occupied
 	 */
 	public static boolean isPortOccupied(final int port) {
-		final Socket sock = new Socket();
 		logger.fine("Checking port " + port);
 		try {
-			sock.connect(new InetSocketAddress("127.0.0.1", port));
-			logger.fine("Connected to port " + port);
-			sock.close();
-			return true;
-		} catch (final IOException e1) {
-			logger.fine("Port " + port + " is free.");
+			final boolean occupied = PortProber.probe("127.0.0.1", Collections.singletonList(port),
+					PortProber.DEFAULT_TIMEOUT_MILLIS)[0];
+			logger.fine(occupied ? "Connected to port " + port : "Port " + port + " is free.");
+			return occupied;
+		} catch (final IOException e) {
+			logger.fine("Failed to check port " + port + ": " + e.getMessage());
 			return false;
-		} finally {
-			try {
-				sock.close();
-			} catch (final IOException e) {
-				// ignore
-			}
 		}
 	}
 
@@ -116,17 +102,23 @@ public final class IOUtils {
 	 * 
 	 */
 	public static boolean arePortsOccupied(final List<Integer> portList) {
-		int portCounter = 0;
-		for (final int port : portList) {
-			if (isPortOccupied(port)) {
-				portCounter++;
-			}
-			if (portCounter == portList.size()) {
-				// connection succeeded - the port is not free
-				return true;
+		final boolean[] occupied = probeLocalPorts(portList);
+		for (int i = 0; i < occupied.length; i++) {
+			if (!occupied[i]) {
+				return false;
 			}
 		}
-		return false;
+		return !portList.isEmpty();
+	}
+
+	// checks all ports of the localhost interface at once. ports that could not be checked are reported as free.
+	private static boolean[] probeLocalPorts(final List<Integer> portList) {
+		try {
+			return PortProber.probe("127.0.0.1", portList, PortProber.DEFAULT_TIMEOUT_MILLIS);
+		} catch (final IOException e) {
+			logger.fine("Failed to check ports " + portList + ": " + e.getMessage());
+			return new boolean[portList.size()];
+		}
 	}
 
 	/*********
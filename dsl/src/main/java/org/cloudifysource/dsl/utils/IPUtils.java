@@ -21,6 +21,8 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
@@ -338,13 +340,29 @@ public final class IPUtils {
 					+ " lowest port must be smaller than the highest port in the range.");
 		}
 		
-		boolean connectionEstablished = false;
+		// ports that accept connections are in use. Probing the whole range at once leaves the slower bind
+		// validation, which retries a port that is in use, to the ports that are likely to be free.
+		final List<Integer> ports = new ArrayList<Integer>(highestPort - lowestPort + 1);
+		for (int port = lowestPort; port <= highestPort; port++) {
+			ports.add(port);
+		}
+		final InetSocketAddress[] endPoints = new InetSocketAddress[ports.size()];
+		for (int i = 0; i < endPoints.length; i++) {
+			endPoints[i] = new InetSocketAddress(host, ports.get(i));
+			if (endPoints[i].isUnresolved()) {
+				throw new UnknownHostException(host);
+			}
+		}
+		final boolean[] occupied = PortProber.probe(endPoints, PortProber.DEFAULT_TIMEOUT_MILLIS);
+
 		Exception lastException = null;
-		
-		for (int port = lowestPort; port <= highestPort && !connectionEstablished; port++) {
+		for (int i = 0; i < occupied.length; i++) {
+			if (occupied[i]) {
+				continue;
+			}
 			try {
-				validatePortIsFree(host, port);
-				connectionEstablished = true;
+				validatePortIsFree(host, ports.get(i));
+				return;
 			} catch (UnknownHostException uhe) {
 				// the hostname couldn't be resolved into an InetAddress
 				// no need to try other ports
@@ -356,14 +374,12 @@ public final class IPUtils {
 			} catch (Exception e) {
 				// validation failed, try the next port
 				lastException = e;
-				continue;
 			}
 		}
-		
-		if (!connectionEstablished) {
-			throw new IOException("Failed to find any free ports in the range " + lowestPort + "-" + highestPort 
-					+ " on host " + host + ", reported error: " + lastException.getMessage(), lastException);			
-		}
+
+		throw new IOException("Failed to find any free ports in the range " + lowestPort + "-" + highestPort 
+				+ " on host " + host + ", reported error: " 
+				+ (lastException == null ? "all ports are in use" : lastException.getMessage()), lastException);
 	}
 	
 	
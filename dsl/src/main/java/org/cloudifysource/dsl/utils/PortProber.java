@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.utils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+
+/**********
+ * Checks which of a set of TCP end points accept connections. Connections are opened at once as non-blocking channels
+ * and completed by a single selector, so probing many ports takes about one round trip, and a host that does not
+ * answer costs one shared timeout rather than a timeout per port. To keep the number of open file descriptors bounded,
+ * at most {@value #MAX_OPEN_CONNECTIONS} connections are opened at once; larger sets of end points are probed in
+ * batches, and every batch gets the full timeout.
+ *
+ * @since 2.7.0
+ *
+ */
+public final class PortProber {
+
+	/**
+	 * The default time to wait for all connections to complete.
+	 */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+	/**
+	 * The maximal number of connections opened at once.
+	 */
+	public static final int MAX_OPEN_CONNECTIONS = 256;
+
+	private static java.util.logging.Logger logger = java.util.logging.Logger.getLogger(PortProber.class.getName());
+
+	private PortProber() {
+		// private constructor to prevent initialization.
+	}
+
+	/**********
+	 * Checks which ports of a host accept connections.
+	 *
+	 * @param host
+	 *            the host.
+	 * @param ports
+	 *            the ports.
+	 * @param timeoutMillis
+	 *            the time to wait for the connections of each batch.
+	 * @return for each port, true if a connection was established.
+	 * @throws IOException
+	 *             if a selector could not be opened.
+	 */
+	public static boolean[] probe(final String host, final List<Integer> ports, final long timeoutMillis)
+			throws IOException {
+		final InetSocketAddress[] endPoints = new InetSocketAddress[ports.size()];
+		for (int i = 0; i < endPoints.length; i++) {
+			endPoints[i] = new InetSocketAddress(host, ports.get(i));
+		}
+		return probe(endPoints, timeoutMillis);
+	}
+
+	/**********
+	 * Checks which end points accept connections. End points that could not be resolved, that refused the connection
+	 * or that did not answer in time are reported as not accepting connections.
+	 *
+	 * @param endPoints
+	 *            the end points.
+	 * @param timeoutMillis
+	 *            the time to wait for the connections of each batch.
+	 * @return for each end point, true if a connection was established.
+	 * @throws IOException
+	 *             if a selector could not be opened.
+	 */
+	public static boolean[] probe(final InetSocketAddress[] endPoints, final long timeoutMillis)
+			throws IOException {
+		return probe(endPoints, timeoutMillis, endPoints.length, null);
+	}
+
+	/**********
+	 * Checks which end points accept connections, and stops waiting once a given number of them did. This is useful
+	 * when looking for any available end point, as a single end point that does not answer would otherwise hold the
+	 * caller for the whole timeout.
+	 *
+	 * @param endPoints
+	 *            the end points.
+	 * @param timeoutMillis
+	 *            the time to wait for the connections of each batch.
+	 * @param minConnected
+	 *            the number of established connections to stop waiting at.
+	 * @param failed
+	 *            if not null, set to true for every end point that could not be resolved, refused the connection or did
+	 *            not answer in time. End points that were still connecting when enough connections were established
+	 *            are neither connected nor failed.
+	 * @return for each end point, true if a connection was established.
+	 * @throws IOException
+	 *             if a selector could not be opened.
+	 */
+	public static boolean[] probe(final InetSocketAddress[] endPoints, final long timeoutMillis,
+			final int minConnected, final boolean[] failed)
+			throws IOException {
+		final boolean[] connected = new boolean[endPoints.length];
+		final boolean[] failures = failed == null ? new boolean[endPoints.length] : failed;
+		final Selector selector = Selector.open();
+		try {
+			int connectedCount = 0;
+			for (int start = 0; start < endPoints.length && connectedCount < minConnected;
+					start += MAX_OPEN_CONNECTIONS) {
+				final int end = Math.min(endPoints.length, start + MAX_OPEN_CONNECTIONS);
+				// the connections of a batch are only opened once the previous batch is done.
+				final long deadline = System.currentTimeMillis() + timeoutMillis;
+				connectedCount += probeBatch(selector, endPoints, start, end, deadline, minConnected - connectedCount,
+						connected, failures);
+			}
+		} finally {
+			selector.close();
+		}
+		return connected;
+	}
+
+	private static int probeBatch(final Selector selector, final InetSocketAddress[] endPoints, final int start,
+			final int end, final long deadline, final int minConnected, final boolean[] connected,
+			final boolean[] failed)
+			throws IOException {
+		final SocketChannel[] channels = new SocketChannel[end - start];
+		int connectedCount = 0;
+		try {
+			int pending = 0;
+			for (int i = start; i < end; i++) {
+				final InetSocketAddress endPoint = endPoints[i];
+				if (endPoint.isUnresolved()) {
+					logger.fine("Could not resolve " + endPoint);
+					failed[i] = true;
+					continue;
+				}
+				final SocketChannel channel = SocketChannel.open();
+				channels[i - start] = channel;
+				try {
+					channel.configureBlocking(false);
+					if (channel.connect(endPoint)) {
+						connected[i] = true;
+						++connectedCount;
+					} else {
+						channel.register(selector, SelectionKey.OP_CONNECT, Integer.valueOf(i));
+						++pending;
+					}
+				} catch (final IOException e) {
+					logger.fine("Failed to connect to " + endPoint + ": " + e.getMessage());
+					failed[i] = true;
+				}
+			}
+
+			while (pending > 0 && connectedCount < minConnected) {
+				final long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					// the end points that did not answer in time.
+					for (final SelectionKey key : selector.keys()) {
+						if (key.isValid()) {
+							failed[(Integer) key.attachment()] = true;
+						}
+					}
+					break;
+				}
+				selector.select(remaining);
+				final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					final SelectionKey key = keys.next();
+					keys.remove();
+					final int index = (Integer) key.attachment();
+					try {
+						if (!((SocketChannel) key.channel()).finishConnect()) {
+							continue;
+						}
+						connected[index] = true;
+						++connectedCount;
+					} catch (final IOException e) {
+						logger.fine("Failed to connect to " + endPoints[index] + ": " + e.getMessage());
+						failed[index] = true;
+					}
+					key.cancel();
+					--pending;
+				}
+			}
+		} finally {
+			for (final SocketChannel channel : channels) {
+				if (channel != null) {
+					try {
+						channel.close();
+					} catch (final IOException e) {
+						// ignore
+					}
+				}
+			}
+			// flush the keys of the closed channels, so the selector can be used for the next batch.
+			selector.selectNow();
+		}
+		return connectedCount;
+	}
+}
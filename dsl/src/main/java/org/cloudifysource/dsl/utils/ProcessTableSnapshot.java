@@ -0,0 +1,643 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.hyperic.sigar.ProcState;
+import org.hyperic.sigar.Sigar;
+import org.hyperic.sigar.SigarException;
+
+/**********
+ * A point in time view of the operating system process table, indexed by parent process. On Linux the table is read
+ * from /proc in a single pass, and the executable and arguments of a process are read on first use and cached in the
+ * snapshot. On other operating systems the table is read with SIGAR.
+ *
+ * Snapshots are shared: {@link #getSnapshot()} returns the last snapshot taken if it is younger than
+ * {@link #DEFAULT_MAX_AGE_MILLIS}, so callers that scan the process table repeatedly pay for one scan between them.
+ * Callers that must see processes started just before the call, like process locators and PTQL queries, use
+ * {@link #getSnapshot(long)} with a max age of 0. The state of a single process, as checked by stop detectors, is read
+ * with {@link #isProcessAlive(long)} rather than from a snapshot.
+ *
+ * @since 2.7.0
+ *
+ */
+public final class ProcessTableSnapshot {
+
+	/**
+	 * The default maximal age of a shared snapshot.
+	 */
+	public static final long DEFAULT_MAX_AGE_MILLIS = 1000;
+
+	private static final Logger logger = Logger.getLogger(ProcessTableSnapshot.class.getName());
+
+	private static final File PROC_DIR = new File("/proc");
+	private static final boolean PROC_AVAILABLE = PROC_DIR.isDirectory() && new File(PROC_DIR, "self/stat").exists();
+	private static final int STAT_BUFFER_SIZE = 1024;
+	// fields of /proc/[pid]/stat, counted from the process state, which follows the process name.
+	private static final int STAT_STATE_FIELD = 0;
+	private static final int STAT_PPID_FIELD = 1;
+	private static final int STAT_START_TIME_FIELD = 19;
+	// process states of /proc/[pid]/stat that SIGAR does not define: dead, and stopped while being traced.
+	private static final char STATE_DEAD = 'X';
+	private static final char STATE_DEAD_OLD_KERNELS = 'x';
+	private static final char STATE_TRACING_STOP = 't';
+
+	private static ProcessTableSnapshot lastSnapshot;
+
+	private final long creationTime;
+	private final boolean procBased;
+	private final Map<Long, ProcessEntry> processes;
+	private final Map<Long, List<Long>> childrenByParent;
+
+	private ProcessTableSnapshot(final boolean procBased, final Map<Long, ProcessEntry> processes) {
+		this.creationTime = System.currentTimeMillis();
+		this.procBased = procBased;
+		this.processes = processes;
+		this.childrenByParent = new HashMap<Long, List<Long>>();
+		for (final ProcessEntry entry : processes.values()) {
+			List<Long> children = childrenByParent.get(entry.ppid);
+			if (children == null) {
+				children = new LinkedList<Long>();
+				childrenByParent.put(entry.ppid, children);
+			}
+			children.add(entry.pid);
+		}
+	}
+
+	/**********
+	 * Returns a snapshot of the process table that is at most {@link #DEFAULT_MAX_AGE_MILLIS} old.
+	 *
+	 * @return the snapshot.
+	 * @throws SigarException
+	 *             if the process table could not be read.
+	 */
+	public static ProcessTableSnapshot getSnapshot()
+			throws SigarException {
+		return getSnapshot(DEFAULT_MAX_AGE_MILLIS);
+	}
+
+	/**********
+	 * Returns a snapshot of the process table that is at most maxAgeMillis old, taking a new one if required.
+	 *
+	 * @param maxAgeMillis
+	 *            the maximal age of the returned snapshot, 0 for a new snapshot.
+	 * @return the snapshot.
+	 * @throws SigarException
+	 *             if the process table could not be read.
+	 */
+	public static synchronized ProcessTableSnapshot getSnapshot(final long maxAgeMillis)
+			throws SigarException {
+		if (lastSnapshot == null || lastSnapshot.getAgeMillis() >= maxAgeMillis) {
+			lastSnapshot = takeSnapshot();
+		}
+		return lastSnapshot;
+	}
+
+	private static ProcessTableSnapshot takeSnapshot()
+			throws SigarException {
+		if (PROC_AVAILABLE) {
+			return new ProcessTableSnapshot(true, readProcDir());
+		}
+		return new ProcessTableSnapshot(false, readWithSigar());
+	}
+
+	/**********
+	 * @return true if the process table is read from /proc.
+	 */
+	public static boolean isProcAvailable() {
+		return PROC_AVAILABLE;
+	}
+
+	/**********
+	 * Checks if a single process is alive by reading its /proc/[pid]/stat file. Unlike a shared snapshot, this sees
+	 * processes started just before the call, and does not scan the process table.
+	 *
+	 * @param pid
+	 *            a process ID.
+	 * @return true if the process exists, and is not a zombie, dead or stopped.
+	 * @throws IllegalStateException
+	 *             if the process table is not read from /proc, see {@link #isProcAvailable()}.
+	 */
+	public static boolean isProcessAlive(final long pid) {
+		if (!PROC_AVAILABLE) {
+			throw new IllegalStateException("The process table is not read from /proc");
+		}
+		final ProcessEntry entry;
+		try {
+			entry = readStat(pid, new byte[STAT_BUFFER_SIZE]);
+		} catch (final IOException e) {
+			// no such process.
+			return false;
+		} catch (final NumberFormatException e) {
+			logger.log(Level.FINE, "Could not parse the state of process " + pid + ", assuming it is alive", e);
+			return true;
+		}
+		// the stat file exists, so a process whose state could not be parsed is assumed to be alive.
+		return entry == null || isAliveState(entry.state);
+	}
+
+	private static Map<Long, ProcessEntry> readProcDir() {
+		final String[] names = PROC_DIR.list();
+		final Map<Long, ProcessEntry> processes = new HashMap<Long, ProcessEntry>(names == null ? 0
+				: names.length * 2);
+		if (names == null) {
+			return processes;
+		}
+		final byte[] buffer = new byte[STAT_BUFFER_SIZE];
+		for (final String name : names) {
+			if (!isNumeric(name)) {
+				continue;
+			}
+			final long pid = Long.parseLong(name);
+			try {
+				final ProcessEntry entry = readStat(pid, buffer);
+				if (entry != null) {
+					processes.put(pid, entry);
+				}
+			} catch (final IOException e) {
+				// the process exited while the table was read.
+			} catch (final NumberFormatException e) {
+				logger.log(Level.FINE, "Could not parse the state of process " + pid + ", ignoring it", e);
+			}
+		}
+		return processes;
+	}
+
+	private static ProcessEntry readStat(final long pid, final byte[] buffer)
+			throws IOException {
+		final int length = readFile(new File(PROC_DIR, pid + "/stat"), buffer);
+		return parseStat(pid, new String(buffer, 0, length, "ISO-8859-1"));
+	}
+
+	// parses the content of /proc/[pid]/stat, returns null if it is not complete.
+	private static ProcessEntry parseStat(final long pid, final String stat) {
+		// the process name is in parentheses, and may include spaces and parentheses itself.
+		final int nameStart = stat.indexOf('(');
+		final int nameEnd = stat.lastIndexOf(')');
+		if (nameStart < 0 || nameEnd < nameStart) {
+			return null;
+		}
+		final String[] fields = stat.substring(nameEnd + 1).trim().split(" ");
+		if (fields.length <= STAT_START_TIME_FIELD) {
+			return null;
+		}
+		return new ProcessEntry(pid, Long.parseLong(fields[STAT_PPID_FIELD]), stat.substring(nameStart + 1, nameEnd),
+				fields[STAT_STATE_FIELD].charAt(0), Long.parseLong(fields[STAT_START_TIME_FIELD]));
+	}
+
+	// reads up to buffer.length bytes of the file.
+	private static int readFile(final File file, final byte[] buffer)
+			throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			int total = 0;
+			int read = 0;
+			while (total < buffer.length && (read = in.read(buffer, total, buffer.length - total)) != -1) {
+				total += read;
+			}
+			return total;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**********
+	 * Creates a snapshot from the content of /proc/[pid]/stat files, for tests.
+	 *
+	 * @param stats
+	 *            the content of the stat file of each process, by pid.
+	 * @return the snapshot.
+	 */
+	static ProcessTableSnapshot fromProcStats(final Map<Long, String> stats) {
+		final Map<Long, ProcessEntry> processes = new HashMap<Long, ProcessEntry>();
+		for (final Map.Entry<Long, String> stat : stats.entrySet()) {
+			final ProcessEntry entry = parseStat(stat.getKey(), stat.getValue());
+			if (entry != null) {
+				processes.put(stat.getKey(), entry);
+			}
+		}
+		return new ProcessTableSnapshot(true, processes);
+	}
+
+	private static boolean isNumeric(final String name) {
+		if (name.length() == 0) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			if (!Character.isDigit(name.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Map<Long, ProcessEntry> readWithSigar()
+			throws SigarException {
+		final Sigar sigar = ServiceUtils.ProcessUtils.getSigar();
+		final long[] pids = sigar.getProcList();
+		final Map<Long, ProcessEntry> processes = new HashMap<Long, ProcessEntry>(pids.length * 2);
+		for (final long pid : pids) {
+			try {
+				final ProcState procState = sigar.getProcState(pid);
+				processes.put(pid, new ProcessEntry(pid, procState.getPpid(), procState.getName(),
+						procState.getState(), 0));
+			} catch (final SigarException e) {
+				logger.log(Level.FINE, "Could not read the state of process " + pid + ", ignoring it", e);
+			}
+		}
+		return processes;
+	}
+
+	/**********
+	 * @return true if the snapshot was read from /proc, false if it was read with SIGAR.
+	 */
+	public boolean isProcBased() {
+		return procBased;
+	}
+
+	/**********
+	 * @return the time since the snapshot was taken.
+	 */
+	public long getAgeMillis() {
+		return System.currentTimeMillis() - creationTime;
+	}
+
+	/**********
+	 * @return the pids of all processes in the snapshot.
+	 */
+	public Set<Long> getPids() {
+		return Collections.unmodifiableSet(processes.keySet());
+	}
+
+	/**********
+	 * @param pid
+	 *            a process ID.
+	 * @return true if the process exists in the snapshot, and is not a zombie, dead or stopped.
+	 */
+	public boolean isAlive(final long pid) {
+		final ProcessEntry entry = processes.get(pid);
+		return entry != null && isAliveState(entry.state);
+	}
+
+	private static boolean isAliveState(final char state) {
+		switch (state) {
+		case ProcState.ZOMBIE:
+		case ProcState.STOP:
+		case STATE_DEAD:
+		case STATE_DEAD_OLD_KERNELS:
+		case STATE_TRACING_STOP:
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	/**********
+	 * @param pid
+	 *            a process ID.
+	 * @return the parent process ID, or 0 if the process does not exist in the snapshot.
+	 */
+	public long getParentPid(final long pid) {
+		final ProcessEntry entry = processes.get(pid);
+		return entry == null ? 0 : entry.ppid;
+	}
+
+	/**********
+	 * @param pid
+	 *            a process ID.
+	 * @return a new set with the direct children of the process.
+	 */
+	public Set<Long> getChildren(final long pid) {
+		final List<Long> children = childrenByParent.get(pid);
+		return children == null ? new HashSet<Long>() : new HashSet<Long>(children);
+	}
+
+	/**********
+	 * @param pid
+	 *            a process ID.
+	 * @return the base name of the process executable, as reported by the operating system, or null if the process
+	 *         does not exist in the snapshot.
+	 */
+	public String getName(final long pid) {
+		final ProcessEntry entry = processes.get(pid);
+		return entry == null ? null : entry.name;
+	}
+
+	/**********
+	 * @param pid
+	 *            a process ID.
+	 * @return the start time of the process in clock ticks since boot, which identifies it if its pid is reused, or 0
+	 *         if it is not known.
+	 */
+	public long getStartTime(final long pid) {
+		final ProcessEntry entry = processes.get(pid);
+		return entry == null ? 0 : entry.startTime;
+	}
+
+	/**********
+	 * @param pid
+	 *            a process ID.
+	 * @return the full path of the process executable, or null if it can not be read.
+	 */
+	public String getExe(final long pid) {
+		final ProcessEntry entry = processes.get(pid);
+		if (entry == null) {
+			return null;
+		}
+		synchronized (entry) {
+			if (!entry.exeRead) {
+				entry.exe = readExe(pid);
+				entry.exeRead = true;
+			}
+			return entry.exe;
+		}
+	}
+
+	private String readExe(final long pid) {
+		try {
+			if (procBased) {
+				return new File(PROC_DIR, pid + "/exe").getCanonicalPath();
+			}
+			return ServiceUtils.ProcessUtils.getSigar().getProcExe(pid).getName();
+		} catch (final IOException e) {
+			return null;
+		} catch (final SigarException e) {
+			return null;
+		}
+	}
+
+	/**********
+	 * @param pid
+	 *            a process ID.
+	 * @return the process arguments, including the executable, or an empty array if they can not be read.
+	 */
+	public String[] getArgs(final long pid) {
+		final ProcessEntry entry = processes.get(pid);
+		if (entry == null) {
+			return new String[0];
+		}
+		synchronized (entry) {
+			if (entry.args == null) {
+				entry.args = readArgs(pid);
+			}
+			return entry.args.clone();
+		}
+	}
+
+	private String[] readArgs(final long pid) {
+		try {
+			if (procBased) {
+				return readCommandLine(pid);
+			}
+			final String[] args = ServiceUtils.ProcessUtils.getSigar().getProcArgs(pid);
+			return args == null ? new String[0] : args;
+		} catch (final IOException e) {
+			return new String[0];
+		} catch (final SigarException e) {
+			return new String[0];
+		}
+	}
+
+	private String[] readCommandLine(final long pid)
+			throws IOException {
+		final InputStream in = new FileInputStream(new File(PROC_DIR, pid + "/cmdline"));
+		try {
+			return parseCommandLine(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**********
+	 * Parses the content of /proc/[pid]/cmdline, where each argument is terminated by a NUL character.
+	 *
+	 * @param in
+	 *            the content.
+	 * @return the arguments.
+	 * @throws IOException
+	 *             if the content could not be read.
+	 */
+	static String[] parseCommandLine(final InputStream in)
+			throws IOException {
+		final List<String> args = new ArrayList<String>();
+		final byte[] buffer = new byte[STAT_BUFFER_SIZE];
+		// arguments are decoded once complete, as a character may span two reads.
+		final ByteArrayOutputStream current = new ByteArrayOutputStream();
+		int read = in.read(buffer);
+		while (read != -1) {
+			int start = 0;
+			for (int i = 0; i < read; i++) {
+				if (buffer[i] == 0) {
+					current.write(buffer, start, i - start);
+					args.add(current.toString());
+					current.reset();
+					start = i + 1;
+				}
+			}
+			current.write(buffer, start, read - start);
+			read = in.read(buffer);
+		}
+		if (current.size() > 0) {
+			args.add(current.toString());
+		}
+		return args.toArray(new String[args.size()]);
+	}
+
+	/**********
+	 * Evaluates a simple PTQL query against the snapshot. Supported queries are made of comma separated conditions on
+	 * State.Name, State.Ppid, Exe.Name, Pid.Pid and Args.[index|*], using the eq, ne, sw, ew and ct operators. Queries
+	 * are only evaluated on snapshots read from /proc, where these attributes match the ones SIGAR reads.
+	 *
+	 * @param query
+	 *            the PTQL query.
+	 * @return the matching pids, or null if the query is not supported and should be executed by SIGAR.
+	 */
+	public List<Long> findPids(final String query) {
+		if (!procBased) {
+			return null;
+		}
+		final List<QueryCondition> conditions = QueryCondition.parse(query);
+		if (conditions == null) {
+			return null;
+		}
+		final List<Long> result = new ArrayList<Long>();
+		for (final Long pid : processes.keySet()) {
+			boolean matches = true;
+			for (final QueryCondition condition : conditions) {
+				if (!condition.matches(this, pid)) {
+					matches = false;
+					break;
+				}
+			}
+			if (matches) {
+				result.add(pid);
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	/**********
+	 * A process in the snapshot.
+	 */
+	private static final class ProcessEntry {
+
+		private final long pid;
+		private final long ppid;
+		private final String name;
+		private final char state;
+		private final long startTime;
+		private boolean exeRead;
+		private String exe;
+		private String[] args;
+
+		private ProcessEntry(final long pid, final long ppid, final String name, final char state,
+				final long startTime) {
+			this.pid = pid;
+			this.ppid = ppid;
+			this.name = name;
+			this.state = state;
+			this.startTime = startTime;
+		}
+	}
+
+	/**********
+	 * A single condition of a PTQL query.
+	 */
+	private static final class QueryCondition {
+
+		private static final String ANY_ARG = "*";
+
+		private final String attribute;
+		private final String operator;
+		private final String value;
+
+		private QueryCondition(final String attribute, final String operator, final String value) {
+			this.attribute = attribute;
+			this.operator = operator;
+			this.value = value;
+		}
+
+		private static List<QueryCondition> parse(final String query) {
+			if (query == null || query.indexOf('$') >= 0 || query.indexOf('"') >= 0 || query.indexOf('\\') >= 0) {
+				return null;
+			}
+			final List<QueryCondition> conditions = new ArrayList<QueryCondition>();
+			for (final String part : query.split(",")) {
+				final int valueStart = part.indexOf('=');
+				final int operatorStart = part.lastIndexOf('.', valueStart);
+				if (valueStart < 0 || operatorStart < 0) {
+					return null;
+				}
+				final String attribute = part.substring(0, operatorStart).trim();
+				final String operator = part.substring(operatorStart + 1, valueStart).trim();
+				if (!isSupportedAttribute(attribute) || !isSupportedOperator(operator)) {
+					return null;
+				}
+				conditions.add(new QueryCondition(attribute, operator, part.substring(valueStart + 1)));
+			}
+			return conditions;
+		}
+
+		private static boolean isSupportedAttribute(final String attribute) {
+			if (attribute.equals("State.Name") || attribute.equals("State.Ppid") || attribute.equals("Exe.Name")
+					|| attribute.equals("Pid.Pid")) {
+				return true;
+			}
+			if (!attribute.startsWith("Args.")) {
+				return false;
+			}
+			final String index = attribute.substring("Args.".length());
+			if (index.equals(ANY_ARG)) {
+				return true;
+			}
+			try {
+				Integer.parseInt(index);
+				return true;
+			} catch (final NumberFormatException e) {
+				return false;
+			}
+		}
+
+		private static boolean isSupportedOperator(final String operator) {
+			return operator.equals("eq") || operator.equals("ne") || operator.equals("sw") || operator.equals("ew")
+					|| operator.equals("ct");
+		}
+
+		private boolean matches(final ProcessTableSnapshot snapshot, final long pid) {
+			if (attribute.equals("State.Name")) {
+				return matches(snapshot.getName(pid));
+			}
+			if (attribute.equals("State.Ppid")) {
+				return matches(Long.toString(snapshot.getParentPid(pid)));
+			}
+			if (attribute.equals("Pid.Pid")) {
+				return matches(Long.toString(pid));
+			}
+			if (attribute.equals("Exe.Name")) {
+				return matches(snapshot.getExe(pid));
+			}
+
+			final String[] args = snapshot.getArgs(pid);
+			final String index = attribute.substring("Args.".length());
+			if (index.equals(ANY_ARG)) {
+				for (final String arg : args) {
+					if (matches(arg)) {
+						return true;
+					}
+				}
+				return false;
+			}
+			int argIndex = Integer.parseInt(index);
+			if (argIndex < 0) {
+				// negative indexes count from the last argument.
+				argIndex += args.length;
+			}
+			return argIndex >= 0 && argIndex < args.length && matches(args[argIndex]);
+		}
+
+		private boolean matches(final String actual) {
+			if (actual == null) {
+				return false;
+			}
+			if (operator.equals("eq")) {
+				return actual.equals(value);
+			}
+			if (operator.equals("ne")) {
+				return !actual.equals(value);
+			}
+			if (operator.equals("sw")) {
+				return actual.startsWith(value);
+			}
+			if (operator.equals("ew")) {
+				return actual.endsWith(value);
+			}
+			return actual.contains(value);
+		}
+	}
+}
@@ -14,13 +14,12 @@ package org.cloudifysource.dsl.utils;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.ProtocolException;
-import java.net.Socket;
 import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.cloudifysource.dsl.internal.CloudifyConstants;
@@ -73,19 +72,13 @@ public final class ServiceUtils {
 	 * @return - true if all ports are free
 	 */
 	public static boolean arePortsFree(final List<Integer> portList) {
-		int portCounter = 0;
-		for (final int port : portList) {
-			if (!isPortOccupied(port)) {
-				logger.fine("port: " + port + " is open.");
-				portCounter++;
+		final boolean[] occupied = probeLocalPorts(portList);
+		for (int i = 0; i < occupied.length; i++) {
+			if (occupied[i]) {
+				return false;
 			}
-			if (portCounter == portList.size()) {
-				// All ports are free.
-				return true;
-			}
-
 		}
-		return false;
+		return !portList.isEmpty();
 	}
 
 	/**
@@ -109,22 +102,15 @@ public final class ServiceUtils {
 	 * @return - true if port is occupied.
 	 */
 	public static boolean isPortOccupied(final String host, final int port) {
-		final Socket sock = new Socket();
 		logger.fine("Checking port " + port);
 		try {
-			sock.connect(new InetSocketAddress(host, port));
-			logger.fine("Connected to port " + port);
-			sock.close();
-			return true;
-		} catch (final IOException e1) {
-			logger.fine("Port " + port + " is free.");
+			final boolean occupied = PortProber.probe(host, Collections.singletonList(port),
+					PortProber.DEFAULT_TIMEOUT_MILLIS)[0];
+			logger.fine(occupied ? "Connected to port " + port : "Port " + port + " is free.");
+			return occupied;
+		} catch (final IOException e) {
+			logger.fine("Failed to check port " + port + ": " + e.getMessage());
 			return false;
-		} finally {
-			try {
-				sock.close();
-			} catch (final IOException e) {
-				// ignore
-			}
 		}
 	}
 
@@ -140,17 +126,23 @@ public final class ServiceUtils {
 	 * 
 	 */
 	public static boolean arePortsOccupied(final List<Integer> portList) {
-		int portCounter = 0;
-		for (final int port : portList) {
-			if (isPortOccupied(port)) {
-				portCounter++;
-			}
-			if (portCounter == portList.size()) {
-				// connection succeeded - the port is not free
-				return true;
+		final boolean[] occupied = probeLocalPorts(portList);
+		for (int i = 0; i < occupied.length; i++) {
+			if (!occupied[i]) {
+				return false;
 			}
 		}
-		return false;
+		return !portList.isEmpty();
+	}
+
+	// checks all ports of the localhost interface at once. ports that could not be checked are reported as free.
+	private static boolean[] probeLocalPorts(final List<Integer> portList) {
+		try {
+			return PortProber.probe("127.0.0.1", portList, PortProber.DEFAULT_TIMEOUT_MILLIS);
+		} catch (final IOException e) {
+			logger.fine("Failed to check ports " + portList + ": " + e.getMessage());
+			return new boolean[portList.size()];
+		}
 	}
 
 	/*********
@@ -406,6 +398,9 @@ public final class ServiceUtils {
 		 * Executes a SIGAR PTQL query, returning the PIDs of the processes that match the query. For more info on
 		 * SIGAR's PTQL - Process Table Query Language, see: http://support.hyperic.com/display/SIGAR/PTQL
 		 * 
+		 * Simple queries are evaluated against a new {@link ProcessTableSnapshot}, so processes started just before the
+		 * call are found.
+		 * 
 		 * @param query
 		 *            the PTQL query.
 		 * @return the pids.
@@ -414,6 +409,11 @@ public final class ServiceUtils {
 		 */
 		public static List<Long> getPidsWithQuery(final String query)
 				throws SigarException {
+			final List<Long> snapshotResult = ProcessTableSnapshot.getSnapshot(0).findPids(query);
+			if (snapshotResult != null) {
+				return snapshotResult;
+			}
+
 			final Sigar sigar = getSigar();
 			final ProcessFinder finder = new ProcessFinder(sigar);
 
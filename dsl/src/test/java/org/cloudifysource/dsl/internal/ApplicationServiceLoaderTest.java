@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.internal;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class ApplicationServiceLoaderTest {
+
+	private static final String SIMPLE_APP_DIR = "testResources/applications/simple";
+
+	@Test
+	public void testFindDeclaredServices() throws Exception {
+		final File appDir = new File(SIMPLE_APP_DIR);
+		final String text = FileUtils.readFileToString(new File(appDir, "simple-application.groovy"));
+
+		final List<String> services = ApplicationServiceLoader.findDeclaredServices(appDir, text);
+		Assert.assertEquals(Arrays.asList("service1", "service2"), services);
+
+		Assert.assertTrue(ApplicationServiceLoader.findDeclaredServices(appDir, "application {}").isEmpty());
+	}
+
+	@Test
+	public void testQuotedDirectoryNameIsNotAService() throws Exception {
+		final File appDir = new File(SIMPLE_APP_DIR);
+		final String text = "application {\n name = \"service1\"\n"
+				+ " service {\n name = \"service2\"\n icon = \"service1\"\n }\n}";
+
+		Assert.assertEquals(Arrays.asList("service2"), ApplicationServiceLoader.findDeclaredServices(appDir, text));
+	}
+
+	@Test
+	public void testComputedServiceNameIsNotPreloaded() throws Exception {
+		final File appDir = new File(SIMPLE_APP_DIR);
+		final String text = "application {\n service {\n name = \"service\" + 1\n }\n}";
+
+		Assert.assertTrue(ApplicationServiceLoader.findDeclaredServices(appDir, text).isEmpty());
+		Assert.assertTrue(ApplicationServiceLoader.findDeclaredServices(appDir, "application {").isEmpty());
+	}
+
+	@Test
+	public void testServiceReadByCallerWhenNotStarted() throws Exception {
+		// an executor that never runs its tasks - the requested service must still be read.
+		final Executor idleExecutor = new Executor() {
+			@Override
+			public void execute(final Runnable command) {
+			}
+		};
+		final ApplicationServiceLoader loader =
+				new ApplicationServiceLoader(new File(SIMPLE_APP_DIR), null, idleExecutor);
+		loader.preload(Arrays.asList("service1", "service2"));
+
+		final DSLServiceCompilationResult result = loader.getService("service2");
+		Assert.assertNotNull(result.getService());
+		Assert.assertNotNull(result.getService().getLifecycle());
+		loader.cancel();
+	}
+
+	@Test
+	public void testFailureReportedWhenRequested() throws Exception {
+		final ApplicationServiceLoader loader = new ApplicationServiceLoader(new File(SIMPLE_APP_DIR), null);
+		// preloading a missing service must not fail by itself.
+		loader.preload(Arrays.asList("noSuchService"));
+
+		try {
+			loader.getService("noSuchService");
+			Assert.fail("Expected the missing service read to fail");
+		} catch (final Exception e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.internal;
+
+import java.io.File;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.cloudifysource.domain.Service;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DSLScriptCacheTest {
+
+	private static final String SERVICE_PATH = "testResources/simple/simple-service.groovy";
+
+	private DSLScriptCache originalCache;
+
+	@Before
+	public void before() {
+		originalCache = DSLReader.getScriptCache();
+	}
+
+	@After
+	public void after() {
+		DSLReader.setScriptCache(originalCache);
+	}
+
+	@Test
+	public void testCompiledScriptReused() throws Exception {
+		final DSLScriptCache cache = new DSLScriptCache(DSLScriptCache.DEFAULT_MAX_ENTRIES);
+		DSLReader.setScriptCache(cache);
+
+		final Service first = ServiceReader.getServiceFromFile(new File(SERVICE_PATH));
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(0, cache.getHits());
+
+		final Service second = ServiceReader.getServiceFromFile(new File(SERVICE_PATH));
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(1, cache.getHits());
+
+		// a fresh script instance evaluates to a new, equivalent, service.
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals(first.getName(), second.getName());
+		Assert.assertEquals(first.getNumInstances(), second.getNumInstances());
+	}
+
+	@Test
+	public void testDisabledCache() throws Exception {
+		final DSLScriptCache cache = new DSLScriptCache(0);
+		DSLReader.setScriptCache(cache);
+
+		ServiceReader.getServiceFromFile(new File(SERVICE_PATH));
+		ServiceReader.getServiceFromFile(new File(SERVICE_PATH));
+		Assert.assertEquals(2, cache.getMisses());
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testHelperScriptChangeRecompiles() throws Exception {
+		final DSLScriptCache cache = new DSLScriptCache(DSLScriptCache.DEFAULT_MAX_ENTRIES);
+		DSLReader.setScriptCache(cache);
+
+		final File recipeDir = File.createTempFile("DSLScriptCacheTest", "");
+		FileUtils.forceDelete(recipeDir);
+		try {
+			final File serviceFile = new File(recipeDir, "simple-service.groovy");
+			FileUtils.copyFile(new File(SERVICE_PATH), serviceFile);
+			final File helper = new File(recipeDir, "Helper.groovy");
+			FileUtils.writeStringToFile(helper, "class Helper { static int value() { 1 } }");
+
+			ServiceReader.getServiceFromFile(serviceFile);
+			ServiceReader.getServiceFromFile(serviceFile);
+			Assert.assertEquals(1, cache.getMisses());
+			Assert.assertEquals(1, cache.getHits());
+
+			// an edited helper may change what the script resolves to. Helpers are compared by size and modification
+			// time, and the edit keeps the size, so make sure the modification time changes on any file system.
+			final long lastModified = helper.lastModified();
+			FileUtils.writeStringToFile(helper, "class Helper { static int value() { 2 } }");
+			Assert.assertTrue(helper.setLastModified(lastModified + 2000));
+			ServiceReader.getServiceFromFile(serviceFile);
+			Assert.assertEquals(2, cache.getMisses());
+		} finally {
+			FileUtils.deleteQuietly(recipeDir);
+		}
+	}
+
+	@Test
+	public void testNewHelperScriptInSubFolderRecompiles() throws Exception {
+		final DSLScriptCache cache = new DSLScriptCache(DSLScriptCache.DEFAULT_MAX_ENTRIES);
+		DSLReader.setScriptCache(cache);
+
+		final File recipeDir = File.createTempFile("DSLScriptCacheTest", "");
+		FileUtils.forceDelete(recipeDir);
+		try {
+			final File serviceFile = new File(recipeDir, "simple-service.groovy");
+			FileUtils.copyFile(new File(SERVICE_PATH), serviceFile);
+			final File helpersDir = new File(recipeDir, "helpers");
+			FileUtils.forceMkdir(helpersDir);
+
+			ServiceReader.getServiceFromFile(serviceFile);
+			ServiceReader.getServiceFromFile(serviceFile);
+			Assert.assertEquals(1, cache.getMisses());
+			Assert.assertEquals(1, cache.getHits());
+
+			// the listing of the sub folder is kept, make sure its modification time changes on any file system.
+			final long lastModified = helpersDir.lastModified();
+			FileUtils.writeStringToFile(new File(helpersDir, "Helper.groovy"), "class Helper {}");
+			Assert.assertTrue(helpersDir.setLastModified(lastModified + 2000));
+			ServiceReader.getServiceFromFile(serviceFile);
+			Assert.assertEquals(2, cache.getMisses());
+
+			ServiceReader.getServiceFromFile(serviceFile);
+			Assert.assertEquals(2, cache.getHits());
+		} finally {
+			FileUtils.deleteQuietly(recipeDir);
+		}
+	}
+}
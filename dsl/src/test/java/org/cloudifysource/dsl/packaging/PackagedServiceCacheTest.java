@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.packaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.cloudifysource.dsl.internal.packaging.PackagedServiceCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PackagedServiceCacheTest {
+
+	private File workDir;
+
+	@Before
+	public void before() throws IOException {
+		workDir = File.createTempFile("PackagedServiceCacheTest", "");
+		FileUtils.forceDelete(workDir);
+		FileUtils.forceMkdir(workDir);
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteQuietly(workDir);
+	}
+
+	@Test
+	public void testKeyFollowsContent() throws IOException {
+		final PackagedServiceCache cache = new PackagedServiceCache(1024);
+		final File recipeDir = new File(workDir, "recipe");
+		FileUtils.writeStringToFile(new File(recipeDir, "service.groovy"), "service {}");
+		FileUtils.writeStringToFile(new File(recipeDir, "service.properties"), "a=1");
+
+		final String key = cache.createKey(recipeDir, null, 100L);
+		assertEquals(key, cache.createKey(recipeDir, null, 100L));
+		assertFalse(key.equals(cache.createKey(recipeDir, null, 200L)));
+
+		// merged properties change the package content
+		FileUtils.writeStringToFile(new File(recipeDir, "service.properties"), "a=2");
+		assertFalse(key.equals(cache.createKey(recipeDir, null, 100L)));
+	}
+
+	@Test
+	public void testHitReturnsCopy() throws IOException {
+		final PackagedServiceCache cache = new PackagedServiceCache(1024);
+		final File packed = new File(workDir, "packed.zip");
+		FileUtils.writeStringToFile(packed, "zip content");
+
+		final File dest = new File(workDir, "dest.zip");
+		assertFalse(cache.get("key", dest));
+		cache.put("key", packed);
+		FileUtils.deleteQuietly(packed);
+
+		assertTrue(cache.get("key", dest));
+		assertEquals("zip content", FileUtils.readFileToString(dest));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		final PackagedServiceCache cache = new PackagedServiceCache(25);
+		for (int i = 0; i < 3; i++) {
+			final File packed = new File(workDir, "packed" + i + ".zip");
+			FileUtils.writeStringToFile(packed, "0123456789");
+			cache.put("key" + i, packed);
+		}
+
+		assertEquals(20, cache.getSizeBytes());
+		final File dest = new File(workDir, "dest.zip");
+		assertFalse(cache.get("key0", dest));
+		assertTrue(cache.get("key1", dest));
+		assertTrue(cache.get("key2", dest));
+	}
+
+	@Test
+	public void testFailedCopyIsMiss() throws IOException {
+		final PackagedServiceCache cache = new PackagedServiceCache(1024);
+		final File packed = new File(workDir, "packed.zip");
+		FileUtils.writeStringToFile(packed, "zip content");
+		cache.put("key", packed);
+
+		// the copy fails, the caller packs the service again.
+		assertFalse(cache.get("key", new File(workDir, "missing/dest.zip")));
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		final File dest = new File(workDir, "dest.zip");
+		assertTrue(cache.get("key", dest));
+		assertEquals("zip content", FileUtils.readFileToString(dest));
+	}
+}
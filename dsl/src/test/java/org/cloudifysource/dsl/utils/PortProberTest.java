@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.utils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PortProberTest {
+
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	private ServerSocket openSocket;
+	private int closedPort;
+
+	@Before
+	public void before() throws IOException {
+		// a backlog large enough for connections that are never accepted.
+		openSocket = new ServerSocket(0, 2 * PortProber.MAX_OPEN_CONNECTIONS, InetAddress.getByName("127.0.0.1"));
+		final ServerSocket closedSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+		closedPort = closedSocket.getLocalPort();
+		closedSocket.close();
+	}
+
+	@After
+	public void after() throws IOException {
+		openSocket.close();
+	}
+
+	@Test
+	public void testProbePorts() throws IOException {
+		final boolean[] occupied = PortProber.probe("127.0.0.1",
+				Arrays.asList(openSocket.getLocalPort(), closedPort, openSocket.getLocalPort()), TIMEOUT_MILLIS);
+		Assert.assertArrayEquals(new boolean[] { true, false, true }, occupied);
+
+		Assert.assertEquals(0, PortProber.probe("127.0.0.1", Arrays.<Integer>asList(), TIMEOUT_MILLIS).length);
+	}
+
+	@Test
+	public void testFailedEndPoints() throws IOException {
+		final InetSocketAddress[] endPoints = {
+				new InetSocketAddress("127.0.0.1", openSocket.getLocalPort()),
+				new InetSocketAddress("127.0.0.1", closedPort),
+				InetSocketAddress.createUnresolved("no-such-host.invalid", openSocket.getLocalPort()) };
+		final boolean[] failed = new boolean[endPoints.length];
+
+		final boolean[] connected = PortProber.probe(endPoints, TIMEOUT_MILLIS, endPoints.length, failed);
+
+		Assert.assertArrayEquals(new boolean[] { true, false, false }, connected);
+		Assert.assertArrayEquals(new boolean[] { false, true, true }, failed);
+	}
+
+	@Test
+	public void testStopsAtMinConnected() throws IOException {
+		final InetSocketAddress[] endPoints = new InetSocketAddress[PortProber.MAX_OPEN_CONNECTIONS + 10];
+		Arrays.fill(endPoints, new InetSocketAddress("127.0.0.1", openSocket.getLocalPort()));
+
+		final boolean[] connected = PortProber.probe(endPoints, TIMEOUT_MILLIS, 1, null);
+
+		int connectedCount = 0;
+		for (final boolean endPointConnected : connected) {
+			if (endPointConnected) {
+				++connectedCount;
+			}
+		}
+		Assert.assertTrue(connectedCount >= 1);
+		// the second batch is not opened once enough connections were established.
+		for (int i = PortProber.MAX_OPEN_CONNECTIONS; i < connected.length; i++) {
+			Assert.assertFalse(connected[i]);
+		}
+	}
+
+	@Test
+	public void testMoreEndPointsThanOneBatch() throws IOException {
+		final InetSocketAddress open = new InetSocketAddress("127.0.0.1", openSocket.getLocalPort());
+		final InetSocketAddress closed = new InetSocketAddress("127.0.0.1", closedPort);
+		final InetSocketAddress[] endPoints = new InetSocketAddress[PortProber.MAX_OPEN_CONNECTIONS + 44];
+		final boolean[] expected = new boolean[endPoints.length];
+		for (int i = 0; i < endPoints.length; i++) {
+			expected[i] = i % 3 == 0;
+			endPoints[i] = expected[i] ? open : closed;
+		}
+
+		Assert.assertArrayEquals(expected, PortProber.probe(endPoints, TIMEOUT_MILLIS));
+	}
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class ProcessTableSnapshotTest {
+
+	private static String stat(final long pid, final String name, final char state, final long ppid,
+			final long startTime) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(pid).append(" (").append(name).append(") ").append(state).append(' ').append(ppid);
+		// pgrp to nice, which are not read.
+		for (int i = 0; i < 17; i++) {
+			sb.append(" 0");
+		}
+		sb.append(' ').append(startTime).append(" 1024000 250\n");
+		return sb.toString();
+	}
+
+	private static ProcessTableSnapshot createSnapshot() {
+		final Map<Long, String> stats = new HashMap<Long, String>();
+		stats.put(1L, stat(1, "init", 'S', 0, 1));
+		stats.put(100L, stat(100, "java", 'S', 1, 500));
+		stats.put(101L, stat(101, "bash", 'R', 100, 600));
+		stats.put(102L, stat(102, "my (odd) proc", 'D', 100, 700));
+		stats.put(103L, stat(103, "java", 'Z', 100, 800));
+		stats.put(104L, stat(104, "stopped", 'T', 1, 900));
+		stats.put(105L, stat(105, "traced", 't', 1, 900));
+		stats.put(106L, stat(106, "dead", 'X', 1, 900));
+		stats.put(107L, stat(107, "dead", 'x', 1, 900));
+		// a stat that was cut short is ignored.
+		stats.put(108L, "108 (short) S 1 0 0");
+		return ProcessTableSnapshot.fromProcStats(stats);
+	}
+
+	@Test
+	public void testParseStat() {
+		final ProcessTableSnapshot snapshot = createSnapshot();
+
+		Assert.assertTrue(snapshot.isProcBased());
+		Assert.assertEquals(new HashSet<Long>(Arrays.asList(1L, 100L, 101L, 102L, 103L, 104L, 105L, 106L, 107L)),
+				snapshot.getPids());
+		Assert.assertEquals("my (odd) proc", snapshot.getName(102));
+		Assert.assertEquals(100, snapshot.getParentPid(102));
+		Assert.assertEquals(700, snapshot.getStartTime(102));
+		Assert.assertEquals(new HashSet<Long>(Arrays.asList(101L, 102L, 103L)), snapshot.getChildren(100));
+		Assert.assertTrue(snapshot.getChildren(101).isEmpty());
+
+		Assert.assertNull(snapshot.getName(108));
+		Assert.assertEquals(0, snapshot.getParentPid(108));
+		Assert.assertEquals(0, snapshot.getStartTime(108));
+	}
+
+	@Test
+	public void testIsAlive() {
+		final ProcessTableSnapshot snapshot = createSnapshot();
+
+		Assert.assertTrue(snapshot.isAlive(100));
+		Assert.assertTrue(snapshot.isAlive(101));
+		Assert.assertTrue(snapshot.isAlive(102));
+
+		Assert.assertFalse("zombie", snapshot.isAlive(103));
+		Assert.assertFalse("stopped", snapshot.isAlive(104));
+		Assert.assertFalse("tracing stop", snapshot.isAlive(105));
+		Assert.assertFalse("dead", snapshot.isAlive(106));
+		Assert.assertFalse("dead on old kernels", snapshot.isAlive(107));
+		Assert.assertFalse("missing", snapshot.isAlive(108));
+	}
+
+	@Test
+	public void testFindPids() {
+		final ProcessTableSnapshot snapshot = createSnapshot();
+
+		Assert.assertEquals(Arrays.asList(100L, 103L), snapshot.findPids("State.Name.eq=java"));
+		Assert.assertEquals(Arrays.asList(103L), snapshot.findPids("State.Name.eq=java,State.Ppid.eq=100"));
+		Assert.assertEquals(Arrays.asList(106L, 107L), snapshot.findPids("State.Name.sw=de,State.Name.ew=ad"));
+		Assert.assertEquals(Arrays.asList(102L), snapshot.findPids("State.Name.ct=(odd)"));
+		Assert.assertEquals(Arrays.asList(101L), snapshot.findPids("Pid.Pid.eq=101"));
+		Assert.assertTrue(snapshot.findPids("State.Name.eq=none").isEmpty());
+
+		// queries the snapshot does not support are left to SIGAR.
+		Assert.assertNull(snapshot.findPids("State.Name.re=^j.*"));
+		Assert.assertNull(snapshot.findPids("Cpu.Percent.gt=50"));
+		Assert.assertNull(snapshot.findPids("Pid.PidFile.eq=/var/run/app.pid"));
+		Assert.assertNull(snapshot.findPids("State.Name.eq=java,State.Ppid.eq=$$"));
+		Assert.assertNull(snapshot.findPids(null));
+	}
+
+	@Test
+	public void testParseCommandLine() throws Exception {
+		Assert.assertArrayEquals(new String[] { "java", "-Xmx1g", "Main" },
+				ProcessTableSnapshot.parseCommandLine(new ByteArrayInputStream("java\0-Xmx1g\0Main\0".getBytes())));
+		// processes that rewrite their command line may drop the last terminator.
+		Assert.assertArrayEquals(new String[] { "nginx: worker process" },
+				ProcessTableSnapshot.parseCommandLine(new ByteArrayInputStream("nginx: worker process".getBytes())));
+		Assert.assertArrayEquals(new String[] { "a", "", "b" },
+				ProcessTableSnapshot.parseCommandLine(new ByteArrayInputStream("a\0\0b\0".getBytes())));
+		Assert.assertEquals(0, ProcessTableSnapshot.parseCommandLine(new ByteArrayInputStream(new byte[0])).length);
+
+		// arguments longer than the read buffer.
+		final char[] longArg = new char[5000];
+		Arrays.fill(longArg, 'c');
+		final String classPath = new String(longArg);
+		Assert.assertArrayEquals(new String[] { "java", "-cp", classPath, "Main" },
+				ProcessTableSnapshot.parseCommandLine(new ByteArrayInputStream(("java\0-cp\0" + classPath
+						+ "\0Main\0").getBytes())));
+	}
+
+	@Test
+	public void testIsProcessAlive() throws Exception {
+		Assume.assumeTrue(ProcessTableSnapshot.isProcAvailable());
+
+		final long pid = Long.parseLong(new File("/proc/self").getCanonicalFile().getName());
+		Assert.assertTrue(ProcessTableSnapshot.isProcessAlive(pid));
+		// beyond the maximal pid of the kernel.
+		Assert.assertFalse(ProcessTableSnapshot.isProcessAlive(Integer.MAX_VALUE));
+	}
+}
@@ -12,14 +12,23 @@
  ******************************************************************************/
 package org.cloudifysource.esc.byon;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import org.apache.commons.lang.StringUtils;
@@ -28,6 +37,8 @@ import org.cloudifysource.domain.cloud.RemoteExecutionModes;
 import org.cloudifysource.domain.cloud.compute.ComputeTemplate;
 import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.utils.IPUtils;
+import org.cloudifysource.dsl.utils.PortProber;
+import org.cloudifysource.esc.byon.ByonNodePool.NodeState;
 import org.cloudifysource.esc.driver.provisioning.CloudProvisioningException;
 import org.cloudifysource.esc.driver.provisioning.CustomNode;
 import org.cloudifysource.esc.driver.provisioning.byon.CustomNodeImpl;
@@ -39,20 +50,27 @@ import org.cloudifysource.esc.driver.provisioning.byon.CustomNodeImpl;
  *
  *        Implements a cloud-simulator, using private machines as a pool of nodes on which the application is deployed.
  *        The list of available nodes and matching credentials are configured through the cloud Groovy file.
+ *
+ *        The nodes of every template are kept in a separate {@link ByonNodePool}, so operations on one template do
+ *        not wait for another. The connectivity of the free and invalid nodes is probed in the background, and
+ *        creating a server takes a node that passed the last probe and checks only that node's connectivity.
  */
 public class ByonDeployer {
 
-	private static final String NODES_LIST_FREE = "FREE";
-	private static final String NODES_LIST_ALLOCATED = "ALLOCATED";
-	private static final String NODES_LIST_INVALID = "INVALID";
-	private static final String NODES_LIST_TERMINATED = "TERMINATED";
-	
+	// the time between background probes of the nodes' connectivity.
+	private static final long PROBE_INTERVAL_MILLIS = 30 * 1000;
+	// the time to wait for the connections of a probe.
+	private static final long PROBE_TIMEOUT_MILLIS = 10 * 1000;
 
 	protected static final java.util.logging.Logger logger = java.util.logging.Logger
 			.getLogger(ByonDeployer.class.getName());
 
-	private final Map<String, Map<String, List<CustomNode>>> nodesListsByTemplates =
-			new Hashtable<String, Map<String, List<CustomNode>>>();
+	private final ConcurrentMap<String, ByonNodePool> nodePoolsByTemplates =
+			new ConcurrentHashMap<String, ByonNodePool>();
+
+	// guards adding and removing templates, and the prober.
+	private final Object templatesLock = new Object();
+	private volatile ScheduledExecutorService prober;
 
 	/**
 	 * Constructor.
@@ -73,27 +91,30 @@ public class ByonDeployer {
 	 * @throws Exception
 	 *             Indicates the node parsing failed
 	 */
-	public synchronized void addNodesList(final String templateName,
+	public void addNodesList(final String templateName,
 			final ComputeTemplate template,
 			final List<Map<String, String>> nodesList) throws CloudProvisioningException {
 		final List<CustomNode> resolvedNodes = new ArrayList<CustomNode>();
 		final List<CustomNode> unresolvedNodes = new ArrayList<CustomNode>();
 
-		// parse the given nodes list
-		List<CustomNode> parsedNodes = ByonUtils.parseCloudNodes(nodesList);
+		// parse the given nodes list, IP ranges are kept as ranges and their nodes are created on allocation
+		List<CustomNode> parsedNodes = ByonUtils.parseCloudNodes(nodesList, false);
 		parsedNodes = removeDuplicates(parsedNodes);
+		final List<ByonNodeRange> nodeRanges = ByonUtils.parseCloudNodeRanges(nodesList);
+		final int loginPort = template.getRemoteExecution() == RemoteExecutionModes.WINRM
+				? RemoteExecutionModes.WINRM.getDefaultPort() : CustomNodeImpl.DEFAULT_LOGIN_PORT;
 
 		// the infrastructure is based on machine IPs, they need to be unique.
 		// we set the resolved IP address on each node for an easy machine
 		// comparison from this point on
+		final List<CustomNode> nodesToProbe = new ArrayList<CustomNode>();
 		for (CustomNode node : parsedNodes) {
 			try {
                 node.resolve();
 				if (template.getRemoteExecution() == RemoteExecutionModes.WINRM) {
-					node.setLoginPort(RemoteExecutionModes.WINRM.getDefaultPort());
+					node.setLoginPort(loginPort);
 				}
-				IPUtils.validateConnection(node.getPrivateIP(), node.getLoginPort());
-				resolvedNodes.add(node);
+				nodesToProbe.add(node);
 			} catch (final Exception ex) {
 				// this node is not reachable - add it to the invalid nodes pool
 				logger.log(Level.WARNING, "Failed to resolve node: " + node.toShortString() + ", exception: " 
@@ -102,112 +123,78 @@ public class ByonDeployer {
 			}
 		}
 
-		// avoid duplicate machines in different templates (compare by IP)
-		final Set<String> duplicateNodes = getDuplicateIPs(getAllNodes(), parsedNodes);
-		if (duplicateNodes.size() > 0) {
-			throw new CloudProvisioningException(
-					"Failed to add nodes for template \""
-							+ templateName
-							+ "\","
-							+ " some IP addresses were already defined by a different template: "
-							+ Arrays.toString(duplicateNodes.toArray()));
+		// connect to all the nodes at once, rather than waiting for each unreachable node in turn
+		final boolean[] connected = probeNodes(nodesToProbe);
+		for (int i = 0; i < connected.length; i++) {
+			final CustomNode node = nodesToProbe.get(i);
+			if (connected[i]) {
+				resolvedNodes.add(node);
+			} else {
+				logger.log(Level.WARNING, "Failed to connect to node: " + node.toShortString() + " on port "
+						+ node.getLoginPort());
+				unresolvedNodes.add(node);
+			}
 		}
 
-		setInitialPoolsForTemplate(templateName, resolvedNodes, unresolvedNodes);
+		synchronized (templatesLock) {
+			// avoid duplicate machines in different templates (compare by IP)
+			final Set<String> duplicateNodes = new HashSet<String>();
+			for (final ByonNodePool nodePool : nodePoolsByTemplates.values()) {
+				duplicateNodes.addAll(nodePool.getDuplicateAddresses(parsedNodes, nodeRanges));
+			}
+			if (duplicateNodes.size() > 0) {
+				throw new CloudProvisioningException(
+						"Failed to add nodes for template \""
+								+ templateName
+								+ "\","
+								+ " some IP addresses were already defined by a different template: "
+								+ Arrays.toString(duplicateNodes.toArray()));
+			}
+
+			setInitialPoolsForTemplate(templateName, resolvedNodes, unresolvedNodes, nodeRanges, loginPort);
+			startProber();
+		}
 	}
 
     /**
 	 * Creates a server (AKA a machine or a node) with the assigned logical name. The server is taken from the list of
-	 * free nodes, unless this list is exhausted. If all there are no free nodes available, the invalid nodes are
-	 * checked for SSH connection, and if a connection can be established - the node is used.
+	 * free nodes that passed the last connectivity probe, unless this list is exhausted. The connectivity of the taken
+	 * node is checked again, and a node that cannot be connected to is marked as invalid and replaced by the next one.
+	 * If there are no reachable free nodes available, the invalid nodes are probed, and if a connection can be
+	 * established - the node is used. No connection is waited for beyond the given end time.
 	 *
 	 * @param templateName
 	 *            The name of the nodes-list' template this server belongs to
 	 * @param serverName
 	 *            A logical name used to uniquely identify this node (does not have to match the host name)
+	 * @param endTime
+	 *            The time, in milliseconds since the epoch, to stop looking for a reachable node at
 	 * @return A node available for use
 	 * @throws CloudProvisioningException
 	 *             Indicated a new machine could not be allocated, either because the name is empty or because the nodes
 	 *             pool is exhausted
 	 */
-	public synchronized CustomNode createServer(final String templateName,
-			final String serverName) throws CloudProvisioningException {
+	public CustomNode createServer(final String templateName,
+			final String serverName, final long endTime) throws CloudProvisioningException {
 
 		if (org.apache.commons.lang.StringUtils.isBlank(serverName)) {
 			throw new CloudProvisioningException(
 					"Failed to create new cloud node, server name is missing");
 		}
 
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
+		final ByonNodePool nodePool = nodePoolsByTemplates.get(templateName);
+		if (nodePool == null) {
 			throw new CloudProvisioningException(
 					"Failed to create new cloud node. \"" + templateName
 							+ "\" is not a known template.");
 		}
-		final List<CustomNode> freeNodesPool = templateLists
-				.get(NODES_LIST_FREE);
-		final List<CustomNode> allocatedNodesPool = templateLists
-				.get(NODES_LIST_ALLOCATED);
-		final List<CustomNode> invalidNodesPool = templateLists
-				.get(NODES_LIST_INVALID);
-
-		if (freeNodesPool.isEmpty() && invalidNodesPool.isEmpty()) {
-			throw new CloudProvisioningException(
-					"Failed to create a new cloud node for template \""
-							+ templateName
-							+ "\", all available nodes are currently used."
-							+ " Free nodes: " + getNodesListForPrint(freeNodesPool)
-							+ ", Invalid nodes: " + getNodesListForPrint(invalidNodesPool)
-							+ ", Allocated nodes: " + getNodesListForPrint(allocatedNodesPool));
-		}
 
-		CustomNode node = null;
-		if (!freeNodesPool.isEmpty()) {
-			node = freeNodesPool.iterator().next();
-			// if this node is indeed not allocated, test the connectivity to it.
-			// if we can't connect to it - move it to the invalid pool,
-			// otherwise - allocate it.
-			if (!allocatedNodesPool.contains(node)) {
-				try {
-                    node.resolve();
-					IPUtils.validateConnection(node.getPrivateIP(),
-							node.getLoginPort());
-					allocatedNodesPool.add(node);
-					freeNodesPool.remove(node);
-				} catch (final Exception e) {
-					// catch any exception - to prevent a machine leak. Add the
-					// machine to the invalids pool
-					logger.log(
-							Level.INFO,
-							"Failed to create server on " + node.getPrivateIP()
-									+ ", connection failed on port "
-									+ node.getLoginPort(), e);
-					try {
-						invalidateServer(templateName, node);
-					} catch (final CloudProvisioningException ie) {
-						logger.log(Level.INFO,
-								"Failed to mark machine " + node.getPrivateIP()
-										+ " as Invalid.", ie);
-					}
-					throw new CloudProvisioningException(e);
-				}
-			}
-		} else {
-			for (CustomNode currentNode : invalidNodesPool) {
-				try {
-                    currentNode.resolve();
-					IPUtils.validateConnection(currentNode.getPrivateIP(), currentNode.getLoginPort());
-					if (!allocatedNodesPool.contains(currentNode)) {
-						allocatedNodesPool.add(currentNode);
-					}
-					invalidNodesPool.remove(currentNode);
-					node = currentNode;
-					break;
-				} catch (final Exception ex) {
-					// ignore and continue
-				}
-			}
+		CustomNode node = allocateValidNode(templateName, nodePool, endTime);
+		final long remainingMillis = endTime - System.currentTimeMillis();
+		if (node == null && remainingMillis > 0) {
+			// an invalid node may have become reachable since the last probe.
+			nodePool.probeInvalidNodes(Math.min(PROBE_TIMEOUT_MILLIS, remainingMillis));
+			node = allocateValidNode(templateName, nodePool, endTime);
 		}
 
 		if (node == null) {
@@ -215,12 +202,14 @@ public class ByonDeployer {
 					"Failed to create a new cloud node for template \""
 							+ templateName
 							+ "\", all available nodes are currently used."
-							+ " Free nodes: " + getNodesListForPrint(freeNodesPool)
-							+ ", Invalid nodes: " + getNodesListForPrint(invalidNodesPool)
-							+ ", Allocated nodes: " + getNodesListForPrint(allocatedNodesPool));
+							+ " Free nodes: " + getNodesListForPrint(nodePool.getNodes(NodeState.FREE))
+							+ ", Invalid nodes: " + getNodesListForPrint(nodePool.getNodes(NodeState.INVALID))
+							+ ", Allocated nodes: " + getNodesListForPrint(nodePool.getNodes(NodeState.ALLOCATED))
+							+ ", IP ranges: " + nodePool.getRangesSummary());
 		}
 
 		node.setNodeName(serverName);
+		startProber();
 
 		return node;
 	}
@@ -236,34 +225,19 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException
 	 *             Indicates the IPs could not be marked as allocated with the specified template
 	 */
-	public synchronized void setAllocated(final String templateName,
+	public void setAllocated(final String templateName,
 			final Set<String> ipAddresses) throws CloudProvisioningException {
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
+		final ByonNodePool nodePool = nodePoolsByTemplates.get(templateName);
+		if (nodePool == null) {
 			throw new CloudProvisioningException(
 					"Failed to set allocated servers. \"" + templateName
 							+ "\" is not a known template.");
 		}
-		final List<CustomNode> freeNodesPool = templateLists.get(NODES_LIST_FREE);
-		final List<CustomNode> allocatedNodesPool = templateLists.get(NODES_LIST_ALLOCATED);
 
 		for (final String ipAddress : ipAddresses) {
 			logger.log(Level.INFO, "Looking for " + ipAddress + " in the pool of \"free\" machines");
-			for (final CustomNode node : freeNodesPool) {
-				if (StringUtils.isNotBlank(node.getPrivateIP())) {
-					if (IPUtils.isSameIpAddress(node.getPrivateIP(), ipAddress)) {
-						freeNodesPool.remove(node);
-						if (!allocatedNodesPool.contains(node)) {
-							allocatedNodesPool.add(node);
-						}
-						logger.log(Level.INFO, "Marking " + node.getPrivateIP() + " (" + ipAddress + ")"
-								+ " as \"allocated\"");
-						break;
-					}
-				} else {
-					logger.log(Level.INFO, "Host " + node.getPrivateIP() + " is not resolved to an IP address");
-				}
+			if (StringUtils.isNotBlank(ipAddress) && nodePool.markAllocated(ipAddress)) {
+				logger.log(Level.INFO, "Marking " + ipAddress + " as \"allocated\"");
 			}
 		}
 	}
@@ -278,28 +252,22 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException
 	 *             Indicates the server could not be shutdown with the specified template
 	 */
-	public synchronized void shutdownServer(final String templateName,
+	public void shutdownServer(final String templateName,
 			final CustomNode serverName) throws CloudProvisioningException {
 		if (serverName == null) {
 			return;
 		}
 
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
+		final ByonNodePool nodePool = nodePoolsByTemplates.get(templateName);
+		if (nodePool == null) {
 			throw new CloudProvisioningException("Failed to shutdown server \""
 					+ serverName + "\". \"" + templateName
 					+ "\" is not a known template.");
 		}
-		final List<CustomNode> freeNodesPool = templateLists
-				.get(NODES_LIST_FREE);
-		final List<CustomNode> allocatedNodesPool = templateLists
-				.get(NODES_LIST_ALLOCATED);
 
 		((CustomNodeImpl) serverName).setGroup(null);
-		allocatedNodesPool.remove(serverName);
-		if (!freeNodesPool.contains(serverName)) {
-			freeNodesPool.add(serverName);
+		if (!nodePool.release(serverName)) {
+			logger.warning("Server " + serverName.toShortString() + " does not belong to template " + templateName);
 		}
 	}
 
@@ -371,16 +339,7 @@ public class ByonDeployer {
 	 */
 	public CustomNode getServerByID(final String templateName, final String id)
 			throws CloudProvisioningException {
-		CustomNode selectedNode = null;
-
-		for (final CustomNode node : getAllNodesByTemplateName(templateName)) {
-			if (node.getId().equalsIgnoreCase(id)) {
-				selectedNode = node;
-				break;
-			}
-		}
-
-		return selectedNode;
+		return getNodePool(templateName, "Failed to get servers list. \"").getNodeById(id);
 	}
 
 	/**
@@ -396,16 +355,7 @@ public class ByonDeployer {
 	 */
 	public CustomNode getServerByIP(final String templateName,
 			final String ipAddress) throws CloudProvisioningException {
-		CustomNode selectedNode = null;
-
-		for (final CustomNode node : getAllNodesByTemplateName(templateName)) {
-			if (IPUtils.isSameIpAddress(node.getPrivateIP(), ipAddress)) {
-				selectedNode = node;
-				break;
-			}
-		}
-
-		return selectedNode;
+		return getNodePool(templateName, "Failed to get servers list. \"").getNodeByIP(ipAddress);
 	}
 
 	/**
@@ -417,29 +367,9 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException
 	 *             Indicates the servers list could not be obtained for the given template name
 	 */
-	public synchronized Set<CustomNode> getAllNodesByTemplateName(final String templateName)
+	public Set<CustomNode> getAllNodesByTemplateName(final String templateName)
 			throws CloudProvisioningException {
-		final Set<CustomNode> allNodes = new HashSet<CustomNode>();
-
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			throw new CloudProvisioningException(
-					"Failed to get servers list. \"" + templateName
-							+ "\" is not a known template.");
-		}
-		final List<CustomNode> freeNodesPool = templateLists
-				.get(NODES_LIST_FREE);
-		final List<CustomNode> allocatedNodesPool = templateLists
-				.get(NODES_LIST_ALLOCATED);
-		final List<CustomNode> invalidNodesPool = templateLists
-				.get(NODES_LIST_INVALID);
-
-		allNodes.addAll(freeNodesPool);
-		allNodes.addAll(allocatedNodesPool);
-		allNodes.addAll(invalidNodesPool);
-
-		return allNodes;
+		return new HashSet<CustomNode>(getNodePool(templateName, "Failed to get servers list. \"").getAllNodes());
 	}
 
 	/**
@@ -447,25 +377,14 @@ public class ByonDeployer {
 	 *
 	 * @param templateName
 	 *            The name of the nodes-list' template to use
-	 * @return A collection of all the free nodes of the specified template
+	 * @return A collection of all the free nodes of the specified template. Addresses of IP ranges are included only
+	 *         once they have a node, e.g. once they were allocated
 	 * @throws CloudProvisioningException
 	 *             Indicates the servers list could not be obtained for the given template name
 	 */
-	public synchronized Set<CustomNode> getFreeNodesByTemplateName(final String templateName)
+	public Set<CustomNode> getFreeNodesByTemplateName(final String templateName)
 			throws CloudProvisioningException {
-		final Set<CustomNode> allNodes = new HashSet<CustomNode>();
-
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			throw new CloudProvisioningException(
-					"Failed to get servers list. \"" + templateName
-							+ "\" is not a known template.");
-		}
-
-		allNodes.addAll(templateLists.get(NODES_LIST_FREE));
-
-		return allNodes;
+		return getNodePool(templateName, "Failed to get servers list. \"").getNodes(NodeState.FREE);
 	}
 
 	/**
@@ -477,21 +396,9 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException
 	 *             Indicates the servers list could not be obtained for the given template name
 	 */
-	public synchronized Set<CustomNode> getAllocatedNodesByTemplateName(
+	public Set<CustomNode> getAllocatedNodesByTemplateName(
 			final String templateName) throws CloudProvisioningException {
-		final Set<CustomNode> allNodes = new HashSet<CustomNode>();
-
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			throw new CloudProvisioningException(
-					"Failed to get servers list. \"" + templateName
-							+ "\" is not a known template.");
-		}
-
-		allNodes.addAll(templateLists.get(NODES_LIST_ALLOCATED));
-
-		return allNodes;
+		return getNodePool(templateName, "Failed to get servers list. \"").getNodes(NodeState.ALLOCATED);
 	}
 
 	/**
@@ -499,25 +406,14 @@ public class ByonDeployer {
 	 *
 	 * @param templateName
 	 *            The name of the nodes-list' template to use
-	 * @return A collection of all the invalid nodes of the specified template
+	 * @return A collection of all the invalid nodes of the specified template. Addresses of IP ranges are included only
+	 *         once they have a node, e.g. once they were allocated
 	 * @throws CloudProvisioningException
 	 *             Indicates the servers list could not be obtained for the given template name
 	 */
-	public synchronized Set<CustomNode> getInvalidNodesByTemplateName(
+	public Set<CustomNode> getInvalidNodesByTemplateName(
 			final String templateName) throws CloudProvisioningException {
-		final Set<CustomNode> allNodes = new HashSet<CustomNode>();
-
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			throw new CloudProvisioningException(
-					"Failed to get servers list. \"" + templateName
-							+ "\" is not a known template.");
-		}
-
-		allNodes.addAll(templateLists.get(NODES_LIST_INVALID));
-
-		return allNodes;
+		return getNodePool(templateName, "Failed to get servers list. \"").getNodes(NodeState.INVALID);
 	}
 
 	/**
@@ -531,72 +427,114 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException
 	 *             Indicates the server could not be marked as Invalid for the specified template
 	 */
-	public synchronized void invalidateServer(final String templateName,
+	public void invalidateServer(final String templateName,
 			final CustomNode serverName) throws CloudProvisioningException {
 		logger.warning("Invalidaing node: " + serverName + " from template: " + templateName);
-		// attempting to remove the invalid node from the active lists so it
-		// will not be used anymore, just to
-		// be sure.
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			// todo illegal argument exception
-			throw new CloudProvisioningException(
-					"Failed to invalidate server. \"" + templateName
-							+ "\" is not a known template.");
-		}
-		final List<CustomNode> freeNodesPool = templateLists
-				.get(NODES_LIST_FREE);
-		final List<CustomNode> allocatedNodesPool = templateLists
-				.get(NODES_LIST_ALLOCATED);
-		final List<CustomNode> invalidNodesPool = templateLists
-				.get(NODES_LIST_INVALID);
-
-		freeNodesPool.remove(serverName);
-		allocatedNodesPool.remove(serverName);
-		if (!invalidNodesPool.contains(serverName)) {
-			invalidNodesPool.add(serverName);
+		// todo illegal argument exception
+		if (!getNodePool(templateName, "Failed to invalidate server. \"").invalidate(serverName)) {
+			logger.warning("Server " + serverName + " does not belong to template " + templateName);
 		}
 	}
 
 	/**
-	 * closes the deployer, currently not doing anything.
+	 * closes the deployer, stopping the background probing of the nodes. The probing is resumed when a server is
+	 * created, as the deployer may be shared by several drivers.
 	 */
 	public void close() {
-		// Do nothing
+		synchronized (templatesLock) {
+			if (prober != null) {
+				prober.shutdownNow();
+				prober = null;
+			}
+		}
 	}
 
-	private synchronized List<CustomNode> getAllNodes() throws CloudProvisioningException {
-		final List<CustomNode> allNodes = new ArrayList<CustomNode>();
+	private ByonNodePool getNodePool(final String templateName, final String errorPrefix)
+			throws CloudProvisioningException {
+		final ByonNodePool nodePool = nodePoolsByTemplates.get(templateName);
+		if (nodePool == null) {
+			throw new CloudProvisioningException(errorPrefix + templateName + "\" is not a known template.");
+		}
+		return nodePool;
+	}
 
-		for (final String templateName : nodesListsByTemplates.keySet()) {
-			final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-					.get(templateName);
-			if (templateLists == null || templateLists.isEmpty()) {
-				throw new CloudProvisioningException(
-						"Failed to get servers list. \"" + templateName
-								+ "\" is not a known template.");
+	private void startProber() {
+		if (prober != null) {
+			return;
+		}
+		synchronized (templatesLock) {
+			if (prober != null) {
+				return;
+			}
+			final AtomicInteger counter = new AtomicInteger();
+			prober = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, "ByonNodeProber-" + counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			prober.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					probeAllTemplates();
+				}
+			}, PROBE_INTERVAL_MILLIS, PROBE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void probeAllTemplates() {
+		for (final ByonNodePool nodePool : nodePoolsByTemplates.values()) {
+			try {
+				nodePool.probe(PROBE_TIMEOUT_MILLIS);
+			} catch (final RuntimeException e) {
+				// keep probing the other templates, and keep the task scheduled.
+				logger.log(Level.WARNING, "Failed to probe BYON nodes", e);
 			}
-			final List<CustomNode> freeNodesPool = templateLists
-					.get(NODES_LIST_FREE);
-			final List<CustomNode> allocatedNodesPool = templateLists
-					.get(NODES_LIST_ALLOCATED);
-			final List<CustomNode> invalidNodesPool = templateLists
-					.get(NODES_LIST_INVALID);
-
-			allNodes.addAll(freeNodesPool);
-			allNodes.addAll(allocatedNodesPool);
-			allNodes.addAll(invalidNodesPool);
 		}
+	}
 
-		return allNodes;
+	// allocates a node and checks it still accepts a connection, as it may have gone down since the last probe.
+	// nodes that do not are marked as invalid, and the next node is allocated instead.
+	private static CustomNode allocateValidNode(final String templateName, final ByonNodePool nodePool,
+			final long endTime) {
+		CustomNode node = nodePool.allocate(PROBE_TIMEOUT_MILLIS, endTime);
+		while (node != null) {
+			// wait at least a second for the connection, the node is already taken.
+			final long timeoutMillis = Math.min(PROBE_TIMEOUT_MILLIS, endTime - System.currentTimeMillis());
+			try {
+				IPUtils.validateConnection(node.getPrivateIP(), node.getLoginPort(),
+						(int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(timeoutMillis)));
+				return node;
+			} catch (final Exception e) {
+				logger.log(Level.INFO, "Failed to create server on " + node.getPrivateIP() + " of template "
+						+ templateName + ", connection failed on port " + node.getLoginPort(), e);
+				nodePool.invalidate(node);
+			}
+			node = nodePool.allocate(PROBE_TIMEOUT_MILLIS, endTime);
+		}
+		return null;
+	}
+
+	private static boolean[] probeNodes(final List<CustomNode> nodes) {
+		final InetSocketAddress[] endPoints = new InetSocketAddress[nodes.size()];
+		for (int i = 0; i < endPoints.length; i++) {
+			final CustomNode node = nodes.get(i);
+			endPoints[i] = new InetSocketAddress(node.getPrivateIP(), node.getLoginPort());
+		}
+		try {
+			return PortProber.probe(endPoints, PROBE_TIMEOUT_MILLIS);
+		} catch (final IOException e) {
+			logger.log(Level.WARNING, "Failed to probe BYON nodes", e);
+			return new boolean[endPoints.length];
+		}
 	}
 
 
 	/**
-	 * Sets the initial nodes pools (free nodes, allocated, invalid and terminated) for each template. The initial
-	 * allocated-nodes pool is always empty. The terminated nodes pool is currently not supported and remains empty all
-	 * along.
+	 * Sets the initial nodes pools (free nodes, allocated and invalid) for each template. The initial
+	 * allocated-nodes pool is always empty.
 	 *
 	 * @param templateName
 	 *            The name of the template
@@ -604,67 +542,48 @@ public class ByonDeployer {
 	 *            The resolved nodes (will be set as free nodes ready for use)
 	 * @param unresolvedNodes
 	 *            The unresolved nodes (will be set as invalid as they aren't reachable now)
+	 * @param nodeRanges
+	 *            The IP ranges, which are probed and allocated one address at a time
+	 * @param loginPort
+	 *            The login port of the IP ranges' nodes
 	 */
 	private void setInitialPoolsForTemplate(final String templateName,
 			final List<CustomNode> resolvedNodes,
-			final List<CustomNode> unresolvedNodes) {
-		// todo use hashmap instead
-		// use pojo instead of a complex map
-		final Map<String, List<CustomNode>> templateLists = new Hashtable<String, List<CustomNode>>();
-		final List<CustomNode> freeNodesPool = new ArrayList<CustomNode>();
-		final List<CustomNode> invalidNodesPool = new ArrayList<CustomNode>();
-
-		freeNodesPool.addAll(aggregateWithoutDuplicates(freeNodesPool,
-				resolvedNodes));
-		invalidNodesPool.addAll(aggregateWithoutDuplicates(invalidNodesPool,
-				unresolvedNodes));
+			final List<CustomNode> unresolvedNodes,
+			final List<ByonNodeRange> nodeRanges,
+			final int loginPort) {
+		final List<CustomNode> freeNodesPool = removeDuplicates(resolvedNodes);
+		final List<CustomNode> invalidNodesPool = removeDuplicates(unresolvedNodes);
 		
 		logger.info("Setting initial pools for template: " + templateName + ". "
 				+ CloudifyConstants.NEW_LINE + "Free nodes: " + getNodesListForPrint(freeNodesPool)
-				+ CloudifyConstants.NEW_LINE + "Invalid nodes: " + getNodesListForPrint(invalidNodesPool));
-
-		templateLists.put(NODES_LIST_FREE, freeNodesPool);
-		templateLists.put(NODES_LIST_ALLOCATED, new ArrayList<CustomNode>());
-		templateLists.put(NODES_LIST_INVALID, invalidNodesPool);
-		templateLists.put(NODES_LIST_TERMINATED, new ArrayList<CustomNode>());
+				+ CloudifyConstants.NEW_LINE + "Invalid nodes: " + getNodesListForPrint(invalidNodesPool)
+				+ CloudifyConstants.NEW_LINE + "IP ranges: " + nodeRanges);
 
-		nodesListsByTemplates.put(templateName, templateLists);
+		nodePoolsByTemplates.put(templateName, new ByonNodePool(templateName, freeNodesPool, invalidNodesPool,
+				nodeRanges, loginPort));
 	}
 
+	// nodes are equal if they have the same IP address or host name, see CustomNodeImpl.equals
 	private static List<CustomNode> removeDuplicates(
 			final List<CustomNode> customNodesList) {
 		final List<CustomNode> totalList = new ArrayList<CustomNode>();
+		final Set<String> ipAddresses = new HashSet<String>();
+		final Set<String> hostNames = new HashSet<String>();
 		for (final CustomNode node : customNodesList) {
-			if (!totalList.contains(node)) {
-				totalList.add(node);
+			final String ipAddress = node.getPrivateIP();
+			final String hostName = node.getHostName();
+			if (StringUtils.isNotBlank(ipAddress) && ipAddresses.contains(ipAddress)
+					|| StringUtils.isNotBlank(hostName) && hostNames.contains(hostName.toLowerCase())) {
+				continue;
 			}
-		}
-		return totalList;
-	}
-
-	private static Set<String> getDuplicateIPs(final List<CustomNode> oldNodes,
-			final List<CustomNode> newNodes) {
-		final Set<String> existingIPs = new HashSet<String>();
-
-		for (final CustomNode newNode : newNodes) {
-			for (final CustomNode oldNode : oldNodes) {
-				if (IPUtils.isSameIpAddress(oldNode.getPrivateIP(), newNode.getPrivateIP())) {
-					existingIPs.add(oldNode.getPrivateIP());
-					break;
-				}
+			if (StringUtils.isNotBlank(ipAddress)) {
+				ipAddresses.add(ipAddress);
 			}
-		}
-
-		return existingIPs;
-	}
-
-	private static List<CustomNode> aggregateWithoutDuplicates(
-			final List<CustomNode> basicList, final List<CustomNode> newItems) {
-		final List<CustomNode> totalList = new ArrayList<CustomNode>(basicList);
-		for (final CustomNode node : newItems) {
-			if (!totalList.contains(node)) {
-				totalList.add(node);
+			if (StringUtils.isNotBlank(hostName)) {
+				hostNames.add(hostName.toLowerCase());
 			}
+			totalList.add(node);
 		}
 		return totalList;
 	}
@@ -673,9 +592,9 @@ public class ByonDeployer {
 	 * Gets a list of the templates being used.
 	 * @return a list of the templates being used
 	 */
-	public synchronized List<String> getTemplatesList() {
+	public List<String> getTemplatesList() {
 		List<String> templatesList = new LinkedList<String>();
-		templatesList.addAll(nodesListsByTemplates.keySet());
+		templatesList.addAll(nodePoolsByTemplates.keySet());
 		return templatesList;
 	}
 
@@ -687,17 +606,19 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException Indicates one or more of the template's nodes are allocated, 
 	 * and so the template cannot be removed
 	 */
-	public synchronized void removeTemplates(final List<String> redundantTemplates) throws CloudProvisioningException {
-		for (String templateName : redundantTemplates) {
-			Map<String, List<CustomNode>> nodesMap = nodesListsByTemplates.get(templateName);
-			List<CustomNode> allocatedNodesList = nodesMap.get(NODES_LIST_ALLOCATED);
-			if (allocatedNodesList != null && !allocatedNodesList.isEmpty()) {
-				String errMsg = "Failed to remove template [" + templateName
-						+ "] from deployer, some nodes are still allocated: " + allocatedNodesList;
-				logger.log(Level.WARNING, errMsg);
-				throw new CloudProvisioningException(errMsg);
+	public void removeTemplates(final List<String> redundantTemplates) throws CloudProvisioningException {
+		synchronized (templatesLock) {
+			for (String templateName : redundantTemplates) {
+				final ByonNodePool nodePool = nodePoolsByTemplates.get(templateName);
+				if (nodePool != null && nodePool.hasAllocatedNodes()) {
+					String errMsg = "Failed to remove template [" + templateName
+							+ "] from deployer, some nodes are still allocated: "
+							+ nodePool.getNodes(NodeState.ALLOCATED);
+					logger.log(Level.WARNING, errMsg);
+					throw new CloudProvisioningException(errMsg);
+				}
+				nodePoolsByTemplates.remove(templateName);
 			}
-			nodesListsByTemplates.remove(templateName);
 		}
 	}
 	
@@ -708,7 +629,7 @@ public class ByonDeployer {
 	 * @param nodesToPrint The list of nodes to print
 	 * @return The nodes' main details, as a string
 	 */
-	public String getNodesListForPrint(final List<CustomNode> nodesToPrint) {
+	public String getNodesListForPrint(final Collection<CustomNode> nodesToPrint) {
 		
 		StringBuilder nodesStr = new StringBuilder();
 		boolean first = true;
@@ -0,0 +1,764 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ ******************************************************************************/
+package org.cloudifysource.esc.byon;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+import org.apache.commons.lang.StringUtils;
+import org.cloudifysource.dsl.utils.IPUtils;
+import org.cloudifysource.dsl.utils.PortProber;
+import org.cloudifysource.esc.driver.provisioning.CustomNode;
+
+/**
+ * The nodes of a single BYON template. Every node holds its own state (free, allocated or invalid), which is changed
+ * with a compare-and-set, so moving a node between states takes constant time and does not lock the other nodes or
+ * the other templates.
+ *
+ * Free nodes that passed the last connectivity probe are kept in a queue, and allocating a node pops the queue. Invalid
+ * nodes that passed the last probe are kept in a second queue, which is used only once the free nodes are exhausted.
+ * The probes are run by the deployer in the background, see {@link #probe(long)}.
+ *
+ * The addresses of IP ranges are not expanded into nodes. The state of a range is kept in two bit sets, of the
+ * addresses that have a node and of the addresses that did not accept a connection, and a node is created for an
+ * address only when it is allocated, referred to, or found reachable. While no probed node is free, the background
+ * probe advances through the range a batch at a time and queues the addresses that accept a connection. When no
+ * queued node is left, allocation probes the addresses that were not found unreachable until the caller's deadline.
+ * Unreachable addresses are probed again only in the background, once the other addresses of the range are taken.
+ *
+ * @since 2.7.0
+ *
+ */
+class ByonNodePool {
+
+	// the number of range addresses probed at once when no probed node is free.
+	private static final int RANGE_PROBE_BATCH_SIZE = PortProber.MAX_OPEN_CONNECTIONS;
+
+	private static final java.util.logging.Logger logger = java.util.logging.Logger.getLogger(ByonNodePool.class
+			.getName());
+
+	/**
+	 * The state of a node.
+	 */
+	enum NodeState {
+		/**
+		 * Available for allocation.
+		 */
+		FREE,
+		/**
+		 * In use.
+		 */
+		ALLOCATED,
+		/**
+		 * Not reachable, used only when no free node is available.
+		 */
+		INVALID
+	}
+
+	/**
+	 * A node and its state.
+	 */
+	private static final class PooledNode {
+		private final CustomNode node;
+		private final AtomicReference<NodeState> state;
+		// true if the node accepted a connection on the last probe.
+		private final AtomicBoolean reachable;
+
+		PooledNode(final CustomNode node, final NodeState state, final boolean reachable) {
+			this.node = node;
+			this.state = new AtomicReference<NodeState>(state);
+			this.reachable = new AtomicBoolean(reachable);
+		}
+	}
+
+	/**
+	 * An IP range and the state of its addresses, guarded by the range state monitor.
+	 */
+	private static final class RangeState {
+		private final ByonNodeRange range;
+		// addresses that have a node, that are being probed, or that belong to another node of the template.
+		private final BitSet taken;
+		// addresses that did not accept a connection when last probed.
+		private final BitSet unreachable = new BitSet();
+		// the next address to probe.
+		private int cursor;
+
+		RangeState(final ByonNodeRange range, final BitSet taken) {
+			this.range = range;
+			this.taken = taken;
+		}
+	}
+
+	private final String templateName;
+	private final int rangeLoginPort;
+	// the listed nodes of a template do not change once the pool is created, so look ups need no locking.
+	private final List<PooledNode> nodes;
+	private final Map<CustomNode, PooledNode> nodesByIdentity;
+	private final List<RangeState> ranges;
+	// the nodes created for range addresses, by address.
+	private final ConcurrentMap<Long, PooledNode> rangeNodes = new ConcurrentHashMap<Long, PooledNode>();
+	private final Queue<PooledNode> freeNodes = new ConcurrentLinkedQueue<PooledNode>();
+	private final Queue<PooledNode> recoveredNodes = new ConcurrentLinkedQueue<PooledNode>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param templateName
+	 *            the name of the template.
+	 * @param reachableNodes
+	 *            the nodes that accepted a connection, set as free.
+	 * @param unreachableNodes
+	 *            the nodes that could not be resolved or connected to, set as invalid.
+	 * @param nodeRanges
+	 *            the IP ranges of the template. Addresses that are also listed as nodes, or that are included in an
+	 *            earlier range, are ignored.
+	 * @param rangeLoginPort
+	 *            the login port of the range nodes.
+	 */
+	ByonNodePool(final String templateName, final List<CustomNode> reachableNodes,
+			final List<CustomNode> unreachableNodes, final List<ByonNodeRange> nodeRanges, final int rangeLoginPort) {
+		this.templateName = templateName;
+		this.rangeLoginPort = rangeLoginPort;
+		final List<PooledNode> allNodes = new ArrayList<PooledNode>(reachableNodes.size() + unreachableNodes.size());
+		final Map<CustomNode, PooledNode> identityMap = new IdentityHashMap<CustomNode, PooledNode>();
+		for (final CustomNode node : reachableNodes) {
+			final PooledNode pooledNode = new PooledNode(node, NodeState.FREE, true);
+			allNodes.add(pooledNode);
+			identityMap.put(node, pooledNode);
+			freeNodes.add(pooledNode);
+		}
+		for (final CustomNode node : unreachableNodes) {
+			final PooledNode pooledNode = new PooledNode(node, NodeState.INVALID, false);
+			allNodes.add(pooledNode);
+			identityMap.put(node, pooledNode);
+		}
+		this.nodes = Collections.unmodifiableList(allNodes);
+		this.nodesByIdentity = identityMap;
+
+		final List<RangeState> rangeStates = new ArrayList<RangeState>(nodeRanges.size());
+		for (final ByonNodeRange range : nodeRanges) {
+			final BitSet taken = new BitSet();
+			for (final PooledNode pooledNode : allNodes) {
+				final int index = range.indexOf(toLong(pooledNode.node.getPrivateIP()));
+				if (index >= 0) {
+					taken.set(index);
+				}
+			}
+			for (final RangeState previous : rangeStates) {
+				final long first = Math.max(range.getFirstIp(), previous.range.getFirstIp());
+				final long last = Math.min(range.getLastIp(), previous.range.getLastIp());
+				if (first <= last) {
+					taken.set(range.indexOf(first), range.indexOf(last) + 1);
+				}
+			}
+			rangeStates.add(new RangeState(range, taken));
+		}
+		this.ranges = Collections.unmodifiableList(rangeStates);
+	}
+
+	/**
+	 * Allocates a reachable node. Free nodes that passed the last probe are used first, then range addresses that
+	 * accept a connection now, then invalid nodes that became reachable.
+	 *
+	 * @param timeoutMillis
+	 *            the time to wait for the connections to each batch of range addresses.
+	 * @param endTime
+	 *            the time, in milliseconds since the epoch, to stop probing range addresses at.
+	 * @return the allocated node, or null if no reachable node is available.
+	 */
+	CustomNode allocate(final long timeoutMillis, final long endTime) {
+		PooledNode pooledNode = freeNodes.poll();
+		while (pooledNode != null) {
+			// the queue may hold nodes that were invalidated or allocated by IP since they were queued.
+			if (pooledNode.state.compareAndSet(NodeState.FREE, NodeState.ALLOCATED)) {
+				return pooledNode.node;
+			}
+			pooledNode = freeNodes.poll();
+		}
+
+		final CustomNode rangeNode = allocateFromRanges(timeoutMillis, endTime);
+		if (rangeNode != null) {
+			return rangeNode;
+		}
+
+		pooledNode = recoveredNodes.poll();
+		while (pooledNode != null) {
+			if (pooledNode.reachable.get()
+					&& pooledNode.state.compareAndSet(NodeState.INVALID, NodeState.ALLOCATED)) {
+				return pooledNode.node;
+			}
+			pooledNode = recoveredNodes.poll();
+		}
+		return null;
+	}
+
+	/**
+	 * Marks a free node as allocated.
+	 *
+	 * @param ipAddress
+	 *            the IP address of the node.
+	 * @return true if the node was free.
+	 */
+	boolean markAllocated(final String ipAddress) {
+		PooledNode pooledNode = null;
+		for (final PooledNode candidate : nodes) {
+			if (IPUtils.isSameIpAddress(candidate.node.getPrivateIP(), ipAddress)) {
+				pooledNode = candidate;
+				break;
+			}
+		}
+		if (pooledNode == null) {
+			pooledNode = findRangeNode(toLong(ipAddress));
+		}
+		return pooledNode != null && pooledNode.state.compareAndSet(NodeState.FREE, NodeState.ALLOCATED);
+	}
+
+	/**
+	 * Returns a node to the free nodes.
+	 *
+	 * @param node
+	 *            the node.
+	 * @return false if the node does not belong to this pool.
+	 */
+	boolean release(final CustomNode node) {
+		final PooledNode pooledNode = find(node);
+		if (pooledNode == null) {
+			return false;
+		}
+		// the node was in use until now, so it is assumed to be reachable until the next probe.
+		final boolean wasReachable = pooledNode.reachable.getAndSet(true);
+		if (pooledNode.state.getAndSet(NodeState.FREE) != NodeState.FREE || !wasReachable) {
+			freeNodes.add(pooledNode);
+		}
+		return true;
+	}
+
+	/**
+	 * Marks a node as invalid, so it is not allocated while free nodes are available.
+	 *
+	 * @param node
+	 *            the node.
+	 * @return false if the node does not belong to this pool.
+	 */
+	boolean invalidate(final CustomNode node) {
+		final PooledNode pooledNode = find(node);
+		if (pooledNode == null) {
+			return false;
+		}
+		pooledNode.reachable.set(false);
+		pooledNode.state.set(NodeState.INVALID);
+		return true;
+	}
+
+	/**
+	 * Checks the connectivity of the free and invalid nodes. Nodes that were not resolved yet are resolved first, and
+	 * then all nodes are probed at once. Free nodes that do not accept a connection are marked as invalid, and invalid
+	 * nodes that do are queued for allocation. Then, if no reachable free node is queued, the next batch of addresses
+	 * of each IP range is probed, and the addresses that accept a connection are queued as free nodes.
+	 *
+	 * @param timeoutMillis
+	 *            the time to wait for the connections.
+	 */
+	void probe(final long timeoutMillis) {
+		probe(timeoutMillis, false);
+		for (final RangeState rangeState : ranges) {
+			if (hasReachableFreeNode()) {
+				break;
+			}
+			final List<Integer> candidates = claim(rangeState, RANGE_PROBE_BATCH_SIZE, false);
+			if (!candidates.isEmpty()) {
+				probeRangeAddresses(rangeState, candidates, timeoutMillis, false);
+			}
+		}
+	}
+
+	/**
+	 * Checks the connectivity of the invalid nodes only, used when no reachable node is available for allocation.
+	 *
+	 * @param timeoutMillis
+	 *            the time to wait for the connections.
+	 */
+	void probeInvalidNodes(final long timeoutMillis) {
+		probe(timeoutMillis, true);
+	}
+
+	private void probe(final long timeoutMillis, final boolean invalidOnly) {
+		final List<PooledNode> candidates = new ArrayList<PooledNode>();
+		for (final PooledNode pooledNode : getPooledNodes()) {
+			final NodeState state = pooledNode.state.get();
+			if (state == NodeState.INVALID || (state == NodeState.FREE && !invalidOnly)) {
+				candidates.add(pooledNode);
+			}
+		}
+		if (candidates.isEmpty()) {
+			return;
+		}
+
+		final InetSocketAddress[] endPoints = new InetSocketAddress[candidates.size()];
+		for (int i = 0; i < endPoints.length; i++) {
+			final CustomNode node = candidates.get(i).node;
+			try {
+				if (StringUtils.isBlank(node.getPrivateIP())) {
+					node.resolve();
+				}
+				endPoints[i] = new InetSocketAddress(node.getPrivateIP(), node.getLoginPort());
+			} catch (final Exception e) {
+				logger.log(Level.FINE, "Failed to resolve node: " + node.toShortString(), e);
+				endPoints[i] = InetSocketAddress.createUnresolved(String.valueOf(node.getHostName()),
+						node.getLoginPort());
+			}
+		}
+
+		// only nodes that were actually tried and failed are invalidated.
+		final boolean[] failed = new boolean[endPoints.length];
+		final boolean[] connected;
+		try {
+			connected = PortProber.probe(endPoints, timeoutMillis, endPoints.length, failed);
+		} catch (final IOException e) {
+			logger.log(Level.WARNING, "Failed to probe the nodes of template " + templateName, e);
+			return;
+		}
+
+		for (int i = 0; i < connected.length; i++) {
+			final PooledNode pooledNode = candidates.get(i);
+			if (connected[i]) {
+				if (pooledNode.reachable.compareAndSet(false, true)) {
+					final NodeState state = pooledNode.state.get();
+					if (state == NodeState.INVALID) {
+						logger.info("Invalid node " + pooledNode.node.toShortString() + " of template "
+								+ templateName + " is reachable again");
+						recoveredNodes.add(pooledNode);
+					} else if (state == NodeState.FREE) {
+						freeNodes.add(pooledNode);
+					}
+				}
+			} else if (failed[i]) {
+				pooledNode.reachable.set(false);
+				if (pooledNode.state.compareAndSet(NodeState.FREE, NodeState.INVALID)) {
+					logger.warning("Free node " + pooledNode.node.toShortString() + " of template " + templateName
+							+ " is not reachable on port " + pooledNode.node.getLoginPort()
+							+ ", marking it as invalid");
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true if some of the nodes are allocated.
+	 */
+	boolean hasAllocatedNodes() {
+		for (final PooledNode pooledNode : getPooledNodes()) {
+			if (pooledNode.state.get() == NodeState.ALLOCATED) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the nodes in a given state. Range addresses that have no node are not included, see
+	 * {@link #getRangesSummary()}.
+	 *
+	 * @param state
+	 *            a node state.
+	 * @return the nodes currently in the given state.
+	 */
+	Set<CustomNode> getNodes(final NodeState state) {
+		final Set<CustomNode> result = new HashSet<CustomNode>();
+		for (final PooledNode pooledNode : getPooledNodes()) {
+			if (pooledNode.state.get() == state) {
+				result.add(pooledNode.node);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Describes the IP ranges of the pool and the number of their addresses that have no node, free if they were not
+	 * probed or accepted a connection, and invalid otherwise.
+	 *
+	 * @return the description of the IP ranges, e.g. "[192.168.0.1-192.168.0.254 (250 free, 4 invalid)]".
+	 */
+	String getRangesSummary() {
+		final List<String> summaries = new ArrayList<String>(ranges.size());
+		for (final RangeState rangeState : ranges) {
+			final int taken;
+			final int invalid;
+			synchronized (rangeState) {
+				taken = rangeState.taken.cardinality();
+				final BitSet unreachable = (BitSet) rangeState.unreachable.clone();
+				unreachable.andNot(rangeState.taken);
+				invalid = unreachable.cardinality();
+			}
+			summaries.add(rangeState.range + " (" + (rangeState.range.size() - taken - invalid) + " free, " + invalid
+					+ " invalid)");
+		}
+		return summaries.toString();
+	}
+
+	/**
+	 * Returns all the nodes of the pool. Range addresses that have no node are reported as new nodes.
+	 *
+	 * @return all the nodes of the pool.
+	 */
+	List<CustomNode> getAllNodes() {
+		final List<CustomNode> result = new ArrayList<CustomNode>();
+		for (final PooledNode pooledNode : getPooledNodes()) {
+			result.add(pooledNode.node);
+		}
+		addRangeNodes(result);
+		return result;
+	}
+
+	/**
+	 * @param ipAddress
+	 *            an IP address.
+	 * @return the node with the given IP address, or null if not found.
+	 */
+	CustomNode getNodeByIP(final String ipAddress) {
+		for (final PooledNode pooledNode : nodes) {
+			if (IPUtils.isSameIpAddress(pooledNode.node.getPrivateIP(), ipAddress)) {
+				return pooledNode.node;
+			}
+		}
+		return getRangeNode(toLong(ipAddress));
+	}
+
+	/**
+	 * @param id
+	 *            a node ID.
+	 * @return the node with the given ID, or null if not found.
+	 */
+	CustomNode getNodeById(final String id) {
+		for (final PooledNode pooledNode : getPooledNodes()) {
+			if (pooledNode.node.getId().equalsIgnoreCase(id)) {
+				return pooledNode.node;
+			}
+		}
+		for (final RangeState rangeState : ranges) {
+			final int index = rangeState.range.indexOfId(id);
+			if (index >= 0) {
+				final CustomNode node = getRangeNode(rangeState.range.getFirstIp() + index);
+				if (node != null) {
+					return node;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the addresses of this pool that are also used by the given nodes or ranges.
+	 *
+	 * @param otherNodes
+	 *            listed nodes, with resolved addresses.
+	 * @param otherRanges
+	 *            IP ranges.
+	 * @return the addresses used by both, IP ranges are reported in the first-last format.
+	 */
+	Set<String> getDuplicateAddresses(final List<CustomNode> otherNodes, final List<ByonNodeRange> otherRanges) {
+		final Set<String> duplicates = new HashSet<String>();
+		final Set<String> addresses = new HashSet<String>();
+		for (final PooledNode pooledNode : nodes) {
+			if (StringUtils.isNotBlank(pooledNode.node.getPrivateIP())) {
+				addresses.add(pooledNode.node.getPrivateIP().toLowerCase());
+			}
+		}
+
+		for (final CustomNode node : otherNodes) {
+			final String ipAddress = node.getPrivateIP();
+			if (StringUtils.isBlank(ipAddress)) {
+				continue;
+			}
+			if (addresses.contains(ipAddress.toLowerCase()) || findRange(toLong(ipAddress)) != null) {
+				duplicates.add(ipAddress);
+			}
+		}
+
+		for (final ByonNodeRange otherRange : otherRanges) {
+			for (final RangeState rangeState : ranges) {
+				final long first = Math.max(otherRange.getFirstIp(), rangeState.range.getFirstIp());
+				final long last = Math.min(otherRange.getLastIp(), rangeState.range.getLastIp());
+				if (first < last) {
+					duplicates.add(IPUtils.long2String(first) + "-" + IPUtils.long2String(last));
+				} else if (first == last) {
+					duplicates.add(IPUtils.long2String(first));
+				}
+			}
+			for (final String ipAddress : addresses) {
+				if (otherRange.indexOf(toLong(ipAddress)) >= 0) {
+					duplicates.add(ipAddress);
+				}
+			}
+		}
+		return duplicates;
+	}
+
+	private CustomNode allocateFromRanges(final long timeoutMillis, final long endTime) {
+		for (final RangeState rangeState : ranges) {
+			// probe at most as many addresses as the range holds, skipping the ones that were found unreachable.
+			int remaining = rangeState.range.size();
+			while (remaining > 0) {
+				final long remainingMillis = endTime - System.currentTimeMillis();
+				if (remainingMillis <= 0) {
+					return null;
+				}
+				final List<Integer> candidates = claim(rangeState, remaining, true);
+				if (candidates.isEmpty()) {
+					break;
+				}
+				remaining -= candidates.size();
+				final PooledNode allocated = probeRangeAddresses(rangeState, candidates,
+						Math.min(timeoutMillis, remainingMillis), true);
+				if (allocated != null) {
+					return allocated.node;
+				}
+			}
+		}
+		return null;
+	}
+
+	// probes claimed addresses, and allocates the first one that accepts a connection if asked to. The other
+	// addresses that accept a connection are queued as free nodes.
+	private PooledNode probeRangeAddresses(final RangeState rangeState, final List<Integer> candidates,
+			final long timeoutMillis, final boolean allocate) {
+		final InetSocketAddress[] endPoints = new InetSocketAddress[candidates.size()];
+		for (int i = 0; i < endPoints.length; i++) {
+			endPoints[i] = new InetSocketAddress(rangeState.range.getIpAddress(candidates.get(i)), rangeLoginPort);
+		}
+		// when allocating, stop at the first address that accepts a connection, rather than waiting for the ones that
+		// do not answer.
+		final boolean[] failed = new boolean[endPoints.length];
+		boolean[] connected;
+		try {
+			connected = PortProber.probe(endPoints, timeoutMillis, allocate ? 1 : endPoints.length, failed);
+		} catch (final IOException e) {
+			logger.log(Level.WARNING, "Failed to probe the addresses of IP range " + rangeState.range
+					+ " of template " + templateName, e);
+			connected = new boolean[endPoints.length];
+		}
+
+		PooledNode allocated = null;
+		for (int i = 0; i < connected.length; i++) {
+			final int index = candidates.get(i);
+			if (!connected[i]) {
+				synchronized (rangeState) {
+					rangeState.taken.clear(index);
+					if (failed[i]) {
+						rangeState.unreachable.set(index);
+					}
+				}
+				continue;
+			}
+			synchronized (rangeState) {
+				rangeState.unreachable.clear(index);
+			}
+			if (allocate && allocated == null) {
+				allocated = createRangeNode(rangeState, index, NodeState.ALLOCATED, true);
+			} else {
+				// keep the other reachable addresses for the next allocations.
+				freeNodes.add(createRangeNode(rangeState, index, NodeState.FREE, true));
+			}
+		}
+		return allocated;
+	}
+
+	// true if a queued free node passed the last probe.
+	private boolean hasReachableFreeNode() {
+		for (final PooledNode pooledNode : freeNodes) {
+			if (pooledNode.reachable.get() && pooledNode.state.get() == NodeState.FREE) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// picks up to a batch of addresses that have no node, preferring ones that were not found unreachable, and marks
+	// them as taken. Unreachable addresses are picked only if no other address is left, and not at all if skipped.
+	private List<Integer> claim(final RangeState rangeState, final int maxCandidates,
+			final boolean skipUnreachable) {
+		final int batchSize = Math.min(RANGE_PROBE_BATCH_SIZE, maxCandidates);
+		final List<Integer> candidates = new ArrayList<Integer>();
+		synchronized (rangeState) {
+			scan(rangeState, candidates, batchSize, true);
+			if (candidates.isEmpty() && !skipUnreachable) {
+				scan(rangeState, candidates, batchSize, false);
+			}
+			for (final Integer index : candidates) {
+				rangeState.taken.set(index);
+			}
+		}
+		return candidates;
+	}
+
+	private static void scan(final RangeState rangeState, final List<Integer> candidates, final int batchSize,
+			final boolean skipUnreachable) {
+		final int size = rangeState.range.size();
+		int index = rangeState.cursor;
+		int remaining = size;
+		while (remaining > 0 && candidates.size() < batchSize) {
+			if (index >= size) {
+				index = 0;
+			}
+			final int next = rangeState.taken.nextClearBit(index);
+			if (next >= size) {
+				remaining -= size - index;
+				index = size;
+				continue;
+			}
+			remaining -= next - index + 1;
+			if (remaining < 0) {
+				break;
+			}
+			if (!skipUnreachable || !rangeState.unreachable.get(next)) {
+				candidates.add(next);
+			}
+			index = next + 1;
+		}
+		rangeState.cursor = index >= size ? 0 : index;
+	}
+
+	private PooledNode createRangeNode(final RangeState rangeState, final int index, final NodeState state,
+			final boolean reachable) {
+		final CustomNode node = rangeState.range.createNode(index);
+		node.setLoginPort(rangeLoginPort);
+		// listed nodes get their host name when they are resolved, so a node that is kept gets it too.
+		try {
+			node.resolve();
+		} catch (final Exception e) {
+			logger.log(Level.FINE, "Failed to resolve the host name of node: " + node.toShortString(), e);
+		}
+		final PooledNode pooledNode = new PooledNode(node, state, reachable);
+		rangeNodes.put(rangeState.range.getFirstIp() + index, pooledNode);
+		return pooledNode;
+	}
+
+	// returns the node of a range address, creating it if needed.
+	private PooledNode findRangeNode(final long ip) {
+		final PooledNode pooledNode = rangeNodes.get(ip);
+		if (pooledNode != null) {
+			return pooledNode;
+		}
+		final RangeState rangeState = findRange(ip);
+		if (rangeState == null) {
+			return null;
+		}
+		final int index = rangeState.range.indexOf(ip);
+		synchronized (rangeState) {
+			if (rangeState.taken.get(index)) {
+				// created meanwhile, or being probed.
+				return rangeNodes.get(ip);
+			}
+			rangeState.taken.set(index);
+		}
+		return createRangeNode(rangeState, index, NodeState.FREE, false);
+	}
+
+	// returns the node of a range address, without keeping a node that does not exist yet.
+	private CustomNode getRangeNode(final long ip) {
+		final PooledNode pooledNode = rangeNodes.get(ip);
+		if (pooledNode != null) {
+			return pooledNode.node;
+		}
+		final RangeState rangeState = findRange(ip);
+		if (rangeState == null) {
+			return null;
+		}
+		final int index = rangeState.range.indexOf(ip);
+		synchronized (rangeState) {
+			if (rangeState.taken.get(index)) {
+				return null;
+			}
+		}
+		final CustomNode node = rangeState.range.createNode(index);
+		node.setLoginPort(rangeLoginPort);
+		return node;
+	}
+
+	// the first range that includes the address, which owns it if several ranges do.
+	private RangeState findRange(final long ip) {
+		for (final RangeState rangeState : ranges) {
+			if (rangeState.range.indexOf(ip) >= 0) {
+				return rangeState;
+			}
+		}
+		return null;
+	}
+
+	private void addRangeNodes(final Collection<CustomNode> result) {
+		for (final RangeState rangeState : ranges) {
+			final BitSet taken;
+			synchronized (rangeState) {
+				taken = (BitSet) rangeState.taken.clone();
+			}
+			final int size = rangeState.range.size();
+			for (int index = taken.nextClearBit(0); index < size; index = taken.nextClearBit(index + 1)) {
+				final CustomNode node = rangeState.range.createNode(index);
+				node.setLoginPort(rangeLoginPort);
+				result.add(node);
+			}
+		}
+	}
+
+	private List<PooledNode> getPooledNodes() {
+		if (rangeNodes.isEmpty()) {
+			return nodes;
+		}
+		final List<PooledNode> result = new ArrayList<PooledNode>(nodes.size() + rangeNodes.size());
+		result.addAll(nodes);
+		result.addAll(rangeNodes.values());
+		return result;
+	}
+
+	private PooledNode find(final CustomNode node) {
+		final PooledNode pooledNode = nodesByIdentity.get(node);
+		if (pooledNode != null) {
+			return pooledNode;
+		}
+		// a copy of a node, compare by address.
+		for (final PooledNode candidate : nodes) {
+			if (candidate.node.equals(node)) {
+				return candidate;
+			}
+		}
+		return findRangeNode(toLong(node.getPrivateIP()));
+	}
+
+	// the address as a long value, or -1 if it is not an IPv4 address.
+	private static long toLong(final String ipAddress) {
+		if (StringUtils.isBlank(ipAddress)) {
+			return -1;
+		}
+		try {
+			return IPUtils.ip2Long(ipAddress);
+		} catch (final IllegalArgumentException e) {
+			return -1;
+		}
+	}
+}
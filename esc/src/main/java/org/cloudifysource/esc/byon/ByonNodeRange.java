@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ ******************************************************************************/
+package org.cloudifysource.esc.byon;
+
+import java.text.MessageFormat;
+
+import org.cloudifysource.dsl.utils.IPUtils;
+import org.cloudifysource.esc.driver.provisioning.CustomNode;
+import org.cloudifysource.esc.driver.provisioning.byon.CustomNodeImpl;
+
+/**
+ * A contiguous range of IPv4 addresses defined by a "host-range" entry of a BYON nodes list (e.g.
+ * 192.168.9.1-192.168.9.8 or 192.168.9.0/24). The range is kept as two long values rather than as a node per address,
+ * and the node of an address is created on demand by {@link #createNode(int)}, with the same ID it would have had if
+ * the range was expanded.
+ *
+ * Addresses are referred to by their index in the range, starting at 0.
+ *
+ * @since 2.7.0
+ *
+ */
+public class ByonNodeRange {
+
+	private static final String PROVIDER_ID = "BYON";
+	private static final String ID_TEMPLATE_PARAMETER = "{0}";
+
+	private final long firstIp;
+	private final int size;
+	private final String nodeId;
+	private final boolean useIdAsTemplate;
+	private final boolean useIdAsPrefix;
+	private final String username;
+	private final String credential;
+	private final String keyFile;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param firstIp
+	 *            The first IP address of the range, as returned by {@link IPUtils#ip2Long(String)}
+	 * @param lastIp
+	 *            The last IP address of the range, inclusive. If smaller than the first IP the range is empty.
+	 * @param nodeId
+	 *            The ID of the nodes, used as a template (e.g. node{0}) or as a prefix if the range holds more than
+	 *            one address
+	 * @param username
+	 *            The username required to access the nodes
+	 * @param credential
+	 *            The password required to access the nodes (optional)
+	 * @param keyFile
+	 *            The private key file required to access the nodes (optional)
+	 */
+	public ByonNodeRange(final long firstIp, final long lastIp, final String nodeId, final String username,
+			final String credential, final String keyFile) {
+		if (lastIp - firstIp >= Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("IP range " + IPUtils.long2String(firstIp) + "-"
+					+ IPUtils.long2String(lastIp) + " is too large");
+		}
+		this.firstIp = firstIp;
+		this.size = lastIp < firstIp ? 0 : (int) (lastIp - firstIp + 1);
+		this.nodeId = nodeId;
+		this.useIdAsTemplate = size > 1 && nodeId.contains(ID_TEMPLATE_PARAMETER);
+		this.useIdAsPrefix = size > 1 && !useIdAsTemplate;
+		this.username = username;
+		this.credential = credential;
+		this.keyFile = keyFile;
+	}
+
+	/**
+	 * @return The number of addresses in the range.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The first IP address of the range, as a long value.
+	 */
+	public long getFirstIp() {
+		return firstIp;
+	}
+
+	/**
+	 * @return The last IP address of the range, as a long value.
+	 */
+	public long getLastIp() {
+		return firstIp + size - 1;
+	}
+
+	/**
+	 * @param ip
+	 *            An IP address, as a long value
+	 * @return The index of the address in the range, or -1 if the address is not in the range.
+	 */
+	public int indexOf(final long ip) {
+		if (ip < firstIp || ip > getLastIp()) {
+			return -1;
+		}
+		return (int) (ip - firstIp);
+	}
+
+	/**
+	 * @param index
+	 *            The index of an address in the range
+	 * @return The IP address (dotted decimal format)
+	 */
+	public String getIpAddress(final int index) {
+		return IPUtils.long2String(firstIp + index);
+	}
+
+	/**
+	 * @param index
+	 *            The index of an address in the range
+	 * @return The ID of the node of the address
+	 */
+	public String getNodeId(final int index) {
+		if (useIdAsTemplate) {
+			return MessageFormat.format(nodeId, index + 1);
+		} else if (useIdAsPrefix) {
+			return nodeId + (index + 1);
+		}
+		return nodeId;
+	}
+
+	/**
+	 * Finds the address of the node with the given ID.
+	 *
+	 * @param id
+	 *            A node ID
+	 * @return The index of the address of the node, or -1 if no node of the range has this ID.
+	 */
+	public int indexOfId(final String id) {
+		if (size == 0 || id == null) {
+			return -1;
+		}
+		if (!useIdAsTemplate && !useIdAsPrefix) {
+			return nodeId.equals(id) ? 0 : -1;
+		}
+
+		// the number in the ID may be formatted with grouping separators, keep the digits only.
+		final String prefix = useIdAsTemplate ? nodeId.substring(0, nodeId.indexOf(ID_TEMPLATE_PARAMETER)) : nodeId;
+		if (!id.startsWith(prefix)) {
+			return -1;
+		}
+		long number = 0;
+		for (int i = prefix.length(); i < id.length() && number <= size; i++) {
+			final char c = id.charAt(i);
+			if (Character.isDigit(c)) {
+				number = number * 10 + Character.digit(c, 10);
+			}
+		}
+		if (number < 1 || number > size) {
+			return -1;
+		}
+		final int index = (int) number - 1;
+		return getNodeId(index).equals(id) ? index : -1;
+	}
+
+	/**
+	 * Creates the node of an address.
+	 *
+	 * @param index
+	 *            The index of the address in the range
+	 * @return A new node
+	 */
+	public CustomNode createNode(final int index) {
+		final String id = getNodeId(index);
+		return new CustomNodeImpl(PROVIDER_ID, id, getIpAddress(index), null, username, credential, keyFile, id);
+	}
+
+	@Override
+	public String toString() {
+		return IPUtils.long2String(firstIp) + "-" + IPUtils.long2String(getLastIp());
+	}
+}
@@ -78,6 +78,21 @@ public class ByonUtils {
 	public static List<CustomNode> parseCloudNodes(
 			final List<Map<String, String>> nodesMapList)
 			throws CloudProvisioningException {
+		return parseCloudNodes(nodesMapList, true);
+	}
+
+
+	/**
+	 * Parses the nodes defined in the given list to create a list of {@link CustomNode} objects.
+	 * @param nodesMapList The list of nodes to parse, as specified in the cloud configuration file.
+	 * @param expandRanges true to create a node for every address of IP ranges and CIDRs, false to skip them 
+	 * (see {@link #parseCloudNodeRanges(List)}).
+	 * @return a list of {@link CustomNode} objects.
+	 * @throws CloudProvisioningException Indicates a failure to parse the given nodes list.
+	 */
+	public static List<CustomNode> parseCloudNodes(
+			final List<Map<String, String>> nodesMapList, final boolean expandRanges)
+			throws CloudProvisioningException {
 
 		final List<CustomNode> cloudNodes = new ArrayList<CustomNode>();
 
@@ -98,13 +113,9 @@ public class ByonUtils {
 					cloudNodes.add(parseOneNode(nodeMap));
 				}
 			} else if (StringUtils.isNotBlank(hostRange)) {
-				if (isIPRange(hostRange.trim())) {
-					cloudNodes.addAll(parseNodeRange(nodeMap));
-				} else if (isIPCIDR(hostRange.trim())) {
-					cloudNodes.addAll(parseNodeCIDR(nodeMap));
-				} else {
-					throw new CloudProvisioningException(
-							INVALID_HOSTS_ERR_MESSAGE + ": " + hostRange);
+				final ByonNodeRange range = parseRange(nodeMap);
+				if (expandRanges) {
+					cloudNodes.addAll(createNodes(range));
 				}
 			} else {
 				//host list or range not set 
@@ -114,6 +125,31 @@ public class ByonUtils {
 
 		return cloudNodes;
 	}
+
+
+	/**
+	 * Parses the IP ranges and CIDRs defined in the given list, without creating a node for each address. 
+	 * @param nodesMapList The list of nodes to parse, as specified in the cloud configuration file.
+	 * @return a list of {@link ByonNodeRange} objects.
+	 * @throws CloudProvisioningException Indicates a failure to parse the given nodes list.
+	 */
+	public static List<ByonNodeRange> parseCloudNodeRanges(final List<Map<String, String>> nodesMapList)
+			throws CloudProvisioningException {
+
+		final List<ByonNodeRange> ranges = new ArrayList<ByonNodeRange>();
+
+		for (final Map<String, String> nodeMap : nodesMapList) {
+			if (StringUtils.isBlank(nodeMap.get(NODE_ID))) {
+				throw new CloudProvisioningException(EMPTY_ID_ERR_MESSAGE);
+			}
+			if (StringUtils.isBlank(nodeMap.get(NODE_HOST_LIST))
+					&& StringUtils.isNotBlank(nodeMap.get(NODE_HOST_RANGE))) {
+				ranges.add(parseRange(nodeMap));
+			}
+		}
+
+		return ranges;
+	}
 	
 
 	/**
@@ -211,98 +247,64 @@ public class ByonUtils {
 	}
 	
 	
-	/**
-	 * Parses a range of nodes (e.g. 192.168.9.1-192.168.9.8)
-	 *
-	 * @param nodeMap
-	 *            The map of attributes related to this node (ID, IP range)
-	 * @return A list of {@link CustomNode} objects
-	 * @throws CloudProvisioningException
-	 *             Indicated an invalid IP address is used
-	 */
-	public static List<CustomNode> parseNodeRange(final Map<String, String> nodeMap)
+	private static ByonNodeRange parseRange(final Map<String, String> nodeMap)
 			throws CloudProvisioningException {
-
-		final List<CustomNode> cloudNodes = new ArrayList<CustomNode>();
-
-		boolean useIdAsTemplate = false;
-		boolean useIdAsPrefix = false;
-		int index = 1;
-		String currnentId;
-
 		final String nodeId = nodeMap.get(NODE_ID).trim();
-		final String ipRange = nodeMap.get(NODE_HOST_RANGE).trim();
-
-		// syntax validation (IPs are validated later, through IPUtils)
+		final String hostRange = nodeMap.get(NODE_HOST_RANGE).trim();
+		if (isIPRange(hostRange)) {
+			return parseIPRange(nodeId, hostRange, nodeMap);
+		} else if (isIPCIDR(hostRange)) {
+			final String ipRange;
+			try {
+				ipRange = IPUtils.ipCIDR2Range(hostRange);
+			} catch (final Exception e) {
+				throw new CloudProvisioningException(
+						"Failed to start cloud machine.", e);
+			}
+			return parseIPRange(nodeId, ipRange, nodeMap);
+		}
+		throw new CloudProvisioningException(
+				INVALID_HOSTS_ERR_MESSAGE + ": " + hostRange);
+	}
+	
+	
+	private static ByonNodeRange parseIPRange(final String nodeId, final String ipRange, 
+			final Map<String, String> nodeMap) throws CloudProvisioningException {
+		// syntax validation
 		final int ipDashIndex = ipRange.indexOf('-');
 		if (ipDashIndex < 0) {
 			throw new CloudProvisioningException(EMPTY_IP_RANGE_ERR_MESSAGE);
 		}
 
-		// run through the range of IPs
-		final String ipRangeStart = ipRange.substring(0, ipRange.indexOf('-'));
-		final String ipRangeEnd = ipRange.substring(ipRange.indexOf('-') + 1);
-
-		if (IPUtils.ip2Long(ipRangeStart) < IPUtils.ip2Long(ipRangeEnd)) {
-			if (isIdTemplate(nodeId)) {
-				useIdAsTemplate = true;
-			} else {
-				useIdAsPrefix = true;
-			}
-		}
-
-		String ip = ipRangeStart;
-		while (IPUtils.ip2Long(ip) <= IPUtils.ip2Long(ipRangeEnd)) {
+		final String ipRangeStart = ipRange.substring(0, ipDashIndex).trim();
+		final String ipRangeEnd = ipRange.substring(ipDashIndex + 1).trim();
+		final long firstIp = parseIPv4(ipRangeStart);
+		final long lastIp = parseIPv4(ipRangeEnd);
 
-			// validate the IP
-			ip = ip.trim();
-			if (!IPUtils.validateIPAddress(ip)) {
-				throw new CloudProvisioningException("Invalid IP address: "
-						+ ip);
-			}
-
-			// set the id
-			if (useIdAsTemplate) {
-				currnentId = MessageFormat.format(nodeId, index);
-			} else if (useIdAsPrefix) {
-				currnentId = nodeId + index;
-			} else {
-				// just one IPs
-				currnentId = nodeId;
-			}
-
-            cloudNodes.add(new CustomNodeImpl(PROVIDER_ID, currnentId, ip, null,
-					nodeMap.get(NODE_USERNAME), nodeMap.get(NODE_CREDENTIAL),
-					nodeMap.get(NODE_KEY_FILE), currnentId));
-
-			index++;
-			ip = IPUtils.getNextIP(ip);
+		try {
+			return new ByonNodeRange(firstIp, lastIp, nodeId, nodeMap.get(NODE_USERNAME), 
+					nodeMap.get(NODE_CREDENTIAL), nodeMap.get(NODE_KEY_FILE));
+		} catch (final IllegalArgumentException e) {
+			throw new CloudProvisioningException(e.getMessage(), e);
 		}
-
-		return cloudNodes;
 	}
 	
-	
-	/**
-	 * Parses a range of nodes formatted as a CIDR (e.g. 192.168.9.60/31)
-	 *
-	 * @param nodeMap
-	 *            The map of attributes related to this node (ID, IPs as CIDR)
-	 * @return A list of {@link CustomNode} objects
-	 * @throws CloudProvisioningException
-	 *             Indicated an invalid IP address is used
-	 */
-	public static List<CustomNode> parseNodeCIDR(final Map<String, String> nodeMap)
-			throws CloudProvisioningException {
+
+	private static long parseIPv4(final String ip) throws CloudProvisioningException {
 		try {
-			nodeMap.put(NODE_HOST_RANGE, IPUtils.ipCIDR2Range(nodeMap
-					.get(NODE_HOST_RANGE).trim()));
-		} catch (final Exception e) {
-			throw new CloudProvisioningException(
-					"Failed to start cloud machine.", e);
+			return IPUtils.ip2Long(ip);
+		} catch (final IllegalArgumentException e) {
+			throw new CloudProvisioningException("Invalid IP address: " + ip, e);
 		}
+	}
+	
 
-		return parseNodeRange(nodeMap);
+	private static List<CustomNode> createNodes(final ByonNodeRange range) {
+		final List<CustomNode> cloudNodes = new ArrayList<CustomNode>(range.size());
+		for (int i = 0; i < range.size(); i++) {
+			cloudNodes.add(range.createNode(i));
+		}
+		return cloudNodes;
 	}
 	
 	
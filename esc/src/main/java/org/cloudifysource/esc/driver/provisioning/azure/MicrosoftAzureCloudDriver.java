@@ -121,21 +121,32 @@ public class MicrosoftAzureCloudDriver extends CloudDriverSupport implements
 	private static final long CLEANUP_TIMEOUT = 60 * 1000 * 5; // five minutes
 
 	private static MicrosoftAzureRestClient azureClient;
+	// the number of drivers using the shared client, it is closed when the last of them is closed.
+	private static int azureClientReferences;
+
+	// true if this driver holds a reference to the shared client.
+	private boolean azureClientReferenced;
 
 	public MicrosoftAzureCloudDriver() {
 	}
 
-	private static synchronized void initRestClient(
+	private void initRestClient(
 			final String subscriptionId, final String pathToPfxFile,
 			final String pfxPassword, final boolean enableWireLog) {
-		if (azureClient == null) {
-			logger.fine("Initializing Azure REST client");
-			azureClient = new MicrosoftAzureRestClient(subscriptionId,
-					pathToPfxFile, pfxPassword, CLOUDIFY_AFFINITY_PREFIX,
-					CLOUDIFY_CLOUD_SERVICE_PREFIX,
-					CLOUDIFY_STORAGE_ACCOUNT_PREFIX);
-			if (enableWireLog) {
-				azureClient.setLoggingFilter(logger);
+		synchronized (MicrosoftAzureCloudDriver.class) {
+			if (!azureClientReferenced) {
+				azureClientReferenced = true;
+				++azureClientReferences;
+			}
+			if (azureClient == null) {
+				logger.fine("Initializing Azure REST client");
+				azureClient = new MicrosoftAzureRestClient(subscriptionId,
+						pathToPfxFile, pfxPassword, CLOUDIFY_AFFINITY_PREFIX,
+						CLOUDIFY_CLOUD_SERVICE_PREFIX,
+						CLOUDIFY_STORAGE_ACCOUNT_PREFIX);
+				if (enableWireLog) {
+					azureClient.setLoggingFilter(logger);
+				}
 			}
 		}
 	}
@@ -251,51 +262,56 @@ public class MicrosoftAzureCloudDriver extends CloudDriverSupport implements
 	private MachineDetails startMachine(final long endTime)
 			throws TimeoutException, CloudProvisioningException {
 
-		MachineDetails machineDetails = new MachineDetails();
-		CreatePersistentVMRoleDeploymentDescriptor desc;
-		RoleDetails roleAddressDetails;
 		try {
-
-			desc = new CreatePersistentVMRoleDeploymentDescriptor();
-			desc.setRoleName(serverNamePrefix + "_role");
-			desc.setDeploymentSlot(deploymentSlot);
-			desc.setImageName(imageName);
-			desc.setAvailabilitySetName(availabilitySet);
-			desc.setAffinityGroup(affinityGroup);
-
-			InputEndpoints inputEndpoints = createInputEndPoints();
-
-			desc.setInputEndpoints(inputEndpoints);
-			desc.setNetworkName(networkName);
-			desc.setPassword(password);
-			desc.setSize(size);
-			desc.setStorageAccountName(storageAccountName);
-			desc.setUserName(userName);
+			CreatePersistentVMRoleDeploymentDescriptor desc = createDeploymentDescriptor();
 
 			logger.info("Launching a new virtual machine");
 
-			roleAddressDetails = azureClient.createVirtualMachineDeployment(
+			RoleDetails roleAddressDetails = azureClient.createVirtualMachineDeployment(
 					desc, endTime);
-
-			machineDetails.setPrivateAddress(roleAddressDetails.getPrivateIp());
-			machineDetails.setPublicAddress(roleAddressDetails.getPublicIp());
-			machineDetails.setMachineId(roleAddressDetails.getId());
-			machineDetails.setAgentRunning(false);
-			machineDetails.setCloudifyInstalled(false);
-			machineDetails.setInstallationDirectory(this.template
-					.getRemoteDirectory());
-			machineDetails.setRemoteDirectory(this.template
-					.getRemoteDirectory());
-			machineDetails.setRemotePassword(password);
-			machineDetails.setRemoteUsername(userName);
-			machineDetails.setOpenFilesLimit(this.template.getOpenFilesLimit());
-			return machineDetails;
+			return createMachineDetails(roleAddressDetails);
 		} catch (final Exception e) {
 			throw new CloudProvisioningException(e);
 		}
 
 	}
 
+	private CreatePersistentVMRoleDeploymentDescriptor createDeploymentDescriptor() {
+		CreatePersistentVMRoleDeploymentDescriptor desc = new CreatePersistentVMRoleDeploymentDescriptor();
+		desc.setRoleName(serverNamePrefix + "_role");
+		desc.setDeploymentSlot(deploymentSlot);
+		desc.setImageName(imageName);
+		desc.setAvailabilitySetName(availabilitySet);
+		desc.setAffinityGroup(affinityGroup);
+
+		InputEndpoints inputEndpoints = createInputEndPoints();
+
+		desc.setInputEndpoints(inputEndpoints);
+		desc.setNetworkName(networkName);
+		desc.setPassword(password);
+		desc.setSize(size);
+		desc.setStorageAccountName(storageAccountName);
+		desc.setUserName(userName);
+		return desc;
+	}
+
+	private MachineDetails createMachineDetails(final RoleDetails roleAddressDetails) {
+		MachineDetails machineDetails = new MachineDetails();
+		machineDetails.setPrivateAddress(roleAddressDetails.getPrivateIp());
+		machineDetails.setPublicAddress(roleAddressDetails.getPublicIp());
+		machineDetails.setMachineId(roleAddressDetails.getId());
+		machineDetails.setAgentRunning(false);
+		machineDetails.setCloudifyInstalled(false);
+		machineDetails.setInstallationDirectory(this.template
+				.getRemoteDirectory());
+		machineDetails.setRemoteDirectory(this.template
+				.getRemoteDirectory());
+		machineDetails.setRemotePassword(password);
+		machineDetails.setRemoteUsername(userName);
+		machineDetails.setOpenFilesLimit(this.template.getOpenFilesLimit());
+		return machineDetails;
+	}
+
 	@Override
 	public MachineDetails[] startManagementMachines(final long duration,
 			final TimeUnit unit) throws TimeoutException,
@@ -326,16 +342,7 @@ public class MicrosoftAzureCloudDriver extends CloudDriverSupport implements
 		int numberOfManagementMachines = this.cloud.getProvider()
 				.getNumberOfManagementMachines();
 
-		final ExecutorService executorService = Executors
-				.newFixedThreadPool(numberOfManagementMachines);
-
-		try {
-			return startManagementMachines(endTime, numberOfManagementMachines,
-					executorService);
-		} finally {
-			executorService.shutdown();
-		}
-
+		return startManagementMachines(endTime, numberOfManagementMachines);
 	}
 
 	private void cleanup() throws CloudProvisioningException {
@@ -383,46 +390,53 @@ public class MicrosoftAzureCloudDriver extends CloudDriverSupport implements
 	}
 
 	/**
+	 * Launches the management machines one after the other, and then waits for all of them. Azure accepts one
+	 * deployment request at a time, so the next machine is launched while the previous ones are starting.
+	 * 
 	 * @param endTime
 	 * @param numberOfManagementMachines
-	 * @param executorService
 	 * @return
 	 * @throws CloudProvisioningException
 	 * @throws TimeoutException
 	 */
 	private MachineDetails[] startManagementMachines(final long endTime,
-			final int numberOfManagementMachines,
-			final ExecutorService executorService)
+			final int numberOfManagementMachines)
 			throws CloudProvisioningException, TimeoutException {
 
-		final List<Future<MachineDetails>> results = new ArrayList<Future<MachineDetails>>(
+		final List<CreatePersistentVMRoleDeploymentDescriptor> descriptors =
+				new ArrayList<CreatePersistentVMRoleDeploymentDescriptor>(numberOfManagementMachines);
+		final List<Future<RoleDetails>> results = new ArrayList<Future<RoleDetails>>(
 				numberOfManagementMachines);
 
+		List<Throwable> exceptionsOnManagementStart = new ArrayList<Throwable>();
+
 		for (int i = 0; i < numberOfManagementMachines; i++) {
-			StartMachineCallable task = new StartMachineCallable(endTime);
-			Future<MachineDetails> future = executorService.submit(task);
-			results.add(future);
+			CreatePersistentVMRoleDeploymentDescriptor desc = createDeploymentDescriptor();
+			try {
+				logger.info("Launching a new virtual machine");
+				results.add(azureClient.launchVirtualMachineDeployment(desc, endTime));
+				descriptors.add(desc);
+			} catch (final Exception e) {
+				// the machines that were launched are shut down below, no need to launch the others.
+				logger.warning(e.getMessage());
+				exceptionsOnManagementStart.add(e);
+				break;
+			}
 		}
 
-		// block until tasks have stopped execution
-		List<Throwable> exceptionsOnManagementStart = new ArrayList<Throwable>();
-
+		// block until all the launched machines are ready
 		List<MachineDetails> managementMachinesDetails = new ArrayList<MachineDetails>();
-		for (Future<MachineDetails> future : results) {
+		for (int i = 0; i < results.size(); i++) {
 			try {
-				managementMachinesDetails.add(future.get());
+				RoleDetails roleAddressDetails = azureClient.waitForVirtualMachineDeployment(
+						descriptors.get(i), results.get(i), endTime);
+				managementMachinesDetails.add(createMachineDetails(roleAddressDetails));
 			} catch (final Exception e) {
-				if (e instanceof InterruptedException) {
-					exceptionsOnManagementStart.add(e);
-				} else {
-					ExecutionException executionException = (ExecutionException)e;
-					Throwable rootCause = ExceptionUtils.getRootCause(executionException);
-					// print exception messages to the cli as they happen.
-					// otherwise they are only shown in a log file.
-					// this serves as a better user experience (users may not be aware of the file).
-					logger.warning(rootCause.getMessage());
-					exceptionsOnManagementStart.add(rootCause);
-				}
+				// print exception messages to the cli as they happen.
+				// otherwise they are only shown in a log file.
+				// this serves as a better user experience (users may not be aware of the file).
+				logger.warning(e.getMessage());
+				exceptionsOnManagementStart.add(e);
 			}
 		}
 		if (exceptionsOnManagementStart.isEmpty()) {
@@ -608,32 +622,15 @@ public class MicrosoftAzureCloudDriver extends CloudDriverSupport implements
 
 	@Override
 	public void close() {
-		// TODO Auto-generated method stub
-
-	}
-
-	/**
-	 *
-	 * @author elip
-	 *
-	 */
-	private class StartMachineCallable implements Callable<MachineDetails> {
-
-		private final long endTime;
-
-		public StartMachineCallable(final long endTime) {
-			this.endTime = endTime;
-		}
-
-		/*
-		 * (non-Javadoc)
-		 *
-		 * @see java.util.concurrent.Callable#call()
-		 */
-		@Override
-		public MachineDetails call() throws Exception {
-			final MachineDetails machineDetails = startMachine(endTime);
-			return machineDetails;
+		synchronized (MicrosoftAzureCloudDriver.class) {
+			if (!azureClientReferenced) {
+				return;
+			}
+			azureClientReferenced = false;
+			// other drivers may still be waiting for operations of the shared client.
+			if (--azureClientReferences == 0 && azureClient != null) {
+				azureClient.close();
+			}
 		}
 	}
 
@@ -0,0 +1,222 @@
+/******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved		  *
+ * 																			  *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at									  *
+ *																			  *
+ *       http://www.apache.org/licenses/LICENSE-2.0							  *
+ *																			  *
+ * Unless required by applicable law or agreed to in writing, software		  *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.											  *
+ ******************************************************************************/
+
+package org.cloudifysource.esc.driver.provisioning.azure.client;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/****************************************************************************************************
+ * Tracks asynchronous Azure operations (requests, deployment and disk states) until they complete.
+ * A single thread polls all the outstanding operations, each at its own interval: an operation is
+ * first polled after the minimal interval, and the interval is doubled after every poll, up to the
+ * maximal interval. Short operations are noticed quickly, while long ones (e.g. starting a virtual
+ * machine) do not flood the management API.
+ *
+ * The polls run on the tracker thread, so they must not wait for other tracked operations.
+ *
+ * Closing the tracker stops its thread and cancels the outstanding operations. The thread is started again when
+ * another operation is tracked, as the tracker of a client may be shared by several drivers.
+ *
+ * @since 2.7.0
+ *
+ ****************************************************************************************************/
+class MicrosoftAzureOperationTracker {
+
+	private static final AtomicInteger TRACKER_COUNTER = new AtomicInteger();
+
+	private final Logger logger = Logger.getLogger(this.getClass().getName());
+
+	private final long minPollingInterval;
+	private final long maxPollingInterval;
+	// guards starting and stopping the executor.
+	private final Object executorLock = new Object();
+	private ScheduledExecutorService executor;
+	private final Set<TrackedOperation<?>> outstandingOperations =
+			Collections.newSetFromMap(new ConcurrentHashMap<TrackedOperation<?>, Boolean>());
+
+	/**
+	 * A single poll of an operation.
+	 *
+	 * @param <T>
+	 *            the result of the operation.
+	 */
+	abstract static class OperationPoll<T> {
+
+		private volatile String lastState;
+
+		/**
+		 * @return the result of the operation, or null if it is still in progress.
+		 * @throws Exception
+		 *             if the operation failed, or could not be polled.
+		 */
+		protected abstract T poll() throws Exception;
+
+		/**
+		 * @param state
+		 *            the state reported by the last poll, used in the timeout message.
+		 */
+		protected void setLastState(final String state) {
+			this.lastState = state;
+		}
+
+		public String getLastState() {
+			return lastState;
+		}
+	}
+
+	/**
+	 * @param minPollingInterval
+	 *            the interval before the first poll of an operation.
+	 * @param maxPollingInterval
+	 *            the maximal interval between polls of an operation.
+	 */
+	MicrosoftAzureOperationTracker(final long minPollingInterval, final long maxPollingInterval) {
+		this.minPollingInterval = minPollingInterval;
+		this.maxPollingInterval = maxPollingInterval;
+	}
+
+	/**
+	 * Starts tracking an operation.
+	 *
+	 * @param poll
+	 *            polls the operation.
+	 * @param endTime
+	 *            the time by which the operation should complete.
+	 * @param <T>
+	 *            the result of the operation.
+	 * @return a future of the result of the operation. it fails with a {@link TimeoutException} if the operation
+	 *         did not complete by the end time, or with the exception thrown by the poll.
+	 */
+	<T> Future<T> track(final OperationPoll<T> poll, final long endTime) {
+		final TrackedOperation<T> operation = new TrackedOperation<T>(poll, endTime);
+		outstandingOperations.add(operation);
+		operation.schedule();
+		return operation;
+	}
+
+	/**
+	 * Stops the tracker thread, and cancels the operations that did not complete yet.
+	 */
+	void close() {
+		// cancel first, so a poll that is running now does not schedule its operation again.
+		for (final TrackedOperation<?> operation : outstandingOperations) {
+			operation.cancel(false);
+		}
+		synchronized (executorLock) {
+			if (executor != null) {
+				executor.shutdownNow();
+				executor = null;
+			}
+		}
+	}
+
+	private ScheduledExecutorService getExecutor() {
+		synchronized (executorLock) {
+			if (executor == null) {
+				executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable r) {
+						final Thread thread = new Thread(r, "AzureOperationTracker-"
+								+ TRACKER_COUNTER.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+			return executor;
+		}
+	}
+
+	/**
+	 * A future completed by the polls of the tracker thread.
+	 */
+	private final class TrackedOperation<T> extends FutureTask<T> {
+
+		private final OperationPoll<T> poll;
+		private final long endTime;
+		private long interval;
+
+		private TrackedOperation(final OperationPoll<T> poll, final long endTime) {
+			super(new Callable<T>() {
+				@Override
+				public T call() {
+					throw new IllegalStateException("Completed by the tracker only");
+				}
+			});
+			this.poll = poll;
+			this.endTime = endTime;
+			this.interval = minPollingInterval;
+		}
+
+		private void schedule() {
+			if (isDone()) {
+				return;
+			}
+			// do not sleep past the end time, so a timeout is reported on time.
+			final long delay = Math.max(0, Math.min(interval, endTime - System.currentTimeMillis()));
+			try {
+				getExecutor().schedule(this, delay, TimeUnit.MILLISECONDS);
+			} catch (final RejectedExecutionException e) {
+				// the tracker was closed meanwhile.
+				cancel(false);
+			}
+			interval = Math.min(maxPollingInterval, interval * 2);
+		}
+
+		@Override
+		protected void done() {
+			outstandingOperations.remove(this);
+		}
+
+		@Override
+		public void run() {
+			if (isDone()) {
+				return;
+			}
+			try {
+				final T result = poll.poll();
+				if (result != null) {
+					set(result);
+					return;
+				}
+			} catch (final Exception e) {
+				logger.fine("Operation failed : " + e.getMessage());
+				setException(e);
+				return;
+			}
+
+			if (System.currentTimeMillis() > endTime) {
+				setException(new TimeoutException(
+						"Timed out waiting for operation to finish. last state was : " + poll.getLastState()));
+			} else {
+				schedule();
+			}
+		}
+	}
+}
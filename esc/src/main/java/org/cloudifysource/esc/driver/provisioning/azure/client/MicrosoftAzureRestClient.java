@@ -17,6 +17,9 @@
 
 package org.cloudifysource.esc.driver.provisioning.azure.client;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
@@ -84,6 +87,10 @@ public class MicrosoftAzureRestClient {
 
 	private Lock pendingRequest = new ReentrantLock(true);
 
+	// polls all the pending operations of this client.
+	private final MicrosoftAzureOperationTracker operationTracker = new MicrosoftAzureOperationTracker(
+			MIN_POLLING_INTERVAL, DEFAULT_POLLING_INTERVAL);
+
 	private MicrosoftAzureRequestBodyBuilder requestBodyBuilder;
 
 	// Azure Management Service API End Point
@@ -99,9 +106,13 @@ public class MicrosoftAzureRestClient {
 	private static final String SUCCEEDED = "Succeeded";
 	private static final String IN_PROGRESS = "InProgress";
 
+	private static final String DEPLOYMENT_RUNNING = "Running";
+	private static final String ROLE_INSTANCE_READY = "ReadyRole";
+
 	private static final int MAX_RETRIES = 5;
 
 	private static final long DEFAULT_POLLING_INTERVAL = 5 * 1000; // 5 seconds
+	private static final long MIN_POLLING_INTERVAL = 1000; // 1 second
 
 	private static final long ESTIMATED_TIME_TO_START_VM = 5 * 60 * 1000; // 5
 																			// minutes
@@ -172,6 +183,14 @@ public class MicrosoftAzureRestClient {
 		this.client.addFilter(new LoggingFilter(logger));
 	}
 
+	/**
+	 * Stops polling the pending operations, which are cancelled. Call it only once no one waits for the operations
+	 * of this client. Polling is resumed if another operation is started.
+	 */
+	public void close() {
+		operationTracker.close();
+	}
+
 	private void init(final String pathToPfx, final String pfxPassword,
 			final String affinityPrefix, final String cloudServicePrefix,
 			final String storagePrefix) {
@@ -394,6 +413,32 @@ public class MicrosoftAzureRestClient {
 			final CreatePersistentVMRoleDeploymentDescriptor deplyomentDesc,
 			final long endTime) throws MicrosoftAzureException,
 			TimeoutException, InterruptedException {
+		final Future<RoleDetails> roleDetails = launchVirtualMachineDeployment(deplyomentDesc, endTime);
+		return waitForVirtualMachineDeployment(deplyomentDesc, roleDetails, endTime);
+	}
+
+	/**
+	 * This method requests a virtual machine and a corresponding cloud service, and returns once Azure accepted the
+	 * deployment, without waiting for the virtual machine to start. Deployment requests are serialized, so
+	 * launching several virtual machines one after the other lets the next deployment proceed while the previous
+	 * virtual machines are starting.
+	 * 
+	 * If a failure happened after the cloud service was created, this method will delete it and throw.
+	 * 
+	 * @param deplyomentDesc
+	 *            .
+	 * @param endTime
+	 *            .
+	 * @return a future of the {@link RoleDetails} of the role, completed once the virtual machine is ready. pass it
+	 *         to {@link #waitForVirtualMachineDeployment(CreatePersistentVMRoleDeploymentDescriptor, Future, long)}.
+	 * @throws MicrosoftAzureException .
+	 * @throws TimeoutException .
+	 * @throws InterruptedException .
+	 */
+	public Future<RoleDetails> launchVirtualMachineDeployment(
+			final CreatePersistentVMRoleDeploymentDescriptor deplyomentDesc,
+			final long endTime) throws MicrosoftAzureException,
+			TimeoutException, InterruptedException {
 
 		long currentTimeInMillis = System.currentTimeMillis();
 		long lockTimeout = endTime - currentTimeInMillis
@@ -468,17 +513,42 @@ public class MicrosoftAzureRestClient {
 							+ lockTimeout + " milliseconds");
 		}
 
-		Deployment deploymentResponse = null;
-		try {
-			deploymentResponse = waitForDeploymentStatus("Running",
-					serviceName, deployment.getDeploymentSlot(), endTime);
+		return trackVirtualMachine(serviceName, deployment.getDeploymentSlot(), endTime);
+	}
 
-			deploymentResponse = waitForRoleInstanceStatus("ReadyRole",
-					serviceName, deployment.getDeploymentSlot(), endTime);
+	/**
+	 * Waits for a virtual machine launched by
+	 * {@link #launchVirtualMachineDeployment(CreatePersistentVMRoleDeploymentDescriptor, long)} to be ready.
+	 * If the virtual machine failed to start, it is deleted along with its cloud service. It is not deleted if the
+	 * wait was cancelled by closing the client.
+	 * 
+	 * @param deplyomentDesc
+	 *            the descriptor the virtual machine was launched with.
+	 * @param roleDetails
+	 *            the future returned by the launch.
+	 * @param endTime
+	 *            .
+	 * @return an instance of {@link RoleDetails} containing the ip addresses
+	 *         information for the created role.
+	 * @throws MicrosoftAzureException .
+	 * @throws TimeoutException .
+	 * @throws InterruptedException .
+	 */
+	public RoleDetails waitForVirtualMachineDeployment(
+			final CreatePersistentVMRoleDeploymentDescriptor deplyomentDesc,
+			final Future<RoleDetails> roleDetails, final long endTime)
+			throws MicrosoftAzureException, TimeoutException, InterruptedException {
+		try {
+			return waitForOperation(roleDetails, endTime);
 		} catch (final Exception e) {
+			if (e instanceof MicrosoftAzureException && e.getCause() instanceof CancellationException) {
+				// the client was closed, the virtual machine did not fail to start.
+				throw (MicrosoftAzureException) e;
+			}
 			logger.fine("Error while waiting for VM status : " +  e.getMessage());
 			// the VM was created but with a bad status
-			deleteVirtualMachineByDeploymentName(serviceName, deployment.getName(), endTime);
+			deleteVirtualMachineByDeploymentName(deplyomentDesc.getHostedServiceName(),
+					deplyomentDesc.getDeploymentName(), endTime);
 			if (e instanceof MicrosoftAzureException) {
 				throw (MicrosoftAzureException) e;
 			}
@@ -490,26 +560,6 @@ public class MicrosoftAzureRestClient {
 			}
 			throw new MicrosoftAzureException(e);
 		}
-
-		RoleDetails roleAddressDetails = new RoleDetails();
-		roleAddressDetails.setId(deploymentResponse.getPrivateId());
-		roleAddressDetails
-				.setPrivateIp(deploymentResponse.getRoleInstanceList()
-						.getRoleInstances().get(0).getIpAddress());
-		ConfigurationSets configurationSets = deploymentResponse.getRoleList()
-				.getRoles().get(0).getConfigurationSets();
-
-		String publicIp = null;
-		for (ConfigurationSet configurationSet : configurationSets) {
-			if (configurationSet instanceof NetworkConfigurationSet) {
-				NetworkConfigurationSet networkConfigurationSet = (NetworkConfigurationSet) configurationSet;
-				publicIp = networkConfigurationSet.getInputEndpoints()
-						.getInputEndpoints().get(0).getvIp();
-			}
-		}
-		roleAddressDetails.setPublicIp(publicIp);
-
-		return roleAddressDetails;
 	}
 
 	/**
@@ -710,35 +760,37 @@ public class MicrosoftAzureRestClient {
 		return null;
 	}
 
-	private void waitForDiskToDetach(final String diskName, final String roleName, long endTime) 
+	private void waitForDiskToDetach(final String diskName, final String roleName, final long endTime) 
 			throws TimeoutException, MicrosoftAzureException, InterruptedException {
-		
-		while (true) {
-			Disks disks = listOSDisks();
-			Disk osDisk = null;
-			for (Disk disk : disks) {
-				if (disk.getName().equals(diskName)) {
-					osDisk = disk;
-					break;
-				}
-			}
-			if (osDisk != null) {
-				if (osDisk.getAttachedTo() == null) {
-					return;
-				} else {
-					logger.fine("Disk " + diskName + " is still attached to role " + osDisk.getAttachedTo().getRoleName());
-					Thread.sleep(DEFAULT_POLLING_INTERVAL);
-				}
-			} else {
-				throw new MicrosoftAzureException("Disk " + diskName + " does not exist");
-			}
 
-			if (System.currentTimeMillis() > endTime) {
-				throw new TimeoutException(
-						"Timed out waiting for disk " + diskName + " to detach from role " + roleName);
-			}
+		try {
+			waitForOperation(operationTracker.track(new MicrosoftAzureOperationTracker.OperationPoll<Disk>() {
+				@Override
+				protected Disk poll() throws MicrosoftAzureException, TimeoutException {
+					Disks disks = listOSDisks();
+					Disk osDisk = null;
+					for (Disk disk : disks) {
+						if (disk.getName().equals(diskName)) {
+							osDisk = disk;
+							break;
+						}
+					}
+					if (osDisk == null) {
+						throw new MicrosoftAzureException("Disk " + diskName + " does not exist");
+					}
+					if (osDisk.getAttachedTo() == null) {
+						return osDisk;
+					}
+					logger.fine("Disk " + diskName + " is still attached to role " 
+							+ osDisk.getAttachedTo().getRoleName());
+					setLastState("attached to role " + osDisk.getAttachedTo().getRoleName());
+					return null;
+				}
+			}, endTime), endTime);
+		} catch (final TimeoutException e) {
+			throw new TimeoutException(
+					"Timed out waiting for disk " + diskName + " to detach from role " + roleName);
 		}
-		
 	}
 
 	/**
@@ -1205,61 +1257,45 @@ public class MicrosoftAzureRestClient {
 		}
 	}
 
-	private Deployment waitForDeploymentStatus(final String state,
-			final String hostedServiceName, final String deploymentSlot,
-			final long endTime) throws TimeoutException,
-			MicrosoftAzureException, InterruptedException {
-
-		while (true) {
-			Deployment deployment = getDeploymentByDeploymentSlot(
-					hostedServiceName, deploymentSlot);
-			String status = deployment.getStatus();
-			if (status.equals(state)) {
-				return deployment;
-			} else {
-				Thread.sleep(DEFAULT_POLLING_INTERVAL);
-			}
-
-			if (System.currentTimeMillis() > endTime) {
-				throw new TimeoutException(
-						"Timed out waiting for operation to finish. last state was : "
-								+ status);
-			}
-		}
-
-	}
+	/**
+	 * Tracks a launched virtual machine until its deployment is running and its role instance is ready.
+	 */
+	private Future<RoleDetails> trackVirtualMachine(final String hostedServiceName,
+			final String deploymentSlot, final long endTime) {
+
+		return operationTracker.track(new MicrosoftAzureOperationTracker.OperationPoll<RoleDetails>() {
+			@Override
+			protected RoleDetails poll() throws MicrosoftAzureException, TimeoutException {
+				Deployment deployment = getDeploymentByDeploymentSlot(
+						hostedServiceName, deploymentSlot);
+				String status = deployment.getStatus();
+				if (!status.equals(DEPLOYMENT_RUNNING)) {
+					setLastState(status);
+					return null;
+				}
 
-	private Deployment waitForRoleInstanceStatus(final String state,
-			final String hostedServiceName, final String deploymentSlot,
-			final long endTime) throws TimeoutException,
-			MicrosoftAzureException, InterruptedException {
+				String roleName = deployment.getRoleList().getRoles().get(0)
+						.getRoleName();
+				String instanceStatus = deployment.getRoleInstanceList().getRoleInstances()
+						.get(0).getInstanceStatus();
+				setLastState(instanceStatus);
+				boolean error = checkVirtualMachineStatusForError(instanceStatus);
+				if (error) {
+					// bad status of VM.
+					throw new MicrosoftAzureException("Virtual Machine " + roleName
+							+ " was provisioned but found in status " + instanceStatus);
+				}
+				if (!instanceStatus.equals(ROLE_INSTANCE_READY)) {
+					return null;
+				}
 
-		while (true) {
-			Deployment deployment = getDeploymentByDeploymentSlot(
-					hostedServiceName, deploymentSlot);
-			String roleName = deployment.getRoleList().getRoles().get(0)
-					.getRoleName();
-			String status = deployment.getRoleInstanceList().getRoleInstances()
-					.get(0).getInstanceStatus();
-			boolean error = checkVirtualMachineStatusForError(status);
-			if (error) {
-				// bad status of VM.
-				throw new MicrosoftAzureException("Virtual Machine " + roleName
-						+ " was provisioned but found in status " + status);
-			}
-			if (status.equals(state)) {
-				return deployment;
-			} else {
-				Thread.sleep(DEFAULT_POLLING_INTERVAL);
+				RoleDetails roleAddressDetails = new RoleDetails();
+				roleAddressDetails.setId(deployment.getPrivateId());
+				roleAddressDetails.setPrivateIp(getPrivateIpFromDeployment(deployment));
+				roleAddressDetails.setPublicIp(getPublicIpFromDeployment(deployment));
+				return roleAddressDetails;
 			}
-			if (System.currentTimeMillis() > endTime) {
-				throw new TimeoutException(
-						"Timed out waiting for operation to finish. last state was : "
-								+ status);
-			} 
-
-		}
-
+		}, endTime);
 	}
 
 	private void setNetworkConfiguration(final long endTime,
@@ -1282,34 +1318,61 @@ public class MicrosoftAzureRestClient {
 	private void waitForRequestToFinish(final String requestId,
 			final long endTime) throws MicrosoftAzureException,
 			TimeoutException, InterruptedException {
+		waitForOperation(trackRequest(requestId, endTime), endTime);
+	}
 
-		while (true) {
-
-			// Query Azure for operation details
-			Operation operation = getOperation(requestId);
-			String status = operation.getStatus();
-			if (!status.equals(IN_PROGRESS)) {
-
-				// if operation succeeded, we are good to go
-				if (status.equals(SUCCEEDED)) {
-					return;
+	private Future<Operation> trackRequest(final String requestId, final long endTime) {
+
+		return operationTracker.track(new MicrosoftAzureOperationTracker.OperationPoll<Operation>() {
+			@Override
+			protected Operation poll() throws MicrosoftAzureException, TimeoutException {
+				// Query Azure for operation details
+				Operation operation = getOperation(requestId);
+				String status = operation.getStatus();
+				setLastState(status);
+				if (status.equals(IN_PROGRESS)) {
+					return null;
 				}
 				if (status.equals(FAILED)) {
 					String errorMessage = operation.getError().getMessage();
 					String errorCode = operation.getError().getCode();
 					throw new MicrosoftAzureException(errorCode, errorMessage);
 				}
-			} else {
-				Thread.sleep(DEFAULT_POLLING_INTERVAL);
+				// succeeded
+				return operation;
 			}
+		}, endTime);
+	}
 
-			if (System.currentTimeMillis() > endTime) {
-				throw new TimeoutException(
-						"Timed out waiting for operation to finish. last state was : "
-								+ status);
+	/**
+	 * Waits for an operation tracked by the operation tracker, and throws the exception it failed with.
+	 */
+	private <T> T waitForOperation(final Future<T> operation, final long endTime) throws MicrosoftAzureException,
+			TimeoutException, InterruptedException {
+		try {
+			// the tracker fails the operation at the end time too, but a poll may hang on an unanswered request.
+			return operation.get(Math.max(0, endTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			operation.cancel(false);
+			throw new TimeoutException("Timed out waiting for operation to finish");
+		} catch (final InterruptedException e) {
+			operation.cancel(false);
+			throw e;
+		} catch (final CancellationException e) {
+			throw new MicrosoftAzureException("The operation was cancelled, the Azure client was closed", e);
+		} catch (final ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof MicrosoftAzureException) {
+				throw (MicrosoftAzureException) cause;
 			}
+			if (cause instanceof TimeoutException) {
+				throw (TimeoutException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new MicrosoftAzureException(cause);
 		}
-
 	}
 
 	private Operation getOperation(final String requestId)
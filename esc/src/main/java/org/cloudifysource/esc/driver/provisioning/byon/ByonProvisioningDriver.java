@@ -145,7 +145,10 @@ public class ByonProvisioningDriver extends BaseProvisioningDriver {
 		boolean ipv6Used = false;
 		
 		try {
-			List<CustomNode> nodes = ByonUtils.parseCloudNodes(template);
+			// IP ranges are validated without creating their nodes, they only hold IPv4 addresses
+			final List<Map<String, String>> nodesList = ByonUtils.getTemplateNodesList(template);
+			ByonUtils.parseCloudNodeRanges(nodesList);
+			List<CustomNode> nodes = ByonUtils.parseCloudNodes(nodesList, false);
 			for (CustomNode node : nodes) {
 				if (StringUtils.isNotBlank(node.getPrivateIP()) && IPUtils.isIPv6Address(node.getPrivateIP())) {
 					ipv6Used = true;
@@ -268,7 +271,7 @@ public class ByonProvisioningDriver extends BaseProvisioningDriver {
 		final CustomNode node;
 		final MachineDetails machineDetails;
 		logger.info("Cloudify Deployer is creating a machine named: " + serverName + ". This may take a few minutes");
-		node = getDeployer().createServer(cloudTemplateName, serverName);
+		node = getDeployer().createServer(cloudTemplateName, serverName, endTime);
 
 		machineDetails = createMachineDetailsFromNode(node);
 
@@ -13,17 +13,22 @@
 package org.cloudifysource.esc.driver.provisioning.openstack;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.apache.commons.lang.StringUtils;
 import org.cloudifysource.esc.driver.provisioning.openstack.rest.NovaServer;
 import org.cloudifysource.esc.driver.provisioning.openstack.rest.NovaServerAddress;
 import org.cloudifysource.esc.driver.provisioning.openstack.rest.NovaServerResquest;
 
 /**
- * A client for Openstack Nova.
+ * A client for Openstack Nova.<br />
+ * Lookups by IP and by name prefix are served from a short lived index of the servers, built from a single
+ * <code>servers/detail</code> request. The index is dropped whenever this client creates or deletes a server.
  * 
  * @author victor
  * @since 2.7.0
@@ -32,8 +37,15 @@ import org.cloudifysource.esc.driver.provisioning.openstack.rest.NovaServerResqu
 public class OpenStackNovaClient extends OpenStackBaseClient {
 
 	private static final int RESOURCE_NOT_FOUND_STATUS = 404;
+	private static final long SERVERS_INDEX_TTL_MILLIS = 5000L;
+	private static final long FRESH_INDEX_MILLIS = 1000L;
 	private static final Logger logger = Logger.getLogger(OpenStackNovaClient.class.getName());
 
+	private final Object serversIndexLock = new Object();
+	private volatile ServersIndex serversIndex;
+	// incremented on every create and delete, so an index fetched before the change is not used.
+	private final AtomicLong serversGeneration = new AtomicLong();
+
 	public OpenStackNovaClient() {
 		super();
 	}
@@ -62,25 +74,27 @@ public class OpenStackNovaClient extends OpenStackBaseClient {
 		if (logger.isLoggable(Level.FINER)) {
 			logger.log(Level.FINER, "Request=createServer: " + computeRequest);
 		}
-		final String response = this.doPost("servers", computeRequest);
+		final String response;
+		try {
+			response = this.doPost("servers", computeRequest);
+		} finally {
+			this.invalidateServersIndex();
+		}
 		final NovaServer nsr = JsonUtils.unwrapRootToObject(NovaServer.class, response);
 		return nsr;
 	}
 
 	/**
-	 * List existing servers.
+	 * List existing servers, with their details. The servers are always listed again rather than taken from the index,
+	 * as new server names are picked from this list and a server created by another client a moment ago must be
+	 * included. The new listing replaces the index used by the other lookups.
 	 * 
 	 * @return A list of existing servers.
 	 * @throws OpenstackException
 	 *             Thrown when a problem occurs with the request.
 	 */
 	public List<NovaServer> getServers() throws OpenstackException {
-		if (logger.isLoggable(Level.FINER)) {
-			logger.log(Level.FINER, "Request=getServerDetails");
-		}
-		final String response = this.doGet("servers");
-		final List<NovaServer> list = JsonUtils.unwrapRootToList(NovaServer.class, response);
-		return list;
+		return new ArrayList<NovaServer>(this.refreshServersIndex(this.serversIndex).servers);
 	}
 
 	/**
@@ -94,25 +108,25 @@ public class OpenStackNovaClient extends OpenStackBaseClient {
 	 */
 	public List<NovaServer> getServersByPrefix(final String prefix) throws OpenstackException {
 		if (logger.isLoggable(Level.FINER)) {
-			logger.log(Level.FINER, "Request=getServerWithName");
+			logger.log(Level.FINER, "Request=getServerWithName: " + prefix);
 		}
-		final String response;
+		final ServersIndex index;
 		try {
-			response = this.doGet("servers", new String[] { "name", prefix });
-		} catch (OpenstackServerException e) {
+			index = this.getServersIndex();
+		} catch (final OpenstackServerException e) {
 			if (RESOURCE_NOT_FOUND_STATUS == e.getStatusCode()) {
 				return null;
 			}
 			throw e;
 		}
 
-		final List<NovaServer> servers = JsonUtils.unwrapRootToList(NovaServer.class, response);
-		final List<NovaServer> detailServers = new ArrayList<NovaServer>(servers.size());
-		for (final NovaServer sv : servers) {
-			final NovaServer serverDetails = this.getServerDetails(sv.getId());
-			detailServers.add(serverDetails);
+		final List<NovaServer> servers = new ArrayList<NovaServer>();
+		for (final NovaServer server : index.servers) {
+			if (server.getName() != null && server.getName().startsWith(prefix)) {
+				servers.add(server);
+			}
 		}
-		return detailServers;
+		return servers;
 	}
 
 	/**
@@ -126,26 +140,15 @@ public class OpenStackNovaClient extends OpenStackBaseClient {
 	 */
 	public NovaServer getServerByIp(final String serverIp) throws OpenstackException {
 		if (logger.isLoggable(Level.FINER)) {
-			logger.log(Level.FINER, "Request=getServerWithIp");
+			logger.log(Level.FINER, "Request=getServerWithIp: " + serverIp);
 		}
-
-		final List<NovaServer> servers = this.getServers();
-
-		for (final NovaServer server : servers) {
-			final NovaServer serverDetails = this.getServerDetails(server.getId());
-			if (serverDetails != null) {
-				final List<NovaServerAddress> addresses = serverDetails.getAddresses();
-				if (addresses != null) {
-					for (final NovaServerAddress novaServerAddress : addresses) {
-						final String addr = novaServerAddress.getAddr();
-						if (StringUtils.equals(addr, serverIp)) {
-							return serverDetails;
-						}
-					}
-				}
-			}
+		final ServersIndex index = this.getServersIndex();
+		final NovaServer server = index.serversByIp.get(serverIp);
+		if (server != null || index.isFresh()) {
+			return server;
 		}
-		return null;
+		// the server may have been created after the index was built.
+		return this.refreshServersIndex(index).serversByIp.get(serverIp);
 	}
 
 	/**
@@ -189,7 +192,92 @@ public class OpenStackNovaClient extends OpenStackBaseClient {
 		if (logger.isLoggable(Level.FINER)) {
 			logger.log(Level.FINER, "Request=deleteServer: " + serverId);
 		}
-		this.doDelete("servers/" + serverId, CODE_OK_204);
+		try {
+			this.doDelete("servers/" + serverId, CODE_OK_204);
+		} finally {
+			this.invalidateServersIndex();
+		}
+	}
+
+	/**
+	 * Drop the index of the servers, so the next lookup lists the servers again.
+	 */
+	public void invalidateServersIndex() {
+		this.serversGeneration.incrementAndGet();
+	}
+
+	private ServersIndex getServersIndex() throws OpenstackException {
+		final ServersIndex index = this.serversIndex;
+		if (this.isValid(index)) {
+			return index;
+		}
+		return this.refreshServersIndex(index);
+	}
+
+	/**
+	 * Replace the given index with a new listing of the servers, unless another thread already did.
+	 */
+	private ServersIndex refreshServersIndex(final ServersIndex staleIndex) throws OpenstackException {
+		// concurrent lookups wait for a single listing rather than each sending its own.
+		synchronized (this.serversIndexLock) {
+			ServersIndex index = this.serversIndex;
+			if (index != staleIndex && this.isValid(index)) {
+				return index;
+			}
+			final long generation = this.serversGeneration.get();
+			index = new ServersIndex(this.listServersDetails(), generation);
+			this.serversIndex = index;
+			return index;
+		}
+	}
+
+	private boolean isValid(final ServersIndex index) {
+		return index != null && index.generation == this.serversGeneration.get()
+				&& System.currentTimeMillis() < index.creationTime + SERVERS_INDEX_TTL_MILLIS;
+	}
+
+	private List<NovaServer> listServersDetails() throws OpenstackException {
+		if (logger.isLoggable(Level.FINER)) {
+			logger.log(Level.FINER, "Request=getServersDetails");
+		}
+		final String response = this.doGet("servers/detail");
+		final List<NovaServer> list = JsonUtils.unwrapRootToList(NovaServer.class, response);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return list;
+	}
+
+	/**
+	 * A snapshot of the servers, indexed by ip.
+	 */
+	private static final class ServersIndex {
+
+		private final long creationTime = System.currentTimeMillis();
+		private final long generation;
+		private final List<NovaServer> servers;
+		private final Map<String, NovaServer> serversByIp;
+
+		private ServersIndex(final List<NovaServer> servers, final long generation) {
+			this.generation = generation;
+			this.servers = Collections.unmodifiableList(servers);
+			this.serversByIp = new HashMap<String, NovaServer>(servers.size());
+			for (final NovaServer server : servers) {
+				final List<NovaServerAddress> addresses = server.getAddresses();
+				if (addresses != null) {
+					for (final NovaServerAddress address : addresses) {
+						if (address.getAddr() != null && !this.serversByIp.containsKey(address.getAddr())) {
+							this.serversByIp.put(address.getAddr(), server);
+						}
+					}
+				}
+			}
+		}
+
+		// an index built a moment ago is not worth a second listing on a lookup miss.
+		private boolean isFresh() {
+			return System.currentTimeMillis() - this.creationTime < FRESH_INDEX_MILLIS;
+		}
 	}
 
 }
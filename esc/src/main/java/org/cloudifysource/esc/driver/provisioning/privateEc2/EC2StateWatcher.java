@@ -0,0 +1,405 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ ******************************************************************************/
+package org.cloudifysource.esc.driver.provisioning.privateEc2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.DescribeVolumesRequest;
+import com.amazonaws.services.ec2.model.DescribeVolumesResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.services.ec2.model.Volume;
+import com.amazonaws.services.ec2.model.VolumeAttachment;
+
+/**
+ * Describes EC2 instances and volumes on behalf of many concurrent callers.<br />
+ * Every request returns a future which is completed by the next polling round. A round sends one
+ * <code>describeInstances</code> and one <code>describeVolumes</code> call for all the pending requests, so starting
+ * many machines at once does not multiply the number of EC2 requests. When EC2 throttles the requests or fails them
+ * temporarily, they are retried in the next round and the interval between rounds is doubled; it is brought back down
+ * as requests succeed again. When EC2 rejects a request, the ids are described one at a time, so only the futures of
+ * the ids that EC2 rejects fail.
+ *
+ * @since 2.7.0
+ *
+ */
+public class EC2StateWatcher {
+
+	// the maximal number of values in a single filter of a describe request.
+	private static final int MAX_IDS_PER_REQUEST = 100;
+	private static final int MAX_INTERVAL_FACTOR = 12;
+	private static final String[] THROTTLING_ERROR_CODES = { "RequestLimitExceeded", "Throttling" };
+	private static final int SERVER_ERROR_STATUS = 500;
+
+	private static final Logger logger = Logger.getLogger(EC2StateWatcher.class.getName());
+	private static final AtomicInteger WATCHER_COUNTER = new AtomicInteger();
+
+	private final AmazonEC2 ec2;
+	private final long minIntervalMillis;
+	private final long maxIntervalMillis;
+	private final ScheduledExecutorService executor;
+
+	private final Object lock = new Object();
+	// instance (or attached instance) id to the futures waiting for its next description.
+	private Map<String, List<Result<Instance>>> pendingInstances = new LinkedHashMap<String, List<Result<Instance>>>();
+	private Map<String, List<Result<List<Volume>>>> pendingVolumes =
+			new LinkedHashMap<String, List<Result<List<Volume>>>>();
+	private boolean roundScheduled;
+	private long intervalMillis;
+
+	private final Describer<Instance> instancesDescriber = new Describer<Instance>() {
+		@Override
+		public Map<String, Instance> describe(final List<String> ids) {
+			return describeInstances(ids);
+		}
+	};
+	private final Describer<List<Volume>> volumesDescriber = new Describer<List<Volume>>() {
+		@Override
+		public Map<String, List<Volume>> describe(final List<String> ids) {
+			return describeVolumes(ids);
+		}
+	};
+
+	/**
+	 * Constructor.
+	 *
+	 * @param ec2
+	 *            The EC2 client used for the describe requests.
+	 * @param intervalMillis
+	 *            The interval between polling rounds, when EC2 does not throttle the requests.
+	 */
+	public EC2StateWatcher(final AmazonEC2 ec2, final long intervalMillis) {
+		this.ec2 = ec2;
+		this.minIntervalMillis = intervalMillis;
+		this.maxIntervalMillis = intervalMillis * MAX_INTERVAL_FACTOR;
+		this.intervalMillis = intervalMillis;
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "EC2StateWatcher-" + WATCHER_COUNTER.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Requests the description of an instance in the next polling round.
+	 *
+	 * @param instanceId
+	 *            The instance id.
+	 * @return A future of the instance description, or of null if EC2 does not report the instance (yet).
+	 */
+	public Future<Instance> describeInstance(final String instanceId) {
+		final Result<Instance> result = new Result<Instance>();
+		synchronized (lock) {
+			addPending(pendingInstances, instanceId, result);
+			scheduleRound();
+		}
+		return result;
+	}
+
+	/**
+	 * Requests the description of the volumes attached to an instance in the next polling round.
+	 *
+	 * @param instanceId
+	 *            The instance id.
+	 * @return A future of the attached volumes, empty if no volume is attached to the instance.
+	 */
+	public Future<List<Volume>> describeAttachedVolumes(final String instanceId) {
+		final Result<List<Volume>> result = new Result<List<Volume>>();
+		synchronized (lock) {
+			addPending(pendingVolumes, instanceId, result);
+			scheduleRound();
+		}
+		return result;
+	}
+
+	/**
+	 * @return The current interval between polling rounds.
+	 */
+	public long getIntervalMillis() {
+		synchronized (lock) {
+			return intervalMillis;
+		}
+	}
+
+	/**
+	 * Stops polling. Pending requests are cancelled.
+	 */
+	public void shutdown() {
+		synchronized (lock) {
+			executor.shutdownNow();
+			for (final List<Result<Instance>> results : pendingInstances.values()) {
+				for (final Result<Instance> result : results) {
+					result.cancel(false);
+				}
+			}
+			for (final List<Result<List<Volume>>> results : pendingVolumes.values()) {
+				for (final Result<List<Volume>> result : results) {
+					result.cancel(false);
+				}
+			}
+			pendingInstances.clear();
+			pendingVolumes.clear();
+		}
+	}
+
+	private static <T> void addPending(final Map<String, List<Result<T>>> pending, final String id,
+			final Result<T> result) {
+		List<Result<T>> results = pending.get(id);
+		if (results == null) {
+			results = new ArrayList<Result<T>>(1);
+			pending.put(id, results);
+		}
+		results.add(result);
+	}
+
+	// must be called while holding the lock.
+	private void scheduleRound() {
+		if (roundScheduled || executor.isShutdown()) {
+			return;
+		}
+		roundScheduled = true;
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				runRound();
+			}
+		}, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void runRound() {
+		final Map<String, List<Result<Instance>>> instances;
+		final Map<String, List<Result<List<Volume>>>> volumes;
+		synchronized (lock) {
+			instances = pendingInstances;
+			volumes = pendingVolumes;
+			pendingInstances = new LinkedHashMap<String, List<Result<Instance>>>();
+			pendingVolumes = new LinkedHashMap<String, List<Result<List<Volume>>>>();
+		}
+
+		boolean retry = false;
+		try {
+			final boolean instancesDescribed = describe(instances, instancesDescriber, null);
+			final boolean volumesDescribed = describe(volumes, volumesDescriber, Collections.<Volume> emptyList());
+			retry = !instancesDescribed || !volumesDescribed;
+		} finally {
+			synchronized (lock) {
+				if (retry) {
+					// retry the requests in the next round, after a longer interval.
+					requeue(instances, pendingInstances);
+					requeue(volumes, pendingVolumes);
+					intervalMillis = Math.min(maxIntervalMillis, intervalMillis * 2);
+					logger.warning("EC2 requests are throttled or failed temporarily, polling every " + intervalMillis
+							+ " ms");
+				} else {
+					intervalMillis = Math.max(minIntervalMillis, intervalMillis / 2);
+				}
+				roundScheduled = false;
+				if (!pendingInstances.isEmpty() || !pendingVolumes.isEmpty()) {
+					scheduleRound();
+				}
+			}
+		}
+	}
+
+	private static <T> void requeue(final Map<String, List<Result<T>>> from, final Map<String, List<Result<T>>> to) {
+		for (final Map.Entry<String, List<Result<T>>> entry : from.entrySet()) {
+			for (final Result<T> result : entry.getValue()) {
+				if (!result.isDone()) {
+					addPending(to, entry.getKey(), result);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Describes the resources of the pending ids and completes their futures. A batch that EC2 rejects is described
+	 * again one id at a time, so that only the futures of the rejected ids fail.
+	 *
+	 * @return false if some requests were throttled or failed temporarily, in which case their futures are left
+	 *         pending.
+	 */
+	private static <T> boolean describe(final Map<String, List<Result<T>>> pending, final Describer<T> describer,
+			final T missing) {
+		if (pending.isEmpty()) {
+			return true;
+		}
+		final List<String> ids = new ArrayList<String>(pending.keySet());
+		boolean described = true;
+		for (int start = 0; start < ids.size(); start += MAX_IDS_PER_REQUEST) {
+			final List<String> batch = ids.subList(start, Math.min(ids.size(), start + MAX_IDS_PER_REQUEST));
+			try {
+				complete(pending, batch, describer.describe(batch), missing);
+			} catch (final RuntimeException e) {
+				if (isTransient(e)) {
+					logger.log(Level.FINE, "Failed to describe EC2 resources " + batch + ", will retry", e);
+					described = false;
+				} else if (batch.size() == 1) {
+					fail(pending, batch.get(0), e);
+				} else {
+					logger.log(Level.FINE, "Failed to describe EC2 resources " + batch + ", describing each", e);
+					for (final String id : batch) {
+						described &= describeOne(pending, id, describer, missing);
+					}
+				}
+			}
+		}
+		return described;
+	}
+
+	private static <T> boolean describeOne(final Map<String, List<Result<T>>> pending, final String id,
+			final Describer<T> describer, final T missing) {
+		final List<String> batch = Collections.singletonList(id);
+		try {
+			complete(pending, batch, describer.describe(batch), missing);
+		} catch (final RuntimeException e) {
+			if (isTransient(e)) {
+				return false;
+			}
+			fail(pending, id, e);
+		}
+		return true;
+	}
+
+	private static <T> void complete(final Map<String, List<Result<T>>> pending, final List<String> ids,
+			final Map<String, T> described, final T missing) {
+		for (final String id : ids) {
+			final T value = described.containsKey(id) ? described.get(id) : missing;
+			for (final Result<T> result : pending.get(id)) {
+				result.set(value);
+			}
+		}
+	}
+
+	private static <T> void fail(final Map<String, List<Result<T>>> pending, final String id,
+			final RuntimeException e) {
+		logger.log(Level.FINE, "Failed to describe EC2 resource " + id, e);
+		for (final Result<T> result : pending.get(id)) {
+			result.setException(e);
+		}
+	}
+
+	// throttling, server errors and errors that got no response from EC2 (e.g. connection failures) are retried.
+	private static boolean isTransient(final RuntimeException e) {
+		if (e instanceof AmazonServiceException) {
+			final AmazonServiceException serviceException = (AmazonServiceException) e;
+			final String errorCode = serviceException.getErrorCode();
+			for (final String throttlingErrorCode : THROTTLING_ERROR_CODES) {
+				if (throttlingErrorCode.equals(errorCode)) {
+					return true;
+				}
+			}
+			return serviceException.getErrorType() == ErrorType.Service
+					|| serviceException.getStatusCode() >= SERVER_ERROR_STATUS;
+		}
+		return e instanceof AmazonClientException;
+	}
+
+	/**
+	 * Describes the resources of a batch of ids with a single EC2 request.
+	 */
+	private interface Describer<T> {
+
+		/**
+		 * @param ids
+		 *            The ids, at most {@value EC2StateWatcher#MAX_IDS_PER_REQUEST}.
+		 * @return The descriptions by id. Ids that EC2 does not report are missing.
+		 */
+		Map<String, T> describe(List<String> ids);
+	}
+
+	private Map<String, Instance> describeInstances(final List<String> ids) {
+		// a filter, unlike a list of instance ids, does not fail the whole request if an instance
+		// was not registered yet.
+		final DescribeInstancesRequest request = new DescribeInstancesRequest();
+		request.withFilters(new Filter("instance-id", ids));
+		final DescribeInstancesResult result = ec2.describeInstances(request);
+		final Map<String, Instance> described = new HashMap<String, Instance>(ids.size());
+		for (final Reservation reservation : result.getReservations()) {
+			for (final Instance instance : reservation.getInstances()) {
+				described.put(instance.getInstanceId(), instance);
+			}
+		}
+		if (logger.isLoggable(Level.FINEST)) {
+			logger.finest("Described " + described.size() + " of " + ids.size() + " instances");
+		}
+		return described;
+	}
+
+	private Map<String, List<Volume>> describeVolumes(final List<String> ids) {
+		final DescribeVolumesRequest request = new DescribeVolumesRequest();
+		request.withFilters(new Filter("attachment.instance-id", ids));
+		final DescribeVolumesResult result = ec2.describeVolumes(request);
+		final Map<String, List<Volume>> described = new HashMap<String, List<Volume>>(ids.size());
+		for (final Volume volume : result.getVolumes()) {
+			for (final VolumeAttachment attachment : volume.getAttachments()) {
+				List<Volume> instanceVolumes = described.get(attachment.getInstanceId());
+				if (instanceVolumes == null) {
+					instanceVolumes = new ArrayList<Volume>();
+					described.put(attachment.getInstanceId(), instanceVolumes);
+				}
+				instanceVolumes.add(volume);
+			}
+		}
+		return described;
+	}
+
+	/**
+	 * A future completed by a polling round.
+	 */
+	private static final class Result<T> extends FutureTask<T> {
+
+		private Result() {
+			super(new Callable<T>() {
+				@Override
+				public T call() {
+					throw new IllegalStateException("Completed by the watcher only");
+				}
+			});
+		}
+
+		@Override
+		public void set(final T value) {
+			super.set(value);
+		}
+
+		@Override
+		public void setException(final Throwable t) {
+			super.setException(t);
+		}
+	}
+}
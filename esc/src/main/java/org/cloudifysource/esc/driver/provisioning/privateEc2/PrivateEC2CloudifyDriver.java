@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -77,8 +78,6 @@ import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
 import com.amazonaws.services.ec2.model.DescribeInstancesResult;
 import com.amazonaws.services.ec2.model.DescribeTagsRequest;
 import com.amazonaws.services.ec2.model.DescribeTagsResult;
-import com.amazonaws.services.ec2.model.DescribeVolumesRequest;
-import com.amazonaws.services.ec2.model.DescribeVolumesResult;
 import com.amazonaws.services.ec2.model.EbsBlockDevice;
 import com.amazonaws.services.ec2.model.Filter;
 import com.amazonaws.services.ec2.model.GetConsoleOutputRequest;
@@ -234,6 +233,7 @@ public class PrivateEC2CloudifyDriver extends CloudDriverSupport implements
 	private final Map<String, PrivateEc2Template> cfnTemplatePerService = new HashMap<String, PrivateEc2Template>();
 
 	private AmazonEC2 ec2;
+	private EC2StateWatcher stateWatcher;
 	private AmazonS3Uploader amazonS3Uploader;
 
 	/** short name of the service (i.e without applicationName). */
@@ -408,6 +408,10 @@ public class PrivateEC2CloudifyDriver extends CloudDriverSupport implements
 				}
 			}
 			this.ec2 = this.createAmazonEC2();
+			if (this.stateWatcher != null) {
+				this.stateWatcher.shutdown();
+			}
+			this.stateWatcher = new EC2StateWatcher(this.ec2, WAIT_STATUS_SLEEP_TIME);
 
 			// Create s3 client
 			String locationId = (String) managerTemplate.getCustom().get("s3LocationId");
@@ -584,42 +588,37 @@ public class PrivateEC2CloudifyDriver extends CloudDriverSupport implements
 	private void waitStopInstanceStatus(final String instanceId, final long duration, final TimeUnit unit)
 			throws CloudProvisioningException, TimeoutException {
 		final long endTime = System.currentTimeMillis() + unit.toMillis(duration);
+		final String timeoutMessage = "Stopping instace timed out (id=" + instanceId + ")";
 		while (System.currentTimeMillis() < endTime) {
 
-			final DescribeInstancesRequest describeRequest = new DescribeInstancesRequest();
-			describeRequest.withInstanceIds(instanceId);
-			final DescribeInstancesResult describeInstances = ec2.describeInstances(describeRequest);
-
-			for (final Reservation resa : describeInstances.getReservations()) {
-				for (final Instance instance : resa.getInstances()) {
-					final InstanceStateType state = InstanceStateType.valueOf(instance.getState().getCode());
+			final Instance instance =
+					this.awaitWatcher(this.stateWatcher.describeInstance(instanceId), endTime, timeoutMessage);
+			if (instance != null) {
+				final InstanceStateType state = InstanceStateType.valueOf(instance.getState().getCode());
+				if (logger.isLoggable(Level.FINEST)) {
+					logger.finest("instance= " + instance.getInstanceId() + " state=" + state);
+				}
+				switch (state) {
+				case PENDING:
+				case RUNNING:
+				case STOPPING:
+				case SHUTTING_DOWN:
+					break;
+				case STOPPED:
+				case TERMINATED:
 					if (logger.isLoggable(Level.FINEST)) {
-						logger.finest("instance= " + instance.getInstanceId() + " state=" + state);
-					}
-					switch (state) {
-					case PENDING:
-					case RUNNING:
-					case STOPPING:
-					case SHUTTING_DOWN:
-						this.sleep();
-						break;
-					case STOPPED:
-					case TERMINATED:
-						if (logger.isLoggable(Level.FINEST)) {
-							logger.finest("instance (id=" + instanceId + ") was shutdown");
-						}
-						return;
-					default:
-						throw new CloudProvisioningException("Failed to stop server - Cloud reported node in "
-								+ state.getName() + " state.");
-
+						logger.finest("instance (id=" + instanceId + ") was shutdown");
 					}
+					return;
+				default:
+					throw new CloudProvisioningException("Failed to stop server - Cloud reported node in "
+							+ state.getName() + " state.");
 
 				}
 			}
 		}
 
-		throw new TimeoutException("Stopping instace timed out (id=" + instanceId + ")");
+		throw new TimeoutException(timeoutMessage);
 	}
 
 	private void sleep() {
@@ -630,6 +629,31 @@ public class PrivateEC2CloudifyDriver extends CloudDriverSupport implements
 		}
 	}
 
+	/**
+	 * Waits for a request of the state watcher, which is completed by its next polling round.
+	 */
+	private <T> T awaitWatcher(final Future<T> future, final long endTime, final String timeoutMessage)
+			throws CloudProvisioningException, TimeoutException {
+		try {
+			return future.get(Math.max(0, endTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			future.cancel(false);
+			throw new TimeoutException(timeoutMessage);
+		} catch (final InterruptedException e) {
+			future.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new CloudProvisioningException("Interrupted while waiting for EC2", e);
+		} catch (final CancellationException e) {
+			// the driver was closed while waiting.
+			throw new CloudProvisioningException("The EC2 state watcher was shut down while waiting for EC2", e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new CloudProvisioningException(e.getCause());
+		}
+	}
+
 	private MachineDetails createServer(final PrivateEc2Template cfnTemplate, final String machineName,
 			final ProvisioningContextImpl ctx, final boolean management, final long duration, final TimeUnit unit)
 			throws CloudProvisioningException, TimeoutException {
@@ -651,16 +675,15 @@ public class PrivateEC2CloudifyDriver extends CloudDriverSupport implements
 		this.createEC2Tags(ec2Instance.getInstanceId(), templateInstance.getProperties().getTags(), additionalTags);
 	}
 
-	private void tagEC2Volumes(final String instanceId, final PrivateEc2Template cfnTemplate)
-			throws CloudProvisioningException {
+	private void tagEC2Volumes(final String instanceId, final PrivateEc2Template cfnTemplate, final long endTime)
+			throws CloudProvisioningException, TimeoutException {
 
 		final List<VolumeMapping> volumeMappings = cfnTemplate.getEC2Instance().getProperties().getVolumes();
 		if (volumeMappings != null) {
-			final DescribeVolumesRequest request = new DescribeVolumesRequest();
-			request.withFilters(new Filter("attachment.instance-id", Arrays.asList(instanceId)));
-			final DescribeVolumesResult describeVolumes = ec2.describeVolumes(request);
+			final List<Volume> volumes = this.awaitWatcher(this.stateWatcher.describeAttachedVolumes(instanceId),
+					endTime, "Describing the volumes of instance " + instanceId + " timed out");
 
-			for (final Volume volume : describeVolumes.getVolumes()) {
+			for (final Volume volume : volumes) {
 				String volumeRef = null;
 				for (final VolumeMapping vMap : volumeMappings) {
 					final String device = volume.getAttachments().get(0).getDevice();
@@ -752,42 +775,37 @@ public class PrivateEC2CloudifyDriver extends CloudDriverSupport implements
 
 		final long endTime = System.currentTimeMillis() + unit.toMillis(duration);
 
+		final String timeoutMessage = "Node failed to reach RUNNING mode in time";
 		while (System.currentTimeMillis() < endTime) {
-			// Sleep before requesting the instance description
-			// because we can get a AWS Error Code: InvalidInstanceID.NotFound if the request is too early.
-			this.sleep();
-
-			final DescribeInstancesRequest describeRequest = new DescribeInstancesRequest();
-			describeRequest.setInstanceIds(Arrays.asList(ec2instance.getInstanceId()));
-			final DescribeInstancesResult describeInstances = this.ec2.describeInstances(describeRequest);
-
-			for (final Reservation resa : describeInstances.getReservations()) {
-				for (final Instance instance : resa.getInstances()) {
-					final InstanceStateType state = InstanceStateType.valueOf(instance.getState().getCode());
-					if (logger.isLoggable(Level.FINER)) {
-						logger.finer("instance= " + instance.getInstanceId() + " state=" + state);
-					}
-					switch (state) {
-					case PENDING:
-						break;
-					case RUNNING:
-						logger.fine("running okay...");
-						return instance;
-					case STOPPING:
-					case SHUTTING_DOWN:
-					case TERMINATED:
-					case STOPPED:
-					default:
-						throw new CloudProvisioningException("Failed to allocate server - Cloud reported node in "
-								+ state.getName() + " state. Node details: "
-								+ ec2instance);
+			// The watcher describes the instance with a filter, so an instance that is not registered yet is
+			// reported as null rather than failing with InvalidInstanceID.NotFound.
+			final Instance instance = this.awaitWatcher(this.stateWatcher.describeInstance(
+					ec2instance.getInstanceId()), endTime, timeoutMessage);
+			if (instance != null) {
+				final InstanceStateType state = InstanceStateType.valueOf(instance.getState().getCode());
+				if (logger.isLoggable(Level.FINER)) {
+					logger.finer("instance= " + instance.getInstanceId() + " state=" + state);
+				}
+				switch (state) {
+				case PENDING:
+					break;
+				case RUNNING:
+					logger.fine("running okay...");
+					return instance;
+				case STOPPING:
+				case SHUTTING_DOWN:
+				case TERMINATED:
+				case STOPPED:
+				default:
+					throw new CloudProvisioningException("Failed to allocate server - Cloud reported node in "
+							+ state.getName() + " state. Node details: "
+							+ ec2instance);
 
-					}
 				}
 			}
 		}
 
-		throw new TimeoutException("Node failed to reach RUNNING mode in time");
+		throw new TimeoutException(timeoutMessage);
 	}
 
 	private MachineDetails[] getManagementServersMachineDetails() throws CloudProvisioningException {
@@ -945,7 +963,8 @@ public class PrivateEC2CloudifyDriver extends CloudDriverSupport implements
 			Instance ec2Instance = runInstances.getReservation().getInstances().get(0);
 			ec2Instance = this.waitRunningInstance(ec2Instance, duration, unit);
 			this.tagEC2Instance(ec2Instance, machineName, cfnTemplate.getEC2Instance());
-			this.tagEC2Volumes(ec2Instance.getInstanceId(), cfnTemplate);
+			this.tagEC2Volumes(ec2Instance.getInstanceId(), cfnTemplate,
+					System.currentTimeMillis() + unit.toMillis(duration));
 
 			final boolean debug = BooleanUtils.toBoolean((String) template.getCustom().get("debugMode"));
 			if (debug) {
@@ -1294,6 +1313,9 @@ public class PrivateEC2CloudifyDriver extends CloudDriverSupport implements
 
 	@Override
 	public void close() {
+		if (stateWatcher != null) {
+			stateWatcher.shutdown();
+		}
 		if (ec2 != null) {
 			ec2.shutdown();
 		}
@@ -0,0 +1,325 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ ******************************************************************************/
+package org.cloudifysource.esc.byon;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.dsl.utils.IPUtils;
+import org.cloudifysource.dsl.utils.PortProber;
+import org.cloudifysource.esc.byon.ByonNodePool.NodeState;
+import org.cloudifysource.esc.driver.provisioning.CustomNode;
+import org.cloudifysource.esc.driver.provisioning.byon.CustomNodeImpl;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ByonNodePoolTest {
+
+	private static final long TIMEOUT_MILLIS = 5000;
+	private static final String LOCALHOST = "127.0.0.1";
+
+	private ServerSocket server;
+	private int openPort;
+	private int closedPort;
+
+	@Before
+	public void before() throws IOException {
+		final ServerSocket closed = new ServerSocket(0, 1, InetAddress.getByName(LOCALHOST));
+		closedPort = closed.getLocalPort();
+		closed.close();
+
+		server = new ServerSocket(0, PortProber.MAX_OPEN_CONNECTIONS, InetAddress.getByName(LOCALHOST));
+		openPort = server.getLocalPort();
+		// accept and drop the probe connections, so the backlog does not fill up.
+		final Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						server.accept().close();
+					}
+				} catch (final IOException e) {
+					// the server was closed.
+				}
+			}
+		}, "ByonNodePoolTest-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	@After
+	public void after() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testAllocateAndRelease() {
+		final CustomNode first = createNode("node1", "10.0.0.1", openPort);
+		final CustomNode second = createNode("node2", "10.0.0.2", openPort);
+		final ByonNodePool pool = createPool(list(first, second), new ArrayList<CustomNode>());
+
+		final CustomNode allocated = pool.allocate(TIMEOUT_MILLIS, endTime());
+		Assert.assertSame(first, allocated);
+		Assert.assertSame(second, pool.allocate(TIMEOUT_MILLIS, endTime()));
+		Assert.assertNull(pool.allocate(TIMEOUT_MILLIS, endTime()));
+		Assert.assertTrue(pool.hasAllocatedNodes());
+		Assert.assertEquals(2, pool.getNodes(NodeState.ALLOCATED).size());
+
+		Assert.assertTrue(pool.release(allocated));
+		// releasing twice must not queue the node twice.
+		Assert.assertTrue(pool.release(allocated));
+		Assert.assertSame(first, pool.allocate(TIMEOUT_MILLIS, endTime()));
+		Assert.assertNull(pool.allocate(TIMEOUT_MILLIS, endTime()));
+
+		Assert.assertFalse(pool.release(createNode("other", "10.0.0.3", openPort)));
+	}
+
+	@Test
+	public void testMarkAllocated() {
+		final CustomNode first = createNode("node1", "10.0.0.1", openPort);
+		final CustomNode second = createNode("node2", "10.0.0.2", openPort);
+		final ByonNodePool pool = createPool(list(first, second), new ArrayList<CustomNode>());
+
+		Assert.assertTrue(pool.markAllocated("10.0.0.1"));
+		Assert.assertFalse(pool.markAllocated("10.0.0.1"));
+		Assert.assertFalse(pool.markAllocated("10.0.0.9"));
+
+		// the node allocated by IP is skipped although it is still queued.
+		Assert.assertSame(second, pool.allocate(TIMEOUT_MILLIS, endTime()));
+		Assert.assertNull(pool.allocate(TIMEOUT_MILLIS, endTime()));
+		Assert.assertSame(first, pool.getNodeByIP("10.0.0.1"));
+		Assert.assertSame(second, pool.getNodeById("NODE2"));
+	}
+
+	@Test
+	public void testInvalidNodeIsNotAllocated() {
+		final CustomNode free = createNode("node1", "10.0.0.1", openPort);
+		final CustomNode invalid = createNode("node2", "10.0.0.2", openPort);
+		final ByonNodePool pool = createPool(list(free), list(invalid));
+
+		Assert.assertTrue(pool.invalidate(free));
+		Assert.assertNull(pool.allocate(TIMEOUT_MILLIS, endTime()));
+		Assert.assertEquals(2, pool.getNodes(NodeState.INVALID).size());
+		Assert.assertTrue(pool.getNodes(NodeState.FREE).isEmpty());
+	}
+
+	@Test
+	public void testProbe() {
+		final CustomNode down = createNode("node1", LOCALHOST, closedPort);
+		final CustomNode up = createNode("node2", LOCALHOST, openPort);
+		final ByonNodePool pool = createPool(list(down), list(up));
+
+		pool.probe(TIMEOUT_MILLIS);
+
+		// the free node that refused the connection is invalid, the invalid node that accepted it is allocated.
+		Assert.assertTrue(pool.getNodes(NodeState.FREE).isEmpty());
+		Assert.assertSame(up, pool.allocate(TIMEOUT_MILLIS, endTime()));
+		Assert.assertNull(pool.allocate(TIMEOUT_MILLIS, endTime()));
+	}
+
+	@Test
+	public void testProbeInvalidNodesKeepsFreeNodes() {
+		final CustomNode free = createNode("node1", LOCALHOST, closedPort);
+		final CustomNode invalid = createNode("node2", LOCALHOST, openPort);
+		final ByonNodePool pool = createPool(list(free), list(invalid));
+
+		pool.probeInvalidNodes(TIMEOUT_MILLIS);
+
+		Assert.assertEquals(Collections.singleton(free), pool.getNodes(NodeState.FREE));
+		Assert.assertSame(free, pool.allocate(TIMEOUT_MILLIS, endTime()));
+		Assert.assertSame(invalid, pool.allocate(TIMEOUT_MILLIS, endTime()));
+	}
+
+	@Test
+	public void testProbeMoreNodesThanOpenConnections() {
+		final List<CustomNode> free = new ArrayList<CustomNode>();
+		// the nodes beyond the first batch of connections are probed too.
+		free.add(createNode("node0", LOCALHOST, closedPort));
+		for (int i = 1; i < PortProber.MAX_OPEN_CONNECTIONS + 10; i++) {
+			free.add(createNode("node" + i, LOCALHOST, openPort));
+		}
+		final ByonNodePool pool = createPool(free, new ArrayList<CustomNode>());
+
+		pool.probe(TIMEOUT_MILLIS);
+
+		int allocated = 0;
+		CustomNode node = pool.allocate(TIMEOUT_MILLIS, endTime());
+		while (node != null) {
+			Assert.assertEquals(openPort, node.getLoginPort());
+			++allocated;
+			node = pool.allocate(TIMEOUT_MILLIS, endTime());
+		}
+		Assert.assertEquals(free.size() - 1, allocated);
+	}
+
+	@Test
+	public void testRangeAddressesAreNotExpanded() {
+		final CustomNode listed = createNode("node1", "10.0.0.1", openPort);
+		final ByonNodePool pool = createPool(list(listed), new ArrayList<CustomNode>(),
+				createRange("10.0.0.1", "10.0.255.255"), openPort);
+
+		// the listed node's address is not counted as a range address.
+		Assert.assertEquals("[10.0.0.1-10.0.255.255 (65534 free, 0 invalid)]", pool.getRangesSummary());
+		Assert.assertEquals(Collections.singleton(listed), pool.getNodes(NodeState.FREE));
+		Assert.assertTrue(pool.getNodes(NodeState.INVALID).isEmpty());
+
+		Assert.assertTrue(pool.markAllocated("10.0.1.1"));
+		Assert.assertEquals("[10.0.0.1-10.0.255.255 (65533 free, 0 invalid)]", pool.getRangesSummary());
+		Assert.assertEquals("10.0.1.1", pool.getNodes(NodeState.ALLOCATED).iterator().next().getPrivateIP());
+	}
+
+	@Test
+	public void testUnreachableRangeIsExhausted() throws IOException {
+		final ByonNodePool pool = createPool(new ArrayList<CustomNode>(), new ArrayList<CustomNode>(),
+				createRange(LOCALHOST, LOCALHOST), closedPort);
+
+		Assert.assertNull(pool.allocate(TIMEOUT_MILLIS, endTime()));
+		Assert.assertEquals("[127.0.0.1-127.0.0.1 (0 free, 1 invalid)]", pool.getRangesSummary());
+
+		// the unreachable address is not probed again on the next allocation, only in the background.
+		final ServerSocket rangeServer = bind(closedPort);
+		try {
+			Assert.assertNull(pool.allocate(TIMEOUT_MILLIS, endTime()));
+			Assert.assertFalse(pool.hasAllocatedNodes());
+
+			pool.probe(TIMEOUT_MILLIS);
+			Assert.assertEquals("[127.0.0.1-127.0.0.1 (0 free, 0 invalid)]", pool.getRangesSummary());
+			final CustomNode node = pool.allocate(TIMEOUT_MILLIS, endTime());
+			Assert.assertNotNull(node);
+			Assert.assertEquals(LOCALHOST, node.getPrivateIP());
+		} finally {
+			rangeServer.close();
+		}
+	}
+
+	@Test
+	public void testAllocateStopsAtEndTime() {
+		final ByonNodePool pool = createPool(new ArrayList<CustomNode>(), new ArrayList<CustomNode>(),
+				createRange(LOCALHOST, LOCALHOST), openPort);
+
+		// the deadline passed, so the range address is not probed.
+		Assert.assertNull(pool.allocate(TIMEOUT_MILLIS, System.currentTimeMillis() - 1));
+		Assert.assertEquals("[127.0.0.1-127.0.0.1 (1 free, 0 invalid)]", pool.getRangesSummary());
+		Assert.assertFalse(pool.hasAllocatedNodes());
+
+		Assert.assertNotNull(pool.allocate(TIMEOUT_MILLIS, endTime()));
+	}
+
+	@Test
+	public void testProbeAdvancesThroughRange() {
+		final ByonNodePool pool = createPool(new ArrayList<CustomNode>(), new ArrayList<CustomNode>(),
+				createRange(LOCALHOST, LOCALHOST), openPort);
+
+		pool.probe(TIMEOUT_MILLIS);
+
+		// the address found by the background probe is queued, so it is allocated without probing the range.
+		Assert.assertEquals(1, pool.getNodes(NodeState.FREE).size());
+		Assert.assertEquals("[127.0.0.1-127.0.0.1 (0 free, 0 invalid)]", pool.getRangesSummary());
+		final CustomNode node = pool.allocate(TIMEOUT_MILLIS, System.currentTimeMillis() - 1);
+		Assert.assertNotNull(node);
+		Assert.assertEquals(LOCALHOST, node.getPrivateIP());
+		Assert.assertEquals(openPort, node.getLoginPort());
+	}
+
+	@Test
+	public void testProbeSkipsRangeWhileFreeNodesAreQueued() {
+		final CustomNode listed = createNode("node1", LOCALHOST, openPort);
+		final ByonNodePool pool = createPool(list(listed), new ArrayList<CustomNode>(),
+				createRange("127.0.0.2", "127.0.0.2"), openPort);
+
+		pool.probe(TIMEOUT_MILLIS);
+
+		Assert.assertEquals("[127.0.0.2-127.0.0.2 (1 free, 0 invalid)]", pool.getRangesSummary());
+		Assert.assertEquals(Collections.singleton(listed), pool.getNodes(NodeState.FREE));
+	}
+
+	@Test
+	public void testAllocateFromRangeBeyondFirstBatch() throws IOException {
+		// a loopback address beyond the first batch of the range, the addresses before it refuse the connection.
+		final String reachableAddress = "127.0.1.100";
+		final ServerSocket rangeServer;
+		try {
+			rangeServer = new ServerSocket(0, 1, InetAddress.getByName(reachableAddress));
+		} catch (final BindException e) {
+			// only the first loopback address is configured on this host.
+			Assume.assumeNoException(e);
+			return;
+		}
+		try {
+			final ByonNodePool pool = createPool(new ArrayList<CustomNode>(), new ArrayList<CustomNode>(),
+					createRange(LOCALHOST, "127.0.1.255"), rangeServer.getLocalPort());
+
+			final CustomNode node = pool.allocate(TIMEOUT_MILLIS, endTime());
+			Assert.assertNotNull(node);
+			Assert.assertEquals(reachableAddress, node.getPrivateIP());
+			Assert.assertEquals(rangeServer.getLocalPort(), node.getLoginPort());
+			// the host name is resolved as for the listed nodes.
+			Assert.assertNotNull(node.getHostName());
+			Assert.assertSame(node, pool.getNodeByIP(reachableAddress));
+		} finally {
+			rangeServer.close();
+		}
+	}
+
+	private static long endTime() {
+		return System.currentTimeMillis() + TIMEOUT_MILLIS;
+	}
+
+	private static ServerSocket bind(final int port) throws IOException {
+		final ServerSocket socket = new ServerSocket();
+		socket.setReuseAddress(true);
+		socket.bind(new InetSocketAddress(InetAddress.getByName(LOCALHOST), port));
+		return socket;
+	}
+
+	private static ByonNodePool createPool(final List<CustomNode> reachableNodes,
+			final List<CustomNode> unreachableNodes) {
+		return createPool(reachableNodes, unreachableNodes, new ArrayList<ByonNodeRange>(),
+				CustomNodeImpl.DEFAULT_LOGIN_PORT);
+	}
+
+	private static ByonNodePool createPool(final List<CustomNode> reachableNodes,
+			final List<CustomNode> unreachableNodes, final List<ByonNodeRange> nodeRanges, final int rangeLoginPort) {
+		return new ByonNodePool("template", reachableNodes, unreachableNodes, nodeRanges, rangeLoginPort);
+	}
+
+	private static List<ByonNodeRange> createRange(final String firstIp, final String lastIp) {
+		final List<ByonNodeRange> ranges = new ArrayList<ByonNodeRange>();
+		ranges.add(new ByonNodeRange(IPUtils.ip2Long(firstIp), IPUtils.ip2Long(lastIp), "range", "user", "password",
+				null));
+		return ranges;
+	}
+
+	private static List<CustomNode> list(final CustomNode... nodes) {
+		final List<CustomNode> result = new ArrayList<CustomNode>();
+		Collections.addAll(result, nodes);
+		return result;
+	}
+
+	private static CustomNode createNode(final String id, final String ipAddress, final int loginPort) {
+		final CustomNode node = new CustomNodeImpl("BYON", id, ipAddress, "host-" + id, "user", "password", null,
+				null);
+		node.setLoginPort(loginPort);
+		return node;
+	}
+}
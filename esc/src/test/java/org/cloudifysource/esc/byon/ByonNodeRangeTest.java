@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.esc.byon;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.dsl.utils.IPUtils;
+import org.cloudifysource.esc.driver.provisioning.CloudProvisioningException;
+import org.cloudifysource.esc.driver.provisioning.CustomNode;
+import org.junit.Test;
+
+public class ByonNodeRangeTest {
+
+	@Test
+	public void testRangeNodesMatchExpandedNodes() throws CloudProvisioningException {
+		final List<Map<String, String>> nodesList = createNodesList("node{0}", "192.168.9.250-192.168.10.5");
+
+		final List<CustomNode> expandedNodes = ByonUtils.parseCloudNodes(nodesList);
+		final List<ByonNodeRange> ranges = ByonUtils.parseCloudNodeRanges(nodesList);
+		Assert.assertTrue(ByonUtils.parseCloudNodes(nodesList, false).isEmpty());
+		Assert.assertEquals(1, ranges.size());
+
+		final ByonNodeRange range = ranges.get(0);
+		Assert.assertEquals(expandedNodes.size(), range.size());
+		for (int i = 0; i < range.size(); i++) {
+			final CustomNode expected = expandedNodes.get(i);
+			final CustomNode node = range.createNode(i);
+			Assert.assertEquals(expected.getId(), node.getId());
+			Assert.assertEquals(expected.getPrivateIP(), node.getPrivateIP());
+			Assert.assertEquals(i, range.indexOf(IPUtils.ip2Long(node.getPrivateIP())));
+			Assert.assertEquals(i, range.indexOfId(node.getId()));
+		}
+		Assert.assertEquals(-1, range.indexOf(IPUtils.ip2Long("192.168.10.6")));
+		Assert.assertEquals(-1, range.indexOfId("node0"));
+		Assert.assertEquals(-1, range.indexOfId("other1"));
+	}
+
+	@Test
+	public void testLargeCIDR() throws CloudProvisioningException {
+		final List<ByonNodeRange> ranges = ByonUtils.parseCloudNodeRanges(createNodesList("node", "10.0.0.0/16"));
+		final ByonNodeRange range = ranges.get(0);
+		Assert.assertEquals(65536, range.size());
+		Assert.assertEquals("10.0.255.255", range.getIpAddress(range.size() - 1));
+
+		// the id is used as a prefix, and the index may be formatted with grouping separators by a template.
+		Assert.assertEquals("node1000", range.getNodeId(999));
+		Assert.assertEquals(999, range.indexOfId("node1000"));
+	}
+
+	@Test(expected = CloudProvisioningException.class)
+	public void testInvalidRange() throws CloudProvisioningException {
+		ByonUtils.parseCloudNodeRanges(createNodesList("node", "192.168.9.1-192.168.9.300"));
+	}
+
+	private static List<Map<String, String>> createNodesList(final String id, final String hostRange) {
+		final Map<String, String> node = new HashMap<String, String>();
+		node.put("id", id);
+		node.put("host-range", hostRange);
+		final List<Map<String, String>> nodesList = new ArrayList<Map<String, String>>();
+		nodesList.add(node);
+		return nodesList;
+	}
+}
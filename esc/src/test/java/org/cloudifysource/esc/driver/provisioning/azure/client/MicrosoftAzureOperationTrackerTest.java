@@ -0,0 +1,116 @@
+/******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved		  *
+ * 																			  *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at									  *
+ *																			  *
+ *       http://www.apache.org/licenses/LICENSE-2.0							  *
+ *																			  *
+ * Unless required by applicable law or agreed to in writing, software		  *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.											  *
+ ******************************************************************************/
+
+package org.cloudifysource.esc.driver.provisioning.azure.client;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MicrosoftAzureOperationTrackerTest {
+
+	private static final long MIN_INTERVAL_MILLIS = 10;
+	private static final long MAX_INTERVAL_MILLIS = 40;
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	private MicrosoftAzureOperationTracker tracker;
+
+	@Before
+	public void before() {
+		tracker = new MicrosoftAzureOperationTracker(MIN_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS);
+	}
+
+	@After
+	public void after() {
+		tracker.close();
+	}
+
+	@Test
+	public void testOperationIsPolledUntilDone() throws Exception {
+		final CountingPoll poll = new CountingPoll(3);
+		final Future<String> operation = tracker.track(poll, System.currentTimeMillis() + TIMEOUT_MILLIS);
+		Assert.assertEquals("done", operation.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(3, poll.polls.get());
+	}
+
+	@Test
+	public void testFailedPollFailsOperation() throws Exception {
+		final Future<String> operation = tracker.track(new MicrosoftAzureOperationTracker.OperationPoll<String>() {
+			@Override
+			protected String poll() throws MicrosoftAzureException {
+				throw new MicrosoftAzureException("ResourceNotFound", "No such operation");
+			}
+		}, System.currentTimeMillis() + TIMEOUT_MILLIS);
+		try {
+			operation.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			Assert.fail("The operation did not fail");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof MicrosoftAzureException);
+		}
+	}
+
+	@Test
+	public void testOperationTimesOut() throws Exception {
+		final CountingPoll poll = new CountingPoll(Integer.MAX_VALUE);
+		final Future<String> operation = tracker.track(poll, System.currentTimeMillis() + 100);
+		try {
+			operation.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			Assert.fail("The operation did not time out");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof TimeoutException);
+			Assert.assertTrue(e.getCause().getMessage(), e.getCause().getMessage().endsWith("polled"));
+		}
+	}
+
+	@Test
+	public void testCloseCancelsOutstandingOperations() throws Exception {
+		final Future<String> operation = tracker.track(new CountingPoll(Integer.MAX_VALUE),
+				System.currentTimeMillis() + TIMEOUT_MILLIS);
+		tracker.close();
+		Assert.assertTrue(operation.isCancelled());
+
+		// the tracker is started again for the next operation.
+		final Future<String> next = tracker.track(new CountingPoll(1), System.currentTimeMillis() + TIMEOUT_MILLIS);
+		Assert.assertEquals("done", next.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Completes on a given poll.
+	 */
+	private static class CountingPoll extends MicrosoftAzureOperationTracker.OperationPoll<String> {
+
+		private final AtomicInteger polls = new AtomicInteger();
+		private final int donePoll;
+
+		CountingPoll(final int donePoll) {
+			this.donePoll = donePoll;
+		}
+
+		@Override
+		protected String poll() {
+			setLastState("polled");
+			return polls.incrementAndGet() >= donePoll ? "done" : null;
+		}
+	}
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ ******************************************************************************/
+package org.cloudifysource.esc.driver.provisioning.privateEc2;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.Reservation;
+
+public class EC2StateWatcherTest {
+
+	private static final long INTERVAL_MILLIS = 50;
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	@Test
+	public void testConcurrentRequestsAreBatched() throws Exception {
+		final FakeEC2 fake = new FakeEC2(0, "i-1", "i-2", "i-3");
+		final EC2StateWatcher watcher = new EC2StateWatcher(fake.createProxy(), INTERVAL_MILLIS);
+		try {
+			final List<Future<Instance>> futures = new ArrayList<Future<Instance>>();
+			for (final String id : new String[] { "i-1", "i-2", "i-3", "i-4" }) {
+				futures.add(watcher.describeInstance(id));
+			}
+			Assert.assertEquals("i-1", futures.get(0).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getInstanceId());
+			Assert.assertEquals("i-2", futures.get(1).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getInstanceId());
+			Assert.assertEquals("i-3", futures.get(2).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getInstanceId());
+			// not registered yet.
+			Assert.assertNull(futures.get(3).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+			Assert.assertEquals(1, fake.describeCalls.get());
+		} finally {
+			watcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testThrottlingBacksOff() throws Exception {
+		final FakeEC2 fake = new FakeEC2(2, "i-1");
+		final EC2StateWatcher watcher = new EC2StateWatcher(fake.createProxy(), INTERVAL_MILLIS);
+		try {
+			final long start = System.currentTimeMillis();
+			final Instance instance = watcher.describeInstance("i-1").get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			Assert.assertEquals("i-1", instance.getInstanceId());
+			Assert.assertEquals(3, fake.describeCalls.get());
+			// the interval is doubled after each of the throttled rounds.
+			final long elapsed = System.currentTimeMillis() - start;
+			Assert.assertTrue("Elapsed: " + elapsed,
+					elapsed >= INTERVAL_MILLIS + 2 * INTERVAL_MILLIS + 4 * INTERVAL_MILLIS);
+		} finally {
+			watcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testTransientErrorsAreRetried() throws Exception {
+		final FakeEC2 fake = new FakeEC2(0, "i-1");
+		fake.errors.add(new AmazonClientException("Unable to execute HTTP request"));
+		fake.errors.add(createServiceException("Unavailable", ErrorType.Service, 503));
+		final EC2StateWatcher watcher = new EC2StateWatcher(fake.createProxy(), INTERVAL_MILLIS);
+		try {
+			final Instance instance = watcher.describeInstance("i-1").get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			Assert.assertEquals("i-1", instance.getInstanceId());
+			Assert.assertEquals(3, fake.describeCalls.get());
+		} finally {
+			watcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testRejectedIdFailsAlone() throws Exception {
+		final FakeEC2 fake = new FakeEC2(0, "i-1", "i-2");
+		fake.rejectedIds.add("bad-id");
+		final EC2StateWatcher watcher = new EC2StateWatcher(fake.createProxy(), INTERVAL_MILLIS);
+		try {
+			final Future<Instance> first = watcher.describeInstance("i-1");
+			final Future<Instance> rejected = watcher.describeInstance("bad-id");
+			final Future<Instance> second = watcher.describeInstance("i-2");
+			Assert.assertEquals("i-1", first.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getInstanceId());
+			Assert.assertEquals("i-2", second.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getInstanceId());
+			try {
+				rejected.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				Assert.fail("The rejected id was described");
+			} catch (final ExecutionException e) {
+				final AmazonServiceException cause = (AmazonServiceException) e.getCause();
+				Assert.assertEquals("InvalidInstanceID.Malformed", cause.getErrorCode());
+			}
+			// the batch, then each of its ids.
+			Assert.assertEquals(4, fake.describeCalls.get());
+		} finally {
+			watcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testShutdownCancelsPendingRequests() throws Exception {
+		final FakeEC2 fake = new FakeEC2(0, "i-1");
+		final EC2StateWatcher watcher = new EC2StateWatcher(fake.createProxy(), TIMEOUT_MILLIS);
+		final Future<Instance> future = watcher.describeInstance("i-1");
+		watcher.shutdown();
+		Assert.assertTrue(future.isCancelled());
+		Assert.assertEquals(0, fake.describeCalls.get());
+	}
+
+	private static AmazonServiceException createServiceException(final String errorCode, final ErrorType errorType,
+			final int statusCode) {
+		final AmazonServiceException e = new AmazonServiceException(errorCode);
+		e.setErrorCode(errorCode);
+		e.setErrorType(errorType);
+		e.setStatusCode(statusCode);
+		return e;
+	}
+
+	/**
+	 * Answers describeInstances for a fixed set of instances, after throttling a number of requests and throwing the
+	 * queued errors. Requests that include a rejected id are rejected as a whole, as EC2 does.
+	 */
+	private static class FakeEC2 implements InvocationHandler {
+
+		private final AtomicInteger describeCalls = new AtomicInteger();
+		private final AtomicInteger throttledCalls;
+		private final List<String> instanceIds = new ArrayList<String>();
+		private final Queue<RuntimeException> errors = new LinkedList<RuntimeException>();
+		private final List<String> rejectedIds = new ArrayList<String>();
+
+		FakeEC2(final int throttledCalls, final String... instanceIds) {
+			this.throttledCalls = new AtomicInteger(throttledCalls);
+			this.instanceIds.addAll(Arrays.asList(instanceIds));
+		}
+
+		AmazonEC2 createProxy() {
+			return (AmazonEC2) Proxy.newProxyInstance(AmazonEC2.class.getClassLoader(),
+					new Class<?>[] { AmazonEC2.class }, this);
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) {
+			if (!"describeInstances".equals(method.getName())) {
+				throw new UnsupportedOperationException(method.getName());
+			}
+			describeCalls.incrementAndGet();
+			if (throttledCalls.getAndDecrement() > 0) {
+				final AmazonServiceException e = new AmazonServiceException("Request limit exceeded.");
+				e.setErrorCode("RequestLimitExceeded");
+				throw e;
+			}
+			final RuntimeException error = errors.poll();
+			if (error != null) {
+				throw error;
+			}
+			final List<Instance> instances = new ArrayList<Instance>();
+			for (final Filter filter : ((DescribeInstancesRequest) args[0]).getFilters()) {
+				for (final String id : filter.getValues()) {
+					if (rejectedIds.contains(id)) {
+						throw createServiceException("InvalidInstanceID.Malformed", ErrorType.Client, 400);
+					}
+					if (instanceIds.contains(id)) {
+						instances.add(new Instance().withInstanceId(id));
+					}
+				}
+			}
+			return new DescribeInstancesResult().withReservations(new Reservation().withInstances(instances));
+		}
+	}
+}
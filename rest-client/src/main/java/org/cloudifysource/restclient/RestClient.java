@@ -64,6 +64,7 @@ import org.cloudifysource.dsl.rest.response.InstallServiceResponse;
 import org.cloudifysource.dsl.rest.response.InvokeInstanceCommandResponse;
 import org.cloudifysource.dsl.rest.response.InvokeServiceCommandResponse;
 import org.cloudifysource.dsl.rest.response.ListTemplatesResponse;
+import org.cloudifysource.dsl.rest.response.PollDeploymentEventsResponse;
 import org.cloudifysource.dsl.rest.response.Response;
 import org.cloudifysource.dsl.rest.response.ServiceDescription;
 import org.cloudifysource.dsl.rest.response.ShutdownManagementResponse;
@@ -99,6 +100,7 @@ public class RestClient {
 	private static final String INSTALL_APPLICATION_URL_FORMAT = "%s";
 	private static final String UPLOAD_URL_FORMAT = "%s";
 	private static final String GET_DEPLOYMENT_EVENTS_URL_FORMAT = "%s/events/?from=%s&to=%s";
+	private static final String POLL_DEPLOYMENT_EVENTS_URL_FORMAT = "%s/events/poll/?from=%s&timeoutSeconds=%s";
 	private static final String GET_SERVICE_DESCRIPTION_URL_FORMAT = "%s/service/%s/description";
 	private static final String GET_SERVICES_DESCRIPTION_URL_FORMAT = "%s/description";
 	private static final String GET_APPLICATION_DESCRIPTION_URL_FORMAT = "applications/%s/description";
@@ -331,6 +333,33 @@ public class RestClient {
 		});
 	}
 
+	/**
+	 * Waits for new life cycle events of a deployment. The server holds the request until events with an index of at
+	 * least {@code from} are available, the number of running instances of a service changes, or the timeout expires.
+	 * 
+	 * @param deploymentId
+	 *            The deployment id given at installation time.
+	 * @param from
+	 *            The index of the first requested event.
+	 * @param timeoutSeconds
+	 *            The maximum number of seconds the server may hold the request. 0 means return immediately.
+	 * @return The new events along with the number of running instances per service.
+	 * @throws RestClientException .
+	 */
+	public PollDeploymentEventsResponse pollDeploymentEvents(final String deploymentId, final int from,
+			final int timeoutSeconds) throws RestClientException {
+		validateDeploymentID(deploymentId, "pollDeploymentEvents(String,int,int)");
+		final String url = getFormattedUrl(
+				versionedDeploymentControllerUrl,
+				POLL_DEPLOYMENT_EVENTS_URL_FORMAT,
+				deploymentId,
+				String.valueOf(from),
+				String.valueOf(timeoutSeconds));
+		log(Level.FINE, "[pollDeploymentEvents] - sending GET request to REST [" + url + "]");
+		return executor.get(url, new TypeReference<Response<PollDeploymentEventsResponse>>() {
+		});
+	}
+
 	private void validateDeploymentID(final String deploymentId, final String methodName) throws RestClientException {
 		if (deploymentId == null) {
 			logger.warning("[" + methodName + "] - deployment ID is missing.");
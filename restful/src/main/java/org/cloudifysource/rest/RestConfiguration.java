@@ -13,7 +13,6 @@
 package org.cloudifysource.rest;
 
 import java.io.File;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -25,6 +24,8 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.cloudifysource.domain.cloud.Cloud;
 import org.cloudifysource.domain.cloud.compute.ComputeTemplate;
+import org.cloudifysource.rest.events.cache.IndexedEventsBuffer;
+import org.cloudifysource.rest.util.LifecycleEventsContainer;
 import org.cloudifysource.rest.util.RestPollingRunnable;
 import org.cloudifysource.security.CustomPermissionEvaluator;
 import org.cloudifysource.utilitydomain.data.CloudConfigurationHolder;
@@ -51,11 +52,12 @@ public class RestConfiguration {
     private File restTempFolder;
 	private CustomPermissionEvaluator permissionEvaluator;
 	private File additionalTemplatesFolder;
+	private int eventsCapacity = IndexedEventsBuffer.DEFAULT_CAPACITY;
 
 	/**
      * A set containing all of the executed lifecycle events. used to avoid duplicate prints.
      */
-    private final Set<String> eventsSet = new HashSet<String>();
+    private final Set<String> eventsSet = LifecycleEventsContainer.createEventsSet();
     private final Map<UUID, RestPollingRunnable> lifecyclePollingThreadContainer =
             new ConcurrentHashMap<UUID, RestPollingRunnable>();
     private final ScheduledExecutorService scheduledExecutor = Executors
@@ -195,4 +197,12 @@ public class RestConfiguration {
 		this.additionalTemplatesFolder = additionalTemplatesFolder;
 	}
 
+	public int getEventsCapacity() {
+		return eventsCapacity;
+	}
+
+	public void setEventsCapacity(final int eventsCapacity) {
+		this.eventsCapacity = eventsCapacity;
+	}
+
 }
@@ -28,6 +28,7 @@ import org.cloudifysource.dsl.internal.CloudifyMessageKeys;
 import org.cloudifysource.dsl.internal.DSLException;
 import org.cloudifysource.dsl.internal.ServiceReader;
 import org.cloudifysource.rest.controllers.RestErrorException;
+import org.cloudifysource.rest.events.cache.IndexedEventsBuffer;
 import org.cloudifysource.rest.util.RestUtils;
 import org.cloudifysource.security.CustomPermissionEvaluator;
 import org.cloudifysource.utilitydomain.data.CloudConfigurationHolder;
@@ -65,6 +66,9 @@ public class RestConfigurationFactoryBean implements FactoryBean<RestConfigurati
 	
 	@Value("${restful.temporaryFolder}")
 	private String temporaryFolder;
+
+	@Value("${restful.eventsCapacity:" + IndexedEventsBuffer.DEFAULT_CAPACITY + "}")
+	private int eventsCapacity;
 	
     @Override
     public RestConfiguration getObject() throws Exception {
@@ -82,6 +86,7 @@ public class RestConfigurationFactoryBean implements FactoryBean<RestConfigurati
         config.setGigaSpace(gigaSpace);
         config.setAdmin(admin);
         config.setPermissionEvaluator(permissionEvaluator);
+        config.setEventsCapacity(eventsCapacity);
         Cloud cloud = readCloud();
         if (cloud != null) {
         	config.setCloud(cloud);
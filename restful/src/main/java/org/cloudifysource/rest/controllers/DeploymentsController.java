@@ -30,12 +30,14 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import net.jini.core.discovery.LookupLocator;
 
@@ -75,10 +77,13 @@ import org.cloudifysource.dsl.rest.response.InstallApplicationResponse;
 import org.cloudifysource.dsl.rest.response.InstallServiceResponse;
 import org.cloudifysource.dsl.rest.response.InvokeInstanceCommandResponse;
 import org.cloudifysource.dsl.rest.response.InvokeServiceCommandResponse;
+import org.cloudifysource.dsl.rest.response.MetricHistoryData;
+import org.cloudifysource.dsl.rest.response.PollDeploymentEventsResponse;
 import org.cloudifysource.dsl.rest.response.ServiceDescription;
 import org.cloudifysource.dsl.rest.response.ServiceDetails;
 import org.cloudifysource.dsl.rest.response.ServiceInstanceDetails;
 import org.cloudifysource.dsl.rest.response.ServiceInstanceMetricsData;
+import org.cloudifysource.dsl.rest.response.ServiceInstanceMetricsHistoryResponse;
 import org.cloudifysource.dsl.rest.response.ServiceInstanceMetricsResponse;
 import org.cloudifysource.dsl.rest.response.ServiceMetricsResponse;
 import org.cloudifysource.dsl.rest.response.UninstallApplicationResponse;
@@ -187,6 +192,9 @@ public class DeploymentsController extends BaseRestController {
 	private static final Logger logger = Logger.getLogger(DeploymentsController.class.getName());
 	private static final int MAX_NUMBER_OF_EVENTS = 100;
 	private static final int REFRESH_INTERVAL_MILLIS = 500;
+	// held requests occupy a connector thread, keep them short and few.
+	private static final int MAX_POLL_TIMEOUT_SECONDS = 10;
+	private static final int MAX_HELD_POLL_REQUESTS = 20;
 	private static final long WAIT_FOR_PU_SECONDS = 30;
 	private static final int DEPLOYMENT_TIMEOUT_SECONDS = 60;
 	private static final int WAIT_FOR_MANAGED_TIMEOUT_SECONDS = 10;
@@ -212,6 +220,7 @@ public class DeploymentsController extends BaseRestController {
 	private Admin admin;
 	private CustomPermissionEvaluator permissionEvaluator;
 	private final ExecutorService serviceUndeployExecutor = Executors.newFixedThreadPool(10);
+	private final Semaphore heldPollRequests = new Semaphore(MAX_HELD_POLL_REQUESTS);
 	private EventsCache eventsCache;
 	private ControllerHelper controllerHelper;
 	private File extractedFodler;
@@ -233,12 +242,21 @@ public class DeploymentsController extends BaseRestController {
 		repo.createUploadDir();
 		this.admin = restConfig.getAdmin();
 		this.eventsCache = new EventsCache(admin);
+		this.eventsCache.setEventsCapacity(restConfig.getEventsCapacity());
 		this.controllerHelper = new ControllerHelper(gigaSpace, admin);
 		this.extractedFodler = new File(restConfig.getRestTempFolder(), CloudifyConstants.EXTRACTED_FILES_FOLDER_NAME);
 		extractedFodler.mkdirs();
 		extractedFodler.deleteOnExit();
 	}
 
+	/**
+	 * terminate all running threads.
+	 */
+	@PreDestroy
+	public void destroy() {
+		eventsCache.shutdown();
+	}
+
 	/**
 	 * Provides various meta data about the service.
 	 * 
@@ -365,12 +383,14 @@ public class DeploymentsController extends BaseRestController {
 
 		// we don't want another request to modify our object during this calculation.
 		synchronized (value.getMutex()) {
-			if (!EventsUtils.eventsPresent(value.getEvents(), from, actualTo)) {
+			// truncated events are answered with a marker, only newer events may be found by a refresh.
+			if (value.getLastEventIndex() < actualTo) {
 				// enforce time restriction on refresh operations.
 				long now = System.currentTimeMillis();
 				if (now - value.getLastRefreshedTimestamp() > REFRESH_INTERVAL_MILLIS) {
 					// refresh the cache for this deployment.
 					eventsCache.refresh(key);
+					value.signalEventsChanged();
 				}
 			} else {
 				logger.fine(EventsUtils.getThreadId() + " Found all relevant events in cache.");
@@ -378,7 +398,7 @@ public class DeploymentsController extends BaseRestController {
 
 			// return the events. this MAY or MAY NOT be the complete set of events requested.
 			// request for specific events is treated as best effort. no guarantees all events are returned.
-            DeploymentEvents deploymentEvents = EventsUtils.extractDesiredEvents(value.getEvents(), from, actualTo);
+            DeploymentEvents deploymentEvents = value.getEvents().extract(from, actualTo);
             logger.finest("Returning events " + deploymentEvents + " for deployment id " + deploymentId + " to the " +
                     "client");
             return deploymentEvents;
@@ -423,6 +443,109 @@ public class DeploymentsController extends BaseRestController {
         }
 	}
 
+	/**
+	 * Long-poll for deployment events. The request is held by the server until events with an index of at least
+	 * {@code from} exist, the number of running instances of one of the deployment's services changes, or the timeout
+	 * expires, whichever comes first. Container logs are refreshed on behalf of all waiting clients at most once every
+	 * refresh interval, so idle watchers do not generate any additional load.
+	 * <br></br>
+	 * Servlet 2.5 has no asynchronous requests, so a held request occupies a connector thread. The timeout is therefore
+	 * capped at {@value #MAX_POLL_TIMEOUT_SECONDS} seconds, and once {@value #MAX_HELD_POLL_REQUESTS} requests are held
+	 * further requests are answered immediately.
+	 * 
+	 * @param deploymentId
+	 *            The deployment id given at install time.
+	 * @param from
+	 *            The index of the first requested event.
+	 * @param timeoutSeconds
+	 *            The maximum number of seconds to hold the request. 0 returns immediately.
+	 *            Values above {@value #MAX_POLL_TIMEOUT_SECONDS} are capped.
+	 * @return {@link PollDeploymentEventsResponse} - The new events and the running instances of every service.
+	 * @throws Throwable
+	 *             Thrown in case of any error.
+	 */
+	@RequestMapping(value = "{deploymentId}/events/poll", method = RequestMethod.GET)
+	public PollDeploymentEventsResponse pollDeploymentEvents(@PathVariable final String deploymentId,
+			@RequestParam(required = false, defaultValue = "1") final int from,
+			@RequestParam(required = false, defaultValue = "30") final int timeoutSeconds)
+			throws Throwable {
+
+		verifyDeploymentIdExists(deploymentId);
+
+		final EventsCacheKey key = new EventsCacheKey(deploymentId);
+		logger.fine(EventsUtils.getThreadId() + " Received poll request for events from [" + from + "] . key : "
+				+ key);
+		EventsCacheValue value;
+		try {
+			value = eventsCache.get(key);
+		} catch (final ExecutionException e) {
+			throw e.getCause();
+		}
+
+		final boolean hold = timeoutSeconds > 0 && heldPollRequests.tryAcquire();
+		if (timeoutSeconds > 0 && !hold) {
+			logger.fine(EventsUtils.getThreadId() + " Too many held poll requests, answering " + key
+					+ " immediately");
+		}
+		try {
+			final long deadline = System.currentTimeMillis()
+					+ (hold ? TimeUnit.SECONDS.toMillis(Math.min(timeoutSeconds, MAX_POLL_TIMEOUT_SECONDS)) : 0);
+			final ApplicationDescriptionFactory appDescriptionFactory =
+					new ApplicationDescriptionFactory(restConfig.getAdmin());
+			// instance changes are only looked for while there are no new events, so they are counted lazily.
+			Map<String, Integer> initialRunningInstances = null;
+
+			synchronized (value.getMutex()) {
+				while (true) {
+					long now = System.currentTimeMillis();
+					if (value.getLastEventIndex() < from
+							&& now - value.getLastRefreshedTimestamp() > REFRESH_INTERVAL_MILLIS) {
+						eventsCache.refresh(key);
+					}
+
+					Map<String, Integer> runningInstances = null;
+					final long remaining = deadline - System.currentTimeMillis();
+					if (value.getLastEventIndex() < from && remaining > 0) {
+						runningInstances = getRunningInstancesPerService(value, appDescriptionFactory);
+						if (initialRunningInstances == null) {
+							initialRunningInstances = runningInstances;
+						}
+						if (runningInstances.equals(initialRunningInstances)) {
+							// woken up early when events are added to the cache.
+							value.getMutex().wait(Math.min(remaining, REFRESH_INTERVAL_MILLIS));
+							continue;
+						}
+					}
+
+					final PollDeploymentEventsResponse response = new PollDeploymentEventsResponse();
+					response.setEvents(value.getEvents().extract(from, from + MAX_NUMBER_OF_EVENTS));
+					response.setRunningInstances(runningInstances != null ? runningInstances
+							: getRunningInstancesPerService(value, appDescriptionFactory));
+					logger.finest("Returning poll response " + response + " for deployment id " + deploymentId);
+					return response;
+				}
+			}
+		} finally {
+			if (hold) {
+				heldPollRequests.release();
+			}
+		}
+	}
+
+	private Map<String, Integer> getRunningInstancesPerService(final EventsCacheValue value,
+			final ApplicationDescriptionFactory appDescriptionFactory) {
+		final List<ProcessingUnit> processingUnits;
+		synchronized (value.getMutex()) {
+			processingUnits = new ArrayList<ProcessingUnit>(value.getProcessingUnits());
+		}
+		final Map<String, Integer> runningInstances = new HashMap<String, Integer>();
+		for (final ProcessingUnit pu : processingUnits) {
+			final String serviceName = ServiceUtils.getFullServiceName(pu.getName()).getServiceName();
+			runningInstances.put(serviceName, appDescriptionFactory.getNumberOfServiceInstances(pu));
+		}
+		return runningInstances;
+	}
+
 	private void verifyDeploymentIdExists(final String deploymentId) 
 			throws ResourceNotFoundException {
 		if (logger.isLoggable(Level.FINE)) {
@@ -1553,20 +1676,22 @@ public class DeploymentsController extends BaseRestController {
 		}
 	}
 
+	/**
+	 * The services of an application may be deployed concurrently, so the cache value of a deployment is created
+	 * atomically and updated under its own mutex. Other deployments are not held back.
+	 */
 	private void populateEventsCache(final String deploymentId,
 			                         final ProcessingUnit processingUnit) {
 		EventsCacheKey key = new EventsCacheKey(deploymentId);
 		EventsCacheValue value = eventsCache.getIfExists(key);
 		if (value == null) {
-			// first time populating the cache with this deployment id.
-			value = new EventsCacheValue();
-			value.getProcessingUnits().add(processingUnit);
-			eventsCache.put(key, value);
-		} else {
-			// a value already exists for this deployment id.
-			// just add the reference for the current pu.
-            logger.fine("Adding processing unit " + processingUnit.getName() + " to events cache value with " +
-                    "deployment id " + deploymentId);
+			// first time populating the cache with this deployment id, unless another service got there first.
+			value = eventsCache.put(key, new EventsCacheValue(eventsCache.getEventsCapacity()));
+		}
+		// just add the reference for the current pu.
+		logger.fine("Adding processing unit " + processingUnit.getName() + " to events cache value with "
+				+ "deployment id " + deploymentId);
+		synchronized (value.getMutex()) {
 			value.getProcessingUnits().add(processingUnit);
 		}
 		
@@ -1575,7 +1700,9 @@ public class DeploymentsController extends BaseRestController {
 		// will exist only if this is uninstall process.
         Set<GridServiceContainer> containersForDeployment = provider.getContainersForDeployment(deploymentId);
         logger.fine("Adding containers " + containersForDeployment + " for events cache key with deployment id " + deploymentId);
-        value.getContainers().addAll(containersForDeployment);
+		synchronized (value.getMutex()) {
+			value.getContainers().addAll(containersForDeployment);
+		}
 	}
 
 	private String getEffectiveAuthGroups(final String authGroups) {
@@ -2226,6 +2353,91 @@ public class DeploymentsController extends BaseRestController {
 		return simr;
 	}
 
+	/**
+	 * Retrieves the metrics history kept by the USM of a service instance. The history is kept in memory by the USM,
+	 * at a resolution that decreases with the age of the samples.
+	 * 
+	 * @param appName
+	 *            The application name.
+	 * @param serviceName
+	 *            The service name.
+	 * @param instanceId
+	 *            The instance id.
+	 * @param metric
+	 *            The metric name, all metrics are returned if not set.
+	 * @param from
+	 *            The start of the time range, in milliseconds since the epoch. Defaults to one hour before 'to'.
+	 * @param to
+	 *            The end of the time range, in milliseconds since the epoch. Defaults to the current time.
+	 * @param step
+	 *            The requested interval between points, in milliseconds. It is rounded up to the resolution of the
+	 *            history that covers the time range. Defaults to one minute.
+	 * @return The metrics history of the service instance.
+	 * @throws ResourceNotFoundException .
+	 * @throws RestErrorException
+	 *             if the history could not be retrieved from the service instance.
+	 */
+	@RequestMapping(value = "{appName}/service/{serviceName}/instances/{instanceId}/metrics/history",
+			method = RequestMethod.GET)
+	public ServiceInstanceMetricsHistoryResponse getServiceInstanceMetricsHistory(
+			@PathVariable final String appName,
+			@PathVariable final String serviceName,
+			@PathVariable final Integer instanceId,
+			@RequestParam(required = false) final String metric,
+			@RequestParam(required = false) final Long from,
+			@RequestParam(required = false) final Long to,
+			@RequestParam(required = false) final Long step)
+			throws ResourceNotFoundException, RestErrorException {
+
+		final ProcessingUnitInstance serviceInstance =
+				controllerHelper.getServiceInstance(appName, serviceName, instanceId);
+		final String absolutePuName = ServiceUtils.getAbsolutePUName(appName, serviceName);
+
+		final List<String> parameters = Arrays.asList(
+				metric == null ? "" : metric,
+				from == null ? "" : from.toString(),
+				to == null ? "" : to.toString(),
+				step == null ? "" : step.toString());
+		final Map<String, Object> invocationArgs = preProcessInvocationRequest(
+				CloudifyConstants.BUILT_IN_COMMAND_PREFIX + CloudifyConstants.BUILT_IN_COMMAND_METRICS_HISTORY,
+				parameters);
+
+		final Map<?, ?> invocationResult;
+		try {
+			final Future<?> future = ((DefaultProcessingUnitInstance) serviceInstance)
+					.invoke(CloudifyConstants.INVOCATION_PARAMETER_BEAN_NAME_USM, invocationArgs);
+			invocationResult = (Map<?, ?>) future.get();
+		} catch (final Exception e) {
+			logger.log(Level.SEVERE, "Failed to retrieve the metrics history of service instance "
+					+ absolutePuName + ":" + instanceId, e);
+			throw new RestErrorException(
+					ResponseConstants.FAILED_TO_INVOKE_INSTANCE,
+					absolutePuName, Integer.toString(instanceId),
+					e.getMessage());
+		}
+
+		final Object status = invocationResult.get(CloudifyConstants.INVOCATION_RESPONSE_STATUS);
+		if (!Boolean.TRUE.equals(status)) {
+			final Object error = invocationResult.get(CloudifyConstants.INVOCATION_RESPONSE_EXCEPTION);
+			throw new RestErrorException(
+					ResponseConstants.FAILED_TO_INVOKE_INSTANCE,
+					absolutePuName, Integer.toString(instanceId),
+					error == null ? String.valueOf(invocationResult.get(CloudifyConstants.INVOCATION_RESPONSE_RESULT))
+							: error.toString());
+		}
+
+		@SuppressWarnings("unchecked")
+		final Map<String, MetricHistoryData> metrics =
+				(Map<String, MetricHistoryData>) invocationResult.get(CloudifyConstants.INVOCATION_RESPONSE_RESULT);
+
+		final ServiceInstanceMetricsHistoryResponse response = new ServiceInstanceMetricsHistoryResponse();
+		response.setAppName(appName);
+		response.setServiceName(serviceName);
+		response.setInstanceId(instanceId);
+		response.setMetrics(metrics);
+		return response;
+	}
+
 	/**
 	 * 
 	 * @param appName
@@ -40,7 +40,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -232,7 +231,7 @@ public class ServiceController implements ServiceDetailsProvider {
 	/**
 	 * A set containing all of the executed lifecycle events. used to avoid duplicate prints.
 	 */
-	private final Set<String> eventsSet = new HashSet<String>();
+	private final Set<String> eventsSet = LifecycleEventsContainer.createEventsSet();
 
 	@Autowired
 	private RestConfiguration restConfig;
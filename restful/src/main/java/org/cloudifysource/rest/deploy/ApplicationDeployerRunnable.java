@@ -18,6 +18,7 @@ package org.cloudifysource.rest.deploy;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
@@ -99,102 +100,110 @@ public class ApplicationDeployerRunnable implements Runnable {
 
 		logger.info("Installing services for application: " + applicationName 
 				+ ". Async install: " + async + ". Number of services: " + this.services.size());
-		
-		for (final Service service : services) {			
-			final String serviceName = service.getName();
-			final String absolutePUName = ServiceUtils.getAbsolutePUName(applicationName, serviceName);
-			logger.info("Installing service: " + absolutePUName);
-
-			service.getCustomProperties().put("usmJarPath", Environment.getHomeDirectory() + "/lib/platform/usm");
-			boolean found = false;
-			try {
-				final File serviceDir = new File(appDir, serviceName);
-				File servicePropertiesFile = DSLUtils.getPropertiesFile(serviceDir);
-				// merge service properties with application properties and overrides files 
-				// merge into service's properties file
-				PropertiesOverridesMerger merger = new PropertiesOverridesMerger(
-						servicePropertiesFile, 
-						applicationPropertiesFile, 
-						servicePropertiesFile, 
-						applicationOverridesFile);
-				merger.merge();
-				
-				// Pack the folder and name it absolutePuName
-				final File packedFile = Packager.pack(service, 
-						serviceDir, 
-						absolutePUName, 
-						null /* additionalServiceFiles */);
-				appFile.delete();
-				packedFile.deleteOnExit();
-
-				// Deployment will be done using the service's absolute PU name.
-				final InstallServiceRequest installServiceReq = createInstallServiceRequest();
-				
-				final ServiceApplicationDependentProperties serviceProps = new ServiceApplicationDependentProperties();
-				serviceProps.setDependsOn(service.getDependsOn());
-						
-				controller.installServiceInternal(
-						applicationName, 
-						serviceName,
-						installServiceReq, 
-						deploymentID,
-						serviceProps,
-						service,
-						packedFile);
-				try {
-					FileUtils.deleteDirectory(packedFile.getParentFile());
-				} catch (final IOException ioe) {
-					// sometimes this delete fails. Not sure why. Maybe deploy
-					// is async?
-					logger.warning("Failed to delete temporary directory: " + packedFile.getParentFile());
-				}
 
-				if (!async) {
-					logger.info("Waiting for instance of service: " + serviceName 
-							+ " of application: "	+ applicationName);
-					final boolean instanceFound = controller
-							.waitForServiceInstance(applicationName,
-									serviceName,
-									SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES,
-									TimeUnit.MINUTES);
-					if (!instanceFound) {
-						throw new TimeoutException(
-								"Service "
-										+ serviceName
-										+ " of application "
+		final ServiceInstallationScheduler scheduler = new ServiceInstallationScheduler(applicationName, services,
+				ServiceInstallationScheduler.DEFAULT_MAX_CONCURRENT_INSTALLATIONS);
+		try {
+			scheduler.installAll(new ServiceInstallationScheduler.ServiceInstallation() {
+				@Override
+				public void install(final Service service) throws Exception {
+					try {
+						installService(service, async);
+					} catch (final Exception e) {
+						logger.log(
+								Level.SEVERE,
+								"Failed to install service: "
+										+ service.getName()
+										+ " of application: "
 										+ applicationName
-										+ " was installed, but no instance of the service has started after "
-										+ SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES
-										+ " minutes.");
+										+ ". Application installation will halt. "
+										+ "Some services may already have started, and should be shutdown manually. "
+										+ "Error was: " + e.getMessage(), e);
+						throw e;
 					}
-					logger.info("Found instance of: " + serviceName);
 				}
+			});
+		} catch (final ExecutionException e) {
+			// the failure was already logged by the failing service installation.
+			return;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.warning("Interrupted while installing application " + applicationName
+					+ ". Some services may have been installed!");
+			return;
+		}
+		FileUtils.deleteDirectory(appDir);
+	}
+
+	private void installService(final Service service, final boolean async) throws Exception {
+		final String serviceName = service.getName();
+		final String absolutePUName = ServiceUtils.getAbsolutePUName(applicationName, serviceName);
+		logger.info("Installing service: " + absolutePUName);
+
+		service.getCustomProperties().put("usmJarPath", Environment.getHomeDirectory() + "/lib/platform/usm");
+		final File serviceDir = new File(appDir, serviceName);
+		File servicePropertiesFile = DSLUtils.getPropertiesFile(serviceDir);
+		// merge service properties with application properties and overrides files 
+		// merge into service's properties file
+		PropertiesOverridesMerger merger = new PropertiesOverridesMerger(
+				servicePropertiesFile, 
+				applicationPropertiesFile, 
+				servicePropertiesFile, 
+				applicationOverridesFile);
+		merger.merge();
+
+		// Pack the folder and name it absolutePuName
+		final File packedFile = Packager.pack(service, 
+				serviceDir, 
+				absolutePUName, 
+				null /* additionalServiceFiles */);
+		appFile.delete();
+		packedFile.deleteOnExit();
+
+		// Deployment will be done using the service's absolute PU name.
+		final InstallServiceRequest installServiceReq = createInstallServiceRequest();
+
+		final ServiceApplicationDependentProperties serviceProps = new ServiceApplicationDependentProperties();
+		serviceProps.setDependsOn(service.getDependsOn());
+
+		controller.installServiceInternal(
+				applicationName, 
+				serviceName,
+				installServiceReq, 
+				deploymentID,
+				serviceProps,
+				service,
+				packedFile);
+		try {
+			FileUtils.deleteDirectory(packedFile.getParentFile());
+		} catch (final IOException ioe) {
+			// sometimes this delete fails. Not sure why. Maybe deploy
+			// is async?
+			logger.warning("Failed to delete temporary directory: " + packedFile.getParentFile());
+		}
 
-				found = true;
-				logger.fine("service " + service + " deployed.");
-			} catch (final Exception e) {
-				logger.log(
-						Level.SEVERE,
-						"Failed to install service: "
+		if (!async) {
+			logger.info("Waiting for instance of service: " + serviceName 
+					+ " of application: "	+ applicationName);
+			final boolean instanceFound = controller
+					.waitForServiceInstance(applicationName,
+							serviceName,
+							SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES,
+							TimeUnit.MINUTES);
+			if (!instanceFound) {
+				throw new TimeoutException(
+						"Service "
 								+ serviceName
-								+ " of application: "
+								+ " of application "
 								+ applicationName
-								+ ". Application installation will halt. "
-								+ "Some services may already have started, and should be shutdown manually. Error was: "
-								+ e.getMessage(), e);
-				return;
-			}
-
-			if (!found) {
-				logger.severe("Failed to find an instance of service: "
-						+ serviceName
-						+ " while installing application "
-						+ applicationName
-						+ ". Application installation will stop. Some services may have been installed!");
-				return;
+								+ " was installed, but no instance of the service has started after "
+								+ SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES
+								+ " minutes.");
 			}
+			logger.info("Found instance of: " + serviceName);
 		}
-		FileUtils.deleteDirectory(appDir);
+
+		logger.fine("service " + service + " deployed.");
 	}
 
 	InstallServiceRequest createInstallServiceRequest() {
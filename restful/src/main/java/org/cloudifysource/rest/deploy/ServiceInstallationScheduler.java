@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.deploy;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudifysource.domain.Service;
+
+/**
+ * Installs the services of an application concurrently, according to their dependencies.
+ * A service is installed as soon as all the services it depends on were installed, so independent branches of the
+ * dependency graph are installed side by side, up to a maximal number of concurrent installations.
+ * Dependencies on services that are not part of the installed list are ignored.
+ *
+ * Once an installation fails, no new installations are started. Installations that are already running are allowed
+ * to complete, and the first failure is then reported to the caller.
+ */
+public class ServiceInstallationScheduler {
+
+	/**
+	 * Default number of services installed at the same time.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_INSTALLATIONS = 5;
+
+	/**
+	 * The installation logic of a single service.
+	 */
+	public interface ServiceInstallation {
+
+		/**
+		 * Installs the service. Returns only once the service is ready for its dependents to be installed.
+		 * @param service
+		 * 		the service to install.
+		 * @throws Exception
+		 * 		if the installation failed.
+		 */
+		void install(final Service service) throws Exception;
+	}
+
+	private final String applicationName;
+	private final List<Service> services;
+	private final int maxConcurrentInstallations;
+
+	/**
+	 * Constructor.
+	 * @param applicationName
+	 * 		the application name, used for naming the installation threads.
+	 * @param services
+	 * 		the services to install, ordered by their dependencies.
+	 * 		When more than one service may be installed, the one that appears first is installed first.
+	 * @param maxConcurrentInstallations
+	 * 		the maximal number of services installed at the same time.
+	 */
+	public ServiceInstallationScheduler(final String applicationName, final List<Service> services,
+			final int maxConcurrentInstallations) {
+		if (maxConcurrentInstallations <= 0) {
+			throw new IllegalArgumentException("Max concurrent installations must be positive, got "
+					+ maxConcurrentInstallations);
+		}
+		this.applicationName = applicationName;
+		this.services = services;
+		this.maxConcurrentInstallations = maxConcurrentInstallations;
+	}
+
+	/**
+	 * Installs all services, blocking until the installation completes or fails.
+	 * @param installation
+	 * 		the installation logic, invoked once per service from the installation threads.
+	 * @throws ExecutionException
+	 * 		if the installation of a service failed. The cause is the first failure encountered.
+	 * @throws InterruptedException
+	 * 		if the calling thread was interrupted while waiting for the installations.
+	 */
+	public void installAll(final ServiceInstallation installation)
+			throws ExecutionException, InterruptedException {
+		if (services.isEmpty()) {
+			return;
+		}
+
+		final Map<String, Integer> positions = new HashMap<String, Integer>();
+		for (int i = 0; i < services.size(); i++) {
+			positions.put(services.get(i).getName(), i);
+		}
+
+		// the number of not yet installed dependencies of every service, and the services depending on it.
+		final int[] pendingDependencies = new int[services.size()];
+		final Map<String, List<Integer>> dependents = new HashMap<String, List<Integer>>();
+		// ready services ordered by their position, so the original order is kept where the graph allows it.
+		final TreeMap<Integer, Service> ready = new TreeMap<Integer, Service>();
+		for (int i = 0; i < services.size(); i++) {
+			final Service service = services.get(i);
+			final Set<String> dependencies = new HashSet<String>();
+			if (service.getDependsOn() != null) {
+				for (final String dependency : service.getDependsOn()) {
+					if (positions.containsKey(dependency) && dependencies.add(dependency)) {
+						List<Integer> serviceDependents = dependents.get(dependency);
+						if (serviceDependents == null) {
+							serviceDependents = new LinkedList<Integer>();
+							dependents.put(dependency, serviceDependents);
+						}
+						serviceDependents.add(i);
+					}
+				}
+			}
+			pendingDependencies[i] = dependencies.size();
+			if (dependencies.isEmpty()) {
+				ready.put(i, service);
+			}
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(maxConcurrentInstallations, services.size()), new ThreadFactory() {
+					private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+					@Override
+					public Thread newThread(final Runnable r) {
+						final Thread thread = new Thread(r, "ServiceInstaller-" + applicationName + "-"
+								+ threadNumber.getAndIncrement());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		final CompletionService<Service> completionService = new ExecutorCompletionService<Service>(executor);
+
+		Throwable failure = null;
+		int running = 0;
+		int installed = 0;
+		try {
+			while (true) {
+				while (failure == null && running < maxConcurrentInstallations && !ready.isEmpty()) {
+					final Service service = ready.remove(ready.firstKey());
+					completionService.submit(new Callable<Service>() {
+						@Override
+						public Service call() throws Exception {
+							installation.install(service);
+							return service;
+						}
+					});
+					running++;
+				}
+				if (running == 0) {
+					break;
+				}
+
+				final Future<Service> future = completionService.take();
+				running--;
+				try {
+					final Service service = future.get();
+					installed++;
+					final List<Integer> serviceDependents = dependents.get(service.getName());
+					if (serviceDependents != null) {
+						for (final Integer dependent : serviceDependents) {
+							if (--pendingDependencies[dependent] == 0) {
+								ready.put(dependent, services.get(dependent));
+							}
+						}
+					}
+				} catch (final ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		if (failure != null) {
+			throw new ExecutionException(failure);
+		}
+		if (installed < services.size()) {
+			// can only happen if the services contain a dependency cycle.
+			throw new ExecutionException(new IllegalStateException("Only " + installed + " out of "
+					+ services.size() + " services of application " + applicationName
+					+ " could be installed. Check the services dependencies for cycles."));
+		}
+	}
+}
@@ -41,6 +41,7 @@ import org.cloudifysource.dsl.rest.response.GetTemplateResponse;
 import org.cloudifysource.dsl.rest.response.InstallApplicationResponse;
 import org.cloudifysource.dsl.rest.response.InstallServiceResponse;
 import org.cloudifysource.dsl.rest.response.ListTemplatesResponse;
+import org.cloudifysource.dsl.rest.response.PollDeploymentEventsResponse;
 import org.cloudifysource.dsl.rest.response.Response;
 import org.cloudifysource.dsl.rest.response.ServiceDescription;
 import org.cloudifysource.dsl.rest.response.ServiceDetails;
@@ -161,6 +162,11 @@ public class RESTResposneExampleGenerator implements IDocExampleGenerator {
 		} else if (DeploymentEvents.class.equals(clazz)) {
 			example = new DeploymentEvents();
 			((DeploymentEvents) example).setEvents(RESTExamples.getEvents());
+		} else if (PollDeploymentEventsResponse.class.equals(clazz)) {
+			PollDeploymentEventsResponse pollResponse = new PollDeploymentEventsResponse();
+			pollResponse.getEvents().setEvents(RESTExamples.getEvents());
+			pollResponse.getRunningInstances().put(RESTExamples.getServiceName(), RESTExamples.getNumberOfInstances());
+			example = pollResponse;
 		} else if (ApplicationDescription.class.equals(clazz)) {
 			ApplicationDescription applicationDescription = new ApplicationDescription();
 			applicationDescription.setApplicationName(RESTExamples.getAppName());
@@ -76,6 +76,14 @@ public class LogEntryMatcherProvider {
         }
     }
 
+    /**
+     * Removes the matcher of a single container.
+     * @param key The key of the matcher.
+     */
+    public void remove(final LogEntryMatcherProviderKey key) {
+        matcherCache.asMap().remove(key);
+    }
+
     /**
      * Retrieves a matcher for the given key.
      * @param key The key.
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.events.cache;
+
+import com.gigaspaces.log.LogEntries;
+import com.gigaspaces.log.LogEntry;
+import com.gigaspaces.log.LogEntryMatcher;
+import org.cloudifysource.dsl.rest.response.DeploymentEvent;
+import org.cloudifysource.rest.events.EventsUtils;
+import org.cloudifysource.rest.events.LogEntryMatcherProvider;
+import org.cloudifysource.rest.events.LogEntryMatcherProviderKey;
+import org.openspaces.admin.gsc.GridServiceContainer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Retrieves container logs for the events cache.
+ * <br/><br/>
+ *
+ * Log retrieval from the containers of a deployment is executed concurrently on a bounded thread pool.
+ * Every harvest waits for the containers up to a deadline. Containers that did not respond in time are skipped
+ * for the current harvest, and their pending result is collected by a later harvest.
+ * A container is never queried again while a previous request to it is still in flight,
+ * since the continuous matcher used for it can only serve one request at a time.
+ * Requests to containers that are no longer part of the deployment, or are no longer discovered, are discarded.
+ * The matchers of undiscovered containers are kept, so their logs are not read from the start once rediscovered.
+ * <br/><br/>
+ *
+ * Harvested events are returned ordered by the timestamp of the originating log entry.
+ */
+public class ContainerLogsHarvester {
+
+    private static final Logger logger = Logger.getLogger(ContainerLogsHarvester.class.getName());
+
+    private static final int DEFAULT_POOL_SIZE = 20;
+    private static final long DEFAULT_CONTAINER_TIMEOUT_MILLIS = 5000;
+
+    private final LogEntryMatcherProvider matcherProvider;
+    private final ExecutorService executor;
+    private final ConcurrentMap<LogEntryMatcherProviderKey, Future<LogEntries>> pendingRequests =
+            new ConcurrentHashMap<LogEntryMatcherProviderKey, Future<LogEntries>>();
+    private long containerTimeoutMillis = DEFAULT_CONTAINER_TIMEOUT_MILLIS;
+
+    public ContainerLogsHarvester(final LogEntryMatcherProvider matcherProvider) {
+        this(matcherProvider, DEFAULT_POOL_SIZE);
+    }
+
+    public ContainerLogsHarvester(final LogEntryMatcherProvider matcherProvider, final int poolSize) {
+        this.matcherProvider = matcherProvider;
+        this.executor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r,
+                        "EventsLogsHarvester-"
+                                + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void setContainerTimeoutMillis(final long containerTimeoutMillis) {
+        this.containerTimeoutMillis = containerTimeoutMillis;
+    }
+
+    /**
+     * Retrieves the new logs of the given containers and translates them to events.
+     * Undiscovered containers are skipped.
+     * @param key The events cache key the containers belong to.
+     * @param containers All the containers of the deployment. Requests to any other container are discarded.
+     * @return The new events, ordered by log timestamp. Indices are not yet assigned.
+     */
+    public List<DeploymentEvent> harvest(final EventsCacheKey key,
+                                         final Collection<GridServiceContainer> containers) {
+
+        final Map<LogEntryMatcherProviderKey, Future<LogEntries>> requests =
+                new LinkedHashMap<LogEntryMatcherProviderKey, Future<LogEntries>>();
+
+        final Set<LogEntryMatcherProviderKey> currentKeys = new HashSet<LogEntryMatcherProviderKey>();
+        for (final GridServiceContainer container : containers) {
+            final LogEntryMatcherProviderKey matcherKey = createKey(container, key);
+            currentKeys.add(matcherKey);
+            final Future<LogEntries> pending = pendingRequests.get(matcherKey);
+            if (pending != null) {
+                if (pending.isDone()) {
+                    // collect the result of a request that missed the deadline of a previous refresh.
+                    requests.put(matcherKey, pending);
+                } else if (!container.isDiscovered()) {
+                    logger.fine(EventsUtils.getThreadId() + "Discarding log request to container "
+                            + container.getUid() + " since it is no longer discovered by the admin");
+                    // keep the matcher, so a rediscovered container is not read from the start again.
+                    cancel(matcherKey);
+                } else {
+                    logger.fine(EventsUtils.getThreadId() + "Previous log request to container "
+                            + container.getUid() + " is still in progress. Skipping it for this refresh");
+                }
+            } else if (container.isDiscovered()) {
+                final LogEntryMatcher matcher = matcherProvider.get(matcherKey);
+                final FutureTask<LogEntries> request = new FutureTask<LogEntries>(new Callable<LogEntries>() {
+                    @Override
+                    public LogEntries call() throws Exception {
+                        return container.logEntries(matcher);
+                    }
+                });
+                // claim the container, a concurrent refresh may have already submitted a request to it.
+                if (pendingRequests.putIfAbsent(matcherKey, request) == null) {
+                    logger.fine(EventsUtils.getThreadId() + "Retrieving logs from container " + container.getUid()
+                            + container.getExactZones().getZones());
+                    executor.execute(request);
+                    requests.put(matcherKey, request);
+                }
+            } else {
+                logger.fine(EventsUtils.getThreadId() + "Not retrieving logs from container " + container.getUid()
+                        + container.getExactZones().getZones() + " since it is not discovered by the admin");
+            }
+        }
+
+        // containers that left the deployment are never queried again.
+        for (final LogEntryMatcherProviderKey matcherKey
+                : new HashSet<LogEntryMatcherProviderKey>(pendingRequests.keySet())) {
+            if (matcherKey.getDeploymentId().equals(key.getDeploymentId()) && !currentKeys.contains(matcherKey)) {
+                discard(matcherKey);
+            }
+        }
+
+        final List<TimestampedEvent> harvested = new ArrayList<TimestampedEvent>();
+        final long deadline = System.currentTimeMillis() + containerTimeoutMillis;
+        for (final Map.Entry<LogEntryMatcherProviderKey, Future<LogEntries>> entry : requests.entrySet()) {
+            final Future<LogEntries> future = entry.getValue();
+            final long remaining = Math.max(0, deadline - System.currentTimeMillis());
+            try {
+                final LogEntries logEntries = future.get(remaining, TimeUnit.MILLISECONDS);
+                // only the refresh that releases the request may use its result.
+                if (pendingRequests.remove(entry.getKey(), future)) {
+                    collect(logEntries, harvested);
+                }
+            } catch (final TimeoutException e) {
+                logger.fine(EventsUtils.getThreadId() + "Timed out retrieving logs for " + entry.getKey()
+                        + ". Its logs will be collected on the next refresh");
+            } catch (final ExecutionException e) {
+                pendingRequests.remove(entry.getKey(), future);
+                logger.log(Level.WARNING, "Failed retrieving logs for " + entry.getKey(), e.getCause());
+            } catch (final CancellationException e) {
+                logger.fine(EventsUtils.getThreadId() + "Log request for " + entry.getKey() + " was discarded");
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // a stable sort keeps the per container order of entries sharing the same timestamp.
+        Collections.sort(harvested, new Comparator<TimestampedEvent>() {
+            @Override
+            public int compare(final TimestampedEvent o1, final TimestampedEvent o2) {
+                return o1.timestamp < o2.timestamp ? -1 : (o1.timestamp == o2.timestamp ? 0 : 1);
+            }
+        });
+
+        final List<DeploymentEvent> events = new ArrayList<DeploymentEvent>(harvested.size());
+        for (final TimestampedEvent timestampedEvent : harvested) {
+            events.add(timestampedEvent.event);
+        }
+        return events;
+    }
+
+    /**
+     * Discards pending requests of a deployment that was removed from the cache.
+     * @param key The removed key.
+     */
+    public void removeAll(final EventsCacheKey key) {
+        for (final LogEntryMatcherProviderKey matcherKey
+                : new HashSet<LogEntryMatcherProviderKey>(pendingRequests.keySet())) {
+            if (matcherKey.getDeploymentId().equals(key.getDeploymentId())) {
+                discard(matcherKey);
+            }
+        }
+    }
+
+    /**
+     * Terminates the harvesting threads.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void discard(final LogEntryMatcherProviderKey matcherKey) {
+        cancel(matcherKey);
+        matcherProvider.remove(matcherKey);
+    }
+
+    private void cancel(final LogEntryMatcherProviderKey matcherKey) {
+        final Future<LogEntries> pending = pendingRequests.remove(matcherKey);
+        if (pending != null) {
+            pending.cancel(true);
+        }
+    }
+
+    private void collect(final LogEntries logEntries, final List<TimestampedEvent> harvested) {
+        if (logEntries == null) {
+            return;
+        }
+        for (final LogEntry logEntry : logEntries) {
+            if (logEntry.isLog()) {
+                logger.finest(EventsUtils.getThreadId() + "Found log " + logEntry.getText());
+                final DeploymentEvent event = EventsUtils.logToEvent(
+                        logEntry, logEntries.getHostName(), logEntries.getHostAddress());
+                harvested.add(new TimestampedEvent(logEntry.getTimestamp(), event));
+            }
+        }
+    }
+
+    private LogEntryMatcherProviderKey createKey(final GridServiceContainer container,
+                                                 final EventsCacheKey key) {
+        final LogEntryMatcherProviderKey logEntryMatcherProviderKey = new LogEntryMatcherProviderKey();
+        logEntryMatcherProviderKey.setDeploymentId(key.getDeploymentId());
+        logEntryMatcherProviderKey.setContainer(container);
+        return logEntryMatcherProviderKey;
+    }
+
+    /**
+     * An event along with the timestamp of the log entry it was created from.
+     */
+    private static final class TimestampedEvent {
+
+        private final long timestamp;
+        private final DeploymentEvent event;
+
+        private TimestampedEvent(final long timestamp, final DeploymentEvent event) {
+            this.timestamp = timestamp;
+            this.event = event;
+        }
+    }
+}
@@ -18,7 +18,6 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
 import org.cloudifysource.dsl.rest.response.DeploymentEvent;
-import org.cloudifysource.dsl.rest.response.DeploymentEvents;
 import org.cloudifysource.rest.events.LogEntryMatcherProvider;
 import org.openspaces.admin.Admin;
 
@@ -48,6 +47,7 @@ public class EventsCache {
     private static final int CACHE_EXPIRATION_MINUTES = 5;
 
     private final LoadingCache<EventsCacheKey, EventsCacheValue> eventsLoadingCache;
+    private final EventsCacheLoader loader;
     private final LogEntryMatcherProvider matcherProvider;
     private int cacheExpirationPeriod = CACHE_EXPIRATION_MINUTES;
     private TimeUnit cacheExpirationTimeunit = TimeUnit.MINUTES;
@@ -60,9 +60,22 @@ public class EventsCache {
         this.cacheExpirationTimeunit = cacheExpirationTimeunit;
     }
 
+    /**
+     * Sets the maximum number of events retained per deployment for newly loaded entries.
+     * Older events are truncated once this limit is reached.
+     * @param eventsCapacity The number of events to retain.
+     */
+    public void setEventsCapacity(final int eventsCapacity) {
+        loader.setEventsCapacity(eventsCapacity);
+    }
+
+    public int getEventsCapacity() {
+        return loader.getEventsCapacity();
+    }
+
     public EventsCache(final Admin admin) {
 
-        final EventsCacheLoader loader = new EventsCacheLoader(new AdminBasedGridServiceContainerProvider(admin));
+        this.loader = new EventsCacheLoader(new AdminBasedGridServiceContainerProvider(admin));
 
         this.matcherProvider = loader.getMatcherProvider();
         this.eventsLoadingCache = CacheBuilder.newBuilder()
@@ -79,6 +92,7 @@ public class EventsCache {
                             logger.fine("Entry with key " + notification.getKey() + " was removed from cache.");
                             final EventsCacheKey key = (EventsCacheKey) notification.getKey();
                             matcherProvider.removeAll(key);
+                            loader.getHarvester().removeAll(key);
                         }
 
                     }
@@ -86,6 +100,13 @@ public class EventsCache {
                 .build(loader);
     }
 
+    /**
+     * Terminates the threads used for loading the cache.
+     */
+    public void shutdown() {
+        loader.getHarvester().shutdown();
+    }
+
     /**
      * Refresh the cache. this results in a call to {@link EventsCacheLoader#reload(EventsCacheKey, EventsCacheValue)}.
      * @param key The key to refresh.
@@ -121,14 +142,16 @@ public class EventsCache {
      * Explicitly put a new entry to the cache. this method is used only when installing or uninstalling the service.
      * @param key The key of the requested entry.
      * @param value The value of the requested entry.
+     * @return The value now held by the cache. This is the existing value if one was already present.
      */
-    public void put(final EventsCacheKey key, final EventsCacheValue value) {
-        if (!eventsLoadingCache.asMap().containsKey(key)) {
+    public EventsCacheValue put(final EventsCacheKey key, final EventsCacheValue value) {
+        final EventsCacheValue existing = eventsLoadingCache.asMap().putIfAbsent(key, value);
+        if (existing == null) {
             logger.finest("Putting new value in events cache for key " + key + " : " + value);
-            eventsLoadingCache.asMap().put(key, value);
-        } else {
-            logger.finest("Not putting new value in events cache for key " + key + " . it already exists.");
+            return value;
         }
+        logger.finest("Not putting new value in events cache for key " + key + " . it already exists.");
+        return existing;
     }
     
     /**
@@ -139,10 +162,9 @@ public class EventsCache {
     public void add(final EventsCacheKey key, final DeploymentEvent event) {
     	EventsCacheValue eventsCacheValue = eventsLoadingCache.asMap().get(key);
         synchronized (eventsCacheValue.getMutex()) {
-            DeploymentEvents events = eventsCacheValue.getEvents();
-            event.setIndex(eventsCacheValue.getLastEventIndex() + 1);
             logger.finest("Adding event " + event + " to cache value with key " + key);
-            events.getEvents().add(event);
+            eventsCacheValue.getEvents().append(event);
+            eventsCacheValue.signalEventsChanged();
         }
     }
 }
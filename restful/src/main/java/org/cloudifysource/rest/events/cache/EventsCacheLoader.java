@@ -12,17 +12,12 @@
  *******************************************************************************/
 package org.cloudifysource.rest.events.cache;
 
-import com.gigaspaces.log.LogEntries;
-import com.gigaspaces.log.LogEntry;
-import com.gigaspaces.log.LogEntryMatcher;
 import com.google.common.cache.CacheLoader;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.cloudifysource.dsl.rest.response.DeploymentEvent;
-import org.cloudifysource.dsl.rest.response.DeploymentEvents;
 import org.cloudifysource.rest.events.EventsUtils;
 import org.cloudifysource.rest.events.LogEntryMatcherProvider;
-import org.cloudifysource.rest.events.LogEntryMatcherProviderKey;
 import org.openspaces.admin.gsc.GridServiceContainer;
 import org.openspaces.admin.pu.ProcessingUnit;
 import org.openspaces.admin.pu.ProcessingUnitInstance;
@@ -42,6 +37,7 @@ import java.util.logging.Logger;
  *
  * Load and reload operation will execute a remote call to fetch container logs.
  * These logs are then translated to events and saved inside the cache.
+ * Remote calls to the containers of a deployment are executed concurrently by a {@link ContainerLogsHarvester}.
  *
  * @see org.cloudifysource.dsl.rest.response.DeploymentEvents
  *
@@ -52,11 +48,22 @@ public class EventsCacheLoader extends CacheLoader<EventsCacheKey, EventsCacheVa
 
     private final LogEntryMatcherProvider matcherProvider;
     private final GridServiceContainerProvider containerProvider;
+    private final ContainerLogsHarvester harvester;
+    private int eventsCapacity = IndexedEventsBuffer.DEFAULT_CAPACITY;
 
     public EventsCacheLoader(final GridServiceContainerProvider containerProvider) {
 
         this.matcherProvider = new LogEntryMatcherProvider();
         this.containerProvider = containerProvider;
+        this.harvester = new ContainerLogsHarvester(matcherProvider);
+    }
+
+    public void setEventsCapacity(final int eventsCapacity) {
+        this.eventsCapacity = eventsCapacity;
+    }
+
+    public int getEventsCapacity() {
+        return eventsCapacity;
     }
 
     @Override
@@ -65,7 +72,7 @@ public class EventsCacheLoader extends CacheLoader<EventsCacheKey, EventsCacheVa
         logger.fine(EventsUtils.getThreadId() + "Could not find events for key " + key
                 + " in cache. Loading from container logs...");
 
-        DeploymentEvents events = new DeploymentEvents();
+        EventsCacheValue value = new EventsCacheValue(eventsCapacity);
 
         // initial load. no events are present in the cache for this deployment.
         // iterate over all container and retrieve logs from logs cache.
@@ -74,32 +81,18 @@ public class EventsCacheLoader extends CacheLoader<EventsCacheKey, EventsCacheVa
 
         Set<ProcessingUnit> processingUnitsForDeployment = new HashSet<ProcessingUnit>();
 
-        int index = 0;
         for (GridServiceContainer container : containersForDeployment) {
 
             ProcessingUnitInstance[] processingUnitInstances = container.getProcessingUnitInstances();
             if (processingUnitInstances != null && processingUnitInstances.length > 0) {
                 processingUnitsForDeployment.add(processingUnitInstances[0].getProcessingUnit());
             }
+        }
 
-            LogEntryMatcherProviderKey logEntryMatcherProviderKey = createKey(container, key);
-
-            if (container.isDiscovered()) {
-                LogEntries logEntries = container.logEntries(matcherProvider.get(logEntryMatcherProviderKey));
-                for (LogEntry logEntry : logEntries) {
-                    if (logEntry.isLog()) {
-                        DeploymentEvent event = EventsUtils.logToEvent(logEntry,
-                                logEntries.getHostName(), logEntries.getHostAddress());
-                        event.setIndex(++index);
-                        events.getEvents().add(event);
-                    }
-                }
-            }
+        for (DeploymentEvent event : harvester.harvest(key, containersForDeployment)) {
+            value.getEvents().append(event);
         }
 
-        EventsCacheValue value = new EventsCacheValue();
-        value.setLastEventIndex(index);
-        value.setEvents(events);
         value.getProcessingUnits().addAll(processingUnitsForDeployment);
         value.setContainers(containersForDeployment);
         value.setLastRefreshedTimestamp(System.currentTimeMillis());
@@ -117,37 +110,16 @@ public class EventsCacheLoader extends CacheLoader<EventsCacheKey, EventsCacheVa
         oldValue.getContainers().addAll(containerProvider.getContainersForDeployment(key.getDeploymentId()));
 
         if (!oldValue.getContainers().isEmpty()) {
-            int index = oldValue.getLastEventIndex();
-            for (GridServiceContainer container : oldValue.getContainers()) {
-
-                // this will give us just the new logs.
-                LogEntryMatcherProviderKey logEntryMatcherProviderKey = createKey(container, key);
-                LogEntryMatcher matcher = matcherProvider.get(logEntryMatcherProviderKey);
-                if (container.isDiscovered()) {
-                    // don't fetch logs from undiscovered containers
-                    logger.fine(EventsUtils.getThreadId() + "Retrieving logs from container " + container.getUid() +
-                            container.getExactZones().getZones());
-                    LogEntries logEntries = container.logEntries(matcher);
-                    for (LogEntry logEntry : logEntries) {
-                        if (logEntry.isLog()) {
-                            logger.finest(EventsUtils.getThreadId() + "Found log " + logEntry.getText() + " for " +
-                                    "deployment id " + key.getDeploymentId() + " from container "
-                                    + container.getUid() + container.getExactZones().getZones());
-                            DeploymentEvent event = EventsUtils.logToEvent(
-                                    logEntry, logEntries.getHostName(), logEntries.getHostAddress());
-                            event.setIndex(++index);
-                            oldValue.getEvents().getEvents().add(event);
-                        }
-                    }
-                } else {
-                    logger.fine(EventsUtils.getThreadId() + "Not retrieving logs from container " + container.getUid()
-                            + container.getExactZones().getZones() + " since it is not discovered by the admin");
-                }
+
+            // the matchers used by the harvester will give us just the new logs.
+            for (DeploymentEvent event : harvester.harvest(key, oldValue.getContainers())) {
+                logger.finest(EventsUtils.getThreadId() + "Found event " + event.getDescription() + " for "
+                        + "deployment id " + key.getDeploymentId());
+                oldValue.getEvents().append(event);
             }
 
             // update refresh time.
             oldValue.setLastRefreshedTimestamp(System.currentTimeMillis());
-            oldValue.setLastEventIndex(index);
         }
         return Futures.immediateFuture(oldValue);
     }
@@ -156,11 +128,7 @@ public class EventsCacheLoader extends CacheLoader<EventsCacheKey, EventsCacheVa
         return matcherProvider;
     }
 
-    private LogEntryMatcherProviderKey createKey(final GridServiceContainer container,
-                                                 final EventsCacheKey key) {
-        LogEntryMatcherProviderKey logEntryMatcherProviderKey = new LogEntryMatcherProviderKey();
-        logEntryMatcherProviderKey.setDeploymentId(key.getDeploymentId());
-        logEntryMatcherProviderKey.setContainer(container);
-        return logEntryMatcherProviderKey;
+    public ContainerLogsHarvester getHarvester() {
+        return harvester;
     }
 }
@@ -12,7 +12,6 @@
  *******************************************************************************/
 package org.cloudifysource.rest.events.cache;
 
-import org.cloudifysource.dsl.rest.response.DeploymentEvents;
 import org.openspaces.admin.gsc.GridServiceContainer;
 import org.openspaces.admin.pu.ProcessingUnit;
 
@@ -27,28 +26,28 @@ import java.util.Set;
  * <br/><br/>
  *
  * Value for the events cache. containing the actual events plus some implementation specific information.
+ * Events are kept in an {@link IndexedEventsBuffer}, which is also the source of the last event index.
  */
 public class EventsCacheValue {
 
-    private DeploymentEvents events = new DeploymentEvents();
+    private final IndexedEventsBuffer events;
     private long lastRefreshedTimestamp;
-    private int lastEventIndex;
     private volatile Object mutex = new Object();
     private Set<ProcessingUnit> processingUnits = new HashSet<ProcessingUnit>();
     private Set<GridServiceContainer> containers = new HashSet<GridServiceContainer>();
 
+    public EventsCacheValue(final int eventsCapacity) {
+        this.events = new IndexedEventsBuffer(eventsCapacity);
+    }
+
     public Set<ProcessingUnit> getProcessingUnits() {
         return processingUnits;
     }
 
-    public DeploymentEvents getEvents() {
+    public IndexedEventsBuffer getEvents() {
         return events;
     }
 
-    public void setEvents(final DeploymentEvents events) {
-        this.events = events;
-    }
-
     public long getLastRefreshedTimestamp() {
         return lastRefreshedTimestamp;
     }
@@ -58,22 +57,28 @@ public class EventsCacheValue {
     }
 
     public int getLastEventIndex() {
-        return lastEventIndex;
-    }
-
-    public void setLastEventIndex(final int lastEventIndex) {
-        this.lastEventIndex = lastEventIndex;
+        return events.getLastIndex();
     }
 
     public Object getMutex() {
         return mutex;
     }
 
+    /**
+     * Wakes up threads waiting on the mutex for new events.
+     * @see org.cloudifysource.rest.controllers.DeploymentsController#pollDeploymentEvents(String, int, int)
+     */
+    public void signalEventsChanged() {
+        synchronized (mutex) {
+            mutex.notifyAll();
+        }
+    }
+
     @Override
     public String toString() {
         return "EventsCacheValue{" + "events=" + events
                 + ", lastRefreshedTimestamp=" + lastRefreshedTimestamp
-                + ", lastEventIndex=" + lastEventIndex + ", mutex=" + mutex + '}';
+                + ", lastEventIndex=" + getLastEventIndex() + ", mutex=" + mutex + '}';
     }
 
 	public Set<GridServiceContainer> getContainers() {
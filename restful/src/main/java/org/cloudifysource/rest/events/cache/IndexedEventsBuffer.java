@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.events.cache;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.cloudifysource.dsl.rest.response.DeploymentEvent;
+import org.cloudifysource.dsl.rest.response.DeploymentEvents;
+
+/**
+ * Bounded, index addressable storage for the events of a single deployment.
+ * <br/><br/>
+ *
+ * Events are stored in a ring. Each appended event is given the next consecutive index, starting from 1,
+ * so looking up an event by its index is a constant time operation, and range queries are answered with a
+ * view over the ring rather than by scanning it.
+ * The ring starts small and grows up to its capacity, so short deployments do not pay for a large capacity.
+ * Once the ring is full, the oldest event is overwritten (truncated) by the newest one. Requests for truncated
+ * events are answered with a single marker event, see {@link #extract(int, int)}.
+ * <br/><br/>
+ *
+ * This class is not thread safe. Access should be guarded by {@link EventsCacheValue#getMutex()}.
+ */
+public class IndexedEventsBuffer {
+
+    /**
+     * Default number of events retained per deployment.
+     */
+    public static final int DEFAULT_CAPACITY = 50000;
+
+    private static final int INITIAL_RING_SIZE = 256;
+
+    private final int capacity;
+    private DeploymentEvent[] ring;
+    private int lastIndex;
+
+    public IndexedEventsBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IndexedEventsBuffer(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Events buffer capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.ring = new DeploymentEvent[Math.min(capacity, INITIAL_RING_SIZE)];
+    }
+
+    /**
+     * Appends an event to the buffer, assigning it the next available index.
+     * @param event The event to append.
+     * @return The index given to the event.
+     */
+    public int append(final DeploymentEvent event) {
+        if (lastIndex == ring.length && ring.length < capacity) {
+            // the ring never wrapped yet, so slots are ordered by index.
+            ring = Arrays.copyOf(ring, (int) Math.min((long) ring.length * 2, capacity));
+        }
+        lastIndex++;
+        event.setIndex(lastIndex);
+        ring[slot(lastIndex)] = event;
+        return lastIndex;
+    }
+
+    /**
+     * Retrieves the event with the given index.
+     * @param index The event index.
+     * @return The event, or null if it was never appended or was already truncated.
+     */
+    public DeploymentEvent get(final int index) {
+        if (index < getFirstIndex() || index > lastIndex) {
+            return null;
+        }
+        return ring[slot(index)];
+    }
+
+    /**
+     * Returns a read only view of the events whose index lies in the given range.
+     * The range is clipped to the events currently held by the buffer.
+     * The view is backed by the buffer, copy it before releasing the mutex.
+     * @param from The start index (inclusive).
+     * @param to The end index (inclusive).
+     * @return The events in range, ordered by index.
+     */
+    public List<DeploymentEvent> range(final int from, final int to) {
+        final int start = Math.max(from, getFirstIndex());
+        final int end = Math.min(to, lastIndex);
+        if (start > end) {
+            return Collections.emptyList();
+        }
+        return new AbstractList<DeploymentEvent>() {
+
+            @Override
+            public DeploymentEvent get(final int i) {
+                if (i < 0 || i >= size()) {
+                    throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+                }
+                return ring[slot(start + i)];
+            }
+
+            @Override
+            public int size() {
+                return end - start + 1;
+            }
+        };
+    }
+
+    /**
+     * Copies the events in the given range into a new {@link DeploymentEvents} object.
+     * If some of the requested events were already truncated, they are replaced by a single marker event whose
+     * index is the one preceding the oldest retained event, so clients continue from the retained events.
+     * @param from The start index (inclusive).
+     * @param to The end index (inclusive).
+     * @return The requested events.
+     */
+    public DeploymentEvents extract(final int from, final int to) {
+        final List<DeploymentEvent> extracted = new ArrayList<DeploymentEvent>();
+        if (isTruncated(from) && to >= from) {
+            final DeploymentEvent marker = new DeploymentEvent();
+            marker.setIndex(getFirstIndex() - 1);
+            marker.setDescription("Events " + Math.max(1, from) + " to " + (getFirstIndex() - 1)
+                    + " were truncated, only the last " + capacity + " events are retained");
+            extracted.add(marker);
+        }
+        extracted.addAll(range(from, to));
+        final DeploymentEvents events = new DeploymentEvents();
+        events.setEvents(extracted);
+        return events;
+    }
+
+    /**
+     * @param index An event index.
+     * @return true if the event with the given index was already truncated from the buffer.
+     */
+    public boolean isTruncated(final int index) {
+        return lastIndex > capacity && index < getFirstIndex();
+    }
+
+    /**
+     * @return The index of the oldest event held by the buffer.
+     */
+    public int getFirstIndex() {
+        return Math.max(1, lastIndex - capacity + 1);
+    }
+
+    /**
+     * @return The index of the last appended event, 0 if no events were appended.
+     */
+    public int getLastIndex() {
+        return lastIndex;
+    }
+
+    /**
+     * @return The number of events currently held by the buffer.
+     */
+    public int size() {
+        return Math.min(lastIndex, capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private int slot(final int index) {
+        return (index - 1) % ring.length;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedEventsBuffer{" + "firstIndex=" + getFirstIndex() + ", lastIndex=" + lastIndex
+                + ", capacity=" + capacity + '}';
+    }
+}
@@ -489,13 +489,14 @@ public class ApplicationDescriptionFactory {
     }
 
     /**
-     * Gets a service's number of instances.
+     * Gets a service's number of running instances, as reported by {@link ServiceDescription#getInstanceCount()},
+     * without building the rest of the service description.
      *
      * @param processingUnit
      *            The processing unit implementing this service
-     * @return the planned number of instances for the specified service (PU)
+     * @return the number of running instances of the specified service (PU)
      */
-    private int getNumberOfServiceInstances(final ProcessingUnit processingUnit) {
+    public int getNumberOfServiceInstances(final ProcessingUnit processingUnit) {
 
         if (processingUnit != null) {
             if (processingUnit.getType() == ProcessingUnitType.UNIVERSAL) {
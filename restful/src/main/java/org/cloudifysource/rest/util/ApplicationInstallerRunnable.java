@@ -20,6 +20,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
@@ -36,6 +37,7 @@ import org.cloudifysource.dsl.internal.packaging.FileAppender;
 import org.cloudifysource.dsl.internal.packaging.Packager;
 import org.cloudifysource.dsl.utils.ServiceUtils;
 import org.cloudifysource.rest.controllers.ServiceController;
+import org.cloudifysource.rest.deploy.ServiceInstallationScheduler;
 
 import com.j_spaces.kernel.Environment;
 
@@ -148,21 +150,48 @@ public class ApplicationInstallerRunnable implements Runnable {
 			final File cloudOverrides)
 			throws IOException {
 		logger.info("Installing services for application: " + applicationName + ". Async install: " + async + ". Number of services: " + this.services.size());
-		for (final Service service : services) {
-			logger.info("Installing service: " + service.getName() + " for application: " + applicationName);
-			service.getCustomProperties().put("usmJarPath",
-					Environment.getHomeDirectory() + "/lib/platform/usm");
+		final ServiceInstallationScheduler scheduler = new ServiceInstallationScheduler(applicationName, services,
+				ServiceInstallationScheduler.DEFAULT_MAX_CONCURRENT_INSTALLATIONS);
+		try {
+			scheduler.installAll(new ServiceInstallationScheduler.ServiceInstallation() {
+				@Override
+				public void install(final Service service) throws Exception {
+					installService(service, appDir, applicationName, authGroups, async, cloud, cloudOverrides);
+				}
+			});
+		} catch (final ExecutionException e) {
+			// the failure was already logged and reported by the failing service installation.
+			logger.fine("Installation of application " + applicationName + " halted: " + e.getCause());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.warning("Interrupted while installing application " + applicationName
+					+ ". Some services may have been installed!");
+		}
+	}
 
-			final Properties contextProperties = createServiceContextProperties(
-					service, applicationName, async, cloud);
+	private void installService(
+			final Service service,
+			final File appDir,
+			final String applicationName,
+			final String authGroups,
+			final boolean async,
+			final Cloud cloud,
+			final File cloudOverrides)
+			throws Exception {
+		logger.info("Installing service: " + service.getName() + " for application: " + applicationName);
+		service.getCustomProperties().put("usmJarPath",
+				Environment.getHomeDirectory() + "/lib/platform/usm");
 
-			final String serviceName = service.getName();
-			final String absolutePUName = ServiceUtils.getAbsolutePUName(
-					applicationName, serviceName);
-			final File serviceDirectory = new File(appDir, serviceName);
+		final Properties contextProperties = createServiceContextProperties(
+				service, applicationName, async, cloud);
 
-			// scan for service cloud configuration file
+		final String serviceName = service.getName();
+		final String absolutePUName = ServiceUtils.getAbsolutePUName(
+				applicationName, serviceName);
+		final File serviceDirectory = new File(appDir, serviceName);
 
+		try {
+			// scan for service cloud configuration file
 			final File serviceCloudConfiguration = new File(serviceDirectory,
 					CloudifyConstants.SERVICE_CLOUD_CONFIGURATION_FILE_NAME);
 			byte[] serviceCloudConfigurationContents = null;
@@ -172,117 +201,102 @@ public class ApplicationInstallerRunnable implements Runnable {
 				FileUtils.forceDelete(serviceCloudConfiguration);
 			}
 
-			boolean found = false;
-
+			// this will actually create an empty props file.
+			final FileAppender appender = new FileAppender("finalPropsFile.properties");
+			final LinkedHashMap<File, String> filesToAppend = new LinkedHashMap<File, String>();
+
+			// first add the application properties file. least important overrides.
+			// lookup application properties file
+			final File applicationPropertiesFile =
+					DSLReader.findDefaultDSLFileIfExists(DSLUtils.APPLICATION_PROPERTIES_FILE_NAME, appDir);
+			filesToAppend.put(applicationPropertiesFile, "Application Properties File");
+			// add the service properties file, second level overrides.
+			// lookup service properties file
+			final String propertiesFileName = DSLUtils.getPropertiesFileName(serviceDirectory,
+					DSLUtils.SERVICE_DSL_FILE_NAME_SUFFIX);
+			final File servicePropertiesFile = new File(serviceDirectory, propertiesFileName);
+			filesToAppend.put(servicePropertiesFile, "Service Properties File");
+			// lookup overrides file
+			File actualOverridesFile = overridesFile;
+			if (actualOverridesFile == null) {
+				// when using the CLI, the application overrides file is inside the directory
+				actualOverridesFile =
+						DSLReader.findDefaultDSLFileIfExists(DSLUtils.APPLICATION_OVERRIDES_FILE_NAME, appDir);
+			}
+			// add the overrides file given in the command or via REST, most important overrides.
+			filesToAppend.put(actualOverridesFile, "Overrides Properties File");
+			/*
+			 * name the merged properties file as the original properties file. this will allow all properties to be
+			 * available by anyone who parses the default properties file. (like Lifecycle scripts)
+			 */
+			appender.appendAll(servicePropertiesFile, filesToAppend);
+
+			// Pack the folder and name it absolutePuName
+			final File packedFile = Packager.pack(service, serviceDirectory, absolutePUName, null);
+			result.getApplicationFile().delete();
+			packedFile.deleteOnExit();
+			// Deployment will be done using the service's absolute PU name.
+			logger.info("Deploying PU: " + absolutePUName + ". File: "
+					+ packedFile + ". Properties: " + contextProperties);
+			final String templateName = service.getCompute() == null ? null
+					: service.getCompute().getTemplate();
+			controller.deployElasticProcessingUnit(
+					absolutePUName,
+					applicationName,
+					authGroups,
+					serviceName,
+					packedFile,
+					contextProperties,
+					templateName,
+					true,
+					0,
+					TimeUnit.SECONDS,
+					serviceCloudConfigurationContents,
+					selfHealing,
+					null /* service overrides file */,
+					cloudOverrides);
 			try {
-				// this will actually create an empty props file.
-				final FileAppender appender = new FileAppender("finalPropsFile.properties");
-				final LinkedHashMap<File, String> filesToAppend = new LinkedHashMap<File, String>();
-
-				// first add the application properties file. least important overrides.
-				// lookup application properties file
-				final File applicationPropertiesFile =
-						DSLReader.findDefaultDSLFileIfExists(DSLUtils.APPLICATION_PROPERTIES_FILE_NAME, appDir);
-				filesToAppend.put(applicationPropertiesFile, "Application Properties File");
-				// add the service properties file, second level overrides.
-				// lookup service properties file
-				final String propertiesFileName = DSLUtils.getPropertiesFileName(serviceDirectory,
-						DSLUtils.SERVICE_DSL_FILE_NAME_SUFFIX);
-				final File servicePropertiesFile = new File(serviceDirectory, propertiesFileName);
-				filesToAppend.put(servicePropertiesFile, "Service Properties File");
-				// lookup overrides file
-				File actualOverridesFile = overridesFile;
-				if (actualOverridesFile == null) {
-					// when using the CLI, the application overrides file is inside the directory
-					actualOverridesFile =
-							DSLReader.findDefaultDSLFileIfExists(DSLUtils.APPLICATION_OVERRIDES_FILE_NAME, appDir);
-				}
-				// add the overrides file given in the command or via REST, most important overrides.
-				filesToAppend.put(actualOverridesFile, "Overrides Properties File");
-				/*
-				 * name the merged properties file as the original properties file. this will allow all properties to be
-				 * available by anyone who parses the default properties file. (like Lifecycle scripts)
-				 */
-				appender.appendAll(servicePropertiesFile, filesToAppend);
-
-				// Pack the folder and name it absolutePuName
-				final File packedFile = Packager.pack(service, serviceDirectory, absolutePUName, null);
-				result.getApplicationFile().delete();
-				packedFile.deleteOnExit();
-				// Deployment will be done using the service's absolute PU name.
-				logger.info("Deploying PU: " + absolutePUName + ". File: "
-						+ packedFile + ". Properties: " + contextProperties);
-				final String templateName = service.getCompute() == null ? null
-						: service.getCompute().getTemplate();
-				controller.deployElasticProcessingUnit(
-						absolutePUName,
-						applicationName,
-						authGroups,
-						serviceName,
-						packedFile,
-						contextProperties,
-						templateName,
-						true,
-						0,
-						TimeUnit.SECONDS,
-						serviceCloudConfigurationContents,
-						selfHealing,
-						null /* service overrides file */,
-						cloudOverrides);
-				try {
-					FileUtils.deleteDirectory(packedFile.getParentFile());
-				} catch (final IOException ioe) {
-					// sometimes this delete fails. Not sure why. Maybe deploy
-					// is async?
-					logger.warning("Failed to delete temporary directory: "
-							+ packedFile.getParentFile());
-				}
-
-				if (!async) {
-					logger.info("Waiting for instance of service: " + serviceName + " of application: "	+ applicationName);
-					final boolean instanceFound = controller
-							.waitForServiceInstance(applicationName,
-									serviceName,
-									SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES,
-									TimeUnit.MINUTES);
-					if (!instanceFound) {
-						throw new TimeoutException(
-								"Service "
-										+ serviceName
-										+ " of application "
-										+ applicationName
-										+ " was installed, but no instance of the service has started after "
-										+ SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES
-										+ " minutes.");
-					}
-					logger.info("Found instance of: " + serviceName);
-				}
-
-				found = true;
-				logger.fine("service " + service + " deployed.");
-			} catch (final Exception e) {
-				logger.log(
-						Level.SEVERE,
-						"Failed to install service: "
-								+ serviceName
-								+ " of application: "
-								+ applicationName
-								+ ". Application installation will halt. "
-								+ "Some services may already have started, and should be shutdown manually. Error was: "
-								+ e.getMessage(), e);
-				this.controller.handleDeploymentException(e, this.pollingTaskId);
-				return;
+				FileUtils.deleteDirectory(packedFile.getParentFile());
+			} catch (final IOException ioe) {
+				// sometimes this delete fails. Not sure why. Maybe deploy
+				// is async?
+				logger.warning("Failed to delete temporary directory: "
+						+ packedFile.getParentFile());
 			}
 
-			if (!found) {
-				logger.severe("Failed to find an instance of service: "
-						+ serviceName
-						+ " while installing application "
-						+ applicationName
-						+ ". Application installation will stop. Some services may have been installed!");
-				return;
+			if (!async) {
+				logger.info("Waiting for instance of service: " + serviceName + " of application: "	+ applicationName);
+				final boolean instanceFound = controller
+						.waitForServiceInstance(applicationName,
+								serviceName,
+								SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES,
+								TimeUnit.MINUTES);
+				if (!instanceFound) {
+					throw new TimeoutException(
+							"Service "
+									+ serviceName
+									+ " of application "
+									+ applicationName
+									+ " was installed, but no instance of the service has started after "
+									+ SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES
+									+ " minutes.");
+				}
+				logger.info("Found instance of: " + serviceName);
 			}
 
+			logger.fine("service " + service + " deployed.");
+		} catch (final Exception e) {
+			logger.log(
+					Level.SEVERE,
+					"Failed to install service: "
+							+ serviceName
+							+ " of application: "
+							+ applicationName
+							+ ". Application installation will halt. "
+							+ "Some services may already have started, and should be shutdown manually. Error was: "
+							+ e.getMessage(), e);
+			this.controller.handleDeploymentException(e, this.pollingTaskId);
+			throw e;
 		}
 	}
 
@@ -16,11 +16,12 @@
 package org.cloudifysource.rest.util;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,13 +37,20 @@ public class LifecycleEventsContainer {
 
 	private static final String EVENT_TEXT_SEPARATOR = " - ";
 
+	private static final char EVENT_ID_SEPARATOR = '|';
+
 	/**
 	 * A list of processed events.
 	 */
 	private List<String> eventsList;
 
 	/**
-	 * A set containing all of the executed lifecycle events. used to avoid
+	 * Maximum number of event identities remembered by a set created with {@link #createEventsSet()}.
+	 */
+	private static final int MAX_REMEMBERED_EVENTS = 10000;
+
+	/**
+	 * A set containing the identities of all of the executed lifecycle events. used to avoid
 	 * duplicate prints.
 	 */
 	private Set<String> lifecycleEventsSet;
@@ -94,15 +102,13 @@ public class LifecycleEventsContainer {
 			}
 			String outputMessage;
 			for (Map<String, String> map : allLifecycleEvents) {
-				Map<String, Object> sortedMap = new TreeMap<String, Object>(map);
-				if (this.lifecycleEventsSet.contains(sortedMap.toString())) {
+				if (!this.lifecycleEventsSet.add(getEventId(map))) {
 					if (logger.isLoggable(Level.FINEST)) {
-						outputMessage = getParsedLifecyceEventMessageFromMap(sortedMap);
+						outputMessage = getParsedLifecyceEventMessageFromMap(map);
 						logger.finest("Ignoring Lifecycle Event: " + outputMessage);
 					}
 				} else {
-					this.lifecycleEventsSet.add(sortedMap.toString());
-					outputMessage = getParsedLifecyceEventMessageFromMap(sortedMap);
+					outputMessage = getParsedLifecyceEventMessageFromMap(map);
 					this.eventsList.add(outputMessage);
 					if (logger.isLoggable(Level.FINE)) {
 						logger.fine("Lifecycle Event: " + outputMessage);
@@ -135,6 +141,20 @@ public class LifecycleEventsContainer {
 		}
 	}
 
+	/**
+	 * Computes the identity of an event, based on its timestamp, origin host, service and text.
+	 * 
+	 * @param map
+	 *            a map of details
+	 * @return the event identity
+	 */
+	private String getEventId(final Map<String, String> map) {
+		return map.get(EventLogConstants.getTimeStampKey())
+				+ EVENT_ID_SEPARATOR + map.get(EventLogConstants.getMachineHostAddressKey())
+				+ EVENT_ID_SEPARATOR + map.get(EventLogConstants.getServiceNameKey())
+				+ EVENT_ID_SEPARATOR + map.get(EventLogConstants.getEventTextKey());
+	}
+
 	/**
 	 * Creates a formatted message based on a given map of details.
 	 * 
@@ -142,7 +162,7 @@ public class LifecycleEventsContainer {
 	 *            a map of details
 	 * @return formatted message
 	 */
-	private String getParsedLifecyceEventMessageFromMap(final Map<String, Object> map) {
+	private String getParsedLifecyceEventMessageFromMap(final Map<String, String> map) {
 		// TODO:Check nulls
 
 		String eventText = (map.get(EventLogConstants.getEventTextKey()))
@@ -171,4 +191,21 @@ public class LifecycleEventsContainer {
 	public void setEventsSet(final Set<String> eventsSet) {
 		this.lifecycleEventsSet = eventsSet;
 	}
+
+	/**
+	 * Creates a thread safe set for event identities, suitable for sharing between containers.
+	 * Once full, the identities of the oldest events are forgotten.
+	 * 
+	 * @return a new events set
+	 */
+	public static Set<String> createEventsSet() {
+		return Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+				return size() > MAX_REMEMBERED_EVENTS;
+			}
+		}));
+	}
 }
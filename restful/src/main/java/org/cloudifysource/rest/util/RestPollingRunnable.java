@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +52,7 @@ import org.openspaces.admin.pu.ProcessingUnitType;
 import org.openspaces.admin.zone.Zone;
 import org.openspaces.pu.service.ServiceMonitors;
 
+import com.gigaspaces.log.ContinuousLogEntryMatcher;
 import com.gigaspaces.log.LogEntries;
 import com.gigaspaces.log.LogEntry;
 import com.gigaspaces.log.LogEntryMatcher;
@@ -85,6 +87,8 @@ public class RestPollingRunnable implements Runnable {
 
 	private static final String USM_EVENT_LOGGER_NAME = ".*.USMEventLogger.{0}\\].*";
 
+	private static final String CONTAINER_MATCHER_KEY_SEPARATOR = "@";
+
 	private boolean isUninstall = false;
 
 	private boolean isSetInstances = false;
@@ -107,6 +111,9 @@ public class RestPollingRunnable implements Runnable {
 
 	private final Map<String, Date> gscStartTimeMap = new HashMap<String, Date>();
 
+	// continuous log matchers, per service and container.
+	private final Map<String, LogEntryMatcher> containerMatchers = new HashMap<String, LogEntryMatcher>();
+
 	private final Object lock = new Object();
 
 	private FutureTask<Boolean> undeployTask;
@@ -411,18 +418,16 @@ public class RestPollingRunnable implements Runnable {
 		if (zone == null) {
 			return;
 		}
-		// TODO: this is not very efficient. Maybe possible to move the
-		// LogEntryMatcher
-		// as field add to init to call .
-		final String regex = MessageFormat.format(USM_EVENT_LOGGER_NAME,
-				absolutePuName);
-		final LogEntryMatcher matcher = regex(regex);
+		final Set<String> liveMatcherKeys = new HashSet<String>();
 		for (final GridServiceContainer container : zone
 				.getGridServiceContainers()) {
 			logger.log(Level.FINEST,
 					"Polling GSC with uid: " + container.getUid());
+			liveMatcherKeys.add(getContainerMatcherKey(container, absolutePuName));
 
 			final Date pollingStartTime = getGSCSamplingStartTime(container);
+			// a continuous matcher only retrieves the log entries added since its previous use.
+			final LogEntryMatcher matcher = getContainerMatcher(container, absolutePuName);
 			LogEntries logEntries = null;
 			try {
 				logEntries = container.logEntries(matcher);
@@ -433,8 +438,7 @@ public class RestPollingRunnable implements Runnable {
 			// Get lifecycle events.
 				for (final LogEntry logEntry : logEntries) {
 					if (logEntry.isLog()) {
-						if (pollingStartTime.before(new Date(logEntry
-								.getTimestamp()))) {
+						if (logEntry.getTimestamp() > pollingStartTime.getTime()) {
 							final Map<String, String> serviceEventsMap = getEventDetailes(
 									logEntry, container, absolutePuName);
 							servicesLifecycleEventDetailes.add(serviceEventsMap);
@@ -442,10 +446,37 @@ public class RestPollingRunnable implements Runnable {
 					}
 				}
 			}
+		}
+
+		// forget the matchers of containers that are gone.
+		final String servicePrefix = absolutePuName + CONTAINER_MATCHER_KEY_SEPARATOR;
+		final Iterator<String> matcherKeys = this.containerMatchers.keySet().iterator();
+		while (matcherKeys.hasNext()) {
+			final String matcherKey = matcherKeys.next();
+			if (matcherKey.startsWith(servicePrefix) && !liveMatcherKeys.contains(matcherKey)) {
+				matcherKeys.remove();
+			}
+		}
+
+		this.lifecycleEventsContainer
+				.addLifecycleEvents(servicesLifecycleEventDetailes);
+	}
+
+	private String getContainerMatcherKey(final GridServiceContainer container, final String absolutePuName) {
+		return absolutePuName + CONTAINER_MATCHER_KEY_SEPARATOR + container.getUid();
+	}
 
-			this.lifecycleEventsContainer
-					.addLifecycleEvents(servicesLifecycleEventDetailes);
+	private LogEntryMatcher getContainerMatcher(final GridServiceContainer container,
+			final String absolutePuName) {
+		final String key = getContainerMatcherKey(container, absolutePuName);
+		LogEntryMatcher matcher = this.containerMatchers.get(key);
+		if (matcher == null) {
+			final String regex = MessageFormat.format(USM_EVENT_LOGGER_NAME,
+					absolutePuName);
+			matcher = new ContinuousLogEntryMatcher(regex(regex), regex(regex));
+			this.containerMatchers.put(key, matcher);
 		}
+		return matcher;
 	}
 
 	// Returns the time the polling started for the specific gsc.
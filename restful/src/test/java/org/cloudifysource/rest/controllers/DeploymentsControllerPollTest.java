@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.controllers;
+
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.dsl.rest.response.DeploymentEvent;
+import org.cloudifysource.dsl.rest.response.PollDeploymentEventsResponse;
+import org.cloudifysource.rest.RestConfiguration;
+import org.cloudifysource.rest.events.cache.EventsCache;
+import org.cloudifysource.rest.events.cache.EventsCacheKey;
+import org.cloudifysource.rest.events.cache.EventsCacheValue;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openspaces.admin.Admin;
+import org.openspaces.admin.pu.ProcessingUnit;
+import org.openspaces.admin.pu.ProcessingUnitInstance;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class DeploymentsControllerPollTest {
+
+	private static final String DEPLOYMENT_ID = "deploymentId";
+	private static final EventsCacheKey KEY = new EventsCacheKey(DEPLOYMENT_ID);
+
+	private DeploymentsController controller;
+	private EventsCache eventsCache;
+	private EventsCacheValue value;
+	private ProcessingUnit pu;
+
+	@Before
+	public void before() throws Exception {
+		value = new EventsCacheValue(100);
+		pu = Mockito.mock(ProcessingUnit.class);
+		Mockito.when(pu.getName()).thenReturn("default.tomcat");
+		Mockito.when(pu.getInstances()).thenReturn(instances(1));
+		value.getProcessingUnits().add(pu);
+
+		eventsCache = Mockito.mock(EventsCache.class);
+		Mockito.when(eventsCache.getIfExists(KEY)).thenReturn(value);
+		Mockito.when(eventsCache.get(KEY)).thenReturn(value);
+
+		final RestConfiguration restConfig = Mockito.mock(RestConfiguration.class);
+		Mockito.when(restConfig.getAdmin()).thenReturn(Mockito.mock(Admin.class));
+
+		controller = new DeploymentsController();
+		ReflectionTestUtils.setField(controller, "eventsCache", eventsCache);
+		ReflectionTestUtils.setField(controller, "restConfig", restConfig);
+	}
+
+	@Test
+	public void testEventsReturnedFromCursor() throws Throwable {
+		addEvents("first", "second", "third");
+
+		final PollDeploymentEventsResponse response = controller.pollDeploymentEvents(DEPLOYMENT_ID, 2, 10);
+
+		final List<DeploymentEvent> events = response.getEvents().getEvents();
+		Assert.assertEquals(2, events.size());
+		Assert.assertEquals(2, events.get(0).getIndex());
+		Assert.assertEquals("second", events.get(0).getDescription());
+		Assert.assertEquals("third", events.get(1).getDescription());
+		Assert.assertEquals(Collections.singletonMap("tomcat", 1), response.getRunningInstances());
+		// there were events to return, so the logs were not refreshed.
+		Mockito.verify(eventsCache, Mockito.never()).refresh(KEY);
+	}
+
+	@Test
+	public void testNoTimeoutAnsweredImmediately() throws Throwable {
+		addEvents("first");
+
+		final long start = System.currentTimeMillis();
+		final PollDeploymentEventsResponse response = controller.pollDeploymentEvents(DEPLOYMENT_ID, 2, 0);
+
+		Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+		Assert.assertTrue(response.getEvents().getEvents().isEmpty());
+		Assert.assertEquals(Collections.singletonMap("tomcat", 1), response.getRunningInstances());
+	}
+
+	@Test
+	public void testHeldUntilTimeout() throws Throwable {
+		addEvents("first");
+
+		final long start = System.currentTimeMillis();
+		final PollDeploymentEventsResponse response = controller.pollDeploymentEvents(DEPLOYMENT_ID, 2, 1);
+
+		Assert.assertTrue(System.currentTimeMillis() - start >= 1000);
+		Assert.assertTrue(response.getEvents().getEvents().isEmpty());
+		Mockito.verify(eventsCache, Mockito.atLeastOnce()).refresh(KEY);
+	}
+
+	@Test
+	public void testHeldUntilNewEvents() throws Throwable {
+		addEvents("first");
+		final Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				sleep(300);
+				addEvents("second");
+				value.signalEventsChanged();
+			}
+		});
+		writer.start();
+
+		final long start = System.currentTimeMillis();
+		final PollDeploymentEventsResponse response = controller.pollDeploymentEvents(DEPLOYMENT_ID, 2, 10);
+
+		Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+		final List<DeploymentEvent> events = response.getEvents().getEvents();
+		Assert.assertEquals(1, events.size());
+		Assert.assertEquals("second", events.get(0).getDescription());
+		writer.join();
+	}
+
+	@Test
+	public void testHeldUntilRunningInstancesChange() throws Throwable {
+		Mockito.when(pu.getInstances()).thenReturn(instances(1), instances(1), instances(2));
+
+		final long start = System.currentTimeMillis();
+		final PollDeploymentEventsResponse response = controller.pollDeploymentEvents(DEPLOYMENT_ID, 1, 10);
+
+		Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+		Assert.assertTrue(response.getEvents().getEvents().isEmpty());
+		Assert.assertEquals(Collections.singletonMap("tomcat", 2), response.getRunningInstances());
+	}
+
+	private void addEvents(final String... descriptions) {
+		synchronized (value.getMutex()) {
+			for (final String description : descriptions) {
+				final DeploymentEvent event = new DeploymentEvent();
+				event.setDescription(description);
+				value.getEvents().append(event);
+			}
+		}
+	}
+
+	private static ProcessingUnitInstance[] instances(final int count) {
+		final ProcessingUnitInstance[] instances = new ProcessingUnitInstance[count];
+		for (int i = 0; i < count; i++) {
+			instances[i] = Mockito.mock(ProcessingUnitInstance.class);
+		}
+		return instances;
+	}
+
+	private static void sleep(final long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
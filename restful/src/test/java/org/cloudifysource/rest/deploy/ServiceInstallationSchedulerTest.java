@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.deploy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.domain.Service;
+import org.junit.Test;
+
+public class ServiceInstallationSchedulerTest {
+
+	@Test
+	public void testDependenciesInstalledFirst() throws Exception {
+		// db <- app <- lb, cache is independent
+		final List<Service> services = Arrays.asList(
+				createService("db"),
+				createService("cache"),
+				createService("app", "db", "cache"),
+				createService("lb", "app"));
+
+		final List<String> installed = Collections.synchronizedList(new ArrayList<String>());
+		new ServiceInstallationScheduler("app", services, 4).installAll(
+				new ServiceInstallationScheduler.ServiceInstallation() {
+					@Override
+					public void install(final Service service) throws Exception {
+						installed.add(service.getName());
+					}
+				});
+
+		Assert.assertEquals(4, installed.size());
+		Assert.assertTrue(installed.indexOf("app") > installed.indexOf("db"));
+		Assert.assertTrue(installed.indexOf("app") > installed.indexOf("cache"));
+		Assert.assertEquals("lb", installed.get(3));
+	}
+
+	@Test
+	public void testIndependentServicesInstalledConcurrently() throws Exception {
+		final List<Service> services = Arrays.asList(
+				createService("a"),
+				createService("b"),
+				createService("c"));
+
+		// every installation blocks until all three are running, so this completes only if they run side by side.
+		final CountDownLatch allStarted = new CountDownLatch(services.size());
+		new ServiceInstallationScheduler("app", services, 3).installAll(
+				new ServiceInstallationScheduler.ServiceInstallation() {
+					@Override
+					public void install(final Service service) throws Exception {
+						allStarted.countDown();
+						if (!allStarted.await(10, TimeUnit.SECONDS)) {
+							throw new IllegalStateException("Services were not installed concurrently");
+						}
+					}
+				});
+	}
+
+	@Test
+	public void testConcurrencyCap() throws Exception {
+		final List<Service> services = new ArrayList<Service>();
+		for (int i = 0; i < 10; i++) {
+			services.add(createService("service" + i));
+		}
+
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		new ServiceInstallationScheduler("app", services, 2).installAll(
+				new ServiceInstallationScheduler.ServiceInstallation() {
+					@Override
+					public void install(final Service service) throws Exception {
+						final int current = running.incrementAndGet();
+						synchronized (maxRunning) {
+							maxRunning.set(Math.max(maxRunning.get(), current));
+						}
+						Thread.sleep(20);
+						running.decrementAndGet();
+					}
+				});
+
+		Assert.assertTrue(maxRunning.get() <= 2);
+	}
+
+	@Test
+	public void testFailureStopsDependents() throws Exception {
+		final List<Service> services = Arrays.asList(
+				createService("db"),
+				createService("app", "db"));
+
+		final List<String> installed = Collections.synchronizedList(new ArrayList<String>());
+		try {
+			new ServiceInstallationScheduler("app", services, 2).installAll(
+					new ServiceInstallationScheduler.ServiceInstallation() {
+						@Override
+						public void install(final Service service) throws Exception {
+							if (service.getName().equals("db")) {
+								throw new IllegalStateException("db failed");
+							}
+							installed.add(service.getName());
+						}
+					});
+			Assert.fail("Expected the installation to fail");
+		} catch (final ExecutionException e) {
+			Assert.assertEquals("db failed", e.getCause().getMessage());
+		}
+		Assert.assertTrue(installed.isEmpty());
+	}
+
+	private Service createService(final String name, final String... dependsOn) {
+		final Service service = new Service();
+		service.setName(name);
+		service.setDependsOn(new ArrayList<String>(Arrays.asList(dependsOn)));
+		return service;
+	}
+}
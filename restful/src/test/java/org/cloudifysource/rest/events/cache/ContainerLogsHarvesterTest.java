@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.events.cache;
+
+import com.gigaspaces.log.LogEntries;
+import com.gigaspaces.log.LogEntry;
+import com.gigaspaces.log.LogEntryMatcher;
+import junit.framework.Assert;
+import org.cloudifysource.dsl.rest.response.DeploymentEvent;
+import org.cloudifysource.rest.events.LogEntryMatcherProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openspaces.admin.gsc.GridServiceContainer;
+import org.openspaces.admin.zone.config.ExactZonesConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ContainerLogsHarvesterTest {
+
+    private static final EventsCacheKey KEY = new EventsCacheKey("deploymentId");
+
+    private ContainerLogsHarvester harvester;
+
+    @Before
+    public void before() {
+        harvester = new ContainerLogsHarvester(new LogEntryMatcherProvider(), 4);
+        harvester.setContainerTimeoutMillis(500);
+    }
+
+    @After
+    public void after() {
+        harvester.shutdown();
+    }
+
+    @Test
+    public void testEventsMergedByTimestamp() throws Exception {
+
+        GridServiceContainer first = createMockContainer(null, 1, 4, 7);
+        GridServiceContainer second = createMockContainer(null, 2, 3, 9);
+
+        List<DeploymentEvent> events = harvester.harvest(KEY, Arrays.asList(first, second));
+
+        Assert.assertEquals(6, events.size());
+        long[] expected = {1, 2, 3, 4, 7, 9};
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertTrue(events.get(i).getDescription().endsWith("Event" + expected[i]));
+        }
+    }
+
+    @Test
+    public void testSlowContainerCollectedOnNextHarvest() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        GridServiceContainer fast = createMockContainer(null, 1);
+        GridServiceContainer slow = createMockContainer(release, 2);
+
+        // the slow container misses the deadline, the fast one is not held back by it.
+        List<DeploymentEvent> events = harvester.harvest(KEY, Arrays.asList(fast, slow));
+        Assert.assertEquals(1, events.size());
+        Assert.assertTrue(events.get(0).getDescription().endsWith("Event1"));
+
+        // still in flight, the slow container is not queried again.
+        harvester.harvest(KEY, Arrays.asList(slow));
+        Mockito.verify(slow, Mockito.times(1)).logEntries(Mockito.any(LogEntryMatcher.class));
+
+        release.countDown();
+        Thread.sleep(200);
+
+        events = harvester.harvest(KEY, Arrays.asList(slow));
+        Assert.assertEquals(1, events.size());
+        Assert.assertTrue(events.get(0).getDescription().endsWith("Event2"));
+        Mockito.verify(slow, Mockito.times(1)).logEntries(Mockito.any(LogEntryMatcher.class));
+    }
+
+    @Test
+    public void testRequestsOfRemovedContainersDiscarded() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        GridServiceContainer fast = createMockContainer(null, 1);
+        GridServiceContainer slow = createMockContainer(release, 2);
+
+        harvester.harvest(KEY, Arrays.asList(fast, slow));
+
+        // the slow container left the deployment, its pending request is dropped.
+        harvester.harvest(KEY, Arrays.asList(fast));
+        release.countDown();
+        Thread.sleep(200);
+
+        // joining again, it is queried from scratch rather than served the dropped result.
+        harvester.harvest(KEY, Arrays.asList(fast, slow));
+        Mockito.verify(slow, Mockito.times(2)).logEntries(Mockito.any(LogEntryMatcher.class));
+    }
+
+    @Test
+    public void testRequestsOfUndiscoveredContainersDiscarded() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        GridServiceContainer slow = createMockContainer(release, 2);
+
+        harvester.harvest(KEY, Arrays.asList(slow));
+        Mockito.when(slow.isDiscovered()).thenReturn(false);
+        harvester.harvest(KEY, Arrays.asList(slow));
+        release.countDown();
+        Thread.sleep(200);
+
+        Assert.assertTrue(harvester.harvest(KEY, Arrays.asList(slow)).isEmpty());
+        Mockito.verify(slow, Mockito.times(1)).logEntries(Mockito.any(LogEntryMatcher.class));
+    }
+
+    @Test
+    public void testRediscoveredContainerNotReadFromStart() throws Exception {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final LogEntries mockLogEntries = createMockLogEntries(1, 2);
+        final LogEntries noLogEntries = createMockLogEntries();
+        final Set<LogEntryMatcher> servedMatchers = Collections.synchronizedSet(new HashSet<LogEntryMatcher>());
+        final AtomicInteger requests = new AtomicInteger();
+        GridServiceContainer container = createMockContainer(null);
+        // serves the entries once per matcher, as a continuous matcher does. the second request hangs.
+        Mockito.when(container.logEntries(Mockito.any(LogEntryMatcher.class)))
+                .thenAnswer(new Answer<LogEntries>() {
+                    @Override
+                    public LogEntries answer(final InvocationOnMock invocation) throws Throwable {
+                        if (requests.incrementAndGet() == 2) {
+                            release.await();
+                        }
+                        if (servedMatchers.add((LogEntryMatcher) invocation.getArguments()[0])) {
+                            return mockLogEntries;
+                        }
+                        return noLogEntries;
+                    }
+                });
+
+        Assert.assertEquals(2, harvester.harvest(KEY, Arrays.asList(container)).size());
+        Assert.assertTrue(harvester.harvest(KEY, Arrays.asList(container)).isEmpty());
+
+        // undiscovered while its request is in flight, then discovered again.
+        Mockito.when(container.isDiscovered()).thenReturn(false);
+        harvester.harvest(KEY, Arrays.asList(container));
+        Mockito.when(container.isDiscovered()).thenReturn(true);
+        release.countDown();
+
+        Assert.assertTrue(harvester.harvest(KEY, Arrays.asList(container)).isEmpty());
+        Mockito.verify(container, Mockito.times(3)).logEntries(Mockito.any(LogEntryMatcher.class));
+    }
+
+    private GridServiceContainer createMockContainer(final CountDownLatch release, final long... timestamps) {
+
+        final LogEntries mockLogEntries = createMockLogEntries(timestamps);
+        GridServiceContainer mockContainer = Mockito.mock(GridServiceContainer.class);
+        Mockito.when(mockContainer.logEntries(Mockito.any(LogEntryMatcher.class)))
+                .thenAnswer(new Answer<LogEntries>() {
+                    @Override
+                    public LogEntries answer(final InvocationOnMock invocation) throws Throwable {
+                        if (release != null) {
+                            release.await();
+                        }
+                        return mockLogEntries;
+                    }
+                });
+        Mockito.when(mockContainer.getUid()).thenReturn(UUID.randomUUID().toString());
+        Mockito.when(mockContainer.isDiscovered()).thenReturn(true);
+        Mockito.when(mockContainer.getExactZones()).thenReturn(new ExactZonesConfig());
+        return mockContainer;
+    }
+
+    private LogEntries createMockLogEntries(final long... timestamps) {
+
+        List<LogEntry> logEntries = new ArrayList<LogEntry>();
+        for (long timestamp : timestamps) {
+            LogEntry mockLogEntry = Mockito.mock(LogEntry.class);
+            Mockito.when(mockLogEntry.isLog()).thenReturn(true);
+            Mockito.when(mockLogEntry.getTimestamp()).thenReturn(timestamp);
+            Mockito.when(mockLogEntry.getText()).thenReturn("USMLOGGER - Event" + timestamp);
+            logEntries.add(mockLogEntry);
+        }
+
+        LogEntries mockLogEntries = Mockito.mock(LogEntries.class);
+        Mockito.when(mockLogEntries.iterator()).thenReturn(logEntries.iterator());
+        Mockito.when(mockLogEntries.getHostAddress()).thenReturn("hostAddress");
+        Mockito.when(mockLogEntries.getHostName()).thenReturn("hostName");
+        return mockLogEntries;
+    }
+}
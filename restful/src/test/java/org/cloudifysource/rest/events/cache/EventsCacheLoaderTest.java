@@ -22,7 +22,6 @@ import com.gigaspaces.log.LogEntryMatcher;
 import com.google.common.util.concurrent.ListenableFuture;
 import junit.framework.Assert;
 import org.cloudifysource.dsl.rest.response.DeploymentEvent;
-import org.cloudifysource.rest.events.EventsUtils;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.openspaces.admin.gsc.GridServiceContainer;
@@ -52,10 +51,11 @@ public class EventsCacheLoaderTest {
         Assert.assertEquals(LOG_ENTRIES_BATCH_SIZE, loadedValue.getLastEventIndex());
 
         // test all events are present and indexed correctly.
-        List<DeploymentEvent> events = loadedValue.getEvents().getEvents();
-        for (int i = 1; i < LOG_ENTRIES_BATCH_SIZE; i++) {
-            DeploymentEvent event = EventsUtils.retrieveEventWithIndex(i, events);
+        IndexedEventsBuffer events = loadedValue.getEvents();
+        for (int i = 1; i <= LOG_ENTRIES_BATCH_SIZE; i++) {
+            DeploymentEvent event = events.get(i);
             Assert.assertNotNull(event);
+            Assert.assertEquals(i, event.getIndex());
         }
 
 
@@ -80,9 +80,10 @@ public class EventsCacheLoaderTest {
         Assert.assertEquals(2 * LOG_ENTRIES_BATCH_SIZE, oldValue.getLastEventIndex());
 
         // test events were updated
-        for (int i = 1; i < LOG_ENTRIES_BATCH_SIZE * 2; i++) {
-            DeploymentEvent event = EventsUtils.retrieveEventWithIndex(i, events.getEvents().getEvents());
+        for (int i = 1; i <= LOG_ENTRIES_BATCH_SIZE * 2; i++) {
+            DeploymentEvent event = events.getEvents().get(i);
             Assert.assertNotNull(event);
+            Assert.assertEquals(i, event.getIndex());
         }
 
     }
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.events.cache;
+
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.dsl.rest.response.DeploymentEvent;
+import org.junit.Test;
+
+public class IndexedEventsBufferTest {
+
+    private static final int CAPACITY = 10;
+
+    @Test
+    public void testAppendAssignsConsecutiveIndices() {
+
+        IndexedEventsBuffer buffer = new IndexedEventsBuffer(CAPACITY);
+        Assert.assertEquals(0, buffer.getLastIndex());
+        Assert.assertNull(buffer.get(1));
+
+        fill(buffer, 5);
+
+        Assert.assertEquals(5, buffer.getLastIndex());
+        Assert.assertEquals(1, buffer.getFirstIndex());
+        for (int i = 1; i <= 5; i++) {
+            Assert.assertEquals(i, buffer.get(i).getIndex());
+            Assert.assertEquals("event" + i, buffer.get(i).getDescription());
+        }
+        Assert.assertNull(buffer.get(6));
+    }
+
+    @Test
+    public void testTruncation() {
+
+        IndexedEventsBuffer buffer = new IndexedEventsBuffer(CAPACITY);
+        fill(buffer, 25);
+
+        Assert.assertEquals(CAPACITY, buffer.size());
+        Assert.assertEquals(16, buffer.getFirstIndex());
+        Assert.assertEquals(25, buffer.getLastIndex());
+        Assert.assertNull(buffer.get(15));
+        Assert.assertEquals("event16", buffer.get(16).getDescription());
+        Assert.assertEquals("event25", buffer.get(25).getDescription());
+    }
+
+    @Test
+    public void testRange() {
+
+        IndexedEventsBuffer buffer = new IndexedEventsBuffer(CAPACITY);
+        fill(buffer, 15);
+
+        List<DeploymentEvent> range = buffer.range(8, 12);
+        Assert.assertEquals(5, range.size());
+        for (int i = 0; i < range.size(); i++) {
+            Assert.assertEquals(8 + i, range.get(i).getIndex());
+        }
+
+        // clipped to the events held by the buffer
+        range = buffer.range(1, 100);
+        Assert.assertEquals(CAPACITY, range.size());
+        Assert.assertEquals(6, range.get(0).getIndex());
+        Assert.assertEquals(15, range.get(CAPACITY - 1).getIndex());
+
+        Assert.assertTrue(buffer.range(16, 20).isEmpty());
+        Assert.assertEquals(3, buffer.extract(13, 20).getEvents().size());
+    }
+
+    @Test
+    public void testTruncationMarker() {
+
+        IndexedEventsBuffer buffer = new IndexedEventsBuffer(CAPACITY);
+        fill(buffer, 15);
+
+        Assert.assertTrue(buffer.isTruncated(5));
+        Assert.assertFalse(buffer.isTruncated(6));
+
+        // truncated events are replaced by a single marker preceding the oldest retained event
+        List<DeploymentEvent> events = buffer.extract(2, 8).getEvents();
+        Assert.assertEquals(4, events.size());
+        Assert.assertEquals(5, events.get(0).getIndex());
+        Assert.assertTrue(events.get(0).getDescription().contains("truncated"));
+        Assert.assertEquals(6, events.get(1).getIndex());
+        Assert.assertEquals(8, events.get(3).getIndex());
+
+        // no marker as long as nothing was truncated
+        IndexedEventsBuffer small = new IndexedEventsBuffer(CAPACITY);
+        fill(small, 5);
+        Assert.assertFalse(small.isTruncated(0));
+        Assert.assertEquals(1, small.extract(0, 1).getEvents().size());
+    }
+
+    @Test
+    public void testGrowsUpToCapacity() {
+
+        final int capacity = 1000;
+        IndexedEventsBuffer buffer = new IndexedEventsBuffer(capacity);
+        fill(buffer, 2500);
+
+        Assert.assertEquals(capacity, buffer.size());
+        Assert.assertEquals(1501, buffer.getFirstIndex());
+        for (int i = 1501; i <= 2500; i++) {
+            Assert.assertEquals("event" + i, buffer.get(i).getDescription());
+        }
+        Assert.assertNull(buffer.get(1500));
+    }
+
+    private void fill(final IndexedEventsBuffer buffer, final int count) {
+        for (int i = 1; i <= count; i++) {
+            DeploymentEvent event = new DeploymentEvent();
+            event.setDescription("event" + i);
+            buffer.append(event);
+        }
+    }
+}